@@ -0,0 +1,152 @@
+package ebf.tim.benchmark;
+
+import ebf.tim.TrainsInMotion;
+import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.utility.CollisionGrid;
+import ebf.tim.utility.CommonProxy;
+import ebf.tim.utility.HitboxDynamic;
+import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.MathHelper;
+import net.minecraft.util.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Collision benchmarks</h1>
+ * 200 transports in a yard, 20 tracks of 10 cars at an angle, with half a block between the cars so none of them couple.
+ * the tick benchmark is what the server does for all of them in a tick, move each one along it's track,
+ *     update it on the collision grid, then check both couplers against the transports the grid finds near it.
+ * the allocation per tick is the gc.alloc.rate.norm the jmh task's GC profiler reports for it,
+ *     the only garbage should be the grid making a cell when a car moves into an empty chunk.
+ * the query benchmarks are one coupler check through the grid, against checking every transport like the chunk scan used to,
+ *     and the narrow phase check of the hitbox against a vanilla entity's bounding box.
+ * the transports are made without a world, so they use the grid of a dimension no world would use.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    /**the number of entity boxes checked against the hitbox, a power of 2 so the index can wrap with a mask.*/
+    private static final int SIZE = 1024;
+    private static final int DIMENSION = Integer.MIN_VALUE;
+    private static final int TRACKS = 20, CARS = 10;
+    private static final float YAW = 37;
+
+    private final List<GenericRailTransport> transports = new ArrayList<>();
+    private final List<GenericRailTransport> nearby = new ArrayList<>();
+    private final AxisAlignedBB[] boxes = new AxisAlignedBB[SIZE];
+    /**the transport each box is near.*/
+    private final int[] boxTransports = new int[SIZE];
+    /**the direction the cars are moved this tick, flipped every tick so they stay on the yard.*/
+    private float step = 0.1f;
+    private int index =0;
+
+    @Setup
+    public void setup(){
+        if(TrainsInMotion.proxy==null){
+            TrainsInMotion.proxy = new CommonProxy();
+        }
+        float alongX = MathHelper.cos(YAW * (float) Math.PI / 180f), alongZ = MathHelper.sin(YAW * (float) Math.PI / 180f);
+        for(int track=0; track<TRACKS; track++){
+            for(int car=0; car<CARS; car++){
+                GenericRailTransport transport = new GenericRailTransport(null);
+                transport.collisionHandler = new HitboxDynamic(10f, 2.5f, 3f);
+                transport.rotationYaw = YAW;
+                transport.posX = car * 10.5 * alongX - track * 4 * alongZ;
+                transport.posY = 64;
+                transport.posZ = car * 10.5 * alongZ + track * 4 * alongX;
+                transport.collisionHandler.position(transport.posX, transport.posY, transport.posZ, 0, YAW);
+                CollisionGrid.update(DIMENSION, transport);
+                transports.add(transport);
+            }
+        }
+        //player and item sized boxes near a car each, about a third of them touching it.
+        Random rand = new Random(1234);
+        GenericRailTransport transport;
+        double x, z;
+        for(int i=0; i<SIZE; i++){
+            boxTransports[i] = rand.nextInt(transports.size());
+            transport = transports.get(boxTransports[i]);
+            x = transport.posX + (rand.nextDouble() - 0.5) * 12;
+            z = transport.posZ + (rand.nextDouble() - 0.5) * 12;
+            boxes[i] = AxisAlignedBB.getBoundingBox(x - 0.3, 64, z - 0.3, x + 0.3, 65.8, z + 0.3);
+        }
+    }
+
+    @Benchmark
+    public int tick(){
+        int hits =0;
+        float alongX = MathHelper.cos(YAW * (float) Math.PI / 180f) * step, alongZ = MathHelper.sin(YAW * (float) Math.PI / 180f) * step;
+        GenericRailTransport transport;
+        for(int i=0; i<transports.size(); i++){
+            transport = transports.get(i);
+            transport.posX += alongX;
+            transport.posZ += alongZ;
+            transport.collisionHandler.position(transport.posX, transport.posY, transport.posZ, 0, YAW);
+            CollisionGrid.update(DIMENSION, transport);
+        }
+        for(int i=0; i<transports.size(); i++){
+            transport = transports.get(i);
+            hits += couple(transport, gridQuery(transport), true) + couple(transport, nearby, false);
+        }
+        step = -step;
+        return hits;
+    }
+
+    @Benchmark
+    public int gridCoupler(){
+        GenericRailTransport transport = transports.get(index = (index + 1) % transports.size());
+        return couple(transport, gridQuery(transport), true);
+    }
+
+    @Benchmark
+    public int scanCoupler(){
+        return couple(transports.get(index = (index + 1) % transports.size()), transports, true);
+    }
+
+    @Benchmark
+    public boolean intersectsEntityBox(){
+        int i = index = (index + 1) & (SIZE - 1);
+        return transports.get(boxTransports[i]).collisionHandler.intersects(boxes[i]);
+    }
+
+    /**the grid query getCollidingEntities does for a transport's couplers.*/
+    private List<GenericRailTransport> gridQuery(GenericRailTransport host){
+        nearby.clear();
+        CollisionGrid.getTransports(DIMENSION, host.posX - 5.5, host.posZ - 5.5, host.posX + 5.5, host.posZ + 5.5, nearby);
+        return nearby;
+    }
+
+    /**the coupler check getCollidingEntities does for each transport it found, without the coupling itself.*/
+    private static int couple(GenericRailTransport host, List<GenericRailTransport> stock, boolean front){
+        int hits =0;
+        Vec3 point;
+        for(int i=0; i<stock.size(); i++){
+            if(stock.get(i) != host){
+                point = host.collisionHandler.getCouplerPoint(host, front);
+                if(stock.get(i).collisionHandler.containsPoint(point.xCoord, point.yCoord, point.zCoord)){
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+}
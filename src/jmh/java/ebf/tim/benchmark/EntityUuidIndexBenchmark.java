@@ -0,0 +1,115 @@
+package ebf.tim.benchmark;
+
+import ebf.tim.utility.EntityUuidIndex;
+import net.minecraft.entity.Entity;
+import net.minecraft.nbt.NBTTagCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Entity UUID index benchmarks</h1>
+ * the lookup a transport does for it's owner and links, through the index, against the loop over the loaded entity list
+ *     that CommonProxy.getEntityFromUuid used to do, with 1k, 10k and 50k entities loaded.
+ * the entities are made without a world, so they are indexed by dimension, which is what the world lookup does anyway.
+ * each size runs in it's own fork, so the indexes don't build up between them.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityUuidIndexBenchmark {
+
+    /**the number of UUIDs looked up, a power of 2 so the index can wrap with a mask.*/
+    private static final int SIZE = 1024;
+    /**the dimension the entities are indexed in, one no world would use.*/
+    private static final int DIMENSION = Integer.MIN_VALUE;
+
+    @Param({"1000", "10000", "50000"})
+    public int entities;
+
+    /**the loaded entities, in the order they would be in the world's loaded entity list.*/
+    private final List<Object> loadedEntityList = new ArrayList<>();
+    /**UUIDs of loaded entities, and ones that aren't loaded, like a link to a transport in an unloaded chunk.*/
+    private final UUID[] hits = new UUID[SIZE], misses = new UUID[SIZE];
+    private int index =0;
+
+    @Setup
+    public void setup(){
+        Random rand = new Random(1234);
+        Entity entity;
+        for(int i=0; i<entities; i++){
+            entity = new BenchmarkEntity(new UUID(rand.nextLong(), rand.nextLong()));
+            loadedEntityList.add(entity);
+            EntityUuidIndex.add(DIMENSION, entity);
+        }
+        for(int i=0; i<SIZE; i++){
+            hits[i] = ((Entity) loadedEntityList.get(rand.nextInt(entities))).getUniqueID();
+            misses[i] = new UUID(rand.nextLong(), rand.nextLong());
+        }
+    }
+
+    @Benchmark
+    public Entity indexHit(){
+        return EntityUuidIndex.getEntity(DIMENSION, hits[index = (index + 1) & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Entity indexMiss(){
+        return EntityUuidIndex.getEntity(DIMENSION, misses[index = (index + 1) & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Entity scanHit(){
+        return scan(hits[index = (index + 1) & (SIZE - 1)]);
+    }
+
+    @Benchmark
+    public Entity scanMiss(){
+        return scan(misses[index = (index + 1) & (SIZE - 1)]);
+    }
+
+    /**the loop the UUID lookup used to do, for a single world.*/
+    private Entity scan(UUID uuid){
+        for (int i=0; i< loadedEntityList.size();i++) {
+            if (loadedEntityList.get(i) instanceof Entity &&
+                    ((Entity) loadedEntityList.get(i)).getUniqueID().equals(uuid)) {
+                return (Entity) loadedEntityList.get(i);
+            }
+        }
+        return null;
+    }
+
+
+    /**an entity with a set UUID, and nothing else.*/
+    private static class BenchmarkEntity extends Entity {
+        private BenchmarkEntity(UUID uuid){
+            super(null);
+            entityUniqueID = uuid;
+        }
+
+        @Override
+        protected void entityInit() {}
+        @Override
+        protected void readEntityFromNBT(NBTTagCompound tag) {}
+        @Override
+        protected void writeEntityToNBT(NBTTagCompound tag) {}
+    }
+}
@@ -0,0 +1,99 @@
+package ebf.tim.benchmark;
+
+import ebf.tim.TrainsInMotion;
+import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.models.ParticleFX;
+import ebf.tim.utility.CommonProxy;
+import net.minecraft.world.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Particle benchmarks</h1>
+ * 100 steam locomotives running side by side, each with a smoke stack of 60 particles and a steam vent of 40,
+ *     the tick benchmark is one client tick of every emitter, the time is for all 100 of them.
+ * the budget is the default one, where most of the particles are kept from spawning, and one big enough for all of them.
+ * there's no world, the blocks are a flat floor under the locomotives, so the particles only hit anything if they sink into it.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleBenchmark {
+
+    private static final int LOCOMOTIVES = 100, SMOKE = 60, STEAM = 40;
+    private static final int FLOOR = 63;
+
+    @Param({"4000", "65536"})
+    public int budget;
+
+    private final List<List<ParticleFX>> emitters = new ArrayList<>();
+    private ParticleFX.Blocks worldBlocks;
+    private long tick =0;
+
+    @Setup
+    public void setup(){
+        if(TrainsInMotion.proxy==null){
+            TrainsInMotion.proxy = new CommonProxy();
+        }
+        worldBlocks = ParticleFX.blocks;
+        ParticleFX.blocks = new ParticleFX.Blocks() {
+            @Override
+            public boolean blocksMovement(World world, int x, int y, int z) {
+                return y <= FLOOR;
+            }
+
+            @Override
+            public long getTotalWorldTime(World world) {
+                return tick;
+            }
+        };
+        ParticleFX.setBudget(budget);
+        for(int i=0; i<LOCOMOTIVES; i++){
+            GenericRailTransport locomotive = new GenericRailTransport(null);
+            locomotive.posX = (i % 10) * 24;
+            locomotive.posY = FLOOR + 1;
+            locomotive.posZ = (i / 10) * 8;
+            List<ParticleFX> list = new ArrayList<>();
+            list.add(new ParticleFX(0, 0, locomotive, 40, -50, 0, 0, 0, 0, SMOKE));
+            list.add(new ParticleFX(1, 1, locomotive, 30, -20, 10, 0, 0, 0, STEAM));
+            emitters.add(list);
+        }
+        //run it long enough that the emitters are full, rather than measuring them filling up.
+        for(int i=0; i<300; i++){
+            tick();
+        }
+    }
+
+    @TearDown
+    public void cleanup(){
+        ParticleFX.blocks = worldBlocks;
+        ParticleFX.setBudget(4000);
+    }
+
+    @Benchmark
+    public int tick(){
+        tick++;
+        for(int i=0; i<emitters.size(); i++){
+            ParticleFX.updateParticleItterator(emitters.get(i), true);
+        }
+        return emitters.size();
+    }
+}
@@ -0,0 +1,85 @@
+package ebf.tim.benchmark;
+
+import ebf.tim.blocks.rails.RailShapeCore;
+import ebf.tim.utility.Vec6f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Rail arc length benchmarks</h1>
+ * walking a path a quarter block at a time, the way the ties are placed, on long custom curves.
+ * the table walk builds the arc lengths once and searches them, the summed walk uses the list versions,
+ *     which add up the segments again for every step, like the tie placement did before the table.
+ * the shape walk uses the table the shape keeps for it's active path, so after the first walk it's only the searches.
+ * the curves have about 4 points per block, so the 1024 point one is about 256 blocks long, the tie spacing is the same for all of them.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RailArcLengthBenchmark {
+
+    @Param({"16", "128", "1024"})
+    public int points;
+
+    private final List<Vec6f> curve = new ArrayList<>();
+    private final RailShapeCore shape = new RailShapeCore();
+
+    @Setup
+    public void setup(){
+        Random rand = new Random(1234);
+        float x=0, z=0, angle=0;
+        for(int i=0; i<points; i++){
+            curve.add(new Vec6f(x, 0, z));
+            angle += (rand.nextFloat() - 0.5f) * 0.1f;
+            x += Math.cos(angle) * 0.25f;
+            z += Math.sin(angle) * 0.25f;
+        }
+        shape.activePath = curve;
+    }
+
+    @Benchmark
+    public int tableWalk(){
+        float[] lengths = RailShapeCore.buildArcLengths(curve);
+        int hash =0;
+        for(float t=0; !RailShapeCore.positionPastEnd(t, lengths); t+=0.25f){
+            hash += RailShapeCore.getPosition(t, curve, lengths).hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public int shapeWalk(){
+        int hash =0;
+        for(float t=0; !shape.positionPastEnd(t); t+=0.25f){
+            hash += shape.getPosition(t).hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public int summedWalk(){
+        int hash =0;
+        for(float t=0; !RailShapeCore.positionPastEnd(t, curve); t+=0.25f){
+            hash += RailShapeCore.getPosition(t, curve).hashCode();
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,94 @@
+package ebf.tim.benchmark;
+
+import ebf.tim.TrainsInMotion;
+import ebf.tim.blocks.rails.RailShapeCore;
+import ebf.tim.blocks.rails.RailSimpleShape;
+import ebf.tim.utility.CommonProxy;
+import ebf.tim.utility.HitboxDynamic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Rail shape and hitbox benchmarks</h1>
+ * the bezier generation for rail shapes, which runs every time a rail or it's neighbor changes,
+ *     and the hitbox point check, which runs for every entity near a transport every tick.
+ * the shapes are the straight, slope, and curve shapes from the vanilla rails, with a parallel offset for the wide curves.
+ * nothing here needs a world, the common proxy is set so the hitbox doesn't make the client render shape.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RailShapeBenchmark {
+
+    /**the number of points checked against the hitbox, a power of 2 so the index can wrap with a mask.*/
+    private static final int SIZE = 1024;
+
+    private RailSimpleShape straight, slope, curve, wideCurve;
+    private final int[] gauge = new int[]{-313, 313};
+
+    private HitboxDynamic hitbox;
+    private final double[] x = new double[SIZE], y = new double[SIZE], z = new double[SIZE];
+    private int index =0;
+
+    @Setup
+    public void setup(){
+        if(TrainsInMotion.proxy==null){
+            TrainsInMotion.proxy = new CommonProxy();
+        }
+        straight = new RailSimpleShape().setStart(0, 0, -0.5f).setEnd(0, 0, 0.5f);
+        slope = new RailSimpleShape().setStart(0, 0, -0.5f).setEnd(0, 1, 0.5f);
+        curve = new RailSimpleShape().setStart(0, 0, -0.5f).setCenter(0, 0, 0).setEnd(0.5f, 0, 0);
+        wideCurve = new RailSimpleShape().setStart(0, 0, -0.5f, 0.25f).setCenter(0, 0, 1.5f).setEnd(2f, 0, 2f, 0.25f).setSleeperCount(6);
+
+        //a hitbox the size of a locomotive, at a slight slope and angle, with points around it, about half inside.
+        hitbox = new HitboxDynamic(3f, 2.5f, 10f);
+        hitbox.position(100.5, 64, -200.5, 3, 37);
+        Random rand = new Random(1234);
+        for(int i=0; i<SIZE; i++){
+            x[i] = 100.5 + (rand.nextDouble() - 0.5) * 12;
+            y[i] = 64 + rand.nextDouble() * 3;
+            z[i] = -200.5 + (rand.nextDouble() - 0.5) * 12;
+        }
+    }
+
+    @Benchmark
+    public RailShapeCore straightShape(){
+        return RailShapeCore.multiTriGenModel(null, 0, 64, 0, straight, gauge);
+    }
+
+    @Benchmark
+    public RailShapeCore slopeShape(){
+        return RailShapeCore.multiTriGenModel(null, 0, 64, 0, slope, gauge);
+    }
+
+    @Benchmark
+    public RailShapeCore curveShape(){
+        return RailShapeCore.multiTriGenModel(null, 0, 64, 0, curve, gauge);
+    }
+
+    @Benchmark
+    public RailShapeCore wideCurveShape(){
+        return RailShapeCore.multiTriGenModel(null, 0, 64, 0, wideCurve, gauge);
+    }
+
+    @Benchmark
+    public boolean hitboxContainsPoint(){
+        int i = index = (index + 1) & (SIZE - 1);
+        return hitbox.containsPoint(x[i], y[i], z[i]);
+    }
+}
@@ -0,0 +1,105 @@
+package ebf.tim.benchmark;
+
+import ebf.tim.utility.RailUtility;
+import fexcraft.tmt.slim.Vec3d;
+import fexcraft.tmt.slim.Vec3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Rail utility benchmarks</h1>
+ * the math the transports and bogies run every tick.
+ * the inputs are made once from a fixed seed, in the ranges the transports actually use,
+ *     and cycled through, so the branches for zero angles and negative values get hit like they do in game.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RailUtilityBenchmark {
+
+    /**the number of inputs, a power of 2 so the index can wrap with a mask.*/
+    private static final int SIZE = 1024;
+
+    private final double[] x = new double[SIZE], z = new double[SIZE];
+    private final float[] pitch = new float[SIZE], yaw = new float[SIZE], distance = new float[SIZE];
+    private final Vec3f[] points = new Vec3f[SIZE];
+    private final Vec3f result = new Vec3f(0,0,0);
+    private int index =0;
+
+    @Setup
+    public void setup(){
+        Random rand = new Random(1234);
+        for(int i=0; i<SIZE; i++){
+            //the distance between bogies, or the motion of a transport.
+            x[i] = (rand.nextDouble() - 0.5) * 8;
+            z[i] = (rand.nextDouble() - 0.5) * 8;
+            //slopes are only ever a few degrees, and a quarter of them are flat.
+            pitch[i] = rand.nextInt(4)==0?0:(rand.nextFloat() - 0.5f) * 20;
+            yaw[i] = rand.nextFloat() * 360 - 180;
+            distance[i] = rand.nextFloat() * 4;
+            //seat and hitbox offsets.
+            points[i] = new Vec3f(rand.nextFloat() * 4 - 2, rand.nextFloat() * 2, rand.nextFloat() * 8 - 4);
+        }
+    }
+
+    private int next(){
+        return index = (index + 1) & (SIZE - 1);
+    }
+
+    @Benchmark
+    public float atan2f(){
+        int i = next();
+        return RailUtility.atan2f(x[i], z[i]);
+    }
+
+    @Benchmark
+    public double atan2Math(){
+        int i = next();
+        return Math.atan2(x[i], z[i]);
+    }
+
+    @Benchmark
+    public double[] rotatePoint(){
+        int i = next();
+        return RailUtility.rotatePoint(distance[i], pitch[i], yaw[i]);
+    }
+
+    @Benchmark
+    public Vec3f rotatePointVector(){
+        int i = next();
+        return RailUtility.rotatePoint(points[i], pitch[i], yaw[i], 0);
+    }
+
+    @Benchmark
+    public Vec3f rotatePointInto(){
+        int i = next();
+        return RailUtility.rotatePoint(points[i], pitch[i], yaw[i], 0, result);
+    }
+
+    @Benchmark
+    public float[] rotatePointF(){
+        int i = next();
+        return RailUtility.rotatePointF(points[i].xCoord, points[i].yCoord, points[i].zCoord, pitch[i], yaw[i], 0);
+    }
+
+    @Benchmark
+    public Vec3d rotateDistance(){
+        int i = next();
+        return RailUtility.rotateDistance(distance[i], pitch[i], yaw[i]);
+    }
+}
@@ -0,0 +1,150 @@
+package ebf.tim.benchmark;
+
+import ebf.tim.utility.Recipe;
+import ebf.tim.utility.RecipeManager;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Recipe index benchmarks</h1>
+ * looking up what the transport table makes, and the recipe for a result, with a lot of recipes registered, like a big content pack.
+ * the indexed lookups go through RecipeManager, the scans are the loops it used before the index, checking every recipe in order.
+ * half the tables are a recipe, the other half are a recipe with one slot changed, so they don't match anything,
+ *     which is the worst case for the scan, and what the table sees most while a player is still filling it.
+ * one in 16 recipes has a slot that accepts anything, those are the ones the index still has to check every time.
+ * the first slot of every recipe is it's own item, since registering merges recipes that start with the same item.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipeIndexBenchmark {
+
+    /**the number of tables looked up, a power of 2 so the index can wrap with a mask.*/
+    private static final int SIZE = 1024;
+    /**the number of common items, like ingots and plates, the rest of the slots are made of.*/
+    private static final int COMMON = 16;
+
+    @Param({"10", "100", "1000"})
+    public int recipes;
+
+    /**the recipes in the order they were registered, for the scans.*/
+    private final List<Recipe> recipeList = new ArrayList<>();
+    private final ItemStack[][] tables = new ItemStack[SIZE][];
+    private final ItemStack[] results = new ItemStack[SIZE];
+    private int index =0;
+
+    @Setup
+    public void setup(){
+        Random rand = new Random(1234);
+        Item[] common = new Item[COMMON];
+        for(int i=0; i<COMMON; i++){
+            common[i] = new NamedItem("common" + i);
+        }
+        for(int r=0; r<recipes; r++){
+            List<List<ItemStack>> input = new ArrayList<>();
+            input.add(Collections.singletonList(new ItemStack(new NamedItem("frame" + r))));
+            for(int slot=1; slot<9; slot++){
+                if(slot==8 && r % 16 == 15){
+                    input.add(new ArrayList<ItemStack>());
+                } else {
+                    input.add(Collections.singletonList(rand.nextInt(4)==0 ? null : new ItemStack(common[rand.nextInt(COMMON)])));
+                }
+            }
+            List<ItemStack> result = new ArrayList<>();
+            result.add(new ItemStack(new NamedItem("transport" + r)));
+            Recipe recipe = new Recipe(result, input);
+            RecipeManager.registerRecipe(recipe);
+            recipeList.add(recipe);
+        }
+
+        for(int i=0; i<SIZE; i++){
+            Recipe recipe = recipeList.get(rand.nextInt(recipes));
+            ItemStack[] table = new ItemStack[9];
+            for(int slot=0; slot<9; slot++){
+                List<ItemStack> items = recipe.getRecipeItems().get(slot);
+                table[slot] = items.size()==0 ? new ItemStack(common[rand.nextInt(COMMON)]) :
+                        items.get(0)==null ? null : items.get(0).copy();
+            }
+            if((i & 1)==1){
+                int slot = 1 + rand.nextInt(8);
+                table[slot] = table[slot]==null ? new ItemStack(common[rand.nextInt(COMMON)]) : null;
+            }
+            tables[i] = table;
+            results[i] = recipe.getresult().get(0).copy();
+        }
+        //make the index before measuring, it's only made once after the recipes are registered.
+        RecipeManager.getRecipe(results[0]);
+    }
+
+    private int next(){
+        return index = (index + 1) & (SIZE - 1);
+    }
+
+    @Benchmark
+    public List<ItemStack> indexedResult(){
+        return RecipeManager.getResult(tables[next()]);
+    }
+
+    @Benchmark
+    public List<ItemStack> scanResult(){
+        ItemStack[] table = tables[next()];
+        for(Recipe r : recipeList){
+            if(r.inputMatches(Arrays.asList(table))){
+                return r.getresult();
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Recipe indexedRecipe(){
+        return RecipeManager.getRecipe(results[next()]);
+    }
+
+    @Benchmark
+    public Recipe scanRecipe(){
+        ItemStack result = results[next()];
+        for(Recipe r : recipeList){
+            for(ItemStack stack : r.getresult()){
+                if(stack.getItem()==result.getItem()){
+                    return r;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**an item with a fixed name, so registering the recipes doesn't need the language files for the debug output.*/
+    private static class NamedItem extends Item {
+        private final String name;
+        private NamedItem(String name){
+            this.name = name;
+        }
+        @Override
+        public String getItemStackDisplayName(ItemStack stack){
+            return name;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ebf.tim.benchmark;
+
+import ebf.tim.TrainsInMotion;
+import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.utility.CommonProxy;
+import ebf.tim.utility.ItemStackSlot;
+import ebf.tim.utility.TransportInventory;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>Transport inventory benchmarks</h1>
+ * bulk transfers into a freight car, like a hopper or a player shift clicking a full chest into it.
+ * each transfer is a chest's worth of partial stacks, of a few different items, into the car, which is then emptied for the next one,
+ *     the emptying is the same for both, so the difference between them is the adding.
+ * the indexed transfer goes through TransportInventory.addItem, the scanned one is the loop GenericRailTransport.addItem used before,
+ *     trying to merge into every slot in order.
+ * the lookups are the slot by ID, and the count of used slots the renderer reads, against the loops they replaced.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportInventoryBenchmark {
+
+    /**the number of stacks in each transfer, a full chest.*/
+    private static final int TRANSFER = 27;
+    /**the number of IDs looked up, a power of 2 so the index can wrap with a mask.*/
+    private static final int SIZE = 1024;
+
+    @Param({"3", "10", "30"})
+    public int rows;
+
+    private TransportInventory inventory;
+    private final Item[] items = new Item[5];
+    private final Item[] transferItems = new Item[TRANSFER];
+    private final int[] transferSizes = new int[TRANSFER];
+    private final int[] ids = new int[SIZE];
+    private int index =0;
+
+    @Setup
+    public void setup(){
+        if(TrainsInMotion.proxy==null){
+            TrainsInMotion.proxy = new CommonProxy();
+        }
+        GenericRailTransport transport = new GenericRailTransport(null);
+        inventory = transport.inventory;
+        inventory.clear();
+        for(int i=0; i<rows*9; i++){
+            inventory.add(new ItemStackSlot(transport, 40 + i));
+        }
+        for(int i=0; i<items.length; i++){
+            items[i] = new Item();
+        }
+        Random rand = new Random(1234);
+        for(int i=0; i<TRANSFER; i++){
+            transferItems[i] = items[rand.nextInt(items.length)];
+            transferSizes[i] = 1 + rand.nextInt(64);
+        }
+        for(int i=0; i<SIZE; i++){
+            ids[i] = 40 + rand.nextInt(rows*9);
+        }
+        empty();
+    }
+
+    private int next(){
+        return index = (index + 1) & (SIZE - 1);
+    }
+
+    @Benchmark
+    public int indexedTransfer(){
+        int left =0;
+        for(int i=0; i<TRANSFER; i++){
+            ItemStack rest = inventory.addItem(new ItemStack(transferItems[i], transferSizes[i]));
+            left += rest==null?0:rest.stackSize;
+        }
+        empty();
+        return left;
+    }
+
+    @Benchmark
+    public int scannedTransfer(){
+        int left =0;
+        for(int i=0; i<TRANSFER; i++){
+            ItemStack item = new ItemStack(transferItems[i], transferSizes[i]);
+            for(ItemStackSlot slot : inventory){
+                item = slot.mergeStack(item, inventory);
+                if(item==null){
+                    break;
+                }
+            }
+            left += item==null?0:item.stackSize;
+        }
+        empty();
+        return left;
+    }
+
+    @Benchmark
+    public ItemStackSlot indexedSlotByID(){
+        return inventory.getSlotByID(ids[next()]);
+    }
+
+    @Benchmark
+    public ItemStackSlot scannedSlotByID(){
+        int id = ids[next()];
+        for(ItemStackSlot s : inventory){
+            if(s.getSlotID()==id){
+                return s;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public int indexedUsedSlots(){
+        return inventory.getUsedSlots();
+    }
+
+    @Benchmark
+    public int scannedUsedSlots(){
+        int used =0;
+        for(ItemStackSlot slot : inventory){
+            if(slot.getHasStack()){
+                used++;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * sets every other slot to the same partial stack each time, and empties the rest,
+     *     so the transfers have stacks to merge with, and the lookups have something to count.
+     */
+    private void empty(){
+        Random rand = new Random(1234);
+        for(int i=0; i<inventory.size(); i++){
+            inventory.get(i).setSlotContents((i & 1)==0 ? new ItemStack(items[rand.nextInt(items.length)], 1 + rand.nextInt(64)) : null, null);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ebf.tim.benchmark;
+
+import ebf.XmlBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>XmlBuilder format benchmarks</h1>
+ * encoding and decoding the binary format against the old string format, for the data a rail tile entity saves and syncs,
+ *     and for a recipe, which is nested xml with an item for each variant of each slot.
+ * the byte size of each format is printed when the setup runs, since JMH only measures time,
+ *     the GC profiler the jmh task runs with gives the allocation of each.
+ * the string decode goes through the byte constructor, the same way a tile entity saved before the binary format loads.
+ * @author Eternal Blue Flame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlBuilderBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Param({"rail", "recipe"})
+    public String data;
+
+    private XmlBuilder xml;
+    private byte[] binary, string;
+
+    @Setup
+    public void setup(){
+        Random rand = new Random(1234);
+        xml = data.equals("rail") ? rail(rand) : recipe(rand);
+        binary = xml.toBytes();
+        string = xml.toXMLString().getBytes(UTF8);
+        System.out.println(data + ": binary " + binary.length + " bytes, string " + string.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encodeBinary(){
+        return xml.toBytes();
+    }
+
+    @Benchmark
+    public byte[] encodeString(){
+        return xml.toXMLString().getBytes(UTF8);
+    }
+
+    @Benchmark
+    public XmlBuilder decodeBinary(){
+        return new XmlBuilder(binary);
+    }
+
+    @Benchmark
+    public XmlBuilder decodeString(){
+        return new XmlBuilder(string);
+    }
+
+
+    /**the route of a curve and the items the rail was made from, like RailShapeCore and ItemRail put in the tile entity.*/
+    private static XmlBuilder rail(Random rand){
+        XmlBuilder xml = new XmlBuilder();
+        StringBuilder route = new StringBuilder();
+        for(int i=0; i<64; i++){
+            route.append(rand.nextFloat()).append(",").append(rand.nextFloat()).append(",").append(rand.nextFloat()).append(",");
+        }
+        xml.putString("route", route.toString());
+        xml.itemMap.put("rail", new String[]{"minecraft:iron_ingot", "1", "0"});
+        xml.itemMap.put("ties", new String[]{"minecraft:planks", "1", "2"});
+        xml.itemMap.put("ballast", new String[]{"minecraft:gravel", "1", "0"});
+        return xml;
+    }
+
+    /**nine input slots with a few ore dictionary variants each, like Recipe.saveRecipe writes.*/
+    private static XmlBuilder recipe(Random rand){
+        XmlBuilder xml = new XmlBuilder();
+        int variant =0;
+        for(int i=0; i<9; i++){
+            XmlBuilder slot = new XmlBuilder();
+            for(int s=0; s<3; s++){
+                slot.itemMap.put("variant " + variant++, new String[]{"minecraft:item" + rand.nextInt(400), "1", rand.nextInt(16) + ""});
+            }
+            xml.putXml("slot " + i, slot);
+        }
+        return xml;
+    }
+}
@@ -6,10 +6,20 @@ import net.minecraft.block.Block;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 //Cant cover Object. it's raw data isn't safe over networking due to runtime compiling differences on client and server.
 public class XmlBuilder {
+    /**the first byte of the binary format, anything that doesn't start with this is read as the old string format.*/
+    private static final byte BINARY_MAGIC = 0x1B;
+    /**the version of the binary format, increment this if the layout changes, and keep reading the old ones.*/
+    private static final byte BINARY_VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     public HashMap<String, XmlBuilder> xmlMap = new HashMap<>();
     public HashMap<String, Integer> intMap = new HashMap<>();
     public HashMap<String, Float> floatMap = new HashMap<>();
@@ -23,6 +33,10 @@ public class XmlBuilder {
         super();
         parseXMLString(str);
     }
+    public XmlBuilder(byte[] bytes){
+        super();
+        parseBytes(bytes);
+    }
     public XmlBuilder(){}
     /*
      *----------put Section----------
@@ -95,7 +109,7 @@ public class XmlBuilder {
     }
 
     public ItemStack getItemStack(String id){
-        if(itemMap.get(id) == null || itemMap.get(id)[0].equals("null")){return null;}
+        if(itemMap.get(id) == null || itemMap.get(id).length < 3 || itemMap.get(id)[0].equals("null")){return null;}
         Item i = GameData.getItemRegistry().get(itemMap.get(id)[0]);
         ItemStack s;
         if (i==null){
@@ -169,7 +183,7 @@ public class XmlBuilder {
         }
         for(String key : itemMap.keySet()){
             tag(key, data, "item");
-            if(itemMap.get(key) == null || itemMap.get(key)[0].equals("null")){
+            if(itemMap.get(key) == null || itemMap.get(key).length < 3 || itemMap.get(key)[0].equals("null")){
                 data.append("null");
             } else {
                 data.append(itemMap.get(key)[0]);
@@ -183,28 +197,29 @@ public class XmlBuilder {
 
         return data.toString();
     }
+    //walks the string with an index rather than cutting it down after every tag, so it's not copying the rest of the string every time.
     private void parseXMLString(String from){
         if(!from.contains("<")){return;}
+        int pos=0;
         String tag= from.substring(from.indexOf("<")+1, from.indexOf("type")-1);
-        String parse=from;
         while (tag !=null){
-            switch (getType(parse.substring(0,parse.indexOf(">")))) {//parse the beginning tag for the data type
-                case 0:{this.xmlMap.put(tag, new XmlBuilder(tagSubstring(parse, tag)));break;}
-                case 1:{this.stringMap.put(tag, tagSubstring(parse, tag));break;}
-                case 2:{this.intMap.put(tag, Integer.parseInt(tagSubstring(parse, tag)));break;}
-                //case 3:{this.setBoolean(tag, Boolean.parseBoolean(tagSubstring(parse, tag)));break;}
-                case 4:{this.floatMap.put(tag, Float.parseFloat(tagSubstring(parse, tag)));break;}
-                //case 5:{this.setDouble(tag, Double.parseDouble(tagSubstring(parse, tag)));break;}
-                //case 6:{this.setLong(tag, Long.parseLong(tagSubstring(parse, tag)));break;}
-                //case 7:{this.setShort(tag, Short.parseShort(tagSubstring(parse, tag)));break;}
-                //case 8:{this.setByte(tag, Byte.parseByte(tagSubstring(parse, tag)));break;}
-                //case 9:{this.setByteArray(tag, parseByteArray(tagSubstring(parse, tag)));break;}
-                //case 10:{this.setIntArray(tag, parseIntArray(tagSubstring(parse, tag)));break;}
-                case 11:{this.itemMap.put(tag, tagSubstring(parse, tag).split(","));break;}
+            switch (getType(from.substring(pos,from.indexOf(">", pos)))) {//parse the beginning tag for the data type
+                case 0:{this.xmlMap.put(tag, new XmlBuilder(tagSubstring(from, pos, tag)));break;}
+                case 1:{this.stringMap.put(tag, tagSubstring(from, pos, tag));break;}
+                case 2:{this.intMap.put(tag, Integer.parseInt(tagSubstring(from, pos, tag)));break;}
+                //case 3:{this.setBoolean(tag, Boolean.parseBoolean(tagSubstring(from, pos, tag)));break;}
+                case 4:{this.floatMap.put(tag, Float.parseFloat(tagSubstring(from, pos, tag)));break;}
+                //case 5:{this.setDouble(tag, Double.parseDouble(tagSubstring(from, pos, tag)));break;}
+                //case 6:{this.setLong(tag, Long.parseLong(tagSubstring(from, pos, tag)));break;}
+                //case 7:{this.setShort(tag, Short.parseShort(tagSubstring(from, pos, tag)));break;}
+                //case 8:{this.setByte(tag, Byte.parseByte(tagSubstring(from, pos, tag)));break;}
+                //case 9:{this.setByteArray(tag, parseByteArray(tagSubstring(from, pos, tag)));break;}
+                //case 10:{this.setIntArray(tag, parseIntArray(tagSubstring(from, pos, tag)));break;}
+                case 11:{this.itemMap.put(tag, tagSubstring(from, pos, tag).split(","));break;}
             }
-            parse=parse.substring(parse.indexOf("</"+tag)+tag.length()+3);//skip string buffer to end of tag
-            if(parse.contains("<")) {
-                tag = parse.substring(parse.indexOf("<") + 1, parse.indexOf("type")-1);
+            pos=from.indexOf("</"+tag, pos)+tag.length()+3;//skip to end of tag
+            if(from.indexOf("<", pos)!=-1) {
+                tag = from.substring(from.indexOf("<", pos) + 1, from.indexOf("type", pos)-1);
             } else {
                 tag=null;
             }
@@ -228,8 +243,8 @@ public class XmlBuilder {
     }
 
     //shorthand to simplify the other code
-    private static String tagSubstring(String parse, String tag){
-        return parse.substring(parse.indexOf(">")+1, parse.indexOf("</"+tag));
+    private static String tagSubstring(String parse, int pos, String tag){
+        return parse.substring(parse.indexOf(">", pos)+1, parse.indexOf("</"+tag, pos));
     }
 
     private int getType(String s){
@@ -256,4 +271,226 @@ public class XmlBuilder {
         builder.append(">");
     }
 
+
+    /*
+     *----------Binary Section----------
+     * a compact version of the same data, for saving and networking.
+     * the layout is the magic byte, the version, the key table, then the body.
+     * the key table is every key used anywhere in the data, including nested xml, so each key is only written once.
+     * the body is a section for each type, int, float, string, xml, then item,
+     *     each is the number of entries, then the key index and value for each entry, nested xml is just another body.
+     * numbers that are counts or indexes are varints, ints are zigzag varints so negatives are small too.
+     */
+
+    /**@return the data in the binary format, this can be read back with the byte array constructor.*/
+    public byte[] toBytes(){
+        Map<String, Integer> keys = new LinkedHashMap<>();
+        collectKeys(keys);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BINARY_MAGIC);
+        out.write(BINARY_VERSION);
+        writeVarInt(out, keys.size());
+        for(String key : keys.keySet()){
+            writeString(out, key);
+        }
+        writeBody(out, keys);
+        return out.toByteArray();
+    }
+
+    //the binary reader, if it's not the binary format, it's the old string format, which existing worlds still have.
+    private void parseBytes(byte[] bytes){
+        if(bytes == null || bytes.length == 0){return;}
+        if(bytes[0] != BINARY_MAGIC){
+            parseXMLString(new String(bytes, UTF8));
+            return;
+        }
+        try {
+            int[] pos = new int[]{1};
+            if(bytes[pos[0]++] != BINARY_VERSION){
+                throw new IllegalArgumentException("unknown XmlBuilder binary version: " + bytes[1]);
+            }
+            String[] keys = new String[readCount(bytes, pos)];
+            for(int i=0; i<keys.length; i++){
+                keys[i] = readString(bytes, pos);
+            }
+            readBody(bytes, pos, keys);
+        } catch (Exception e){
+            //the data was cut off or corrupted, keep whatever was read before that.
+            e.printStackTrace();
+        }
+    }
+
+    private void collectKeys(Map<String, Integer> keys){
+        for(String key : intMap.keySet()){addKey(keys, key);}
+        for(String key : floatMap.keySet()){addKey(keys, key);}
+        for(String key : stringMap.keySet()){addKey(keys, key);}
+        for(String key : xmlMap.keySet()){
+            addKey(keys, key);
+            xmlMap.get(key).collectKeys(keys);
+        }
+        for(String key : itemMap.keySet()){addKey(keys, key);}
+    }
+
+    private static void addKey(Map<String, Integer> keys, String key){
+        if(!keys.containsKey(key)){
+            keys.put(key, keys.size());
+        }
+    }
+
+    private void writeBody(ByteArrayOutputStream out, Map<String, Integer> keys){
+        writeVarInt(out, intMap.size());
+        for(Map.Entry<String, Integer> e : intMap.entrySet()){
+            writeVarInt(out, keys.get(e.getKey()));
+            writeVarInt(out, (e.getValue() << 1) ^ (e.getValue() >> 31));
+        }
+        writeVarInt(out, floatMap.size());
+        int bits;
+        for(Map.Entry<String, Float> e : floatMap.entrySet()){
+            writeVarInt(out, keys.get(e.getKey()));
+            bits = Float.floatToIntBits(e.getValue());
+            out.write(bits >>> 24);
+            out.write(bits >>> 16);
+            out.write(bits >>> 8);
+            out.write(bits);
+        }
+        writeVarInt(out, stringMap.size());
+        for(Map.Entry<String, String> e : stringMap.entrySet()){
+            writeVarInt(out, keys.get(e.getKey()));
+            writeString(out, e.getValue()==null?"null":e.getValue());//same as the string format would give
+        }
+        writeVarInt(out, xmlMap.size());
+        for(Map.Entry<String, XmlBuilder> e : xmlMap.entrySet()){
+            writeVarInt(out, keys.get(e.getKey()));
+            e.getValue().writeBody(out, keys);
+        }
+        writeVarInt(out, itemMap.size());
+        for(Map.Entry<String, String[]> e : itemMap.entrySet()){
+            writeVarInt(out, keys.get(e.getKey()));
+            writeItem(out, e.getValue());
+        }
+    }
+
+    private void readBody(byte[] bytes, int[] pos, String[] keys){
+        int count = readCount(bytes, pos), value;
+        for(int i=0; i<count; i++){
+            String key = keys[readVarInt(bytes, pos)];
+            value = readVarInt(bytes, pos);
+            intMap.put(key, (value >>> 1) ^ -(value & 1));
+        }
+        count = readCount(bytes, pos);
+        for(int i=0; i<count; i++){
+            String key = keys[readVarInt(bytes, pos)];
+            floatMap.put(key, Float.intBitsToFloat(((bytes[pos[0]] & 0xFF) << 24) | ((bytes[pos[0]+1] & 0xFF) << 16) |
+                    ((bytes[pos[0]+2] & 0xFF) << 8) | (bytes[pos[0]+3] & 0xFF)));
+            pos[0]+=4;
+        }
+        count = readCount(bytes, pos);
+        for(int i=0; i<count; i++){
+            String key = keys[readVarInt(bytes, pos)];
+            stringMap.put(key, readString(bytes, pos));
+        }
+        count = readCount(bytes, pos);
+        for(int i=0; i<count; i++){
+            String key = keys[readVarInt(bytes, pos)];
+            XmlBuilder xml = new XmlBuilder();
+            xml.readBody(bytes, pos, keys);
+            xmlMap.put(key, xml);
+        }
+        count = readCount(bytes, pos);
+        for(int i=0; i<count; i++){
+            String key = keys[readVarInt(bytes, pos)];
+            itemMap.put(key, readItem(bytes, pos));
+        }
+    }
+
+    //items are usually a name, a stack size and a damage, so those are typed, anything else is kept as the raw strings.
+    private static void writeItem(ByteArrayOutputStream out, String[] item){
+        if(item == null || (item.length > 0 && item[0].equals("null"))){
+            out.write(0);
+            return;
+        }
+        if(item.length == 0){
+            out.write(3);
+            return;
+        }
+        if(item.length == 3){
+            try {
+                int size = Integer.parseInt(item[1]), damage = Integer.parseInt(item[2]);
+                out.write(1);
+                writeString(out, item[0]);
+                writeVarInt(out, (size << 1) ^ (size >> 31));
+                writeVarInt(out, (damage << 1) ^ (damage >> 31));
+                return;
+            } catch (NumberFormatException ignored){}
+        }
+        out.write(2);
+        writeVarInt(out, item.length);
+        for(String s : item){
+            writeString(out, s);
+        }
+    }
+
+    private static String[] readItem(byte[] bytes, int[] pos){
+        switch (bytes[pos[0]++]){
+            case 1:{
+                String name = readString(bytes, pos);
+                int size = readVarInt(bytes, pos), damage = readVarInt(bytes, pos);
+                return new String[]{name, ((size >>> 1) ^ -(size & 1))+"", ((damage >>> 1) ^ -(damage & 1))+""};
+            }
+            case 2:{
+                String[] item = new String[readCount(bytes, pos)];
+                for(int i=0; i<item.length; i++){
+                    item[i] = readString(bytes, pos);
+                }
+                return item;
+            }
+            case 3:{return new String[0];}
+            default:{return new String[]{"null"};}
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value){
+        while ((value & ~0x7F) != 0){
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] pos){
+        int value = 0, shift = 0;
+        byte b;
+        do {
+            if(shift > 28){
+                throw new IllegalArgumentException("XmlBuilder varint is too long");
+            }
+            b = bytes[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    //every entry takes at least a byte, so a count bigger than what's left is corrupted data, rather than a huge array to allocate.
+    private static int readCount(byte[] bytes, int[] pos){
+        int count = readVarInt(bytes, pos);
+        if(count < 0 || count > bytes.length - pos[0]){
+            throw new IllegalArgumentException("XmlBuilder count is past the end of the data: " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s){
+        byte[] bytes = s.getBytes(UTF8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(byte[] bytes, int[] pos){
+        int length = readVarInt(bytes, pos);
+        String s = new String(bytes, pos[0], length, UTF8);
+        pos[0] += length;
+        return s;
+    }
+
 }
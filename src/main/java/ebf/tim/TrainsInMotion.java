@@ -6,6 +6,8 @@ import cpw.mods.fml.common.SidedProxy;
 import cpw.mods.fml.common.event.FMLInitializationEvent;
 import cpw.mods.fml.common.event.FMLPostInitializationEvent;
 import cpw.mods.fml.common.event.FMLPreInitializationEvent;
+import cpw.mods.fml.common.event.FMLServerStartingEvent;
+import cpw.mods.fml.common.event.FMLServerStoppedEvent;
 import cpw.mods.fml.common.network.NetworkRegistry;
 import cpw.mods.fml.common.network.simpleimpl.IMessage;
 import cpw.mods.fml.common.network.simpleimpl.IMessageHandler;
@@ -23,10 +25,16 @@ import ebf.tim.items.TiMTab;
 import ebf.tim.networking.PacketInteract;
 import ebf.tim.networking.PacketPaint;
 import ebf.tim.networking.PacketRemove;
+import ebf.tim.networking.PacketTankSync;
 import ebf.tim.registry.TiMGenericRegistry;
 import ebf.tim.utility.ChunkHandler;
 import ebf.tim.utility.ClientProxy;
 import ebf.tim.utility.CommonProxy;
+import ebf.tim.utility.ProfilerCommand;
+import ebf.tim.utility.RailUtility;
+import ebf.tim.utility.ServerActionQueue;
+import ebf.tim.utility.ServerLogger;
+import ebf.tim.utility.TickProfiler;
 import net.minecraft.creativetab.CreativeTabs;
 import net.minecraftforge.common.ForgeChunkManager;
 import net.minecraftforge.common.MinecraftForge;
@@ -156,6 +164,7 @@ public class TrainsInMotion {
         TrainsInMotion.keyChannel.registerMessage(HANDLERS[2], ItemAdminBook.PacketAdminBook.class, 3, Side.CLIENT);
         TrainsInMotion.keyChannel.registerMessage(HANDLERS[3], ItemAdminBook.PacketAdminBookClient.class, 4, Side.SERVER);
         TrainsInMotion.keyChannel.registerMessage(HANDLERS[4], PacketPaint.class, 6, Side.CLIENT);
+        TrainsInMotion.keyChannel.registerMessage(HANDLERS[5], PacketTankSync.class, 7, Side.CLIENT);
         TrainsInMotion.trackChannel = NetworkRegistry.INSTANCE.newSimpleChannel("TiM.track");
 
 
@@ -178,11 +187,38 @@ public class TrainsInMotion {
     @Mod.EventHandler
     public void postinit(FMLPostInitializationEvent event) {
         TiMGenericRegistry.endRegistration();
+        RailUtility.collectOreRoles();
     }
 
+    /**registers the commands for server operators.*/
+    @Mod.EventHandler
+    public void serverStarting(FMLServerStartingEvent event) {
+        event.registerServerCommand(new ProfilerCommand());
+    }
+
+    /**makes sure every wagon backup that's still queued is written before the server is gone.*/
+    @Mod.EventHandler
+    public void serverStopped(FMLServerStoppedEvent event) {
+        ServerLogger.flush();
+        ServerActionQueue.clear();
+        ChunkHandler.clearEntered();
+        TickProfiler.enabled = false;
+        TickProfiler.reset();
+    }
+
+
 
+    /**the handler for packets that change the world, they are queued to run on the server thread.*/
+    private static final IMessageHandler<IMessage, IMessage> QUEUE_HANDLER = new IMessageHandler<IMessage, IMessage>() {
+        @Override public IMessage onMessage(IMessage message, MessageContext ctx) {
+            ServerActionQueue.add(ctx.getServerHandler().playerEntity, (ServerActionQueue.Action) message);
+            return null;
+        }
+    };
 
     private static final IMessageHandler[] HANDLERS = new IMessageHandler[]{
+            QUEUE_HANDLER,
+            QUEUE_HANDLER,
             new IMessageHandler<IMessage, IMessage>() {
                 @Override public IMessage onMessage(IMessage message, MessageContext ctx) {return null;}
             },
@@ -192,11 +228,6 @@ public class TrainsInMotion {
             new IMessageHandler<IMessage, IMessage>() {
                 @Override public IMessage onMessage(IMessage message, MessageContext ctx) {return null;}
             },
-            new IMessageHandler<IMessage, IMessage>() {
-                @Override public IMessage onMessage(IMessage message, MessageContext ctx) {return null;}
-            },
-            new IMessageHandler<IMessage, IMessage>() {
-                @Override public IMessage onMessage(IMessage message, MessageContext ctx) {return null;}
-            }
+            new PacketTankSync.Handler()
     };
 }
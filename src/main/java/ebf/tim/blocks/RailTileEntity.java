@@ -1,10 +1,15 @@
 package ebf.tim.blocks;
 
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
 import ebf.XmlBuilder;
 import ebf.tim.blocks.rails.RailShapeCore;
 import ebf.tim.blocks.rails.RailSimpleShape;
 import ebf.tim.models.rails.Model1x1Rail;
+import ebf.tim.models.rails.RailSectionRenderer;
+import ebf.tim.utility.ClientProxy;
 import ebf.tim.utility.DebugUtil;
+import ebf.tim.utility.GLResourceManager;
 import ebf.tim.utility.Vec5f;
 import fexcraft.tmt.slim.TextureManager;
 import net.minecraft.block.Block;
@@ -51,7 +56,10 @@ public class RailTileEntity extends TileEntity {
             if(railGLID==null || updateModel){
                 RailShapeCore route =new RailShapeCore().parseString(data.getString("route"));
                 if (route!=null && route.gauge!=null) {
-                    railGLID = net.minecraft.client.renderer.GLAllocation.generateDisplayLists(1);
+                    //the list is compiled over when the model updates, rather than making a new one each time.
+                    if(railGLID==null) {
+                        railGLID = GLResourceManager.allocate(GLResourceManager.Type.LIST, this, xCoord >> 4, zCoord >> 4);
+                    }
                     org.lwjgl.opengl.GL11.glNewList(railGLID, org.lwjgl.opengl.GL11.GL_COMPILE);
 
                     Model1x1Rail.Model3DRail(worldObj, xCoord, yCoord, zCoord,
@@ -79,8 +87,55 @@ public class RailTileEntity extends TileEntity {
     @Override
     public void updateEntity(){}
 
+    @Override
+    public void validate() {
+        super.validate();
+        if(worldObj!=null && worldObj.isRemote){
+            RailSectionRenderer.add(this);
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        if(worldObj!=null && worldObj.isRemote){
+            RailSectionRenderer.remove(this);
+            releaseList();
+        }
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        if(worldObj!=null && worldObj.isRemote){
+            RailSectionRenderer.remove(this);
+            releaseList();
+        }
+    }
+
+    /**frees the display list of this rail, if it has one.*/
+    public void releaseList(){
+        if(railGLID!=null){
+            GLResourceManager.release(GLResourceManager.Type.LIST, railGLID, this);
+            railGLID=null;
+        }
+    }
+
+    /**when rails are rendered by section, only the first rail in each section is in range, the rest are skipped.*/
+    @Override
+    @SideOnly(Side.CLIENT)
+    public double getMaxRenderDistanceSquared() {
+        if(!ClientProxy.railSections){
+            return super.getMaxRenderDistanceSquared();
+        }
+        return RailSectionRenderer.isOwner(this)?RailSectionRenderer.getOwnerRenderDistanceSquared():0;
+    }
+
     @Override
     public AxisAlignedBB getRenderBoundingBox() {
+        if(worldObj!=null && worldObj.isRemote && ClientProxy.railSections && RailSectionRenderer.isOwner(this)){
+            return RailSectionRenderer.getBounds(this);
+        }
         if (boundingBox == null) {
             boundingBox = AxisAlignedBB.getBoundingBox(xCoord, yCoord, zCoord, xCoord + 1, yCoord + 1, zCoord + 1);
         }
@@ -103,6 +158,9 @@ public class RailTileEntity extends TileEntity {
             }
             this.worldObj.func_147453_f(this.xCoord, this.yCoord, this.zCoord, this.getBlockType());
             updateModel=true;
+            if(worldObj.isRemote){
+                RailSectionRenderer.markDirty(this);
+            }
         }
 
     }
@@ -126,7 +184,7 @@ public class RailTileEntity extends TileEntity {
     @Override
     public void writeToNBT(NBTTagCompound tag){
         super.writeToNBT(tag);
-        tag.setString("data", data.toXMLString());
+        tag.setByteArray("data", data.toBytes());
 
     }
 
@@ -134,8 +192,12 @@ public class RailTileEntity extends TileEntity {
     public void readFromNBT(NBTTagCompound tag){
         if(tag==null){return;}
         super.readFromNBT(tag);
-        String s = tag.getString("data");
-        data = new XmlBuilder(s);
+        //worlds from before the binary format have the data as a string.
+        if(tag.hasKey("data", 7)) {
+            data = new XmlBuilder(tag.getByteArray("data"));
+        } else {
+            data = new XmlBuilder(tag.getString("data"));
+        }
 
     }
 
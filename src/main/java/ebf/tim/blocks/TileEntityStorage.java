@@ -3,6 +3,7 @@ package ebf.tim.blocks;
 
 import ebf.tim.TrainsInMotion;
 import ebf.tim.utility.ItemStackSlot;
+import ebf.tim.utility.RailUtility;
 import net.minecraft.block.Block;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.init.Blocks;
@@ -11,7 +12,6 @@ import net.minecraft.inventory.IInventory;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
-import net.minecraftforge.oredict.OreDictionary;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
@@ -179,7 +179,7 @@ public class TileEntityStorage extends TileEntity implements IInventory {
     public boolean isItemValidForSlot(int slot, ItemStack itemStack) {
         switch (storageType){
             case 1:{
-                if(slot==0){return OreDictionary.getOres("ingot").contains(itemStack);}
+                if(slot==0){return RailUtility.isIngot(itemStack);}
                 if(slot==1||slot==2){
                     //todo: if block.modid==chisel return false;
                     return Block.getBlockFromItem(itemStack.getItem())!=null && Block.getBlockFromItem(itemStack.getItem()).isOpaqueCube();
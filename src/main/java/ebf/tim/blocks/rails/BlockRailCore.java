@@ -251,7 +251,7 @@ public class BlockRailCore extends BlockRail implements ITileEntityProvider {
     @Override
     public ItemStack getPickBlock(MovingObjectPosition target, World world, int x, int y, int z) {
         if(world.getTileEntity(x,y,z) instanceof RailTileEntity) {
-            XmlBuilder xml =new XmlBuilder(((RailTileEntity) world.getTileEntity(x,y,z)).data.toXMLString());
+            XmlBuilder xml =new XmlBuilder(((RailTileEntity) world.getTileEntity(x,y,z)).data.toBytes());
             return ItemRail.setStackData(
                     new ItemStack(TiMItems.railItem, 1), xml.getItemStack("rail"),
                     xml.getItemStack("ballast"), xml.getItemStack("ties"), xml.getItemStack("wires"));
@@ -262,7 +262,7 @@ public class BlockRailCore extends BlockRail implements ITileEntityProvider {
     @Override
     public ArrayList<ItemStack> getDrops(World world, int x, int y, int z, int metadata, int fortune) {
         if(world.getTileEntity(x,y,z) instanceof RailTileEntity) {
-            XmlBuilder xml =new XmlBuilder(((RailTileEntity) world.getTileEntity(x,y,z)).data.toXMLString());
+            XmlBuilder xml =new XmlBuilder(((RailTileEntity) world.getTileEntity(x,y,z)).data.toBytes());
 
             ArrayList<ItemStack> out = new ArrayList<>();
             out.add(ItemRail.setStackData(
@@ -287,6 +287,7 @@ public class BlockRailCore extends BlockRail implements ITileEntityProvider {
         if(!(b instanceof BlockRailCore)) {
             super.onNeighborBlockChange(worldObj, x, y, z, b);
         }
+        RailPathCache.invalidate(worldObj, x, y, z);
         updateShape(x,y,z,worldObj, null);
         if(worldObj.getTileEntity(x,y,z) instanceof RailTileEntity){
             worldObj.getTileEntity(x,y,z).markDirty();
@@ -297,6 +298,7 @@ public class BlockRailCore extends BlockRail implements ITileEntityProvider {
     @Override
     public void breakBlock(World p_149749_1_, int p_149749_2_, int p_149749_3_, int p_149749_4_, Block p_149749_5_, int p_149749_6_) {
         p_149749_1_.removeTileEntity(p_149749_2_, p_149749_3_, p_149749_4_);
+        RailPathCache.invalidate(p_149749_1_, p_149749_2_, p_149749_3_, p_149749_4_);
         for(int x : updateMatrix){
             for(int z : updateMatrix){
                 for(int y : updateMatrix){
@@ -338,45 +340,7 @@ public class BlockRailCore extends BlockRail implements ITileEntityProvider {
 
 
     public static RailSimpleShape getShape(World worldObj, int xPos, int yPos, int zPos){
-        switch (worldObj.getBlockMetadata(xPos, yPos, zPos)){
-            //Z straight
-            case 0: {
-                return RailVanillaShapes.vanillaZStraight(worldObj, xPos, yPos, zPos);
-            }
-            //X straight
-            case 1: {
-                return RailVanillaShapes.vanillaXStraight(worldObj, xPos, yPos, zPos);
-            }
-
-            //curves
-            case 9: {
-                return RailVanillaShapes.vanillaCurve9(worldObj, xPos, yPos, zPos);
-            }
-            case 8: {
-                return RailVanillaShapes.vanillaCurve8(worldObj, xPos, yPos, zPos);
-            }
-            case 7: {
-                return RailVanillaShapes.vanillaCurve7(worldObj, xPos, yPos, zPos);
-            }
-            case 6: {
-                return RailVanillaShapes.vanillaCurve6(worldObj, xPos, yPos, zPos);
-            }
-            //Z slopes
-            case 5 :{
-                return RailVanillaShapes.vanillaSlopeZ5(worldObj, xPos, yPos, zPos);
-            }
-            case 4 :{
-                return RailVanillaShapes.vanillaSlopeZ4(worldObj, xPos, yPos, zPos);
-            }
-            //X slopes
-            case 2 :{
-                return RailVanillaShapes.vanillaSlopeX2(worldObj, xPos, yPos, zPos);
-            }
-            case 3 :{
-                return RailVanillaShapes.vanillaSlopeX3(worldObj, xPos, yPos, zPos);
-            }
-        }
-        return null;
+        return RailVanillaShapes.getShape(new WorldRails(worldObj), worldObj.getBlockMetadata(xPos, yPos, zPos), xPos, yPos, zPos);
     }
 
 
@@ -387,34 +351,35 @@ public class BlockRailCore extends BlockRail implements ITileEntityProvider {
      * @return boolean for if the shape can be made
      */
     public static boolean checkBlockMeta(World worldobj, int x, int y, int z, int ... meta){
-        if (!worldobj.getChunkProvider().chunkExists(x/16, z/16) ||
-                !(worldobj.getBlock(x,y,z) instanceof BlockRailBase)){
-            return false;
-        }
-        for(int i : meta){
-            if(worldobj.getBlockMetadata(x, y, z) ==i){
-                return true;
-            }
-        }
-        return  false;
+        return RailVanillaShapes.checkBlockMeta(new WorldRails(worldobj), x, y, z, meta);
     }
 
 
     public static int[] getNearbyMeta(World world, int xCoord, int yCoord, int zCoord){
-        int[] meta = new int[9];
-        int i=0;
-        for(int z=-1;z<2;z++){
-            for(int x=-1;x<2;x++){
-                if(world.getBlock(xCoord+x,yCoord,zCoord+z) instanceof BlockRailBase){
-                    meta[i]= ((BlockRailBase) world.getBlock(xCoord+x,yCoord,zCoord+z)).
-                            getBasicRailMetadata(world,null,xCoord+x,yCoord,zCoord+z);
-                } else {
-                    meta[i]=-1;
-                }
-                i++;
+        return RailVanillaShapes.getNearbyMeta(new WorldRails(world), xCoord, yCoord, zCoord);
+    }
+
+    /**the rails of a world, for the vanilla shapes.*/
+    private static class WorldRails implements RailVanillaShapes.RailAccess {
+        private final World world;
+        private WorldRails(World world){
+            this.world = world;
+        }
+        @Override
+        public int getBlockMetadata(int x, int y, int z){
+            if (!world.getChunkProvider().chunkExists(x/16, z/16) ||
+                    !(world.getBlock(x,y,z) instanceof BlockRailBase)){
+                return -1;
             }
+            return world.getBlockMetadata(x, y, z);
+        }
+        @Override
+        public int getBasicRailMetadata(int x, int y, int z){
+            if(world.getBlock(x,y,z) instanceof BlockRailBase){
+                return ((BlockRailBase) world.getBlock(x,y,z)).getBasicRailMetadata(world,null,x,y,z);
+            }
+            return -1;
         }
-        return meta;
     }
 
 
@@ -0,0 +1,273 @@
+package ebf.tim.blocks.rails;
+
+import mods.railcraft.api.tracks.ITrackSwitch;
+import mods.railcraft.api.tracks.ITrackTile;
+import net.minecraft.block.Block;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>Rail path cache</h1>
+ * the precompiled data bogies need to follow a rail, so they don't have to work it out from the world every step.
+ *
+ * the paths are static, one for each of the vanilla rail metadata shapes, with the entry/exit offsets, direction, length and yaw already calculated.
+ * the nodes are per rail block, grouped by chunk, and keep the tile entity of the rail so railcraft switches don't need a tile entity lookup every step.
+ * nodes are dropped when one of our rails changes, when their chunk or world unloads,
+ *     and when the block or tile entity they were made from is no longer there, which covers rails from other mods.
+ *
+ * moving a bogie along a path is done by
+ * @see RailPath#move(double[], double, float, int, int)
+ * which is only math, so the tests can check it against the original walk without a world.
+ * the rail metadata itself is not cached, rails like ours and railcraft switches decide it from the cart that's on them.
+ * @author Eternal Blue Flame
+ */
+public class RailPathCache {
+
+    /**the entry and exit offsets of each vanilla rail metadata, the same as the minecart matrix.*/
+    private static final int[][][] vanillaRailMatrix = new int[][][] {{{0, 0, -1}, {0, 0, 1}}, {{ -1, 0, 0}, {1, 0, 0}}, {{ -1, -1, 0}, {1, 0, 0}}, {{ -1, 0, 0}, {1, -1, 0}}, {{0, 0, -1}, {0, -1, 1}}, {{0, -1, -1}, {0, 0, 1}}, {{0, 0, 1}, {1, 0, 0}}, {{0, 0, 1}, { -1, 0, 0}}, {{0, 0, -1}, { -1, 0, 0}}, {{0, 0, -1}, {1, 0, 0}}};
+
+    /**the precompiled path for each rail metadata*/
+    private static final RailPath[] paths = new RailPath[vanillaRailMatrix.length];
+    static {
+        for (int i=0; i<paths.length; i++){
+            paths[i] = new RailPath(vanillaRailMatrix[i]);
+        }
+    }
+
+    /**the rail nodes for each world, mapped by their block position.*/
+    private static final Map<World, LongHashMap> nodes = new HashMap<>();
+    /**the rail nodes for each world, grouped by the chunk they are in, so they can be dropped when it unloads.*/
+    private static final Map<World, LongHashMap> chunks = new HashMap<>();
+
+    /**@return the precompiled path for the rail metadata.*/
+    public static RailPath getPath(int railMetadata){
+        return paths[railMetadata];
+    }
+
+    /**
+     * <h2>get node</h2>
+     * gets the cached node for the rail at the position, making it if there isn't one or the one there is out of date.
+     * @param block the block at the position, the caller already has this, so it's used to validate the node instead of checking the world again.
+     */
+    public static RailNode getNode(World world, int x, int y, int z, Block block){
+        LongHashMap map = nodes.get(world);
+        if(map == null){
+            map = new LongHashMap();
+            nodes.put(world, map);
+            chunks.put(world, new LongHashMap());
+        }
+        long key = getKey(x,y,z);
+        RailNode node = (RailNode) map.getValueByKey(key);
+        if(node != null){
+            if(node.block == block && (node.tile == null || !node.tile.isInvalid())){
+                return node;
+            }
+            remove(world, node);
+        }
+
+        node = new RailNode(key, x, z, block, world.getTileEntity(x, y, z));
+        map.add(key, node);
+        getChunk(chunks.get(world), x >> 4, z >> 4, true).add(node);
+        return node;
+    }
+
+    /**drops the node for a rail that changed, called by the rail when it or it's neighbors update.*/
+    public static void invalidate(World world, int x, int y, int z){
+        LongHashMap map = nodes.get(world);
+        if(map != null){
+            RailNode node = (RailNode) map.getValueByKey(getKey(x,y,z));
+            if(node != null){
+                remove(world, node);
+            }
+        }
+    }
+
+    /**drops the nodes in an unloading chunk*/
+    public static void removeChunk(Chunk chunk){
+        LongHashMap map = nodes.get(chunk.worldObj);
+        if(map == null){
+            return;
+        }
+        List<RailNode> list = getChunk(chunks.get(chunk.worldObj), chunk.xPosition, chunk.zPosition, false);
+        if(list != null){
+            for(RailNode node : list){
+                map.remove(node.key);
+            }
+            chunks.get(chunk.worldObj).remove(ChunkCoordIntPair.chunkXZ2Int(chunk.xPosition, chunk.zPosition));
+        }
+    }
+
+    /**drops every node for a world that's unloading*/
+    public static void removeWorld(World world){
+        nodes.remove(world);
+        chunks.remove(world);
+    }
+
+    private static void remove(World world, RailNode node){
+        nodes.get(world).remove(node.key);
+        long chunkKey = ChunkCoordIntPair.chunkXZ2Int(node.chunkX, node.chunkZ);
+        List<RailNode> list = getChunk(chunks.get(world), node.chunkX, node.chunkZ, false);
+        if(list != null){
+            list.remove(node);
+            if(list.size() == 0){
+                chunks.get(world).remove(chunkKey);
+            }
+        }
+    }
+
+    /**packs a block position into a single key, 26 bits for X and Z, and 8 for Y, the same limits as the world.*/
+    private static long getKey(int x, int y, int z){
+        return ((x & 0x3FFFFFFL) << 34) | ((z & 0x3FFFFFFL) << 8) | (y & 0xFFL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<RailNode> getChunk(LongHashMap map, int x, int z, boolean create){
+        long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        List<RailNode> list = (List<RailNode>) map.getValueByKey(key);
+        if(list == null && create){
+            list = new ArrayList<>();
+            map.add(key, list);
+        }
+        return list;
+    }
+
+
+    /**
+     * <h2>Rail node</h2>
+     * a single rail block, with the parts of it that don't change while it's there.
+     */
+    public static class RailNode {
+        /**the packed position, used as the key for the node map*/
+        private final long key;
+        /**the chunk the node is in*/
+        private final int chunkX, chunkZ;
+        /**the block this node was made from*/
+        public final Block block;
+        /**the tile entity of the rail when the node was made, null if it doesn't have one*/
+        public final TileEntity tile;
+        /**the railcraft track, if this is a switch, they decide the direction from the cart so they have to be asked directly.*/
+        public final ITrackTile trackSwitch;
+
+        private RailNode(long key, int x, int z, Block block, TileEntity tile){
+            this.key = key;
+            this.chunkX = x >> 4;
+            this.chunkZ = z >> 4;
+            this.block = block;
+            this.tile = tile;
+            this.trackSwitch = tile instanceof ITrackTile && ((ITrackTile) tile).getTrackInstance() instanceof ITrackSwitch?
+                    (ITrackTile) tile:null;
+        }
+    }
+
+
+    /**
+     * <h2>Rail path</h2>
+     * the precompiled path across a rail block for a single metadata.
+     * the yaw is stored as the cos/sin that would come out of
+     * @see ebf.tim.utility.RailUtility#rotatePoint(double, double, double)
+     * for both directions of travel, so moving along the path only takes multiplication.
+     */
+    public static class RailPath {
+        /**the offset of the entry and exit of the path from the center of the block*/
+        public final int entryX, entryY, entryZ, exitX, exitY, exitZ;
+        /**the direction of the path, from entry to exit.*/
+        public final double directionX, directionZ;
+        /**the length of the direction*/
+        public final double length;
+        /**true if the yaw of the direction is 0, the forward direction is index 0, the reversed direction is index 1.*/
+        public final boolean[] yawZero = new boolean[2];
+        /**the cos of the yaw of the direction, the forward direction is index 0, the reversed direction is index 1.*/
+        public final double[] yawCos = new double[2];
+        /**the sin of the yaw of the direction, the forward direction is index 0, the reversed direction is index 1.*/
+        public final double[] yawSin = new double[2];
+
+        private RailPath(int[][] matrix){
+            entryX = matrix[0][0];
+            entryY = matrix[0][1];
+            entryZ = matrix[0][2];
+            exitX = matrix[1][0];
+            exitY = matrix[1][1];
+            exitZ = matrix[1][2];
+            directionX = exitX - entryX;
+            directionZ = exitZ - entryZ;
+            length = Math.sqrt(directionX * directionX + directionZ * directionZ);
+
+            double yaw;
+            for(int i=0; i<2; i++){
+                //same math as the rotation, just done once, so the results are identical.
+                yaw = i==0?Math.atan2(directionZ, directionX)*(180d/Math.PI):Math.atan2(-directionZ, -directionX)*(180d/Math.PI);
+                yawZero[i] = yaw == 0.0F;
+                yaw *= Math.PI / 180.0f;
+                yawCos[i] = Math.cos(yaw);
+                yawSin[i] = Math.sin(yaw);
+            }
+        }
+
+        /**
+         * <h3>move</h3>
+         * moves a bogie along the path by one increment, and centers it on the rail, this is the part of the bogie movement that doesn't need the world.
+         * it's the same math the bogie did with the rail matrix and the rotation, in the same order, so the positions are identical.
+         * @param bogie the X, Y and Z position, and the X and Z motion of the bogie, they are replaced with the new ones.
+         * @param currentMotion the distance of the increment, negative to go backwards.
+         * @param pitch the pitch of the transport, it's only used when the yaw of the path is 0.
+         * @param floorX the X of the rail block the bogie is on.
+         * @param floorZ the Z of the rail block the bogie is on.
+         */
+        public void move(double[] bogie, double currentMotion, float pitch, int floorX, int floorZ){
+            double pathX = directionX, pathZ = directionZ;
+            int reversed = 0;
+            if (bogie[3] * pathX + bogie[4] * pathZ < 0.0D) {
+                pathX = -pathX;
+                pathZ = -pathZ;
+                reversed = 1;
+            }
+            double motionPathX, motionPathZ;
+            if (!yawZero[reversed]) {
+                motionPathX = currentMotion * yawCos[reversed];
+                motionPathZ = currentMotion * yawSin[reversed];
+            } else {
+                motionPathX = pitch != 0.0F ? currentMotion * Math.cos(pitch * (Math.PI / 180.0f)) : currentMotion;
+                motionPathZ = 0;
+            }
+
+            double motionSqrt = Math.sqrt(bogie[3] * bogie[3] + bogie[4] * bogie[4]);
+            bogie[3] = motionSqrt * (pathX / length);
+            bogie[4] = motionSqrt * (pathZ / length);
+
+            //define the rail path again, to center the bogie.
+            double startX = Math.floor(bogie[0]) + 0.5D + entryX * 0.5D;
+            double startZ = Math.floor(bogie[2]) + 0.5D + entryZ * 0.5D;
+            pathX = (Math.floor(bogie[0]) + 0.5D + exitX * 0.5D) - startX;
+            pathZ = (Math.floor(bogie[2]) + 0.5D + exitZ * 0.5D) - startZ;
+
+            //pick the bigger one
+            double progress;
+            if (pathX == 0.0D) {
+                progress = bogie[2] - floorZ;
+            } else if (pathZ == 0.0D) {
+                progress = bogie[0] - floorX;
+            } else {
+                progress = ((bogie[0] - startX) * pathX + (bogie[2] - startZ) * pathZ) * 2.0D;
+            }
+            //do the centering movement
+            bogie[0] = (startX + pathX * progress) + motionPathX;
+            bogie[2] = (startZ + pathZ * progress) + motionPathZ;
+
+            //set the Y position
+            if (entryY != 0 && MathHelper.floor_double(bogie[0]) - floorX == entryX && MathHelper.floor_double(bogie[2]) - floorZ == entryZ) {
+                bogie[1] += entryY;
+            } else if (exitY != 0 && MathHelper.floor_double(bogie[0]) - floorX == exitX && MathHelper.floor_double(bogie[2]) - floorZ == exitZ) {
+                bogie[1] += exitY;
+            }
+        }
+    }
+}
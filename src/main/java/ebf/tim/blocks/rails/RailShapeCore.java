@@ -22,7 +22,12 @@ public class RailShapeCore {
     public float tieCount;
     /*CLIENT ONLY*/
     public List<Vec5f> activeTiePath = new ArrayList<>();
-    public static Random rand = new Random();
+
+    /**the cumulative distance along the active path at the end of each segment, built when it's first needed.*/
+    private float[] arcLengths = null;
+    /**the path the arc lengths were built for, if the list was replaced or resized they are rebuilt.*/
+    private List<Vec6f> arcLengthPath = null;
+    private int arcLengthSize = -1;
 
 
     public static void processPoints(int x, int y, int z,
@@ -90,6 +95,7 @@ public class RailShapeCore {
 
 
         if(vars.length<3){return null;}
+        invalidateArcLengths();
         currentParse= vars[2].split("!");
         for(String str : currentParse) {
             subParse=str.split(",");
@@ -163,13 +169,16 @@ public class RailShapeCore {
         //update this track again using the deformed versions for the other tracks.
 
         //add offset to counteract overlapping ties.
+        //the offset comes from the position, so the same rail always gets the same shape, no matter when or where it's made.
         for (i=1; i < points.size() - 1; i++) {
-            points.get(i).yCoord+=rand.nextInt(10)*0.00001f;
+            points.get(i).yCoord+=getTieOffset(x, y, z, i)*0.00001f;
         }
         //define ties todo: borked on diagonals
+        //the distances along the points are only added up once, instead of again for every tie.
+        float[] lengths = buildArcLengths(points);
         t=0;
-        while (!positionPastEnd(t, points)){
-            sc.activeTiePath.add(getPosition(t, points));
+        while (!positionPastEnd(t, lengths)){
+            sc.activeTiePath.add(getPosition(t, points, lengths));
             t+=0.25d;
         }
 
@@ -178,24 +187,92 @@ public class RailShapeCore {
         return sc;
     }
 
-    public static boolean positionPastEnd(float distance, List<Vec6f> points){
+    /**@return a number from 0 to 9 for the point of the rail at the position, always the same for the same input.*/
+    public static int getTieOffset(int x, int y, int z, int point){
+        long hash = x * 3129871L ^ z * 116129781L ^ y * 2654435761L ^ point * 40503L;
+        hash = hash * hash * 42317861L + hash * 11L;
+        return (int) ((hash >>> 16) % 10);
+    }
+
+    /*
+     * <h2>arc lengths</h2>
+     * the distance along a path is the sum of the 2d distances of it's segments,
+     * rather than adding them up again every time a position is needed, they are added up once into a table,
+     * and positions are found with a binary search of it.
+     * the table is summed in the same order as before, so the results are exactly the same.
+     * each shape keeps the table for it's active path, so walking the same shape again doesn't add anything up,
+     *     the tie placement walks points that aren't kept, so it builds a table just for the walk.
+     */
+
+    /**@return the cumulative distance along the active path at the end of each segment, rebuilding it if the path changed.*/
+    public float[] getArcLengths(){
+        if(arcLengths == null || arcLengthPath != activePath || arcLengthSize != activePath.size()){
+            arcLengths = buildArcLengths(activePath);
+            arcLengthPath = activePath;
+            arcLengthSize = activePath.size();
+        }
+        return arcLengths;
+    }
+
+    /**drops the arc lengths, call this if points in the active path were moved.*/
+    public void invalidateArcLengths(){
+        arcLengths = null;
+    }
+
+    /**@return the total distance along the active path*/
+    public float getLength(){
+        return getArcLengths().length==0?0:arcLengths[arcLengths.length-1];
+    }
+
+    /**@return true if the distance is past the end of the active path*/
+    public boolean positionPastEnd(float distance){
+        return positionPastEnd(distance, getArcLengths());
+    }
+
+    /**@return the point of the active path at the start of the segment the distance is in.*/
+    public Vec6f getPosition(float distance){
+        return getPosition(distance, activePath, getArcLengths());
+    }
+
+    /**@return the cumulative distance at the end of each segment of the points*/
+    public static float[] buildArcLengths(List<Vec6f> points){
+        float[] lengths = new float[Math.max(points.size() - 1, 0)];
         float totalTraveled = 0;
-        for(int i = 0; i < points.size() - 1; i++){
-            if((totalTraveled += points.get(i).distance2d(points.get(i + 1))) > distance){
-                return false;
-            }
+        for(int i = 0; i < lengths.length; i++){
+            lengths[i] = totalTraveled += points.get(i).distance2d(points.get(i + 1));
         }
-        return true;
+        return lengths;
+    }
+
+    /**@return true if the distance is past the end of the points, this sums the points again, use the table version in loops.*/
+    public static boolean positionPastEnd(float distance, List<Vec6f> points){
+        return positionPastEnd(distance, buildArcLengths(points));
+    }
+
+    public static boolean positionPastEnd(float distance, float[] lengths){
+        //the lengths only ever increase, so if the last one isn't past the distance, none of them are.
+        return lengths.length == 0 || !(lengths[lengths.length-1] > distance);
     }
 
+    /**@return the point at the start of the segment the distance is in, this sums the points again, use the table version in loops.*/
     public static Vec6f getPosition(float distance, List<Vec6f> points){
-        float totalTraveled = 0, traveled;
-        for(int i = 0; i < points.size() - 1; i++){
-            traveled = totalTraveled += points.get(i).distance2d(points.get(i + 1));
-            if(traveled >= distance){
-                return points.get(i);
+        return getPosition(distance, points, buildArcLengths(points));
+    }
+
+    public static Vec6f getPosition(float distance, List<Vec6f> points, float[] lengths){
+        //find the first segment that ends at or after the distance.
+        int low = 0, high = lengths.length, mid;
+        while (low < high){
+            mid = (low + high) >>> 1;
+            if(lengths[mid] >= distance){
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
+        if(low < lengths.length){
+            return points.get(low);
+        }
         return points.get(1);//.distance(points.get(0), distance);
     }
 }
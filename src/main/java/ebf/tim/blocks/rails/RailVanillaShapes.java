@@ -1,34 +1,110 @@
 package ebf.tim.blocks.rails;
 
 import ebf.tim.utility.DebugUtil;
-import net.minecraft.world.World;
-
-
-import static ebf.tim.blocks.rails.BlockRailCore.checkBlockMeta;
-import static ebf.tim.blocks.rails.BlockRailCore.getNearbyMeta;
 
 /**
+ * the shapes of our rails for each vanilla rail metadata, bent to meet the rails around them.
+ * the rails around them are read through
+ * @see RailAccess
+ * which is the world in game, so the shapes can be made without one.
  * @author Eternal Blue Flame
  */
 public class RailVanillaShapes extends RailShapeCore{
 
     private static final float parallelWidth = 0.0625f*1.5f;
 
-    public static RailSimpleShape vanillaZStraight(World worldObj, int xCoord, int yCoord, int zCoord) {
+    /**
+     * <h2>get shape</h2>
+     * @param meta the metadata of the rail at the position.
+     * @return the shape for the metadata, null if it isn't one of the vanilla ones.
+     */
+    public static RailSimpleShape getShape(RailAccess rails, int meta, int xPos, int yPos, int zPos){
+        switch (meta){
+            //Z straight
+            case 0: {
+                return vanillaZStraight(rails, xPos, yPos, zPos);
+            }
+            //X straight
+            case 1: {
+                return vanillaXStraight(rails, xPos, yPos, zPos);
+            }
+
+            //curves
+            case 9: {
+                return vanillaCurve9(rails, xPos, yPos, zPos);
+            }
+            case 8: {
+                return vanillaCurve8(rails, xPos, yPos, zPos);
+            }
+            case 7: {
+                return vanillaCurve7(rails, xPos, yPos, zPos);
+            }
+            case 6: {
+                return vanillaCurve6(rails, xPos, yPos, zPos);
+            }
+            //Z slopes
+            case 5 :{
+                return vanillaSlopeZ5(rails, xPos, yPos, zPos);
+            }
+            case 4 :{
+                return vanillaSlopeZ4(rails, xPos, yPos, zPos);
+            }
+            //X slopes
+            case 2 :{
+                return vanillaSlopeX2(rails, xPos, yPos, zPos);
+            }
+            case 3 :{
+                return vanillaSlopeX3(rails, xPos, yPos, zPos);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * checks the rail at the position for a specific meta to check if the shape should be made.
+     * @return boolean for if the shape can be made
+     */
+    public static boolean checkBlockMeta(RailAccess rails, int x, int y, int z, int ... meta){
+        int railMeta = rails.getBlockMetadata(x, y, z);
+        if (railMeta == -1){
+            return false;
+        }
+        for(int i : meta){
+            if(railMeta ==i){
+                return true;
+            }
+        }
+        return  false;
+    }
+
+    /**@return the basic rail metadata of the 3x3 area around the position, -1 for the ones that aren't rails, from the north west corner.*/
+    public static int[] getNearbyMeta(RailAccess rails, int xCoord, int yCoord, int zCoord){
+        int[] meta = new int[9];
+        int i=0;
+        for(int z=-1;z<2;z++){
+            for(int x=-1;x<2;x++){
+                meta[i]= rails.getBasicRailMetadata(xCoord+x,yCoord,zCoord+z);
+                i++;
+            }
+        }
+        return meta;
+    }
+
+    public static RailSimpleShape vanillaZStraight(RailAccess rails, int xCoord, int yCoord, int zCoord) {
         //new code
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
         shape.setStart(0, 0, -0.5f).setEnd(0, 0, 0.5f);
 
-        int[] nearbyMeta = getNearbyMeta(worldObj, xCoord, yCoord, zCoord);
+        int[] nearbyMeta = getNearbyMeta(rails, xCoord, yCoord, zCoord);
 
 
         //intersections
         if (nearbyMeta[7] == 1 &&
-                checkBlockMeta(worldObj, xCoord, yCoord, zCoord + 2, 0)) {
+                checkBlockMeta(rails, xCoord, yCoord, zCoord + 2, 0)) {
             shape.setEnd(0, 0, 1f).setSleeperCount(6);
         }
-        if (nearbyMeta[1] == 1 && checkBlockMeta(worldObj, xCoord, yCoord, zCoord - 2, 0)) {
+        if (nearbyMeta[1] == 1 && checkBlockMeta(rails, xCoord, yCoord, zCoord - 2, 0)) {
             shape.setStart(0, 0, -1f).setSleeperCount(6);
         }
 
@@ -50,7 +126,7 @@ public class RailVanillaShapes extends RailShapeCore{
                     .setCenter(0, 0, 1.5f)
                     .setSleeperCount(8);
         } else if (nearbyMeta[7] == 8 && nearbyMeta[6] == 9 &&
-                checkBlockMeta(worldObj, xCoord, yCoord, zCoord + 2, 0)//cover sharp u-turns
+                checkBlockMeta(rails, xCoord, yCoord, zCoord + 2, 0)//cover sharp u-turns
             ) {
             shape.setEnd(0, 0, 2f)
                     .setCenter(0, 0, 1.5f)
@@ -62,7 +138,7 @@ public class RailVanillaShapes extends RailShapeCore{
                     .setCenter(0, 0, 1f)
                     .setSleeperCount(8);
         } else if (nearbyMeta[7] == 9 && nearbyMeta[8] == 8 &&
-                checkBlockMeta(worldObj, xCoord, yCoord, zCoord + 2, 0)//cover sharp u-turns
+                checkBlockMeta(rails, xCoord, yCoord, zCoord + 2, 0)//cover sharp u-turns
             ) {
             shape.setEnd(0, 0, 2f)
                     .setCenter(0, 0, 1f)
@@ -74,7 +150,7 @@ public class RailVanillaShapes extends RailShapeCore{
                     .setCenter(0, 0, -1.5f)
                     .setSleeperCount(8);
         } else if (nearbyMeta[1] == 6 && nearbyMeta[2] == 7 &&
-                checkBlockMeta(worldObj, xCoord, yCoord, zCoord - 2, 0)//cover sharp u-turns
+                checkBlockMeta(rails, xCoord, yCoord, zCoord - 2, 0)//cover sharp u-turns
         ) {
             shape.setStart(0, 0, -2f)
                     .setCenter(0, 0, -1f)
@@ -85,7 +161,7 @@ public class RailVanillaShapes extends RailShapeCore{
                     .setCenter(0, 0, -1f)
                     .setSleeperCount(8);
         } else if (nearbyMeta[1] == 7 && nearbyMeta[0] == 6 &&
-                checkBlockMeta(worldObj, xCoord, yCoord, zCoord - 2, 0)//cover sharp u-turns
+                checkBlockMeta(rails, xCoord, yCoord, zCoord - 2, 0)//cover sharp u-turns
         ) {
             shape.setStart(0, 0, -2f).setCenter(0, 0, -1.5f).setSleeperCount(8);
         }
@@ -102,32 +178,32 @@ public class RailVanillaShapes extends RailShapeCore{
             shape.setCenter(0,0,-0.2f).setStart(0,0.2f,-0.6f);
         }
 
-        if(checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord+1, 4) &&
-                checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord-1, 5)){
+        if(checkBlockMeta(rails,xCoord, yCoord-1,zCoord+1, 4) &&
+                checkBlockMeta(rails,xCoord, yCoord-1,zCoord-1, 5)){
             shape.setStart(0,-0.2f,-0.6f).setEnd(0,-0.2f,0.6f);
         }
-        else if (checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord+1, 4)){
+        else if (checkBlockMeta(rails,xCoord, yCoord-1,zCoord+1, 4)){
             shape.setCenter(0,0,0.2f).setEnd(0,-0.2f,0.6f);
         }
-        else if (checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord-1, 5)){
+        else if (checkBlockMeta(rails,xCoord, yCoord-1,zCoord-1, 5)){
             shape.setCenter(0,0,-0.2f).setStart(0,-0.2f,-0.6f);
         }
 
         return shape;
     }
 
-    public static RailSimpleShape vanillaXStraight(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaXStraight(RailAccess rails, int xCoord, int yCoord, int zCoord){
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
         shape.setStart(0.5f,0,0).setEnd(-0.5f,0,0);
 
-        int[] nearbyMeta = getNearbyMeta(worldObj, xCoord, yCoord, zCoord);
+        int[] nearbyMeta = getNearbyMeta(rails, xCoord, yCoord, zCoord);
 
         //intersections
-        if(nearbyMeta[3]==0&& checkBlockMeta(worldObj, xCoord-2, yCoord,zCoord,1)){
+        if(nearbyMeta[3]==0&& checkBlockMeta(rails, xCoord-2, yCoord,zCoord,1)){
             shape.setEnd(-1f,0,0).setSleeperCount(6);
         }
-        if(nearbyMeta[5]==0&& checkBlockMeta(worldObj, xCoord+2, yCoord,zCoord,1)){
+        if(nearbyMeta[5]==0&& checkBlockMeta(rails, xCoord+2, yCoord,zCoord,1)){
             shape.setStart(1f,0,0).setSleeperCount(6);
         }
 
@@ -147,7 +223,7 @@ public class RailVanillaShapes extends RailShapeCore{
 
         //cover parallels
         if(((nearbyMeta[3]==9 && nearbyMeta[0]==6) || (nearbyMeta[3]==6 && nearbyMeta[6]==9))
-        && checkBlockMeta(worldObj, xCoord-2, yCoord, zCoord, 1)//cover sharp u-turns
+        && checkBlockMeta(rails, xCoord-2, yCoord, zCoord, 1)//cover sharp u-turns
         ){
             shape.setEnd(-2,0,0)
                     .setCenter(-1,0,0)
@@ -163,7 +239,7 @@ public class RailVanillaShapes extends RailShapeCore{
         }
 
         if(((nearbyMeta[5]==8 && nearbyMeta[2]==7) || (nearbyMeta[5]==7 && nearbyMeta[8]==8)) &&
-                checkBlockMeta(worldObj, xCoord+2, yCoord, zCoord, 1)//cover sharp u-turns
+                checkBlockMeta(rails, xCoord+2, yCoord, zCoord, 1)//cover sharp u-turns
         ){
             shape.setStart(2,0,0)
                     .setCenter(1,0,0)
@@ -189,14 +265,14 @@ public class RailVanillaShapes extends RailShapeCore{
             shape.setStart(0.6f,0.2f,0).setCenter(0.4f,0,0);
         }
 
-        if(checkBlockMeta(worldObj,xCoord+1, yCoord-1,zCoord,3) &&
-                checkBlockMeta(worldObj,xCoord-1, yCoord-1,zCoord,2)){
+        if(checkBlockMeta(rails,xCoord+1, yCoord-1,zCoord,3) &&
+                checkBlockMeta(rails,xCoord-1, yCoord-1,zCoord,2)){
             shape.setStart(0.6f,-0.2f,0).setEnd(-0.6f,-0.2f,0);
         }
-        else if (checkBlockMeta(worldObj,xCoord+1, yCoord-1,zCoord,3)){
+        else if (checkBlockMeta(rails,xCoord+1, yCoord-1,zCoord,3)){
             shape.setStart(0.6f,-0.2f,0).setCenter(0.4f,0,0);
         }
-        else if (checkBlockMeta(worldObj,xCoord-1, yCoord-1,zCoord,2)){
+        else if (checkBlockMeta(rails,xCoord-1, yCoord-1,zCoord,2)){
             shape.setEnd(-0.6f,-0.2f,0).setCenter(-0.4f,0,0);
         }
 
@@ -204,14 +280,14 @@ public class RailVanillaShapes extends RailShapeCore{
     }
 
 
-    public static RailSimpleShape vanillaCurve6(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaCurve6(RailAccess rails, int xCoord, int yCoord, int zCoord){
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
 
         shape.setStart(0,0,0.5f).setEnd(0.5f,0,0);
 
 
-        int[] nearbyMeta = getNearbyMeta(worldObj, xCoord, yCoord, zCoord);
+        int[] nearbyMeta = getNearbyMeta(rails, xCoord, yCoord, zCoord);
 
 
         //diagonals
@@ -251,27 +327,27 @@ public class RailVanillaShapes extends RailShapeCore{
         if (nearbyMeta[5]==2){
             shape.setEnd(0.6f,0.2f,0);
         }
-        else if (checkBlockMeta(worldObj,xCoord+1, yCoord-1,zCoord,3)){
+        else if (checkBlockMeta(rails,xCoord+1, yCoord-1,zCoord,3)){
             shape.setEnd(0.6f,-0.2f,0);
         }
         if (nearbyMeta[7]==5){
             shape.setStart(0,0.2f,0.6f);
         }
-        else if (checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord+1, 4)){
+        else if (checkBlockMeta(rails,xCoord, yCoord-1,zCoord+1, 4)){
             shape.setStart(0,-0.2f,0.6f);
         }
 
         return shape;
     }
 
-    public static RailSimpleShape vanillaCurve8(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaCurve8(RailAccess rails, int xCoord, int yCoord, int zCoord){
         //the base shape
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
 
         shape.setStart(-0.5f,0,0).setEnd(0,0,-0.5f);
 
-        int[] nearbyMeta = getNearbyMeta(worldObj, xCoord, yCoord, zCoord);
+        int[] nearbyMeta = getNearbyMeta(rails, xCoord, yCoord, zCoord);
 
         if (nearbyMeta[3]==6 ||nearbyMeta[1]==6) {
             //first half of the diagonal
@@ -306,13 +382,13 @@ public class RailVanillaShapes extends RailShapeCore{
         if (nearbyMeta[3]==3){
             shape.setStart(-0.6f,0.2f,0);
         }
-        else if (checkBlockMeta(worldObj,xCoord-1, yCoord-1,zCoord,2)){
+        else if (checkBlockMeta(rails,xCoord-1, yCoord-1,zCoord,2)){
             shape.setStart(-0.6f,-0.2f,0);
         }
         if (nearbyMeta[1]==4){
             shape.setEnd(0,0.2f,-0.6f);
         }
-        else if (checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord-1, 5)){
+        else if (checkBlockMeta(rails,xCoord, yCoord-1,zCoord-1, 5)){
             shape.setEnd(0,-0.2f,-0.6f);
         }
 
@@ -321,12 +397,12 @@ public class RailVanillaShapes extends RailShapeCore{
     }
 
 
-    public static RailSimpleShape vanillaCurve7(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaCurve7(RailAccess rails, int xCoord, int yCoord, int zCoord){
         //the base shape
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
         shape.setStart(-0.5f,0,0).setEnd(0,0,0.5f);
-        int[] nearbyMeta = getNearbyMeta(worldObj, xCoord, yCoord, zCoord);
+        int[] nearbyMeta = getNearbyMeta(rails, xCoord, yCoord, zCoord);
 
         //diagonals
         if (nearbyMeta[7]==9 || nearbyMeta[3]==9){
@@ -364,24 +440,24 @@ public class RailVanillaShapes extends RailShapeCore{
         if (nearbyMeta[3]==3){
             shape.setStart(-0.6f,0.2f,0f);
         }
-        else if (checkBlockMeta(worldObj,xCoord-1, yCoord-1,zCoord,2)){
+        else if (checkBlockMeta(rails,xCoord-1, yCoord-1,zCoord,2)){
             shape.setStart(-0.6f,-0.2f,0f);
         }
         if(nearbyMeta[7]==5){
             shape.setEnd(0,0.2f,0.6f);
         }
-        else if (checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord+1, 4)){
+        else if (checkBlockMeta(rails,xCoord, yCoord-1,zCoord+1, 4)){
             shape.setEnd(0,-0.2f,0.6f);
         }
         return shape;
     }
 
-    public static RailSimpleShape vanillaCurve9(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaCurve9(RailAccess rails, int xCoord, int yCoord, int zCoord){
         //the base shape
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
         shape.setStart(0.5f,0,0).setEnd(0,0,-0.5f);
-        int[] nearbyMeta = getNearbyMeta(worldObj, xCoord, yCoord, zCoord);
+        int[] nearbyMeta = getNearbyMeta(rails, xCoord, yCoord, zCoord);
 
         if (nearbyMeta[5]==7 || nearbyMeta[1]==7){
             //first half of the diagonal
@@ -420,13 +496,13 @@ public class RailVanillaShapes extends RailShapeCore{
         if (nearbyMeta[5]==2){
             shape.setStart(0.6f,0.2f,0);
         }
-        else if (checkBlockMeta(worldObj,xCoord+1, yCoord-1,zCoord,3)){
+        else if (checkBlockMeta(rails,xCoord+1, yCoord-1,zCoord,3)){
             shape.setStart(0.6f,-0.2f,0);
         }
         if (nearbyMeta[1]==4){
             shape.setEnd(0,0.2f,-0.6f);
         }
-        else if (checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord-1, 5)){
+        else if (checkBlockMeta(rails,xCoord, yCoord-1,zCoord-1, 5)){
             shape.setEnd(0,-0.2f,-0.6f);
         }
 
@@ -437,67 +513,78 @@ public class RailVanillaShapes extends RailShapeCore{
 
 
 
-    public static RailSimpleShape vanillaSlopeZ5(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaSlopeZ5(RailAccess rails, int xCoord, int yCoord, int zCoord){
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
         shape.setStart(0,0,-0.5f).setCenter(0,0.5f,0).setEnd(0,1,0.5f);
 
-        if (!checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord-1,5)){
+        if (!checkBlockMeta(rails,xCoord, yCoord-1,zCoord-1,5)){
             shape.setStart(0,0.2f,-0.4f);
         }
-        if (!checkBlockMeta(worldObj,xCoord, yCoord+1,zCoord+1,5)){
+        if (!checkBlockMeta(rails,xCoord, yCoord+1,zCoord+1,5)){
             shape.setEnd(0,0.8f,0.4f);
         }
 
         return shape;
     }
 
-    public static RailSimpleShape vanillaSlopeZ4(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaSlopeZ4(RailAccess rails, int xCoord, int yCoord, int zCoord){
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
         shape.setStart(0,0,0.5f).setCenter(0,0.5f,0).setEnd(0,1,-0.5f);
 
 
-        if (!checkBlockMeta(worldObj,xCoord, yCoord-1,zCoord+1,4)){
+        if (!checkBlockMeta(rails,xCoord, yCoord-1,zCoord+1,4)){
             shape.setStart(0,0.2f,0.4f);
         }
-        if (!checkBlockMeta(worldObj,xCoord, yCoord+1,zCoord-1,4)){
+        if (!checkBlockMeta(rails,xCoord, yCoord+1,zCoord-1,4)){
             shape.setEnd(0,0.8f,-0.4f);
         }
 
         return shape;
     }
 
-    public static RailSimpleShape vanillaSlopeX2(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaSlopeX2(RailAccess rails, int xCoord, int yCoord, int zCoord){
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
 
         shape.setStart(-0.5f,0,0).setCenter(0,0.5f,0).setEnd(0.5f,1,0);
 
-        if (!checkBlockMeta(worldObj,xCoord-1, yCoord-1,zCoord,2)){
+        if (!checkBlockMeta(rails,xCoord-1, yCoord-1,zCoord,2)){
             shape.setStart(-0.4f,0.2f,0,0);
         }
-        if(!checkBlockMeta(worldObj,xCoord+1, yCoord+1,zCoord,2)){
+        if(!checkBlockMeta(rails,xCoord+1, yCoord+1,zCoord,2)){
             shape.setEnd(0.4f,0.8f,0,0);
         }
 
         return shape;
     }
 
-    public static RailSimpleShape vanillaSlopeX3(World worldObj, int xCoord, int yCoord, int zCoord){
+    public static RailSimpleShape vanillaSlopeX3(RailAccess rails, int xCoord, int yCoord, int zCoord){
         RailSimpleShape shape = new RailSimpleShape();
         shape.setSleeperCount(4);
 
         shape.setStart(0.5f,0,0).setCenter(0,0.5f,0).setEnd(-0.5f,1,0);
 
-        if (!checkBlockMeta(worldObj,xCoord-1, yCoord+1,zCoord,3)){
+        if (!checkBlockMeta(rails,xCoord-1, yCoord+1,zCoord,3)){
             shape.setEnd(-0.4f,0.8f,0,0);
         }
-        if(!checkBlockMeta(worldObj,xCoord+1, yCoord-1,zCoord,3)){
+        if(!checkBlockMeta(rails,xCoord+1, yCoord-1,zCoord,3)){
             shape.setStart(0.4f,0.2f,0,0);
         }
 
         return shape;
     }
 
+
+    /**
+     * <h2>Rail access</h2>
+     * the rails the shapes are bent to meet, a world in game.
+     */
+    public interface RailAccess {
+        /**@return the metadata of the rail at the position, -1 if there isn't one, or it's not loaded.*/
+        int getBlockMetadata(int x, int y, int z);
+        /**@return the basic rail metadata of the rail at the position, the direction a cart would go, -1 if there isn't one.*/
+        int getBasicRailMetadata(int x, int y, int z);
+    }
 }
@@ -0,0 +1,239 @@
+package ebf.tim.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h1>Consist</h1>
+ * the group of transports that are coupled together, this is server only.
+ * it owns the membership of the group and keeps running totals for the weight and power,
+ * so trains can read them directly instead of walking the links every time they calculate acceleration.
+ *
+ * coupling merges the smaller consist into the larger one, and uncoupling only walks the part that was cut off.
+ * the order is not stored, it's defined by the front and back links of the transports themselves, and cached on demand,
+ *     the cache is dropped whenever the members change.
+ * transports leave their consist when they are destroyed, or when their chunk unloads, the ones that load again
+ *     are coupled back in by their link UUIDs, so a consist only ever has loaded transports in it.
+ * @author Eternal Blue Flame
+ */
+public class Consist {
+
+    /**the transports in this consist*/
+    private Set<GenericRailTransport> members = new HashSet<>();
+    /**the combined weight of every transport in this consist*/
+    private float weight =0;
+    /**the combined pulling power of every transport in this consist*/
+    private float power =0;
+    /**the cached order of the members, null when it needs to be rebuilt.*/
+    private List<GenericRailTransport> ordered = null;
+    /**the world time the electric trains in this consist were last charged from the rails, -1 if they haven't been.*/
+    private long charged = -1;
+
+    /**creates a new consist for a single transport.*/
+    public Consist(GenericRailTransport transport){
+        add(transport);
+    }
+
+    private Consist(){}
+
+    /**@return the combined weight of every transport in this consist in kg*/
+    public float getWeight(){return weight;}
+    /**@return the combined pulling power of every transport in this consist*/
+    public float getPower(){return power;}
+    /**@return the number of transports in this consist*/
+    public int size(){return members.size();}
+    /**@return if the transport is part of this consist*/
+    public boolean contains(GenericRailTransport transport){return transport != null && members.contains(transport);}
+
+    /**
+     * <h2>ordered transports</h2>
+     * returns the transports in this consist in the order they are coupled, starting from one of the ends.
+     * this is cached until the consist changes.
+     */
+    public List<GenericRailTransport> getTransports(){
+        if(ordered == null){
+            GenericRailTransport start = null;
+            for(GenericRailTransport t : members){
+                start = t;
+                if(!contains(getLink(t, true)) || !contains(getLink(t, false))){
+                    break;
+                }
+            }
+            ordered = start==null?new ArrayList<GenericRailTransport>():collect(start, this);
+        }
+        return ordered;
+    }
+
+    /**
+     * <h2>charge</h2>
+     * marks the consist as charged, the first electric train to get it's fuel tick charges all of them,
+     *     so the rest skip it until the interval has passed.
+     * @return false if it was already charged within the interval.
+     * @see ebf.tim.utility.FuelHandler#chargeConsist(EntityTrainCore)
+     */
+    public boolean charge(long worldTime, int interval){
+        if(charged != -1 && worldTime >= charged && worldTime - charged < interval){
+            return false;
+        }
+        charged = worldTime;
+        return true;
+    }
+
+    private void add(GenericRailTransport transport){
+        members.add(transport);
+        transport.consist = this;
+        weight += transport.weightKg();
+        power += transport.getPower();
+        ordered = null;
+    }
+
+    private void remove(GenericRailTransport transport){
+        if(members.remove(transport)) {
+            weight -= transport.weightKg();
+            power -= transport.getPower();
+            ordered = null;
+        }
+    }
+
+    /**empties a consist that was merged into another, so nothing reads the old totals or order from it.*/
+    private void clear(){
+        members.clear();
+        weight =0;
+        power =0;
+        ordered = null;
+    }
+
+
+    /*
+     * <h2>consist management</h2>
+     * these are called after the link variables of the transports have been changed.
+     */
+
+    /**
+     * <h3>couple</h3>
+     * merges the consists of two transports that were just coupled.
+     * the smaller of the two is moved into the larger one, so the cost is amortized over the life of the consist.
+     */
+    public static void couple(GenericRailTransport host, GenericRailTransport target){
+        Consist a = host.getConsist(), b = target.getConsist();
+        if(a == b){
+            //the links changed, even if the members didn't.
+            a.ordered = null;
+            return;
+        }
+        if(a.size() < b.size()){
+            Consist swap = a;
+            a = b;
+            b = swap;
+        }
+        for(GenericRailTransport t : b.members){
+            a.add(t);
+        }
+        b.clear();
+    }
+
+    /**
+     * <h3>uncouple</h3>
+     * splits the consist of two transports that were just uncoupled.
+     * only the transports still linked to the target are walked, they are moved into a new consist if they are no longer connected to the host.
+     */
+    public static void uncouple(GenericRailTransport host, GenericRailTransport target){
+        if(host.getConsist() == target.getConsist()){
+            split(target.getConsist(), target);
+        }
+    }
+
+    /**
+     * <h3>remove</h3>
+     * removes a transport from it's consist, usually because it was destroyed.
+     * anything that was linked on either side of it is split into it's own consist.
+     */
+    public static void remove(GenericRailTransport transport, GenericRailTransport front, GenericRailTransport back){
+        Consist consist = transport.getConsist();
+        consist.remove(transport);
+        transport.consist = new Consist(transport);
+        if(front != null && consist.contains(front)){
+            split(consist, front);
+        }
+        if(back != null && consist.contains(back)){
+            split(consist, back);
+        }
+    }
+
+    /**
+     * <h3>unload</h3>
+     * takes a transport out of it's consist without changing the links, because it's chunk unloaded.
+     * the rest of the consist is split where it was, and if the transport loads again, the new entity couples back in through the link UUIDs.
+     */
+    public static void unload(GenericRailTransport transport){
+        Consist consist = transport.consist;
+        if(consist == null || !consist.contains(transport)){
+            return;
+        }
+        GenericRailTransport front = getLink(transport, true), back = getLink(transport, false);
+        consist.remove(transport);
+        transport.consist = null;
+        if(front != null && consist.contains(front)){
+            split(consist, front);
+        }
+        if(back != null && consist.contains(back)){
+            split(consist, back);
+        }
+    }
+
+    /**moves everything still linked to the start into a new consist, if it's not everything in the current one.*/
+    private static void split(Consist consist, GenericRailTransport start){
+        List<GenericRailTransport> side = collect(start, consist);
+        if(side.size() == consist.size()){
+            consist.ordered = null;
+            return;
+        }
+        Consist split = new Consist();
+        for(GenericRailTransport t : side){
+            consist.remove(t);
+            split.add(t);
+        }
+    }
+
+    /**walks the links from the start in both directions, only the members of the consist are walked.*/
+    private static List<GenericRailTransport> collect(GenericRailTransport start, Consist consist){
+        List<GenericRailTransport> front = new ArrayList<>();
+        List<GenericRailTransport> back = new ArrayList<>();
+        Set<GenericRailTransport> checked = new HashSet<>();
+        GenericRailTransport current, next, link;
+        checked.add(start);
+        //check the front, then loop for every transport linked to it, then do it again for the back.
+        for(int side=0; side<2; side++) {
+            current = start;
+            next = getLink(start, side == 0);
+            while (next != null && !checked.contains(next) && consist.contains(next)) {
+                checked.add(next);
+                (side==0?front:back).add(next);
+                //links can face either way, so use whichever one doesn't lead back to where we came from.
+                link = getLink(next, true);
+                if (link == current) {
+                    link = getLink(next, false);
+                }
+                current = next;
+                next = link;
+            }
+        }
+        Collections.reverse(front);
+        front.add(start);
+        front.addAll(back);
+        return front;
+    }
+
+    /**gets the transport linked to the front or back of the provided one, if it's loaded.*/
+    private static GenericRailTransport getLink(GenericRailTransport transport, boolean front){
+        Integer id = front?transport.frontLinkedID:transport.backLinkedID;
+        if(id == null){
+            return null;
+        }
+        return transport.worldObj.getEntityByID(id) instanceof GenericRailTransport?
+                (GenericRailTransport) transport.worldObj.getEntityByID(id):null;
+    }
+}
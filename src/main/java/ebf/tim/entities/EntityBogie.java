@@ -6,13 +6,13 @@ import cpw.mods.fml.common.registry.IEntityAdditionalSpawnData;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import ebf.tim.blocks.rails.BlockRailCore;
+import ebf.tim.blocks.rails.RailPathCache;
 import ebf.tim.utility.DebugUtil;
 import ebf.tim.utility.RailUtility;
+import ebf.tim.utility.TrainPhysics;
 import io.netty.buffer.ByteBuf;
 import mods.railcraft.api.carts.IMinecart;
 import mods.railcraft.api.carts.IRoutableCart;
-import mods.railcraft.api.tracks.ITrackSwitch;
-import mods.railcraft.api.tracks.ITrackTile;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockAir;
 import net.minecraft.block.BlockRailBase;
@@ -44,34 +44,27 @@ public class EntityBogie extends EntityMinecart implements IMinecart, IRoutableC
     private double motionProgress=0;
     /**defines if this is the front bogie of the transport*/
     private boolean isFront=true;
-    /**used to calculate the X/Y/Z velocity based on the direction the rail is facing, similar to how vanilla minecarts work.*/
-    private static final int[][][] vanillaRailMatrix = new int[][][] {{{0, 0, -1}, {0, 0, 1}}, {{ -1, 0, 0}, {1, 0, 0}}, {{ -1, -1, 0}, {1, 0, 0}}, {{ -1, 0, 0}, {1, -1, 0}}, {{0, 0, -1}, {0, -1, 1}}, {{0, -1, -1}, {0, 0, 1}}, {{0, 0, 1}, {1, 0, 0}}, {{0, 0, 1}, { -1, 0, 0}}, {{0, 0, -1}, { -1, 0, 0}}, {{0, 0, -1}, {1, 0, 0}}};
     /*used by the transport class to apply a weight multiplication if the bogies are on a slope*/
     public boolean isOnSlope=false;
 
     /**instancing of this here so java GC doesn't have to keep cleaning and remaking it.*/
     private double dragMultiplier;
-
-    /**cached value for the bogie path, prevents need to generate a new variable multiple times per tick*/
-    private double[] motionPath;
-    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
-    private double railPathX;
-    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
-    private double railPathZ;
-    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
-    private double railPathSqrt;
-    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
-    private double motionSqrt;
-    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
-    private double railPathX2;
-    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
-    private double railPathZ2;
-    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
-    private double railPathDirection;
+    /**the weight the drag multiplier was calculated for, it's only recalculated when this changes.*/
+    private float dragWeight = Float.NaN;
+    /**cached value for the parking brake, prevents need to generate a new variable multiple times per tick*/
+    private double parkingMultiplier;
+
+    /**cached value for the bogie path, the position and motion the rail path moves, prevents need to generate a new variable multiple times per tick
+     * @see RailPathCache.RailPath#move(double[], double, float, int, int)*/
+    private final double[] pathState = new double[5];
     /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
     private int railMetadata;
     /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
     private Block blockNext;
+    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
+    private RailPathCache.RailPath railPath;
+    /**cached value for the rail path, prevents need to generate a new variable multiple times per tick*/
+    private RailPathCache.RailNode railNode;
 
     public EntityBogie(World world) {
         super(world);
@@ -209,21 +202,26 @@ public class EntityBogie extends EntityMinecart implements IMinecart, IRoutableC
 
             //apply parking brake
             if (parking){
+                parkingMultiplier = TrainPhysics.parkingBrake(weight);
                 if (motionX <0.005 && motionX >-0.005){
                     this.cartVelocityX = motionX =0;
                 } else {
-                    motionX *= 0.9-(0.01* (weight * 0.0007457));
-                    this.cartVelocityX *= 0.9-(0.01* (weight * 0.0007457));
+                    motionX *= parkingMultiplier;
+                    this.cartVelocityX *= parkingMultiplier;
                 }
                 if (motionZ <0.005 && motionZ >-0.005){
                     this.cartVelocityZ =motionZ =0;
                 } else {
-                    motionZ *= 0.9-(0.01* (weight * 0.0007457));
-                    this.cartVelocityZ *= 0.9-(0.01* (weight * 0.0007457));
+                    motionZ *= parkingMultiplier;
+                    this.cartVelocityZ *= parkingMultiplier;
                 }
             }
 
-            dragMultiplier = Math.pow(weight,-0.07457);
+            //the weight rarely changes, so only redo the power when it does.
+            if (weight != dragWeight) {
+                dragWeight = weight;
+                dragMultiplier = TrainPhysics.bogieDrag(weight);
+            }
 
 
 
@@ -253,108 +251,84 @@ public class EntityBogie extends EntityMinecart implements IMinecart, IRoutableC
 
         //todo something with speedcap
 
-        //add the uphill/downhill velocity
-        switch (railMetadata){
-            //todo replace with a similar calculation to the drag multiplier
-            case 2:{motionX -= 0.0078125D*dragMultiplier; this.posY = (floorY + 1d); isOnSlope=true; break;}
-            case 3:{motionX += 0.0078125D*dragMultiplier; this.posY = (floorY + 1d); isOnSlope=true; break;}
-            case 4:{motionZ += 0.0078125D*dragMultiplier; this.posY = (floorY + 1d); isOnSlope=true; break;}
-            case 5:{motionZ -= 0.0078125D*dragMultiplier; this.posY = (floorY + 1d); isOnSlope=true; break;}
-            default:{
-                isOnSlope=false;
-                //apply drag
-                if (hasDrag){
-                    if (motionX <0.005 && motionX >-0.005){
-                        this.cartVelocityX = motionX =0;
-                    } else {
-                        motionX *= dragMultiplier;
-                        this.cartVelocityX *= dragMultiplier;
-                    }
-                    if (motionZ <0.005 && motionZ >-0.005){
-                        this.cartVelocityZ =motionZ =0;
-                    } else {
-                        motionZ *= dragMultiplier;
-                        this.cartVelocityZ *= dragMultiplier;
+        //loop for each increment of movement, rather than recursing for it.
+        while (true) {
+            //add the uphill/downhill velocity
+            switch (railMetadata) {
+                //todo replace with a similar calculation to the drag multiplier
+                case 2:{motionX -= TrainPhysics.SLOPE_PUSH*dragMultiplier; this.posY = (floorY + 1d); isOnSlope=true; break;}
+                case 3:{motionX += TrainPhysics.SLOPE_PUSH*dragMultiplier; this.posY = (floorY + 1d); isOnSlope=true; break;}
+                case 4:{motionZ += TrainPhysics.SLOPE_PUSH*dragMultiplier; this.posY = (floorY + 1d); isOnSlope=true; break;}
+                case 5:{motionZ -= TrainPhysics.SLOPE_PUSH*dragMultiplier; this.posY = (floorY + 1d); isOnSlope=true; break;}
+                default:{
+                    isOnSlope=false;
+                    //apply drag
+                    if (hasDrag){
+                        if (motionX <0.005 && motionX >-0.005){
+                            this.cartVelocityX = motionX =0;
+                        } else {
+                            motionX *= dragMultiplier;
+                            this.cartVelocityX *= dragMultiplier;
+                        }
+                        if (motionZ <0.005 && motionZ >-0.005){
+                            this.cartVelocityZ =motionZ =0;
+                        } else {
+                            motionZ *= dragMultiplier;
+                            this.cartVelocityZ *= dragMultiplier;
+                        }
                     }
                 }
             }
-        }
 
-        if(velocity>0.3){
-            velocity-=0.3;
-            moveBogieVanillaDirectional(0.3f, floorX,floorY,floorZ, block, host);
-        } else if(velocity<-0.3){
-            velocity+=0.3;
-            moveBogieVanillaDirectional(-0.3f, floorX,floorY,floorZ, block, host);
-        }else {
-            return;
-        }
+            if(velocity>0.3){
+                velocity-=0.3;
+                moveBogieVanillaDirectional(0.3f, floorX,floorY,floorZ, block, host);
+            } else if(velocity<-0.3){
+                velocity+=0.3;
+                moveBogieVanillaDirectional(-0.3f, floorX,floorY,floorZ, block, host);
+            }else {
+                return;
+            }
 
-        //update the last used block to the one we just used, if it's actually different.
-        floorX = MathHelper.floor_double(this.posX);
-        floorY = MathHelper.floor_double(this.posY);
-        floorZ = MathHelper.floor_double(this.posZ);
-        blockNext = this.worldObj.getBlock(floorX, floorY, floorZ);
-        //now loop this again for the next increment of movement, if there is one
-        if (blockNext instanceof BlockRailBase) {
-            segmentMovement(velocity, speedCap, hasDrag, floorX, floorY, floorZ, (BlockRailBase) blockNext, host);
+            //update the last used block to the one we just used, if it's actually different.
+            floorX = MathHelper.floor_double(this.posX);
+            floorY = MathHelper.floor_double(this.posY);
+            floorZ = MathHelper.floor_double(this.posZ);
+            blockNext = this.worldObj.getBlock(floorX, floorY, floorZ);
+            //now loop this again for the next increment of movement, if there is one
+            if (!(blockNext instanceof BlockRailBase)) {
+                return;
+            }
+            block = (BlockRailBase) blockNext;
         }
-
     }
 
 
     private void moveBogieVanillaDirectional(double currentMotion, int floorX, int floorY, int floorZ, BlockRailBase block, GenericRailTransport host){
-        //get the direction of the rail from it's metadata
-        if (worldObj.getTileEntity(floorX, floorY, floorZ) instanceof ITrackTile && (((ITrackTile)worldObj.getTileEntity(floorX, floorY, floorZ)).getTrackInstance() instanceof ITrackSwitch)){
-            railMetadata =((ITrackTile)worldObj.getTileEntity(floorX, floorY, floorZ)).getTrackInstance().getBasicRailMetadata(this);//railcraft support
+        //get the direction of the rail from it's metadata, the node keeps the railcraft switch so there's no tile entity lookup.
+        railNode = RailPathCache.getNode(worldObj, floorX, floorY, floorZ, block);
+        if (railNode.trackSwitch != null){
+            railMetadata = railNode.trackSwitch.getTrackInstance().getBasicRailMetadata(this);//railcraft support
         } else {
             railMetadata = block.getBasicRailMetadata(worldObj, this, floorX, floorY, floorZ);
         }
+        railPath = RailPathCache.getPath(railMetadata);
 
 
-        //figure out the current rail's direction
-        railPathX = (vanillaRailMatrix[railMetadata][1][0] - vanillaRailMatrix[railMetadata][0][0]);
-        railPathZ = (vanillaRailMatrix[railMetadata][1][2] - vanillaRailMatrix[railMetadata][0][2]);
-        railPathSqrt = Math.sqrt(railPathX * railPathX + railPathZ * railPathZ);
-
-        if (motionX * railPathX + motionZ * railPathZ < 0.0D) {
-            railPathX = -railPathX;
-            railPathZ = -railPathZ;
-        }
-
-        motionPath=RailUtility.rotatePoint(currentMotion,
-                host.rotationPitch, (Math.atan2((railPathZ),(railPathX))*(180d/Math.PI)));
-
-        motionSqrt = Math.sqrt(motionX * motionX + motionZ * motionZ);
-        motionX = motionSqrt * (railPathX / railPathSqrt);
-        motionZ = motionSqrt * (railPathZ / railPathSqrt);
-
-        //define the rail path again, to center the transport.
-        railPathX2 = Math.floor(posX) + 0.5D + vanillaRailMatrix[railMetadata][0][0] * 0.5D;
-        railPathZ2 = Math.floor(posZ) + 0.5D + vanillaRailMatrix[railMetadata][0][2] * 0.5D;
-        railPathX = (Math.floor(posX) + 0.5D + vanillaRailMatrix[railMetadata][1][0] * 0.5D) - railPathX2;
-        railPathZ = (Math.floor(posZ) + 0.5D + vanillaRailMatrix[railMetadata][1][2] * 0.5D) - railPathZ2;
-
-        //pick the bigger one
-        if (railPathX == 0.0D) {
-            railPathDirection = this.posZ - floorZ;
-        } else if (railPathZ == 0.0D) {
-            railPathDirection = this.posX - floorX;
-        } else {
-            railPathDirection = ((this.posX - railPathX2) * railPathX + (this.posZ - railPathZ2) * railPathZ) * 2.0D;
-        }
-        //do the centering movement
-        this.posX = (railPathX2 + railPathX * railPathDirection)+motionPath[0];
-        this.posZ = (railPathZ2 + railPathZ * railPathDirection)+motionPath[2];
+        //move along the path, the yaw is precompiled, so this is the same as rotating the motion, without the atan2 or a new array.
+        pathState[0] = posX;
+        pathState[1] = posY;
+        pathState[2] = posZ;
+        pathState[3] = motionX;
+        pathState[4] = motionZ;
+        railPath.move(pathState, currentMotion, host.rotationPitch, floorX, floorZ);
+        this.posX = pathState[0];
+        this.posZ = pathState[2];
+        motionX = pathState[3];
+        motionZ = pathState[4];
 
         this.prevPosY =motionY;
-        //set the Y position
-        if (vanillaRailMatrix[railMetadata][0][1] != 0 && MathHelper.floor_double(this.posX) - floorX == vanillaRailMatrix[railMetadata][0][0] && MathHelper.floor_double(this.posZ) - floorZ == vanillaRailMatrix[railMetadata][0][2]) {
-            this.posY+=vanillaRailMatrix[railMetadata][0][1];
-        }
-        else if (vanillaRailMatrix[railMetadata][1][1] != 0 && MathHelper.floor_double(this.posX) - floorX == vanillaRailMatrix[railMetadata][1][0] && MathHelper.floor_double(this.posZ) - floorZ == vanillaRailMatrix[railMetadata][1][2]) {
-            this.posY+=vanillaRailMatrix[railMetadata][1][1];
-        }
+        this.posY = pathState[1];
         //endMagic();
 
         //do the rail functions.
@@ -1,15 +1,15 @@
 package ebf.tim.entities;
 
 import ebf.tim.registry.NBTKeys;
-import ebf.tim.utility.DebugUtil;
 import ebf.tim.utility.FuelHandler;
 import ebf.tim.utility.RailUtility;
+import ebf.tim.utility.TickProfiler;
+import ebf.tim.utility.TrainPhysics;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.world.World;
 import net.minecraftforge.common.util.ForgeDirection;
 
-import java.util.List;
 import java.util.UUID;
 
 /**
@@ -108,82 +108,20 @@ public class EntityTrainCore extends GenericRailTransport {
     }
     //gets the throttle position as a percentage with 1 as max and -1 as max reverse
     public float getAcceleratiorPercentage(){
-        return (accelerator*0.16666666666f)*0.05f;
-    }
-
-    private float maxPowerMicroblocks =0;
-
-    @Override
-    public void setValuesOnLinkUpdate(List<GenericRailTransport> consist){
-        maxPowerMicroblocks =0;
-        pullingWeight=0;
-        for(GenericRailTransport t : consist) {
-            maxPowerMicroblocks +=t.getPower();
-            pullingWeight +=t.weightKg();
-        }
+        return TrainPhysics.throttle(accelerator);
     }
 
     /**
      * <h2>Calculate speed increase rate</h2>
+     * the weight and power are the totals for the whole consist.
+     * @see Consist
+     * @see TrainPhysics#accelerate(float, int, int, boolean, float, float, float)
      */
     public void calculateAcceleration(){
-        float weight=pullingWeight * (getBoolean(boolValues.BRAKE)?2:1);
-        if (accelerator !=0 && ticksExisted%20!=0) {
-            //speed is defined by the power in newtons divided by the weight, divided by the number of ticks in a second.
-            if(getPower() !=0) {
-                //update the consist if somehow it didnt get initialized.
-                if(maxPowerMicroblocks==0){
-                    updateConsist();
-                }
-                // weight's effect on HP is generally inverse of HP itself, it can be described as
-                // 30 lbs of coal about 100 feet in one minute = 33,000 lbf for 1.01387 MHP
-                // however this is for vertical, converting to horizontal means multiplying by around 85% of gravity
-                // so say you have a train with 75mhp, that means your carrying capacity sits around
-                // 75*1.11039648 tons. (83.279)
-                //clamp to a max of the pulling power as to not generate negative pulling power
-                DebugUtil.println(maxPowerMicroblocks,weight, maxPowerMicroblocks/weight);
-                vectorCache[1][0] = Math.max(0,maxPowerMicroblocks
-                        / (weight*1.11039648f))*getAcceleratiorPercentage();//applied power
-
-                //debuff for rain
-                vectorCache[1][1]=( (1.75f * (worldObj.isRaining()?0.5f:1)));
-
-                //todo rework this, the math isnt based on newtons anymore.
-                if(Math.abs(vectorCache[1][0])*-745.7>vectorCache[1][1]/7457){
-                    //todo: add sparks to animator.
-                    //DebugUtil.println("SCREECH","wheelspin: " + (vectorCache[1][0]*-745.7),
-                    //        "Grip: " + (vectorCache[1][1]/7457), "i really need to get those spark particles in..");
-                    //vectorCache[1][0] *=0.33;
-                }
-
-            } else {
-                updateConsist();
-            }
-
-        }
-        //apply drag, always.
+        float weight=TrainPhysics.brakeWeight(getConsist().getWeight(), getBoolean(boolValues.BRAKE));
+        vectorCache[1][0] = TrainPhysics.accelerate(vectorCache[1][0], accelerator, ticksExisted, getPower() !=0,
+                getConsist().getPower(), weight, transportTopSpeed());
         vectorCache[1][1]=0;
-        if (vectorCache[1][0]>0) {
-            vectorCache[1][0] *= (1 - (0.005* (weight * 0.0007457)));
-            if (vectorCache[1][0] <0){
-                vectorCache[1][0] =0;
-            }
-        } else {
-            vectorCache[1][0] *= (1 - (0.005* (weight * 0.0007457)));
-            if (vectorCache[1][0] >0){
-                vectorCache[1][0] =0;
-            }
-        }
-
-        //cap movement to the max speed
-        if (vectorCache[1][0] > (transportTopSpeed()*0.00694445f)){
-            vectorCache[1][0] = (transportTopSpeed()*0.00694445f);
-        } else if (vectorCache[1][0] < (-transportTopSpeed()*0.00694445f)){
-            vectorCache[1][0] = (-transportTopSpeed()*0.00694445f);
-        }
-        //todo: make the max reduced when going reverse
-
-
     }
 
     /**
@@ -201,7 +139,9 @@ public class EntityTrainCore extends GenericRailTransport {
             if(ticksExisted %10==0){
                 //stop calculation if it can't move, running should be managed from the fuel handler, to be more dynamic
                 if (getBoolean(boolValues.RUNNING)) {
+                    long sectionStart = TickProfiler.start(worldObj);
                     calculateAcceleration();
+                    TickProfiler.end(TickProfiler.Section.ACCELERATION, sectionStart, this);
                 } else {
                     vectorCache[1][0] = 0;
                     accelerator=0;
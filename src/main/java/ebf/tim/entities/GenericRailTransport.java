@@ -37,7 +37,6 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntityFurnace;
 import net.minecraft.util.*;
-import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.World;
 import net.minecraftforge.common.ForgeChunkManager;
 import net.minecraftforge.common.util.ForgeDirection;
@@ -89,16 +88,14 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
     private int health = 20;
     /**the fluidTank tank*/
     private FluidTankInfo[] fluidTank = null;
-    /**local cache for fluid tanks, to check if parsing is necessary or not*/
-    private String fluidCache="";
-    /**the list of items used for the inventory and crafting slots.*/
-    public List<ItemStackSlot> inventory = null;
+    /**syncs the fluid tanks with the clients, only used on server*/
+    public TankSync tankSync = new TankSync();
+    /**the list of items used for the inventory and crafting slots, this also indexes them by ID and what's in them.*/
+    public TransportInventory inventory = null;
     /**whether or not this needs to update the datawatchers*/
     public boolean updateWatchers = false;
     /**the ticket that gives the entity permission to load chunks.*/
     private ForgeChunkManager.Ticket chunkTicket;
-    /**a cached list of the loaded chunks*/
-    public List<ChunkCoordIntPair> chunkLocations = new ArrayList<>();
     /**The X velocity of the front bogie*/
     public double frontVelocityX=0;
     /**The Z velocity of the front bogie*/
@@ -115,7 +112,9 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
     /**/
     float rotationRoll;
     public int forceBackupTimer =0;
-    public float pullingWeight=0;
+    /**the consist this is part of, server only.
+     * @see #getConsist()*/
+    Consist consist = null;
     public boolean onVanillaRails=false;
 
     //@SideOnly(Side.CLIENT)
@@ -160,7 +159,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
         super(world);
         setSize(0.25f,0.25f);
         ignoreFrustumCheck = true;
-        inventory = new ArrayList<>();
+        inventory = new TransportInventory();
         initInventorySlots();
         if(world!=null) {
             this.height = 0.25f;
@@ -177,7 +176,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
         this.owner = owner;
         setSize(0.25f,0.25f);
         ignoreFrustumCheck = true;
-        inventory = new ArrayList<>();
+        inventory = new TransportInventory();
         initInventorySlots();
         if(world!=null) {
             this.height = 0.25f;
@@ -195,7 +194,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
     @Override
     public void entityInit(){
         this.dataWatcher.addObject(13, 0);//train fuel consumption current
-        this.dataWatcher.addObject(20, "");//fluid tank data
+        //20 was the fluid tank data, the tanks are synced by TankSync now.
         this.dataWatcher.addObject(15, 0);//train heat
         this.dataWatcher.addObject(16, 40.0f);//train heat
         this.dataWatcher.addObject(17, bools!=null?bools.toInt():BitList.newInt());//booleans
@@ -397,6 +396,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
                             frontLinkedTransport = null;
                             frontLinkedID = null;
                             transport.updateWatchers = true;
+                            Consist.uncouple(this, transport);
                         }
                     }
                     //backLinkedTransport
@@ -413,6 +413,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
                             backLinkedTransport = null;
                             backLinkedID = null;
                             transport.updateWatchers = true;
+                            Consist.uncouple(this, transport);
                         }
                     }
                     return true;
@@ -488,8 +489,9 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
             seat.worldObj.removeEntity(seat);
         }
         //be sure the front and back links are removed in the case of this entity being removed from the world.
+        GenericRailTransport front = null, back = null;
         if (frontLinkedID != null){
-            GenericRailTransport front = ((GenericRailTransport)worldObj.getEntityByID(frontLinkedID));
+            front = ((GenericRailTransport)worldObj.getEntityByID(frontLinkedID));
             if(front != null && front.frontLinkedID != null && front.frontLinkedID == this.getEntityId()){
                 front.frontLinkedID = null;
                 front.frontLinkedTransport = null;
@@ -499,7 +501,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
             }
         }
         if (backLinkedID != null){
-            GenericRailTransport back = ((GenericRailTransport)worldObj.getEntityByID(backLinkedID));
+            back = ((GenericRailTransport)worldObj.getEntityByID(backLinkedID));
             if(back != null && back.frontLinkedID != null && back.frontLinkedID == this.getEntityId()){
                 back.frontLinkedID = null;
                 back.frontLinkedTransport = null;
@@ -508,6 +510,11 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
                 back.backLinkedTransport = null;
             }
         }
+        if (!worldObj.isRemote){
+            Consist.remove(this, front, back);
+            CollisionGrid.remove(this);
+            ChunkHandler.release(this);
+        }
 
     }
 
@@ -548,6 +555,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
     public void readSpawnData(ByteBuf additionalData) {
         owner = new UUID(additionalData.readLong(), additionalData.readLong());
         rotationYaw = additionalData.readFloat();
+        TankSync.readTanks(additionalData, this);
     }
     @Deprecated //todo: send this data over the datawatcher or other more reliable means
     /**sends the data to server from client*/
@@ -556,6 +564,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
         buffer.writeLong(owner.getMostSignificantBits());
         buffer.writeLong(owner.getLeastSignificantBits());
         buffer.writeFloat(rotationYaw);
+        TankSync.writeTanks(buffer, getTankInfo(null));
     }
     /**loads the entity's save file*/
     @Override
@@ -601,7 +610,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
             fluidTank= null;
         }
 
-        inventory = new ArrayList<>();
+        inventory = new TransportInventory();
         initInventorySlots();
 
         NBTTagCompound invTag;
@@ -682,10 +691,13 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
     public boolean hasDrag(){return true;}
 
     public void updatePosition(){
+        long sectionStart = TickProfiler.start(worldObj);
         frontBogie.minecartMove(this, hasDrag(), getBoolean(boolValues.BRAKE),
-                weightKg() * (frontBogie.isOnSlope?1.5f:1) * (backBogie.isOnSlope?2:1));
+                TrainPhysics.bogieWeight(weightKg(), frontBogie.isOnSlope, backBogie.isOnSlope));
         backBogie.minecartMove(this, hasDrag(), getBoolean(boolValues.BRAKE),
-                weightKg() * (frontBogie.isOnSlope?1.5f:1) * (backBogie.isOnSlope?2:1));
+                TrainPhysics.bogieWeight(weightKg(), frontBogie.isOnSlope, backBogie.isOnSlope));
+        TickProfiler.end(TickProfiler.Section.BOGIES, sectionStart);
+        sectionStart = TickProfiler.start(worldObj);
         motionX = frontVelocityX = frontBogie.motionX;
         motionZ = frontVelocityZ = frontBogie.motionZ;
         backVelocityX = backBogie.motionX;
@@ -703,7 +715,10 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
         //position this
         setPosition(vectorCache[5][0]+frontBogie.posX,vectorCache[5][1]+frontBogie.posY,vectorCache[5][2]+frontBogie.posZ);
         collisionHandler.position(posX, posY, posZ, rotationPitch, rotationYaw);
-
+        if(!worldObj.isRemote) {
+            CollisionGrid.update(this);
+        }
+        TickProfiler.end(TickProfiler.Section.POSITION, sectionStart);
     }
 
 
@@ -724,11 +739,15 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
      */
     @Override
     public void onUpdate() {
+        //the sections are only timed when the profiler is on, otherwise the times are 0 and ending them does nothing.
+        long updateStart = TickProfiler.start(worldObj), sectionStart;
         if (!worldObj.isRemote) {
             if (forceBackupTimer > 0) {
                 forceBackupTimer--;
             } else if (forceBackupTimer == 0) {
+                sectionStart = TickProfiler.start(worldObj);
                 ServerLogger.writeWagonToFolder(this);
+                TickProfiler.end(TickProfiler.Section.BACKUP, sectionStart);
                 forceBackupTimer--;
             }
         }
@@ -747,8 +766,11 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
             worldObj.removeEntity(this);
         }
 
-        if(this.chunkTicket == null) {
-            this.requestTicket();
+        //the first transport of the consist keeps the chunks loaded for all of it, tickets are requested as they are needed.
+        if(!worldObj.isRemote && ticksExisted%20==0 && getConsist().getTransports().size()>0 && getConsist().getTransports().get(0)==this) {
+            sectionStart = TickProfiler.start(worldObj);
+            ChunkHandler.update(this);
+            TickProfiler.end(TickProfiler.Section.CHUNKS, sectionStart);
         }
 
         //be sure bogies exist
@@ -787,12 +809,14 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
         if (frontBogie!=null && backBogie != null && (!getBoolean(boolValues.DERAILED) || ticksExisted==1)){
             //handle movement.
             if (!worldObj.isRemote) {
+                sectionStart = TickProfiler.start(worldObj);
                 if (frontLinkedID != null && worldObj.getEntityByID(frontLinkedID) instanceof GenericRailTransport) {
                     manageLinks((GenericRailTransport) worldObj.getEntityByID(frontLinkedID));
                 }
                 if (backLinkedID != null && worldObj.getEntityByID(backLinkedID) instanceof GenericRailTransport) {
                     manageLinks((GenericRailTransport) worldObj.getEntityByID(backLinkedID));
                 }
+                TickProfiler.end(TickProfiler.Section.LINKS, sectionStart);
             }
             updatePosition();
 
@@ -825,12 +849,15 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
         //be sure the owner entityID is currently loaded, this variable is dynamic so we don't save it to NBT.
         if (!worldObj.isRemote &&ticksExisted %10==0){
 
+            sectionStart = TickProfiler.start(worldObj);
             manageFuel();
+            TickProfiler.end(TickProfiler.Section.FUEL, sectionStart);
+            sectionStart = TickProfiler.start(worldObj);
 
 
             if (ownerName.equals("")) {
                 @Nullable
-                Entity player = CommonProxy.getEntityFromUuid(owner);
+                Entity player = EntityUuidIndex.getEntity(owner);
                 if (player instanceof EntityPlayer) {
                     if (!ownerName.equals(((EntityPlayer) player).getDisplayName())) {
                         ownerName = ((EntityPlayer) player).getDisplayName();
@@ -839,14 +866,16 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
                 }
             }
             //sync the linked transports with client, and on server, easier to use an ID than a UUID.
-            Entity linkedTransport = CommonProxy.getEntityFromUuid(frontLinkedTransport);
+            Entity linkedTransport = EntityUuidIndex.getEntity(worldObj, frontLinkedTransport);
             if (linkedTransport instanceof GenericRailTransport && (frontLinkedID == null || linkedTransport.getEntityId() != frontLinkedID)) {
                 frontLinkedID = linkedTransport.getEntityId();
+                Consist.couple(this, (GenericRailTransport) linkedTransport);
                 updateWatchers = true;
             }
-            linkedTransport = CommonProxy.getEntityFromUuid(backLinkedTransport);
+            linkedTransport = EntityUuidIndex.getEntity(worldObj, backLinkedTransport);
             if (linkedTransport instanceof GenericRailTransport && (backLinkedID == null || linkedTransport.getEntityId() != backLinkedID)) {
                 backLinkedID = linkedTransport.getEntityId();
+                Consist.couple(this, (GenericRailTransport) linkedTransport);
                 updateWatchers = true;
             }
 
@@ -856,34 +885,21 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
                 displayDerail = true;
             }
 
+            //the tanks are checked every time, since fuel management changes them directly, it only sends the ones that changed.
+            if(getTankCapacity()!=null) {
+                tankSync.update(this);
+            }
             if(updateWatchers){
-                if(getTankCapacity()!=null) {
-                    StringBuilder tanks = new StringBuilder();
-                    for (int i = 0; i < getTankCapacity().length; i++) {
-                        //todo: these should NEVER be null
-                        if (getTankInfo(null)[i] != null && getTankInfo(null)[i].fluid != null) {
-                            tanks.append(getTankInfo(null)[i].fluid.amount);
-                            tanks.append(",");
-                            tanks.append(getTankInfo(null)[i].fluid.getFluid().getName());
-                            tanks.append(";");
-                        } else {
-                            tanks.append(0);
-                            tanks.append(",");
-                            tanks.append(FluidRegistry.WATER.getName());
-                            tanks.append(";");
-                        }
-                    }
-
-                    this.dataWatcher.updateObject(20, tanks.toString());
-                }
                 this.dataWatcher.updateObject(23, ownerName);
                 this.dataWatcher.updateObject(17, bools.toInt());
                 this.dataWatcher.updateObject(21, frontLinkedID!=null?frontLinkedID:-1);
                 this.dataWatcher.updateObject(22, backLinkedID!=null?backLinkedID:-1);
             }
+            TickProfiler.end(TickProfiler.Section.SYNC, sectionStart);
         }
 
         //handle collisions
+        sectionStart = TickProfiler.start(worldObj);
         if (worldObj.isRemote){
             for (Entity e : collisionHandler.getCollidingPlayers(this)) {
                 double d0 = e.posX - this.posX;
@@ -969,45 +985,28 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
                 }
             }
         }
+        TickProfiler.end(TickProfiler.Section.COLLISION, sectionStart);
         //handle particles
         if (backBogie!=null && !isDead && worldObj.isRemote) {
             if (ClientProxy.EnableParticles || getParticles().size()>0) {
                 ParticleFX.updateParticleItterator(getParticles(), getBoolean(boolValues.RUNNING));
             }
         }
+        TickProfiler.end(TickProfiler.Section.TRANSPORT, updateStart, this);
     }
 
 
     /**
-     * iterates all the links to check if the stock has a train
+     * <h2>consist</h2>
+     * returns the consist this is part of, if it doesn't have one yet, it starts one with just this in it.
+     * the consist keeps the totals for weight and power, so they don't have to be recalculated from the links.
+     * @see Consist
      */
-    public void updateConsist(){
-        List<GenericRailTransport> transports = new ArrayList<>();
-        transports.add(this);
-
-        //check the front, then loop for every transport linked to it in opposite direction of this.
-        GenericRailTransport link = frontLinkedID==null?null:(GenericRailTransport) worldObj.getEntityByID(frontLinkedID);
-        while(link!=null && !transports.contains(link)){
-            transports.add(link);
-            link = link.frontLinkedID==null?null:(GenericRailTransport) worldObj.getEntityByID(link.frontLinkedID);
-        }
-        //do it again, but for the back one
-        link= backLinkedID==null?null:(GenericRailTransport) worldObj.getEntityByID(backLinkedID);
-        while(link!=null && !transports.contains(link)){
-            transports.add(link);
-            link = link.backLinkedID==null?null:(GenericRailTransport) worldObj.getEntityByID(link.backLinkedID);
-        }
-
-        //now tell everything in the list, including this, that there's a new list, and provide said list.
-        for(GenericRailTransport t : transports){
-            t.setValuesOnLinkUpdate(transports);
+    public Consist getConsist(){
+        if(consist == null){
+            new Consist(this);
         }
-    }
-
-
-    //todo: update needed info like weight and combined tractive effort based on values in this array
-    public void setValuesOnLinkUpdate(List<GenericRailTransport> consist){
-
+        return consist;
     }
 
     //used for trains and B-units
@@ -1225,12 +1224,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
     }
 
     public ItemStackSlot getSlotIndexByID(int id){
-        for(ItemStackSlot s : inventory){
-            if (s.getSlotID() == id){
-                return s;
-            }
-        }
-        return null;
+        return inventory==null?null:inventory.getSlotByID(id);
     }
 
     /**
@@ -1326,16 +1320,14 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
      * <h2>Add item to train inventory</h2>
      * custom function for adding items to the train's inventory.
      * similar to a container's TransferStackInSlot function, this will automatically sort an item into the inventory.
+     * stacks of the same item are filled first, then empty slots.
      * if there is no room in the inventory for the item, it will drop on the ground.
      */
     public void addItem(ItemStack item){
-        for(ItemStackSlot slot : inventory){
-            item = slot.mergeStack(item,inventory);
-            if (item == null){
-                return;
-            }
+        item = inventory.addItem(item);
+        if (item != null){
+            entityDropItem(item, item.stackSize);
         }
-        entityDropItem(item, item.stackSize);
     }
 
     /**
@@ -1347,12 +1339,7 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
         if (inventory == null){
             return 0;
         }
-        float i=0;
-        for (ItemStackSlot item : inventory){
-            if (item.getHasStack()){
-                i++;
-            }
-        }
+        float i=inventory.getUsedSlots();
         return i>0?MathHelper.floor_double(((i / getSizeInventory()) *indexes)+0.5):0;
     }
 
@@ -1557,21 +1544,20 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
             }
             fluidTank = tanks;
         }
-        //if its server, remake when null, otherwise remake if changed, this is called every frame when a GUI is up and/or if the model needs to render it so cache VERY important.
-        if(worldObj!=null && worldObj.isRemote && fluidCache.equals("") || !fluidCache.equals(dataWatcher.getWatchableObjectString(20))){
+        //on client the tanks are set by the sync as it's received, so there's nothing to parse here, this is called every frame when a GUI is up and/or if the model needs to render it.
+        return fluidTank;
+    }
 
-            //actually put in the data
-            fluidCache = dataWatcher.getWatchableObjectString(20);
-            if (fluidCache.length()>3) {
-                String[] fluids = fluidCache.split(";");
-                for (int i = 0; i < getTankCapacity().length; i++) {
-                    String[] data = fluids[i].split(",");
-                    fluidTank[i] = new FluidTankInfo(new FluidStack(FluidRegistry.getFluid(data[1]), Integer.parseInt(data[0])), getTankCapacity()[i]);
-                }
-            }
+    /**
+     * sets a tank from the data sent by
+     * @see TankSync
+     * tanks past the capacity of this transport are ignored.
+     */
+    public void setSyncedTank(int index, Fluid fluid, int amount){
+        FluidTankInfo[] tanks = getTankInfo(null);
+        if(index<tanks.length) {
+            tanks[index] = new FluidTankInfo(new FluidStack(fluid, amount), getTankCapacity()[index]);
         }
-
-        return fluidTank;
     }
 
     /*
@@ -1585,14 +1571,6 @@ public class GenericRailTransport extends EntityMinecart implements IEntityAddit
     /**sets the chunk ticket of this entity to the one provided.*/
     public void setChunkTicket(ForgeChunkManager.Ticket ticket){chunkTicket = ticket;}
 
-    /**attempts to get a ticket for chunkloading, sets the ticket's values*/
-    private void requestTicket() {
-        ForgeChunkManager.Ticket ticket = ForgeChunkManager.requestTicket(TrainsInMotion.instance, worldObj , ForgeChunkManager.Type.ENTITY);
-        if(ticket != null) {
-            ticket.bindEntity(this);
-            setChunkTicket(ticket);
-        }
-    }
 
     /*
      * <h2>Inherited variables</h2>
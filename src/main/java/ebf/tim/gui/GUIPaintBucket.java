@@ -160,6 +160,7 @@ public class GUIPaintBucket extends GuiScreen {
         //get skin from page
         ebf.tim.api.skin s = entity.getSkinList(Minecraft.getMinecraft().thePlayer, true).get(key);
         //bind skin to render
+        TextureManager.beginRender();
         TextureManager.bindTexture(s.getTexture(0), s.colorsFrom, s.colorsTo, null, null);
 
         //render models with offsets
@@ -175,6 +176,7 @@ public class GUIPaintBucket extends GuiScreen {
         }
 
         if(entity.bogies()==null){
+            TextureManager.endRender();
             return;
         }
         //render bogies with textures and offsets
@@ -199,5 +201,6 @@ public class GUIPaintBucket extends GuiScreen {
             }
             GL11.glPopMatrix();
         }
+        TextureManager.endRender();
     }
 }
\ No newline at end of file
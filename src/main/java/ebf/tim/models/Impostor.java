@@ -0,0 +1,204 @@
+package ebf.tim.models;
+
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import ebf.tim.api.skin;
+import ebf.tim.entities.GenericRailTransport;
+import fexcraft.tmt.slim.ModelBase;
+import fexcraft.tmt.slim.TextureManager;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.OpenGlHelper;
+import net.minecraft.client.shader.Framebuffer;
+import org.lwjgl.opengl.GL11;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <h1>Impostors</h1>
+ * past the ImpostorDistance transports are drawn as a single textured quad that turns to face the camera.
+ * the texture is a snapshot of the far level of detail from {@link #VIEWS} sides, rendered once into a framebuffer,
+ *     the side that's drawn is the one closest to the angle the transport is seen from.
+ * a snapshot is made the first time it's needed for each transport class, skin and recolor, and kept until the world unloads,
+ *     when there's more than {@link #MAX_SNAPSHOTS} the least recently used is deleted.
+ * framebuffers need the GL support and the vanilla FBO setting, without them transports stay at the far level of detail.
+ * @see RenderEntity
+ * @author Eternal Blue Flame
+ */
+@SideOnly(Side.CLIENT)
+public class Impostor {
+
+    /**the number of sides each transport is snapshot from, evenly spaced around it.*/
+    public static final int VIEWS = 8;
+    /**the width and height in pixels of the snapshot of each side.*/
+    public static final int TILE = 128;
+    /**the most snapshots kept at once, each is a 1024x128 texture with a depth buffer.*/
+    public static final int MAX_SNAPSHOTS = 32;
+
+    /**the snapshots, in the order they were last used, mapped by the transport class, skin and recolor.*/
+    private static final Map<String, Impostor> snapshots = new LinkedHashMap<String, Impostor>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Impostor> eldest){
+            if(size() > MAX_SNAPSHOTS){
+                eldest.getValue().framebuffer.deleteFramebuffer();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final Framebuffer framebuffer;
+    /**the width and height in blocks that each side covers, the transport is in the middle of it.*/
+    private final float size;
+
+    private Impostor(Framebuffer framebuffer, float size){
+        this.framebuffer = framebuffer;
+        this.size = size;
+    }
+
+    /**@return true if impostors can be drawn, if not the far level of detail is used instead.*/
+    public static boolean isSupported(){
+        return OpenGlHelper.isFramebufferEnabled();
+    }
+
+    /**
+     * <h2>render</h2>
+     * draws the impostor of the transport, making the snapshot first if there isn't one.
+     * the modelview has to be at the render position of the transport, before it's rotated.
+     * @param yaw the yaw the transport is rendered with.
+     * @param x the x position of the transport relative to the camera.
+     * @param z the z position of the transport relative to the camera.
+     */
+    public static void render(GenericRailTransport entity, skin s, float yaw, double x, double z){
+        String key = entity.getClass().getName() + "|" + s.modid + ":" + s.name + "|" + entity.colorsFrom + entity.colorsTo;
+        Impostor impostor = snapshots.get(key);
+        if(impostor == null){
+            impostor = snapshot(entity, s);
+            snapshots.put(key, impostor);
+        }
+
+        int view = getView(yaw, x, z);
+        float half = impostor.size * 0.5f, u = view / (float) VIEWS, u2 = (view + 1) / (float) VIEWS;
+        GL11.glPushAttrib(GL11.GL_ENABLE_BIT);
+        GL11.glDisable(GL11.GL_LIGHTING);
+        TextureManager.adjustLightFixture(entity.worldObj, (int) entity.posX, (int) entity.posY + 1, (int) entity.posZ);
+        GL11.glColor4f(1, 1, 1, 1);
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, impostor.framebuffer.framebufferTexture);
+        GL11.glPushMatrix();
+        //turn the quad to face the camera, it only turns around the vertical, so it stays upright like the transport.
+        GL11.glRotatef((float) Math.toDegrees(Math.atan2(-x, -z)), 0, 1, 0);
+        //the framebuffer texture starts at the bottom, so the bottom of the quad is the start of the texture.
+        GL11.glBegin(GL11.GL_QUADS);
+        GL11.glTexCoord2f(u, 0);
+        GL11.glVertex3f(-half, -half, 0);
+        GL11.glTexCoord2f(u2, 0);
+        GL11.glVertex3f(half, -half, 0);
+        GL11.glTexCoord2f(u2, 1);
+        GL11.glVertex3f(half, half, 0);
+        GL11.glTexCoord2f(u, 1);
+        GL11.glVertex3f(-half, half, 0);
+        GL11.glEnd();
+        GL11.glPopMatrix();
+        GL11.glPopAttrib();
+    }
+
+    /**
+     * <h2>view</h2>
+     * the snapshots are taken looking down the Z axis, the way GL looks, which is a camera yaw of 180.
+     * the transport seen from the camera at the angle looks the same as it would with it's yaw turned by the difference.
+     * @return the side of the snapshot that's closest to how the transport is seen from the camera.
+     */
+    static int getView(float yaw, double x, double z){
+        double cameraYaw = Math.toDegrees(Math.atan2(-x, z));
+        int view = (int) Math.round((yaw - cameraYaw + 180) / (360.0 / VIEWS)) % VIEWS;
+        return view < 0 ? view + VIEWS : view;
+    }
+
+    /**
+     * <h2>snapshot</h2>
+     * renders the far level of detail of the transport from every side into a new framebuffer, one side after the other.
+     * the lighting is off and the lightmap is full bright, so the snapshot is just the skin, the light is added when the quad is drawn.
+     */
+    private static Impostor snapshot(GenericRailTransport entity, skin s){
+        float[] hitbox = entity.getHitboxSize();
+        float size = Math.max(hitbox[0], hitbox[1]) * 2 + 2;
+        Framebuffer framebuffer = new Framebuffer(TILE * VIEWS, TILE, true);
+        framebuffer.setFramebufferFilter(GL11.GL_LINEAR);
+        framebuffer.setFramebufferColor(0, 0, 0, 0);
+        framebuffer.framebufferClear();
+
+        float lightX = OpenGlHelper.lastBrightnessX, lightY = OpenGlHelper.lastBrightnessY;
+        GL11.glPushAttrib(GL11.GL_ENABLE_BIT | GL11.GL_VIEWPORT_BIT | GL11.GL_COLOR_BUFFER_BIT);
+        GL11.glDisable(GL11.GL_LIGHTING);
+        GL11.glDisable(GL11.GL_FOG);
+        GL11.glDisable(GL11.GL_BLEND);
+        GL11.glEnable(GL11.GL_ALPHA_TEST);
+        GL11.glEnable(GL11.GL_DEPTH_TEST);
+        OpenGlHelper.setLightmapTextureCoords(OpenGlHelper.lightmapTexUnit, 240, 240);
+        GL11.glColor4f(1, 1, 1, 1);
+        framebuffer.bindFramebuffer(false);
+
+        GL11.glMatrixMode(GL11.GL_PROJECTION);
+        GL11.glPushMatrix();
+        GL11.glLoadIdentity();
+        GL11.glOrtho(-size * 0.5f, size * 0.5f, -size * 0.5f, size * 0.5f, -size, size);
+        GL11.glMatrixMode(GL11.GL_MODELVIEW);
+        GL11.glPushMatrix();
+        ModelBase.renderLOD = ModelBase.LOD_FAR;
+        for(int view=0; view<VIEWS; view++){
+            GL11.glViewport(view * TILE, 0, TILE, TILE);
+            GL11.glLoadIdentity();
+            //the same turns as the entity render, with the yaw of the side.
+            GL11.glRotatef(-view * (360f / VIEWS) - 180f, 0.0f, 1.0f, 0.0f);
+            GL11.glRotatef(-180f, 0.0f, 0.0f, 1.0f);
+            renderModels(entity, s);
+        }
+        ModelBase.renderLOD = ModelBase.LOD_FULL;
+        GL11.glPopMatrix();
+        GL11.glMatrixMode(GL11.GL_PROJECTION);
+        GL11.glPopMatrix();
+        GL11.glMatrixMode(GL11.GL_MODELVIEW);
+
+        framebuffer.unbindFramebuffer();
+        Minecraft.getMinecraft().getFramebuffer().bindFramebuffer(true);
+        OpenGlHelper.setLightmapTextureCoords(OpenGlHelper.lightmapTexUnit, lightX, lightY);
+        GL11.glPopAttrib();
+        return new Impostor(framebuffer, size);
+    }
+
+    /**renders the models and bogies of the transport the same way the entity render does, without the cargo, and with the bogies straight.*/
+    private static void renderModels(GenericRailTransport entity, skin s){
+        TextureManager.beginRender();
+        for(int i=0; i< entity.renderData.modelList.length; i++) {
+            TextureManager.bindTexture(s.getTexture(i), s.colorsFrom, s.colorsTo, entity.colorsFrom, entity.colorsTo);
+            GL11.glPushMatrix();
+            if(entity.modelOffsets()!=null && entity.modelOffsets().length>i) {
+                GL11.glTranslated(entity.modelOffsets()[i][0],entity.modelOffsets()[i][1],entity.modelOffsets()[i][2]);
+            }
+            entity.renderData.modelList[i].render(entity, 0,0,0,0,0, entity.getRenderScale());
+            GL11.glPopMatrix();
+        }
+        if (entity.renderData.bogies != null) {
+            int i=0;
+            for(Bogie b : entity.renderData.bogies) {
+                if (s.getBogieSkin(i) != null) {
+                    TextureManager.bindTexture(s.getBogieSkin(i), s.colorsFrom, s.colorsTo, entity.colorsFrom, entity.colorsTo);
+                }
+                GL11.glPushMatrix();
+                GL11.glTranslated(-b.offset[0], -b.offset[1], -b.offset[2]);
+                b.bogieModel.render(null, 0, 0, 0, 0, 0, entity.getRenderScale());
+                GL11.glPopMatrix();
+                i++;
+            }
+        }
+        TextureManager.endRender();
+    }
+
+    /**deletes every snapshot, called when the world unloads.*/
+    public static void clear(){
+        for(Impostor impostor : snapshots.values()){
+            impostor.framebuffer.deleteFramebuffer();
+        }
+        snapshots.clear();
+    }
+}
@@ -2,89 +2,140 @@ package ebf.tim.models;
 
 import ebf.tim.TrainsInMotion;
 import ebf.tim.entities.GenericRailTransport;
-import ebf.tim.utility.DebugUtil;
+import ebf.tim.utility.ClientProxy;
 import ebf.tim.utility.RailUtility;
+import fexcraft.tmt.slim.BakedMesh;
+import fexcraft.tmt.slim.MeshBaker;
 import fexcraft.tmt.slim.ModelBase;
 import fexcraft.tmt.slim.ModelRendererTurbo;
 import fexcraft.tmt.slim.TextureManager;
 import net.minecraft.client.Minecraft;
-import net.minecraft.util.AxisAlignedBB;
+import net.minecraft.util.MathHelper;
 import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.World;
 import org.lwjgl.opengl.GL11;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
-import static fexcraft.tmt.slim.ModelRendererTurbo.MR_BOTTOM;
-import static fexcraft.tmt.slim.ModelRendererTurbo.MR_TOP;
-import static fexcraft.tmt.slim.TextureManager.b;
 import static org.lwjgl.opengl.GL11.*;
 
 /**
  * <h1>Particle effect</h1>
  * custom particle, fully separate from the vanilla stuff, renders in 3d and still runs significantly better than vanilla.
+ *
+ * each instance is an emitter, smoke and steam keep all their particles in a fixed size pool of primitive arrays,
+ *     rather than an object for every particle, sparks are a pool of one, and lamps don't have a pool at all.
+ * collisions are a probe of the block the particle is moving into, and only when it crosses into a new block,
+ *     rather than asking the world for every bounding box around every particle every tick.
+ * the number of particles alive at once is limited across every transport by
+ * @see ClientProxy#particleBudget
+ * lamp meshes are shared by every transport with the same lamp shape, so anything that's different for each transport,
+ *     like the height of sphere lamps, is a translate when they render, and the meshes are freed when the world unloads.
  * TODO: add support for 2d particles.
  * @author Eternal Blue Flame
  */
 public class ParticleFX {
-    /*the number of ticks this particle will survive till it needs to reset position.*/
-    private int lifespan =-1;
-    /*returns if the particle should render or not*/
-    public boolean shouldRender = false;
-    /*the ticks the particle has existed, float is used so render can divide it into decimals*/
-    public Float ticksExisted=null;
-    /*the offset to tint the particle color*/
-    private int colorTint;
-    /*the bounding box of the particle to use for rendering and collision, if it's null we render it as a static particle*/
-    private final AxisAlignedBB boundingBox;
-    /*the motion of the particle*/
-    private float motionX=0, motionY=0, motionZ=0;
     /*a random to use for variable generating*/
     private static final Random rand = new Random();
-    /*the list of objects in the hitbox*/
-    private List list = new ArrayList<>();
-    /*the cached motion of the particle*/
-    private float oldX, oldY, oldZ;
+
+    /*the world tick the budget was last reset on, and the number of particles that are alive so far that tick.*/
+    private static long budgetTick =-1;
+    private static int budgetUsed =0;
+    /*the most particles that can be alive at once, set from the config.*/
+    private static int budget =4000;
+
+    /*the lamp meshes, mapped by the shape and scale they were made with, so every transport with the same lamp shares it.*/
+    private static final Map<String, BakedMesh> lampMeshes = new HashMap<>();
+    /*the mesh of the particle box, made on the first render.*/
+    private static BakedMesh particleMesh = null;
+    /*incremented every time the meshes are freed, so the emitters know the one they kept is gone.*/
+    private static int meshGeneration =0;
+
+    /**what the particles collide with, and the time the budget is counted by.*/
+    public interface Blocks {
+        boolean blocksMovement(World world, int x, int y, int z);
+        long getTotalWorldTime(World world);
+    }
+
+    /**the blocks that are used, the ones in the world unless it's been replaced, the benchmarks have no world.*/
+    public static Blocks blocks = new Blocks() {
+        @Override
+        public boolean blocksMovement(World world, int x, int y, int z) {
+            return world.getBlock(x, y, z).getMaterial().blocksMovement();
+        }
+
+        @Override
+        public long getTotalWorldTime(World world) {
+            return world.getTotalWorldTime();
+        }
+    };
+
+    /*the number of particles in the pool*/
+    private final int capacity;
+    /*the position of each particle, this is the lowest corner of it, the same as a bounding box min.*/
+    private final double[] posX, posY, posZ;
+    /*the motion of each particle*/
+    private final float[] motionX, motionY, motionZ;
+    /*the ticks each particle has existed, float is used so render can divide it into decimals*/
+    private final float[] ticksExisted;
+    /*the number of ticks each particle will survive till it needs to reset position.*/
+    private final int[] lifespan;
+    /*the offset to tint the color of each particle*/
+    private final int[] colorTint;
+    /*if each particle is alive, and should render*/
+    private final boolean[] alive;
+    /*the size of the particles, they are a cube this size.*/
+    private final float size;
+
+    /*returns if the lamp should render or not*/
+    public boolean shouldRender = false;
     /*the host entity*/
-    private GenericRailTransport host;
+    private final GenericRailTransport host;
     /*the position offset to move based on the transport's rotation*/
-    private float[] offset, pos;
-    private int particleID=0, particleType=0;
+    private final float[] offset;
+    /*where new particles spawn this tick, relative to the host, null until the first spawn of the tick.*/
+    private float[] spawnPos =null;
+    private final int particleID, particleType;
+    /*the lamp mesh, and the scale and mesh generation it was got with.*/
+    private BakedMesh lampMesh =null;
+    private float lampScale =0;
+    private int lampGeneration =-1;
+    /*the height sphere lamps are drawn at, it's the height of the transport when the lamp was made.*/
+    private final float lampY;
 
     /**
-     * Initialize the particle, basically for spawning it
+     * Initialize the emitter, basically for spawning it
+     * @param capacity the number of particles in the pool, lamps ignore this.
      */
-    public ParticleFX(int id, int type, GenericRailTransport transport, float offsetX, float offsetY, float offsetZ, float rotationX, float rotationY, float rotationZ) {
+    public ParticleFX(int id, int type, GenericRailTransport transport, float offsetX, float offsetY, float offsetZ, float rotationX, float rotationY, float rotationZ, int capacity) {
         host = transport;
         particleID=id;
         particleType=type;
-        this.offset = new float[]{offsetX, type==4?(float)transport.posY:offsetY, offsetZ, rotationX, rotationY, rotationZ};
-        pos = RailUtility.rotatePointF(offset[0]*0.0625f,offset[1]*-0.0625f,offset[2]*0.0625f, transport.rotationPitch, transport.rotationYaw, 0);
-        pos= new float[]{pos[0],pos[1],pos[2]};
-
-        switch (particleType) {
-            case 0:case 1:{//smoke, steam
-                motionX = (rand.nextInt(40) - 20) * 0.001f;
-                motionY = particleType==0?0.15f:0.0005f;
-                motionZ = (rand.nextInt(40) - 20) * 0.001f;
-
-                this.boundingBox = AxisAlignedBB.getBoundingBox(pos[0] + transport.posX - 0.1, pos[1] + transport.posY - 0.1, pos[2] + transport.posZ - 0.1, pos[0] + transport.posX + 0.1, pos[1] + transport.posY + 0.1, pos[2] + transport.posZ + 0.1);
-                break;
-            }case 2:{//sparks
-                motionX = (rand.nextInt(40) - 20) * 0.0005f;
-                motionY = 0.001f;
-                motionZ = (rand.nextInt(40) - 20) * 0.0005f;
-
-
-                this.boundingBox = AxisAlignedBB.getBoundingBox(pos[0] + transport.posX - 0.05, pos[1] + transport.posY - 0.05, pos[2] + transport.posZ - 0.05, pos[0] + transport.posX + 0.05, pos[1] + transport.posY + 0.05, pos[2] + transport.posZ + 0.05);
-                break;
-            }
-            case 3:case 4:case 5:case 6:case 7: default:{
-                motionX = 1;
-                this.boundingBox = null;
-                break;
-            }
+        //the sphere lamp height is left out of the offset, so it's not part of the shared mesh.
+        this.offset = new float[]{offsetX, type==4?0:offsetY, offsetZ, rotationX, rotationY, rotationZ};
+        lampY = type==4?(float)transport.posY:0;
+
+        this.capacity = type<=2?capacity:0;
+        size = type==2?0.1f:0.2f;
+        posX = new double[this.capacity];
+        posY = new double[this.capacity];
+        posZ = new double[this.capacity];
+        motionX = new float[this.capacity];
+        motionY = new float[this.capacity];
+        motionZ = new float[this.capacity];
+        ticksExisted = new float[this.capacity];
+        lifespan = new int[this.capacity];
+        colorTint = new int[this.capacity];
+        alive = new boolean[this.capacity];
+        for (int i=0; i<this.capacity; i++){
+            //stagger the particles so they don't all spawn on the same tick.
+            ticksExisted[i] = -i*(150f/this.capacity);
+            lifespan[i] = -1;
         }
     }
 
@@ -93,20 +144,16 @@ public class ParticleFX {
         int[] data = parseData(boxName, host.getClass());
         List<ParticleFX> list = new ArrayList<>();
         if(boxName.contains("smoke") || boxName.contains("steam")) {
-            for (int i = 0; i < host.getParticleData(data[0])[0]*20; i++) {
-                list.add(new ParticleFX(data[0], data[1], host, offsetX, offsetY, offsetZ, rotationX, rotationY, rotationZ));
-            }
+            list.add(new ParticleFX(data[0], data[1], host, offsetX, offsetY, offsetZ, rotationX, rotationY, rotationZ, host.getParticleData(data[0])[0]*20));
         } else {
-            list.add(new ParticleFX(data[0], data[1], host,offsetX, offsetY, offsetZ, rotationX, rotationY, rotationZ));
+            list.add(new ParticleFX(data[0], data[1], host,offsetX, offsetY, offsetZ, rotationX, rotationY, rotationZ, 1));
         }
         return list;
     }
 
     public static void updateParticleItterator(List<ParticleFX> particles, boolean hostIsRunning){
-        int index=0;
         for (ParticleFX p : particles){
-            p.onUpdate(hostIsRunning, index*(150f/particles.size()));
-            index++;
+            p.onUpdate(hostIsRunning);
         }
     }
 
@@ -136,67 +183,53 @@ public class ParticleFX {
 
     /**
      * <h2>movement calculations</h2>
-     * call this from the host's onUpdate to update the position of the particle.
+     * call this from the host's onUpdate to update the position of the particles.
      */
-    public void onUpdate(boolean hostIsRunning, float count){
-
-        if(ticksExisted==null){
-            ticksExisted = -count;
-        } else if (ticksExisted<=1){
-            ticksExisted++;
+    public void onUpdate(boolean hostIsRunning){
+        if (particleType>=3){//lamps
+            //todo mars, siren and glare lamp stuff, they don't render yet.
+            shouldRender=particleType<=4 && host.getBoolean(GenericRailTransport.boolValues.LAMP);
             return;
         }
 
-
-        if (particleType==3 || particleType==4 || particleType==5){//lamps
-            shouldRender=host.getBoolean(GenericRailTransport.boolValues.LAMP);
-            pos = RailUtility.rotatePointF(offset[0],offset[1],offset[2], 0, 0, 0);
-            if(particleType==5){
-                //todo mars lamp stuff
+        //the budget is shared by every transport, so it starts over on each tick of the world.
+        if(blocks.getTotalWorldTime(host.worldObj)!=budgetTick){
+            budgetTick = blocks.getTotalWorldTime(host.worldObj);
+            budgetUsed =0;
+        }
+        spawnPos =null;
+        for (int i=0; i<capacity; i++){
+            onUpdate(i, hostIsRunning);
+            if(alive[i]){
+                budgetUsed++;
             }
+        }
+    }
+
+    /**updates a single particle in the pool*/
+    private void onUpdate(int i, boolean hostIsRunning){
+        if (ticksExisted[i]<=1){
+            ticksExisted[i]++;
             return;
-        } else if(particleType==2 && this.ticksExisted > this.lifespan){//wheel sparks
-            if(host.vectorCache[1][1]>0.005){
-                colorTint = (rand.nextInt(75) - 30);
-                lifespan = rand.nextInt(80) +140;
-                ticksExisted =0f;
-                //recalculating it throws away the rotation value, but that's only used for the cone lamp, which doesn't even run this, so we don't need it anyway.
-                pos = RailUtility.rotatePointF(offset[0]*0.0625f,offset[1]*-0.0625f,offset[2]*0.0625f, host.rotationPitch, host.rotationYaw, 0);
-                this.boundingBox.setBounds(host.posX+pos[0] -0.05, host.posY+pos[1] -0.05, host.posZ+pos[2] -0.05, host.posX+pos[0] +0.05,  host.posY+pos[1] +0.05, host.posZ+pos[2] +0.05);
-                motionX = (rand.nextInt(40) - 20) * 0.001f;
-                motionY = rand.nextInt(15)*-0.003f;
-                motionZ = (rand.nextInt(40) - 20) * 0.001f;
-                shouldRender = true;
-            }
+        }
 
-        }else if (hostIsRunning && this.ticksExisted > this.lifespan) {//smoke and steam
+        if(ticksExisted[i] > lifespan[i]){
             //if the lifespan is out we reset the information, as if we just spawned a new particle.
-            colorTint = (rand.nextInt(75) - 30);
-            lifespan = rand.nextInt(80) +140;
-            ticksExisted =0f;
-            //recalculating it throws away the rotation value, but that's only used for the cone lamp, which doesn't even run this, so we don't need it anyway.
-            pos = RailUtility.rotatePointF(offset[0]*0.0625f,offset[1]*-0.0625f,offset[2]*0.0625f, host.rotationPitch, host.rotationYaw, 0);
-            this.boundingBox.setBounds(host.posX+pos[0] -0.1, host.posY+pos[1] -0.1, host.posZ+pos[2] -0.1, host.posX+pos[0] +0.1,  host.posY+pos[1] +0.1, host.posZ+pos[2] +0.1);
-            motionX = (rand.nextInt(40) - 20) * 0.001f;
-            if(particleType==0) {
-                motionY = rand.nextInt(15)*0.003f;
-            } else if (particleType==1){
-                motionY = rand.nextInt(15)*0.00005f;
+            if((particleType==2?host.vectorCache[1][1]>0.005:hostIsRunning) && budgetUsed<budget){
+                spawn(i);
+            } else {
+                //if the transport isn't running, or there's no room for more particles, this one stops rendering till it can respawn.
+                alive[i] = false;
+                return;
             }
-            motionZ = (rand.nextInt(40) - 20) * 0.001f;
-            shouldRender = true;
-        } else if (this.ticksExisted > this.lifespan) {//smoke and steam while train is off
-            //if the transport isn't running and this has finished it's movement, set it' position to the transport and set that it shouldn't render.
-            this.boundingBox.setBounds(host.posX, host.posY, host.posZ, host.posX,  host.posY, host.posZ);
-            shouldRender = false;
-            return;
         }
 
 
         if(particleID==5){//sparks skip physics calculations
-            boundingBox.offset(motionX,motionY,motionZ);
-            ticksExisted++;
-
+            posX[i]+=motionX[i];
+            posY[i]+=motionY[i];
+            posZ[i]+=motionZ[i];
+            ticksExisted[i]++;
             return;
         }
 
@@ -205,106 +238,116 @@ public class ParticleFX {
         */
 
         //set the old motion values so we can compare them later.
-        oldX = motionX;
-        oldY = motionY;
-        oldZ = motionZ;
-        //instance a bounding box variable now so we won't have to cast as much later.
-        AxisAlignedBB box;
-
-        //todo: should be able to just check movement and replicate bounding box functions without bounding box, use pos for the temp
-        list = host.worldObj.getCollidingBoundingBoxes(host, this.boundingBox.addCoord(motionX, motionY, motionZ));
-        //iterate the list and check for collisions
-        for (Object obj : list) {
-            box = ((AxisAlignedBB) obj);
-            if (motionY <0.001 || motionY >-0.001) {
-                motionY = (float) box.calculateYOffset(this.boundingBox, motionY);
-            }
-            if (motionX <0.0001 || motionX >-0.0001) {
-                motionX = (float) box.calculateXOffset(this.boundingBox, motionX);
-            }
-            if (motionZ <0.0001 || motionZ >-0.0001) {
-                motionZ = (float) box.calculateZOffset(this.boundingBox, motionZ);
-            }
-        }
+        float oldX = motionX[i], oldY = motionY[i], oldZ = motionZ[i];
 
-        //check for collisions on the Y vector and apply movement accordingly, also always keep it attempting to float up.
-        if (motionY <0.001 || motionY >-0.001) {
-            this.boundingBox.offset(0.0D, motionY, 0.0D);
+        //stop the motion at the face of any block the particle would move into.
+        motionY[i] = clip(i, 1, motionY[i]);
+        motionX[i] = clip(i, 0, motionX[i]);
+        motionZ[i] = clip(i, 2, motionZ[i]);
 
-            if (oldY != motionY) {
-                motionZ *=1.5d; motionZ +=rand.nextBoolean()?oldY:rand.nextBoolean()?0:-oldY;
-                motionX *=1.5d; motionX +=rand.nextBoolean()?oldY:rand.nextBoolean()?0:-oldY;
-                motionY = oldY * -0.4f;
-            }
-            if (motionY<0.005){
-                motionY += 0.00075;
-            }
-        }else {
-            motionY += 0.00005;
+        //check for collisions on the Y vector and apply movement accordingly, also always keep it attempting to float up.
+        posY[i]+=motionY[i];
+        if (oldY != motionY[i]) {
+            motionZ[i] *=1.5d; motionZ[i] +=rand.nextBoolean()?oldY:rand.nextBoolean()?0:-oldY;
+            motionX[i] *=1.5d; motionX[i] +=rand.nextBoolean()?oldY:rand.nextBoolean()?0:-oldY;
+            motionY[i] = oldY * -0.4f;
+        }
+        if (motionY[i]<0.005){
+            motionY[i] += 0.00075;
         }
 
         //check for collisions on the x axis.
-        if (motionX <0.0001 || motionX >-0.0001) {
-            this.boundingBox.offset(motionX, 0.0D, 0.0D);
-            if (oldX != motionX) {
-                motionX = this.motionX*0.75f;
-            }
-            motionX *=0.975f;
+        posX[i]+=motionX[i];
+        if (oldX != motionX[i]) {
+            motionX[i] *=0.75f;
         }
+        motionX[i] *=0.975f;
 
         //check for collisions on the Z axis.
-        if (motionZ <0.0001 || motionZ >-0.0001) {
-            this.boundingBox.offset(0.0D, 0.0D, motionZ);
-            if (oldZ != motionZ) {
-                motionZ = this.motionZ*0.75f;
-            }
-            motionZ *=0.975f;
+        posZ[i]+=motionZ[i];
+        if (oldZ != motionZ[i]) {
+            motionZ[i] *=0.75f;
+        }
+        motionZ[i] *=0.975f;
+
+        ticksExisted[i]++;
+    }
+
+    /**resets a particle to the emitter, as if it was just spawned*/
+    private void spawn(int i){
+        //recalculating it throws away the rotation value, but that's only used for the cone lamp, which doesn't even run this, so we don't need it anyway.
+        if(spawnPos==null) {
+            spawnPos = RailUtility.rotatePointF(offset[0] * 0.0625f, offset[1] * -0.0625f, offset[2] * 0.0625f, host.rotationPitch, host.rotationYaw, 0);
+        }
+        colorTint[i] = (rand.nextInt(75) - 30);
+        lifespan[i] = rand.nextInt(80) +140;
+        ticksExisted[i] =0f;
+        posX[i] = host.posX+spawnPos[0]-(size*0.5f);
+        posY[i] = host.posY+spawnPos[1]-(size*0.5f);
+        posZ[i] = host.posZ+spawnPos[2]-(size*0.5f);
+        motionX[i] = (rand.nextInt(40) - 20) * 0.001f;
+        if(particleType==0) {
+            motionY[i] = rand.nextInt(15)*0.003f;
+        } else if (particleType==1){
+            motionY[i] = rand.nextInt(15)*0.00005f;
+        } else {
+            motionY[i] = rand.nextInt(15)*-0.003f;
         }
+        motionZ[i] = (rand.nextInt(40) - 20) * 0.001f;
+        alive[i] = true;
+    }
 
-        ticksExisted++;
+    /**
+     * <h2>block probe</h2>
+     * clips the motion on an axis so the particle stops at the face of a solid block, 0 is X, 1 is Y, 2 is Z.
+     * the world is only checked when the leading face of the particle crosses into another block, which for slow moving smoke is rarely.
+     */
+    private float clip(int i, int axis, float motion){
+        if(motion==0){
+            return 0;
+        }
+        double min = axis==0?posX[i]:axis==1?posY[i]:posZ[i];
+        double edge = motion>0?min+size:min;
+        int from = MathHelper.floor_double(edge), to = MathHelper.floor_double(edge+motion);
+        if(from==to){
+            return motion;
+        }
+        //the other axis are checked from the center of the particle.
+        if(!blocks.blocksMovement(host.worldObj,
+                axis==0?to:MathHelper.floor_double(posX[i]+size*0.5f),
+                axis==1?to:MathHelper.floor_double(posY[i]+size*0.5f),
+                axis==2?to:MathHelper.floor_double(posZ[i]+size*0.5f))){
+            return motion;
+        }
+        return (float)(motion>0?to-edge:from-edge);
     }
 
     /**
      * <h2>Render particle</h2>
-     * actually renders the particle, unless it's on tick 0, we skip rendering that tick since it won't have a motion yet.
-     * @param entity the particle variable to render
+     * actually renders the particles, unless they're on tick 0, we skip rendering that tick since it won't have a motion yet.
+     * @param entity the emitter to render
      * @param x the x position of the renderer
      * @param y the y position of the renderer
      * @param z the z position of the renderer
      */
     public static void doRender(ParticleFX entity, double x, double y, double z, float scale, float yaw) {
-        if(!entity.shouldRender || entity.ticksExisted==null || entity.ticksExisted<1
-                || entity.host.getParticleData(entity.particleID)[1]==0){
+        int[] data = entity.host.getParticleData(entity.particleID);
+        if(data[1]==0 || (entity.particleType>=3 && !entity.shouldRender)){
             return;
         }
 
-        GL11.glPushMatrix();
-
-        float size = entity.host.getParticleData(entity.particleID)[1]/100f;
+        float size = data[1]/100f;
         if (entity.particleType==3) {//cone lamps
-            GL11.glColor4f(((entity.host.getParticleData(entity.particleID)[2] >> 16 & 0xFF)-entity.colorTint)* 0.00392156863f,
-                    ((entity.host.getParticleData(entity.particleID)[2] >> 8 & 0xFF)-entity.colorTint)* 0.00392156863f,
-                    ((entity.host.getParticleData(entity.particleID)[2] & 0xFF)-entity.colorTint)* 0.00392156863f,
+            GL11.glPushMatrix();
+            GL11.glColor4f(((data[2] >> 16 & 0xFF))* 0.00392156863f,
+                    ((data[2] >> 8 & 0xFF))* 0.00392156863f,
+                    ((data[2] & 0xFF))* 0.00392156863f,
                     0.4f);
             GL11.glTranslated(x, y, z);
-            lamp.clear();
-            lamp.addCylinder(0, 0, 0,
-                    15f*size, 100*size, 15, 0.02f, 2f,
-                    3, 1,1,5,null);
-            lamp.setRotationAngle(entity.offset[3],entity.offset[4], entity.offset[5]);
 
             GL11.glRotated(entity.host.rotationPitch,1,0,0);
             GL11.glRotated(-yaw -180f,0,1,0);
            // GL11.glRotated(ROLL,1,0,0);
-            lamp.setPosition(
-                    -entity.offset[0]-(2.5f),
-                    -(entity.offset[1]-(0.0625f*138f)),
-                    -entity.offset[2]-(0.0625f*0f));
-
-            lamp.setPosition(
-                    lamp.rotationPointX,
-                    lamp.rotationPointY-(size*0.5f),
-                    lamp.rotationPointZ-(size*0.5f));
 
             GL11.glDisable(GL11.GL_LIGHTING);
             Minecraft.getMinecraft().entityRenderer.disableLightmap(1D);
@@ -319,10 +362,11 @@ public class ParticleFX {
                 TextureManager.bindTexture(new ResourceLocation(TrainsInMotion.MODID, "textures/effects/lamp_low.png"));
             }
 
-            for (int i=0; i<entity.host.getParticleData(entity.particleID)[0]; i++) {
+            BakedMesh mesh = entity.getLampMesh(size, scale);
+            for (int i=0; i<data[0]; i++) {
                 GL11.glPushMatrix();
                 GL11.glScalef(1-(i*0.01f),1-(i*0.075f),1-(i*0.075f));
-                lamp.render(scale);
+                mesh.draw();
                 GL11.glPopMatrix();
             }
             GL11.glEnable(GL_CULL_FACE);
@@ -331,8 +375,10 @@ public class ParticleFX {
             GL11.glDepthMask(true);
             glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
             glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+            GL11.glClearColor(0,0,0,0);
+            GL11.glPopMatrix();
         } else if (entity.particleType==4) {//sphere lamps
-
+            GL11.glPushMatrix();
 
             GL11.glTranslated(x, y, z);
 
@@ -340,72 +386,117 @@ public class ParticleFX {
             GL11.glRotated(-yaw - 270f,0,1,0);
             GL11.glRotated(entity.offset[5],1,0,0);
 
-            lamp.clear();
-            lamp.addSphere(0,0,0, 16*size, 9, 9,1,1);
-
-            lamp.setPosition(
-                    entity.offset[2]+(0.55f),
-                    (entity.offset[1]+(11)),
-                    entity.offset[0]+(0.55f));
-
-            lamp.setPosition(
-                    lamp.rotationPointX,
-                    lamp.rotationPointY-(size*0.5f),
-                    lamp.rotationPointZ-(size*0.5f));
-
             GL11.glDisable(GL11.GL_LIGHTING);
             Minecraft.getMinecraft().entityRenderer.disableLightmap(1D);
             GL11.glDepthMask(false);
             glAlphaFunc(GL_LEQUAL, 1f);
             GL11.glDisable(GL_CULL_FACE);
             GL11.glDisable(GL11.GL_TEXTURE_2D);
-            //set the color with the tint.   * 0.00392156863 is the same as /255, but multiplication is more efficient than division.
-            GL11.glColor4f(((entity.host.getParticleData(entity.particleID)[2] >> 16 & 0xFF)-entity.colorTint)* 0.00392156863f,
-                    ((entity.host.getParticleData(entity.particleID)[2] >> 8 & 0xFF)-entity.colorTint)* 0.00392156863f,
-                    ((entity.host.getParticleData(entity.particleID)[2] & 0xFF)-entity.colorTint)* 0.00392156863f,
+            //set the color.   * 0.00392156863 is the same as /255, but multiplication is more efficient than division.
+            GL11.glColor4f(((data[2] >> 16 & 0xFF))* 0.00392156863f,
+                    ((data[2] >> 8 & 0xFF))* 0.00392156863f,
+                    ((data[2] & 0xFF))* 0.00392156863f,
                     0.15f);
-            for (int i=0; i<entity.host.getParticleData(entity.particleID)[0]; i++) {
+            BakedMesh mesh = entity.getLampMesh(size, scale);
+            for (int i=0; i<data[0]; i++) {
                 GL11.glScalef(1-(i*0.075f),1-(i*0.075f),1-(i*0.075f));
-                lamp.render(scale);
+                //the height is moved after the scale, the same as it would be if it was part of the mesh.
+                GL11.glTranslatef(0, entity.lampY*scale, 0);
+                mesh.draw();
+                GL11.glTranslatef(0, -entity.lampY*scale, 0);
             }
             GL11.glEnable(GL_CULL_FACE);
             GL11.glEnable(GL11.GL_LIGHTING);
             GL11.glEnable(GL11.GL_TEXTURE_2D);
             GL11.glDepthMask(true);
+            GL11.glClearColor(0,0,0,0);
+            GL11.glPopMatrix();
 
-        } else {
-
+        } else if (entity.particleType<=2) {
+            if(particleMesh==null){
+                particleMesh = new BakedMesh(MeshBaker.bake(Collections.singletonList(particle), 1));
+            }
+            float particleScale = (data[1]*0.01f)*0.0625f;
             GL11.glDisable(GL11.GL_TEXTURE_2D);
-            //set the color with the tint.   * 0.00392156863 is the same as /255, but multiplication is more efficient than division.
-            GL11.glColor4f(((entity.host.getParticleData(entity.particleID)[2] >> 16 & 0xFF)-entity.colorTint)* 0.00392156863f,
-                    ((entity.host.getParticleData(entity.particleID)[2] >> 8 & 0xFF)-entity.colorTint)* 0.00392156863f,
-                    ((entity.host.getParticleData(entity.particleID)[2] & 0xFF)-entity.colorTint)* 0.00392156863f,
-                    1f-(entity.ticksExisted/entity.lifespan));
-            //set the position
-            GL11.glTranslated( x + entity.boundingBox.minX - entity.host.posX, y+ entity.boundingBox.minY-entity.host.posY, z+ entity.boundingBox.minZ - entity.host.posZ);
-            if(entity.particleType==4){
-                GL11.glScalef(0.5f,0.5f,0.5f);
-            } else if(entity.particleType<=2){
-                glScaleF((entity.host.getParticleData(entity.particleID)[1]*0.01f)*0.0625f);
+            for (int i=0; i<entity.capacity; i++) {
+                if(!entity.alive[i] || entity.ticksExisted[i]<1){
+                    continue;
+                }
+                GL11.glPushMatrix();
+                //set the color with the tint.   * 0.00392156863 is the same as /255, but multiplication is more efficient than division.
+                GL11.glColor4f(((data[2] >> 16 & 0xFF) - entity.colorTint[i]) * 0.00392156863f,
+                        ((data[2] >> 8 & 0xFF) - entity.colorTint[i]) * 0.00392156863f,
+                        ((data[2] & 0xFF) - entity.colorTint[i]) * 0.00392156863f,
+                        1f - (entity.ticksExisted[i] / entity.lifespan[i]));
+                //set the position
+                GL11.glTranslated(x + entity.posX[i] - entity.host.posX, y + entity.posY[i] - entity.host.posY, z + entity.posZ[i] - entity.host.posZ);
+                GL11.glScalef(particleScale, particleScale, particleScale);
+                particleMesh.draw();
+                GL11.glPopMatrix();
             }
-            particle.render(1);
-
             //before we end this be sure to re-enabling texturing for other things.
             GL11.glEnable(GL11.GL_TEXTURE_2D);
+            GL11.glClearColor(0,0,0,0);
+        }
+    }
+
+    /**
+     * <h2>lamp mesh</h2>
+     * gets the mesh for the lamp, it's only built the first time a lamp with this shape renders, rather than every frame.
+     */
+    private BakedMesh getLampMesh(float size, float scale){
+        if(lampMesh!=null && lampScale==scale && lampGeneration==meshGeneration){
+            return lampMesh;
+        }
+        String key = particleType+":"+size+":"+offset[0]+":"+offset[1]+":"+offset[2]+":"+offset[3]+":"+offset[4]+":"+offset[5]+":"+scale;
+        lampMesh = lampMeshes.get(key);
+        lampScale = scale;
+        lampGeneration = meshGeneration;
+        if(lampMesh!=null){
+            return lampMesh;
         }
 
-        GL11.glClearColor(0,0,0,0);
-        GL11.glPopMatrix();
+        ModelRendererTurbo lamp = new ModelRendererTurbo((ModelBase) null, 0, 0, 8, 16);
+        if(particleType==3) {
+            lamp.addCylinder(0, 0, 0,
+                    15f * size, 100 * size, 15, 0.02f, 2f,
+                    3, 1, 1, 5, null);
+            lamp.setRotationAngle(offset[3], offset[4], offset[5]);
+            lamp.setPosition(
+                    -offset[0] - (2.5f),
+                    -(offset[1] - (0.0625f * 138f)) - (size * 0.5f),
+                    -offset[2] - (0.0625f * 0f) - (size * 0.5f));
+        } else {
+            lamp.addSphere(0,0,0, 16*size, 9, 9,1,1);
+            lamp.setPosition(
+                    offset[2] + (0.55f),
+                    11 - (size * 0.5f),
+                    offset[0] + (0.55f) - (size * 0.5f));
+        }
+        lampMesh = new BakedMesh(MeshBaker.bake(Collections.singletonList(lamp), scale));
+        lampMeshes.put(key, lampMesh);
+        return lampMesh;
     }
 
+    /**sets the most particles that can be alive at once, across every transport.*/
+    public static void setBudget(int particles){
+        budget = particles;
+    }
 
-    private static void glScaleF(float scale){
-        GL11.glScalef(scale,scale,scale);
+    /**frees the lamp and particle meshes, called when the world unloads, they are made again when they are next rendered.*/
+    public static void clear(){
+        for(BakedMesh mesh : lampMeshes.values()){
+            mesh.delete();
+        }
+        lampMeshes.clear();
+        if(particleMesh!=null){
+            particleMesh.delete();
+            particleMesh = null;
+        }
+        meshGeneration++;
     }
 
     public static ModelRendererTurbo particle = new ModelRendererTurbo((ModelBase) null, 0, 0, 16, 16)
             .addBox(0,0,0, 4, 4, 4).setRotationPoint(-2F, 2F, -1F);
-    public static ModelRendererTurbo lamp = new ModelRendererTurbo((ModelBase) null, 0, 0, 8, 16)
-                    .setRotationPoint(0, 0, 0).setRotationAngle(0, 0, 0);
 
 }
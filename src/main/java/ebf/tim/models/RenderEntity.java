@@ -17,6 +17,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.util.MathHelper;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.Vec3;
+import net.minecraftforge.client.MinecraftForgeClient;
 import org.lwjgl.opengl.GL11;
 
 import javax.annotation.Nullable;
@@ -148,6 +149,19 @@ public class RenderEntity extends Render {
             entity.renderData.needsModelUpdate=false;
         }
 
+        //pick the level of detail from the distance to the camera, which is what x, y and z are relative to.
+        int lod = ModelBase.LOD_FULL;
+        if(entity.worldObj!=null && ClientProxy.lodDistance>0){
+            double distance = x*x + y*y + z*z;
+            if(distance > ClientProxy.farLodDistance*ClientProxy.farLodDistance){
+                lod=ModelBase.LOD_FAR;
+            } else if (distance > ClientProxy.lodDistance*ClientProxy.lodDistance){
+                lod=ModelBase.LOD_NEAR;
+            }
+        }
+        //past the impostor distance the transport is only a quad with a snapshot of it, when framebuffers can be used.
+        boolean impostor = entity.worldObj!=null && ClientProxy.impostorDistance>0 && Impostor.isSupported() &&
+                x*x + y*y + z*z > ClientProxy.impostorDistance*ClientProxy.impostorDistance;
 
 
 
@@ -159,18 +173,32 @@ public class RenderEntity extends Render {
         GL11.glEnable(GL11.GL_NORMALIZE);
         GL11.glEnable(GL11.GL_LIGHTING);
 
+        double renderY = y+ (entity.onVanillaRails?0:RailOffset) + ((entity.getRenderScale()-0.0625f)*10)+bogieOffset;
+        if(impostor){
+            GL11.glTranslated(x, renderY, z);
+            Impostor.render(entity, entity.getTexture(Minecraft.getMinecraft().thePlayer), yaw, x, z);
+            GL11.glPopMatrix();
+            return;
+        }
+
+        //the static meshes of the model and bogies are batched with the other transports, the rest is still drawn here.
+        //the batch keeps it's own copy of the transforms from here on, so they go through it rather than straight to GL.
+        boolean batched = entity.worldObj!=null && ClientProxy.batchedRendering && MinecraftForgeClient.getRenderPass()==0;
+        if(batched){
+            MeshBatch.begin();
+        }
         //set the render position
-        GL11.glTranslated(x, y+ (entity.onVanillaRails?0:RailOffset) + ((entity.getRenderScale()-0.0625f)*10)+bogieOffset, z);
+        MeshBatch.translate(x, renderY, z);
         //rotate the model.
-        GL11.glRotatef(-yaw - 180f, 0.0f, 1.0f, 0.0f);
-        GL11.glRotatef(entity.rotationPitch - 180f, 0.0f, 0.0f, 1.0f);
+        MeshBatch.rotate(-yaw - 180f, 0.0f, 1.0f, 0.0f);
+        MeshBatch.rotate(entity.rotationPitch - 180f, 0.0f, 0.0f, 1.0f);
 
         /*
          * <h3>animations</h3>
          * Be sure animations are enabled in user settings, then check of there is something to animate.
          * if there is, then calculate the vectors and apply the animations
          */
-        if (entity.worldObj!=null && !Minecraft.getMinecraft().isGamePaused() &&ClientProxy.EnableAnimations) {
+        if (entity.worldObj!=null && !Minecraft.getMinecraft().isGamePaused() &&ClientProxy.EnableAnimations && lod!=ModelBase.LOD_FAR) {
             if (entity.renderData.wheelPitch >= 6.2831855f || entity.renderData.wheelPitch <=-6.2831855f) {
                 entity.renderData.wheelPitch -= Math.copySign(6.2831855f, entity.renderData.wheelPitch);
             }
@@ -212,19 +240,23 @@ public class RenderEntity extends Render {
             s=entity.getTextureByID(Minecraft.getMinecraft().thePlayer,false, entity.getDefaultSkin());
         }
 
+        ModelBase.renderLOD = lod;
+        //only skins are bound until the cargo, so the bound texture doesn't have to be asked for.
+        TextureManager.beginRender();
         for(i=0; i< entity.renderData.modelList.length;i++) {
             TextureManager.bindTexture(s.getTexture(i), s.colorsFrom, s.colorsTo, entity.colorsFrom, entity.colorsTo);
-            GL11.glPushMatrix();
+            MeshBatch.pushMatrix();
             if(entity.modelOffsets()!=null && entity.modelOffsets().length>i) {
-                GL11.glTranslated(entity.modelOffsets()[i][0],entity.modelOffsets()[i][1],entity.modelOffsets()[i][2]);
+                MeshBatch.translate(entity.modelOffsets()[i][0],entity.modelOffsets()[i][1],entity.modelOffsets()[i][2]);
             }
             entity.renderData.modelList[i].render(entity, 0,0,0,0,0, entity.getRenderScale());
-            GL11.glPopMatrix();
+            MeshBatch.popMatrix();
         }
+        TextureManager.endRender();
 
 
         //loop for the groups of cargo
-        for (i = 0; i< entity.renderData.blockCargoRenders.size() && i < entity.calculatePercentageOfSlotsUsed(entity.renderData.blockCargoRenders.size()); i++) {
+        for (i = 0; lod!=ModelBase.LOD_FAR && i< entity.renderData.blockCargoRenders.size() && i < entity.calculatePercentageOfSlotsUsed(entity.renderData.blockCargoRenders.size()); i++) {
             entity.renderData.blockCargoRenders.get(i).doRender(field_147909_c, entity.getFirstBlock(i), this, entity.getRenderScale(), entity);
         }
 
@@ -235,17 +267,18 @@ public class RenderEntity extends Render {
          */
 
         if (entity.renderData.bogies != null) {
+            TextureManager.beginRender();
             for(Bogie b : entity.renderData.bogies) {
                 ii=0;
                 //bind the texture
                 if (s.getBogieSkin(ii) != null) {
                     TextureManager.bindTexture(s.getBogieSkin(ii), s.colorsFrom, s.colorsTo, entity.colorsFrom, entity.colorsTo);
                 }
-                GL11.glPushMatrix();
-                GL11.glTranslated(-b.offset[0], -b.offset[1], -b.offset[2]);
+                MeshBatch.pushMatrix();
+                MeshBatch.translate(-b.offset[0], -b.offset[1], -b.offset[2]);
                 b.setRotation(entity);
-                GL11.glRotatef(b.rotationYaw-yaw, 0.0f, 1.0f, 0);
-                GL11.glRotatef(entity.rotationPitch, 0.0f, 0.0f, 1.0f);
+                MeshBatch.rotate(b.rotationYaw-yaw, 0.0f, 1.0f, 0);
+                MeshBatch.rotate(entity.rotationPitch, 0.0f, 0.0f, 1.0f);
                 b.bogieModel.render(null, 0, 0, 0, 0, 0, entity.getRenderScale());
                 if(b.subBogies!=null) {
                     iii=0;
@@ -253,20 +286,25 @@ public class RenderEntity extends Render {
                         if(s.getSubBogieSkin(iii)!=null){
                             TextureManager.bindTexture(s.getSubBogieSkin(iii), s.colorsFrom, s.colorsTo, entity.colorsFrom, entity.colorsTo);
                         }
-                        GL11.glPushMatrix();
-                        GL11.glTranslated(sub.offset[0]-b.offset[0], sub.offset[1]-b.offset[1], sub.offset[2]-b.offset[2]);
+                        MeshBatch.pushMatrix();
+                        MeshBatch.translate(sub.offset[0]-b.offset[0], sub.offset[1]-b.offset[1], sub.offset[2]-b.offset[2]);
                         sub.setRotation(entity);
-                        GL11.glRotatef(sub.rotationYaw-b.rotationYaw, 0.0f, 1.0f, 0);
+                        MeshBatch.rotate(sub.rotationYaw-b.rotationYaw, 0.0f, 1.0f, 0);
                         sub.bogieModel.render(null, 0, 0, 0, 0, 0, entity.getRenderScale());
-                        GL11.glPopMatrix();
+                        MeshBatch.popMatrix();
                         iii++;
                     }
                 }
 
-                GL11.glPopMatrix();
+                MeshBatch.popMatrix();
                 ii++;
             }
+            TextureManager.endRender();
+        }
+        if(batched){
+            MeshBatch.end();
         }
+        ModelBase.renderLOD = ModelBase.LOD_FULL;
 
         GL11.glPopMatrix();
         if(entity.worldObj==null){return;}
@@ -71,6 +71,11 @@ public class Model1x1Rail {
 
     //todo use the return value to manage displaylists
     public static void Model3DRail(World world, int xPos, int yPos, int zPos, RailShapeCore shape, @Nullable ItemStack ballast, @Nullable ItemStack ties, @Nullable ItemStack rail, @Nullable int[] colors){
+        Model3DRail(world, xPos, yPos, zPos, shape, ballast, ties, rail, colors, ClientProxy.railSkin);
+    }
+
+    /**renders the rail with a specific skin, rather than the one from the config, used for the lower detail of distant rail sections.*/
+    public static void Model3DRail(World world, int xPos, int yPos, int zPos, RailShapeCore shape, @Nullable ItemStack ballast, @Nullable ItemStack ties, @Nullable ItemStack rail, @Nullable int[] colors, int skin){
         if(shape.gauge==null || shape.activePath ==null || rail==null){
             return;
         }
@@ -115,7 +120,7 @@ public class Model1x1Rail {
         GL11.glEnable(GL11.GL_NORMALIZE);
         GL11.glPushMatrix();
         GL11.glDisable(GL_TEXTURE_2D);
-        switch (ClientProxy.railSkin){
+        switch (skin){
             case 0:{ModelRail.modelPotatoRail(shape, colors); break;}
             case 1:{ModelRail.modelExtrudedRail(shape, colors); break;}
             case 2://todo normal rail
@@ -129,7 +134,7 @@ public class Model1x1Rail {
 
         if(ballast!=null && ballast.getItem()!=null) {
             GL11.glPushMatrix();
-            if(ClientProxy.railSkin==0){
+            if(skin==0){
                 ModelBallast.modelPotatoBallast(shape, maxWidth, minWidth, ballast);
             } else {
                 ModelBallast.model3DBallast(shape, maxWidth, minWidth, ballast);
@@ -139,9 +144,9 @@ public class Model1x1Rail {
 
         if(ties!=null && ties.getItem()!=null) {
             GL11.glPushMatrix();
-            if(ClientProxy.railSkin==0){
+            if(skin==0){
                 ModelTies.modelPotatoTies(BlockRailCore.getShape(world,xPos,yPos,zPos), maxWidth, minWidth, ties);
-            } else if (ClientProxy.railSkin<3){
+            } else if (skin<3){
                 ModelTies.model3DTies(BlockRailCore.getShape(world,xPos,yPos,zPos), maxWidth, minWidth, ties);
             } else {
                 //todo: HD ties
@@ -0,0 +1,240 @@
+package ebf.tim.models.rails;
+
+import ebf.tim.blocks.RailTileEntity;
+import ebf.tim.blocks.rails.RailShapeCore;
+import ebf.tim.utility.ClientProxy;
+import ebf.tim.utility.GLResourceManager;
+import net.minecraft.util.AxisAlignedBB;
+import org.lwjgl.opengl.GL11;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>Rail section renderer</h1>
+ * merges the rails in each 16x16x16 section of the world into a single display list, so a long line is a few list calls
+ *     rather than one list call and tile entity render for every rail.
+ * a section's list is only rebuilt when a rail in it is added, removed or changed, or the rail skin changes.
+ *
+ * the first rail in a section is the one that renders it, it's render box is the whole section, so vanilla culls the section
+ *     against the view, and the other rails in the section have a render distance of 0, so they are skipped before they get to the render.
+ * sections past
+ * @see ClientProxy#railRenderDistance
+ * aren't drawn, and ones past
+ * @see ClientProxy#railLODDistance
+ * are drawn with the flat rail skin, from a second list that's only built when it's needed.
+ * @author Eternal Blue Flame
+ */
+public class RailSectionRenderer {
+
+    /**the distance from the center of a section to it's corner, so the first rail can be in range when part of it's section is.*/
+    private static final double SECTION_RADIUS = 28;
+
+    /**the sections of the client world, mapped by their position.*/
+    private static final Map<Long, Section> sections = new HashMap<>();
+
+    /**compiles the rails of a section into a list.*/
+    interface Builder {
+        /**
+         * @param id the list to compile into.
+         * @param x the section position, multiply by 16 for the block position of it's corner, the same for y and z.
+         * @param skin the rail skin to build with, 0 is the flat one.
+         */
+        void build(int id, List<RailTileEntity> rails, int x, int y, int z, int skin);
+    }
+
+    /**the builder that's used, the GL one unless it's been replaced, so the tests can build sections without a GL context.*/
+    static Builder builder = new Builder() {
+        @Override
+        public void build(int id, List<RailTileEntity> rails, int x, int y, int z, int skin) {
+            GL11.glNewList(id, GL11.GL_COMPILE);
+            RailShapeCore route;
+            for(RailTileEntity rail : rails){
+                route = new RailShapeCore().parseString(rail.data.getString("route"));
+                if (route == null || route.gauge == null) {
+                    continue;
+                }
+                //each rail is relative to the corner of the section.
+                GL11.glPushMatrix();
+                GL11.glTranslatef(rail.xCoord - (x << 4), rail.yCoord - (y << 4), rail.zCoord - (z << 4));
+                Model1x1Rail.Model3DRail(rail.getWorldObj(), rail.xCoord, rail.yCoord, rail.zCoord,
+                        route,
+                        rail.data.getItemStack("ballast"),
+                        rail.data.getItemStack("ties"),
+                        rail.data.getItemStack("rail"), null, skin);
+                GL11.glPopMatrix();
+            }
+            GL11.glEndList();
+        }
+    };
+
+    /**adds the rail to it's section, called when the tile entity is added to the client world.*/
+    public static void add(RailTileEntity rail){
+        long key = getKey(rail.xCoord, rail.yCoord, rail.zCoord);
+        Section section = sections.get(key);
+        if(section == null){
+            section = new Section(rail.xCoord >> 4, rail.yCoord >> 4, rail.zCoord >> 4);
+            sections.put(key, section);
+        }
+        if(!section.rails.contains(rail)){
+            section.rails.add(rail);
+            section.dirty = true;
+        }
+    }
+
+    /**removes the rail from it's section, and frees the section if it was the last one.*/
+    public static void remove(RailTileEntity rail){
+        long key = getKey(rail.xCoord, rail.yCoord, rail.zCoord);
+        Section section = sections.get(key);
+        if(section != null && section.rails.remove(rail)){
+            section.dirty = true;
+            if(section.rails.size() == 0){
+                section.delete();
+                sections.remove(key);
+            }
+        }
+    }
+
+    /**marks the section of the rail to be rebuilt the next time it's drawn.*/
+    public static void markDirty(RailTileEntity rail){
+        Section section = sections.get(getKey(rail.xCoord, rail.yCoord, rail.zCoord));
+        if(section != null){
+            section.dirty = true;
+        }
+    }
+
+    /**@return true if the rail is the one that renders it's section.*/
+    public static boolean isOwner(RailTileEntity rail){
+        Section section = sections.get(getKey(rail.xCoord, rail.yCoord, rail.zCoord));
+        return section != null && section.rails.get(0) == rail;
+    }
+
+    /**@return the render box of the section the rail is in, or null if it's not in one.*/
+    public static AxisAlignedBB getBounds(RailTileEntity rail){
+        Section section = sections.get(getKey(rail.xCoord, rail.yCoord, rail.zCoord));
+        return section == null ? null : section.bounds;
+    }
+
+    /**@return the render distance for the rail that renders it's section, squared.*/
+    public static double getOwnerRenderDistanceSquared(){
+        return (ClientProxy.railRenderDistance + SECTION_RADIUS) * (ClientProxy.railRenderDistance + SECTION_RADIUS);
+    }
+
+    /**
+     * <h2>render</h2>
+     * draws the section of the rail, building it's list first if it's out of date.
+     * @param x the x position of the rail with offset for the camera position, the same for y and z.
+     */
+    public static void render(RailTileEntity rail, double x, double y, double z){
+        //the position of the section relative to the camera.
+        double sx = x - (rail.xCoord & 15);
+        double sy = y - (rail.yCoord & 15);
+        double sz = z - (rail.zCoord & 15);
+        int id = prepare(rail, (sx + 8) * (sx + 8) + (sy + 8) * (sy + 8) + (sz + 8) * (sz + 8),
+                ClientProxy.railSkin, ClientProxy.railRenderDistance, ClientProxy.railLODDistance);
+        if(id == -1){
+            return;
+        }
+        GL11.glPushMatrix();
+        GL11.glTranslated(sx, sy, sz);
+        GL11.glCallList(id);
+        GL11.glPopMatrix();
+    }
+
+    /**
+     * <h2>prepare</h2>
+     * builds the list the section needs at the distance, if it's out of date, without drawing anything, the tests use this.
+     * @param distance the distance from the camera to the center of the section, squared.
+     * @param skin the rail skin, the lists are built again when it changes.
+     * @param renderDistance the distance sections are drawn to.
+     * @param lodDistance the distance past which sections use the flat skin, 0 if they never do.
+     * @return the list to draw, or -1 if the rail doesn't render it's section or the section is out of range.
+     */
+    static int prepare(RailTileEntity rail, double distance, int skin, int renderDistance, int lodDistance){
+        Section section = sections.get(getKey(rail.xCoord, rail.yCoord, rail.zCoord));
+        if(section == null || section.rails.get(0) != rail || distance > renderDistance * renderDistance){
+            return -1;
+        }
+
+        if(section.dirty || section.skin != skin){
+            section.delete();
+            section.dirty = false;
+            section.skin = skin;
+        }
+        if(lodDistance > 0 && skin > 0 && distance > lodDistance * lodDistance){
+            if(section.lodGLID == -1){
+                section.lodGLID = section.build(0);
+            }
+            return section.lodGLID;
+        }
+        if(section.glID == -1){
+            section.glID = section.build(skin);
+        }
+        return section.glID;
+    }
+
+    /**frees every section, called when the client world unloads.*/
+    public static void clear(){
+        for(Section section : sections.values()){
+            section.delete();
+        }
+        sections.clear();
+    }
+
+    /**@return the number of sections with rails in them, the tests use this.*/
+    static int getSectionCount(){
+        return sections.size();
+    }
+
+    /**packs a section position into a single key, the same as the energy source cache does for blocks.*/
+    static long getKey(int x, int y, int z){
+        return (((x >> 4) & 0x3FFFFFFL) << 34) | (((z >> 4) & 0x3FFFFFFL) << 8) | ((y >> 4) & 0xFFL);
+    }
+
+
+    /**
+     * <h2>Section</h2>
+     * the rails in a 16x16x16 section, and the lists they are built to.
+     */
+    private static class Section {
+        /**the section position, multiply by 16 for the block position of it's corner.*/
+        private final int x, y, z;
+        private final List<RailTileEntity> rails = new ArrayList<>();
+        /**a little bigger than the section, since curves can go outside their block.*/
+        private final AxisAlignedBB bounds;
+        /**the display lists for the configured skin and the flat one, -1 if they haven't been built.*/
+        private int glID = -1, lodGLID = -1;
+        /**the rail skin the lists were built with.*/
+        private int skin = -1;
+        private boolean dirty = true;
+
+        private Section(int x, int y, int z){
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            bounds = AxisAlignedBB.getBoundingBox((x << 4) - 1, (y << 4) - 1, (z << 4) - 1,
+                    (x << 4) + 17, (y << 4) + 17, (z << 4) + 17);
+        }
+
+        /**builds every rail in the section into a new list.*/
+        private int build(int skin){
+            int id = GLResourceManager.allocate(GLResourceManager.Type.LIST, this, x, z);
+            builder.build(id, rails, x, y, z, skin);
+            return id;
+        }
+
+        /**frees the lists, they get built again the next time the section is drawn.*/
+        private void delete(){
+            if(glID != -1){
+                GLResourceManager.release(GLResourceManager.Type.LIST, glID, this);
+                glID = -1;
+            }
+            if(lodGLID != -1){
+                GLResourceManager.release(GLResourceManager.Type.LIST, lodGLID, this);
+                lodGLID = -1;
+            }
+        }
+    }
+}
@@ -2,28 +2,31 @@ package ebf.tim.networking;
 
 import cpw.mods.fml.common.network.simpleimpl.IMessage;
 import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.utility.ServerActionQueue;
 import io.netty.buffer.ByteBuf;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.server.MinecraftServer;
-import net.minecraftforge.common.DimensionManager;
+import net.minecraft.world.World;
 
 /**
  * <h1>Mount packet</h1>
  * This is intended to be a replacement for
  * @see net.minecraft.network.play.client.C02PacketUseEntity
  * because for whatever reason, the stupid thing refuses to send for our entities.
+ * the interaction itself is queued, and done on the server thread by
+ * @see ServerActionQueue
  * @author Eternal Blue Flame
  */
-public class PacketInteract implements IMessage {
+public class PacketInteract implements IMessage, ServerActionQueue.Action {
     /**the ID of the entity to dismount from*/
-    private int entityId, dimensionId, key, playerId;
+    private int entityId, key, playerId;
 
     public PacketInteract() {}
     public PacketInteract(int key, int entityId) {
         this.key=key;
         this.entityId = entityId;
-        this.dimensionId= Minecraft.getMinecraft().thePlayer.worldObj.provider.dimensionId;
         this.playerId=Minecraft.getMinecraft().thePlayer.getEntityId();
 
     }
@@ -32,11 +35,23 @@ public class PacketInteract implements IMessage {
     public void fromBytes(ByteBuf bbuf) {
         key = bbuf.readInt();
         entityId = bbuf.readInt();
-        dimensionId=bbuf.readInt();
         playerId=bbuf.readInt();
-        Entity e = DimensionManager.getWorld(dimensionId).getEntityByID(entityId);
+    }
+
+    /**the same key on the same transport is only done once a tick.*/
+    @Override
+    public long getActionKey() {
+        return ((long)entityId<<32) | (key & 0x7FFFFFFFL);
+    }
+
+    /**does the interaction on the server thread, as the player that actually sent it, rather than the one in the packet.*/
+    @Override
+    public void process(EntityPlayerMP player) {
+        //the world the player is in, rather than one the client picked.
+        World world = player.worldObj;
+        Entity e = world==null?null:world.getEntityByID(entityId);
         if (e instanceof GenericRailTransport) {
-            ((GenericRailTransport)e).interact(playerId, false, false, key);
+            ((GenericRailTransport)e).interact(player.getEntityId(), false, false, key);
         }
     }
     /**puts the variables into a Byte Buffer so they can be sent to server*/
@@ -44,7 +59,6 @@ public class PacketInteract implements IMessage {
     public void toBytes(ByteBuf bbuf) {
         bbuf.writeInt(key);
         bbuf.writeInt(entityId);
-        bbuf.writeInt(dimensionId);
         bbuf.writeInt(playerId);
     }
 }
@@ -2,54 +2,67 @@ package ebf.tim.networking;
 
 import cpw.mods.fml.common.network.simpleimpl.IMessage;
 import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.utility.ServerActionQueue;
 import io.netty.buffer.ByteBuf;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.item.EntityItem;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.ItemStack;
 import net.minecraft.server.MinecraftServer;
-import net.minecraftforge.common.DimensionManager;
+import net.minecraft.world.World;
 
 /**
  * <h1>Remove entity packet</h1>
  * used to remove an entity from the world. this is necessary because the entity interaction is through client only hitboxes.
+ * the removal itself is queued, and done on the server thread by
+ * @see ServerActionQueue
  * @author Eternal Blue Flame
  */
-public class PacketRemove implements IMessage {
+public class PacketRemove implements IMessage, ServerActionQueue.Action {
     /**the entity ID to define what entity to use the function on*/
-    private int entityId, dimensionId;
+    private int entityId;
     private boolean shouldDropItem;
 
     public PacketRemove() {}
     public PacketRemove(int entityId, boolean shouldDropItem) {
         this.entityId = entityId;
-        this.dimensionId= Minecraft.getMinecraft().thePlayer.worldObj.provider.dimensionId;
         this.shouldDropItem = shouldDropItem;
     }
     /**reads the packet on server to get the variables from the Byte Buffer*/
     @Override
     public void fromBytes(ByteBuf bbuf) {
         entityId = bbuf.readInt();
-        this.dimensionId=bbuf.readInt();
         shouldDropItem = bbuf.readBoolean();
+    }
 
-        Entity entity = DimensionManager.getWorld(dimensionId).getEntityByID(entityId);
-        //if the entity was an instance of Generic Rail Transport, then spawn it's item and remove it from world.
-        if (entity instanceof GenericRailTransport) {
+    /**removing the same transport is only done once a tick, the high bit keeps it from matching an interact key.*/
+    @Override
+    public long getActionKey() {
+        return ((long)entityId<<32) | 0x80000000L;
+    }
+
+    /**removes the entity on the server thread*/
+    @Override
+    public void process(EntityPlayerMP player) {
+        //the world the player is in, rather than one the client picked.
+        World world = player.worldObj;
+        Entity entity = world==null?null:world.getEntityByID(entityId);
+        //if the entity was an instance of Generic Rail Transport, and it's still there, then spawn it's item and remove it from world.
+        if (entity instanceof GenericRailTransport && !entity.isDead) {
             if (shouldDropItem) {
                 entity.worldObj.spawnEntityInWorld(new EntityItem(entity.worldObj, entity.posX, entity.posY, entity.posZ, new ItemStack(((GenericRailTransport) entity).getItem(), 1)));
             }
             //be sure we drop the inventory items on death.
             ((GenericRailTransport) entity).dropAllItems();
             entity.setDead();
-            DimensionManager.getWorld(dimensionId).removeEntity(entity);
+            world.removeEntity(entity);
         }
     }
     /**puts the variables into a Byte Buffer so they can be sent to server*/
     @Override
     public void toBytes(ByteBuf bbuf) {
         bbuf.writeInt(entityId);
-        bbuf.writeInt(dimensionId);
         bbuf.writeBoolean(shouldDropItem);
     }
 }
@@ -0,0 +1,108 @@
+package ebf.tim.networking;
+
+import cpw.mods.fml.common.network.ByteBufUtils;
+import cpw.mods.fml.common.network.simpleimpl.IMessage;
+import cpw.mods.fml.common.network.simpleimpl.IMessageHandler;
+import cpw.mods.fml.common.network.simpleimpl.MessageContext;
+import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.utility.TankSync;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.Entity;
+import net.minecraft.world.World;
+
+/**
+ * <h1>Tank sync packet</h1>
+ * sends the fluid tanks of a transport that changed to the clients tracking it.
+ * only the changed tanks are sent, each as the index, the fluid ID plus one, and the amount, all as var ints.
+ * the packet is read on the network thread, so it's only decoded there, the tanks are put on the transport by the
+ * @see Handler
+ * on the client thread, where it's safe to touch the world.
+ * @see TankSync
+ * @author Eternal Blue Flame
+ */
+public class PacketTankSync implements IMessage {
+    /**the entity ID to define what entity to use the function on*/
+    private int entityId, count;
+    /**the index, fluid, and amount of each tank that changed*/
+    private int[] indexes, fluids, amounts;
+
+    public PacketTankSync() {}
+    public PacketTankSync(int entityId, int count, int[] indexes, int[] fluids, int[] amounts) {
+        this.entityId = entityId;
+        this.count = count;
+        this.indexes = indexes;
+        this.fluids = fluids;
+        this.amounts = amounts;
+    }
+
+    /**reads the packet on client to get the variables from the Byte Buffer, this is on the network thread, so it doesn't touch the world.*/
+    @Override
+    public void fromBytes(ByteBuf bbuf) {
+        entityId = bbuf.readInt();
+        count = ByteBufUtils.readVarInt(bbuf, 5);
+        indexes = new int[count];
+        fluids = new int[count];
+        amounts = new int[count];
+        for(int i=0; i<count; i++){
+            indexes[i] = ByteBufUtils.readVarInt(bbuf, 5);
+            fluids[i] = ByteBufUtils.readVarInt(bbuf, 5);
+            amounts[i] = ByteBufUtils.readVarInt(bbuf, 5);
+        }
+    }
+
+    /**puts the tanks on the transport, if it's in the world, this has to be called from the client thread.*/
+    public void apply(World world){
+        Entity entity = world==null?null:world.getEntityByID(entityId);
+        if(!(entity instanceof GenericRailTransport)){
+            return;
+        }
+        for(int i=0; i<count; i++){
+            ((GenericRailTransport) entity).setSyncedTank(indexes[i], TankSync.toFluid(fluids[i]), amounts[i]);
+        }
+    }
+    /**puts the variables into a Byte Buffer so they can be sent to client*/
+    @Override
+    public void toBytes(ByteBuf bbuf) {
+        bbuf.writeInt(entityId);
+        ByteBufUtils.writeVarInt(bbuf, count, 5);
+        for(int i=0; i<count; i++){
+            ByteBufUtils.writeVarInt(bbuf, indexes[i], 5);
+            ByteBufUtils.writeVarInt(bbuf, fluids[i], 5);
+            ByteBufUtils.writeVarInt(bbuf, amounts[i], 5);
+        }
+    }
+
+    /**@return the size of the packet in bytes, not counting the channel header.*/
+    public int getSize(){
+        int size = 4 + ByteBufUtils.varIntByteCount(count);
+        for(int i=0; i<count; i++){
+            size += ByteBufUtils.varIntByteCount(indexes[i]) + ByteBufUtils.varIntByteCount(fluids[i]) + ByteBufUtils.varIntByteCount(amounts[i]);
+        }
+        return size;
+    }
+
+    /*the decoded values, the tests use these.*/
+    int getEntityId(){return entityId;}
+    int getCount(){return count;}
+    int getIndex(int i){return indexes[i];}
+    int getFluid(int i){return fluids[i];}
+    int getAmount(int i){return amounts[i];}
+
+    /**
+     * <h2>handler</h2>
+     * schedules the decoded tanks to be put on the transport on the client thread, rather than the network thread they were read on.
+     */
+    public static class Handler implements IMessageHandler<PacketTankSync, IMessage> {
+        @Override
+        public IMessage onMessage(final PacketTankSync message, MessageContext ctx) {
+            Minecraft.getMinecraft().func_152344_a(new Runnable() {
+                @Override
+                public void run() {
+                    message.apply(Minecraft.getMinecraft().theWorld);
+                }
+            });
+            return null;
+        }
+    }
+}
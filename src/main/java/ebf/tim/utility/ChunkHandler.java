@@ -2,7 +2,10 @@ package ebf.tim.utility;
 
 import com.google.common.collect.ListMultimap;
 import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import ebf.tim.TrainsInMotion;
+import ebf.tim.entities.Consist;
 import ebf.tim.entities.GenericRailTransport;
+import net.minecraft.util.MathHelper;
 import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.World;
 import net.minecraftforge.common.ForgeChunkManager;
@@ -10,7 +13,15 @@ import net.minecraftforge.common.ForgeChunkManager.Ticket;
 import net.minecraftforge.event.entity.EntityEvent;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * <h1>Chunk management</h1>
@@ -20,72 +31,240 @@ import java.util.List;
  * the entities have to store the variables for this to use, and get their own keys.
  * the main class needs to register it (it probably doesn't need to be in pre-init but it works there, so...)
  *
+ * chunks are loaded for a whole consist at once, rather than each transport on it's own.
+ * the consist wants the 3x3 area around every transport in it, and the line of chunks ahead of each end, predicted from it's speed.
+ * the wanted chunks go in a hash set, so overlapping areas are only forced once,
+ *     and they are spread over as few tickets as they fit in, the tickets of the rest of the consist are released.
+ * chunks the consist doesn't want anymore stay loaded for
+ * @see #releaseDelay
+ * ticks, so a train sitting on a chunk border doesn't keep loading and unloading them.
+ * when transports enter new chunks, their consist is only updated once, at the end of the tick,
+ *     so a long train crossing a chunk border doesn't redo the whole consist for every car, and every car has moved by then.
+ *
  * @author Eternal Blue Flame
  */
 public class ChunkHandler implements ForgeChunkManager.LoadingCallback, ForgeChunkManager.OrderedLoadingCallback, ForgeChunkManager.PlayerOrderedLoadingCallback {
 
+    /**how far ahead of the train to load, in ticks at it's current speed.*/
+    public static int lookaheadTicks = 100;
+    /**how long chunks stay loaded after the train doesn't need them anymore, in ticks.*/
+    public static int releaseDelay = 200;
+    /**the most chunks ahead of each end of the train that will be loaded, so a very fast train doesn't load a huge line.*/
+    private static final int MAX_LOOKAHEAD_CHUNKS = 8;
+
+    /**the chunks forced by each ticket, and the world tick they were last wanted on.*/
+    private static final Map<Ticket, Map<ChunkCoordIntPair, Long>> ticketChunks = new WeakHashMap<>();
+    /**the consists that had a transport enter a chunk this tick, and that transport, they are updated at the end of the tick.*/
+    private static final Map<Consist, GenericRailTransport> entered = new LinkedHashMap<>();
+
     /**
      * <h2>EntityEntering chunk event</h2>
      * called when an entity enters a chunk.
-     * we use this to figure out if the entity is one of ours, and then force the chunkloading.
+     * we use this to figure out if the entity is one of ours, and then mark it's consist to be updated at the end of the tick.
+     * @see #updateEntered()
      */
     @SuppressWarnings("unused")
     @SubscribeEvent
     public void entityEnteredChunk(EntityEvent.EnteringChunk event) {
-        if(event.entity instanceof GenericRailTransport && !event.entity.worldObj.isRemote) {
-            forceChunkLoading(((GenericRailTransport) event.entity), event.newChunkX, event.newChunkZ);
+        if(event.entity instanceof GenericRailTransport && !event.entity.worldObj.isRemote && !event.entity.isDead) {
+            entered.put(((GenericRailTransport) event.entity).getConsist(), (GenericRailTransport) event.entity);
         }
     }
 
+    /**
+     * <h2>update entered consists</h2>
+     * updates the chunkloading of each consist that had a transport enter a chunk this tick, once per consist.
+     * called at the end of the server tick.
+     */
+    public static void updateEntered(){
+        if(entered.size()==0){
+            return;
+        }
+        long sectionStart;
+        for(Map.Entry<Consist, GenericRailTransport> entry : entered.entrySet()){
+            //the transport could have been removed, or uncoupled into another consist, since it entered the chunk.
+            if(entry.getValue().isDead || entry.getValue().getConsist()!=entry.getKey()){
+                continue;
+            }
+            sectionStart = TickProfiler.start(entry.getValue().worldObj);
+            update(entry.getValue());
+            TickProfiler.end(TickProfiler.Section.CHUNKS, sectionStart, entry.getValue());
+        }
+        entered.clear();
+    }
+
+    /**drops the consists waiting to be updated, called when the server stops.*/
+    public static void clearEntered(){
+        entered.clear();
+    }
+
     /**
      * <h2>Force load chunks</h2>
-     * collects the chunk positions around the entity and it's sub-entities, and then forces them to load
-     * @param transport the entity to update
-     * @param newChunkX the x position of the new chunk
-     * @param newChunkZ the z position of the new chunk
+     * collects the chunks the consist of the transport wants, forces the new ones to load,
+     * and releases the ones it hasn't wanted for long enough.
+     * called at the end of a tick a transport of the consist entered a chunk, and every second from the first transport of each consist.
+     * @param transport any transport in the consist to update
      */
-    private static void forceChunkLoading(GenericRailTransport transport, int newChunkX, int newChunkZ) {
-        /*be sure the ticket is valid, otherwise we just crash*/
-        if(transport.getChunkTicket() != null) {
-            ChunkCoordIntPair pair = null;
-            List<ChunkCoordIntPair> newChunks = new ArrayList<ChunkCoordIntPair>();
-
-            /*get the chunks around the new chunk of the main entitiy, this should find 9 chunks (3x3 grid).
-            * it would probably be a good idea to be sure the chunk limit per ticket will support at least 9 chunks
-            *     if it doesn't, then the settings should change chunkloading to off and stop it before using it*/
-            for(int x = newChunkX - 1; x <= newChunkX + 1; ++x) {
-                for(int z = newChunkZ - 1; z <= newChunkZ + 1; ++z) {
-                    newChunks.add(new ChunkCoordIntPair(x, z));
-                }
+    public static void update(GenericRailTransport transport) {
+        List<GenericRailTransport> transports = transport.getConsist().getTransports();
+        if(transports.size()==0){
+            return;
+        }
+        long now = transport.worldObj.getTotalWorldTime();
+
+        /*get the chunks around every transport, this should find 9 chunks (3x3 grid) each, but the set removes the overlap.
+         * then the chunks ahead of both ends, the ones around the train come first, so if we run out of room, they are the ones that stay.*/
+        Set<ChunkCoordIntPair> wanted = new LinkedHashSet<>();
+        for(GenericRailTransport t : transports){
+            addArea(wanted, MathHelper.floor_double(t.posX) >> 4, MathHelper.floor_double(t.posZ) >> 4);
+        }
+        addAhead(wanted, transports.get(0));
+        if(transports.size()>1){
+            addAhead(wanted, transports.get(transports.size()-1));
+        }
+
+        List<Ticket> tickets = new ArrayList<>();
+        for(GenericRailTransport t : transports){
+            if(t.getChunkTicket()!=null){
+                tickets.add(t.getChunkTicket());
             }
+        }
 
-            /*update chunks around the sub-entities, in this case it's the hitbox entities
-            * this should also find 9 chunks, per hitbox. But we only add the ones we don't already know,
-            *     and we clamp the list length to the max chunk count for the ticket,
-            *     since the user can change that value in forge, and we don't wanna try and bite off more than we can chew*/
-            for(int x = transport.chunkCoordX - 1; x <= transport.chunkCoordX + 1; ++x) {
-                for(int z = transport.chunkCoordZ - 1; z <= transport.chunkCoordZ + 1; ++z) {
-                    pair = new ChunkCoordIntPair(x, z);
-                    if (!newChunks.contains(pair) && newChunks.size() < transport.getChunkTicket().getMaxChunkListDepth()) {
-                        newChunks.add(pair);
-                    }
+        /*keep the wanted chunks on the ticket they are already on, and let go of the ones that haven't been wanted for long enough,
+         * or are already on another ticket, which happens when two consists couple.*/
+        Set<ChunkCoordIntPair> placed = new HashSet<>();
+        Iterator<Map.Entry<ChunkCoordIntPair, Long>> iterator;
+        Map.Entry<ChunkCoordIntPair, Long> entry;
+        for(Ticket ticket : tickets){
+            iterator = getChunks(ticket, now).entrySet().iterator();
+            while (iterator.hasNext()){
+                entry = iterator.next();
+                if(placed.contains(entry.getKey()) || (!wanted.contains(entry.getKey()) && now - entry.getValue() > releaseDelay)){
+                    ForgeChunkManager.unforceChunk(ticket, entry.getKey());
+                    iterator.remove();
+                    continue;
+                }
+                if(wanted.contains(entry.getKey())){
+                    entry.setValue(now);
                 }
+                placed.add(entry.getKey());
+            }
+        }
+
+        /*now force the chunks that aren't loaded yet, on the first ticket with room, or a new one if there isn't any.
+        * the room is the max chunk count for the ticket,
+        *     since the user can change that value in forge, and we don't wanna try and bite off more than we can chew*/
+        Ticket ticket;
+        for(ChunkCoordIntPair chunk : wanted){
+            if(placed.contains(chunk)){
+                continue;
             }
+            ticket = getTicketWithRoom(tickets, transports, now);
+            if(ticket==null){
+                break;
+            }
+            ForgeChunkManager.forceChunk(ticket, chunk);
+            getChunks(ticket, now).put(chunk, now);
+            placed.add(chunk);
+        }
 
-            /*now we take the list we generated and force the chunks to load.*/
-            for(ChunkCoordIntPair chunk : newChunks) {
-                ForgeChunkManager.forceChunk(transport.getChunkTicket(), chunk);
-                ForgeChunkManager.reorderChunk(transport.getChunkTicket(), chunk);
+        /*and lastly release any tickets that don't have anything on them, so the consist only holds the tickets it needs.*/
+        for(Ticket t : tickets){
+            if(getChunks(t, now).size()==0 && t.getEntity() instanceof GenericRailTransport){
+                release((GenericRailTransport) t.getEntity());
             }
-            /*now we go through the old list and force any chunks that were previously loaded to unload*/
-            for (ChunkCoordIntPair oldChunk : transport.chunkLocations){
-                if(!newChunks.contains(oldChunk)){
-                    ForgeChunkManager.unforceChunk(transport.getChunkTicket(), oldChunk);
+        }
+    }
+
+    /**
+     * <h2>release</h2>
+     * releases the ticket of the transport, and every chunk on it, called when it's removed.
+     */
+    public static void release(GenericRailTransport transport){
+        if(transport.getChunkTicket()!=null){
+            ticketChunks.remove(transport.getChunkTicket());
+            ForgeChunkManager.releaseTicket(transport.getChunkTicket());
+            transport.setChunkTicket(null);
+        }
+    }
+
+    /**@return the number of tickets currently held by transports.*/
+    public static int getTicketCount(){
+        return ticketChunks.size();
+    }
+
+    /**@return the number of chunks currently forced by transports.*/
+    public static int getChunkCount(){
+        int count =0;
+        for(Map<ChunkCoordIntPair, Long> chunks : ticketChunks.values()){
+            count+=chunks.size();
+        }
+        return count;
+    }
+
+    /**adds the 3x3 area of chunks around the chunk*/
+    private static void addArea(Set<ChunkCoordIntPair> chunks, int chunkX, int chunkZ){
+        for(int x = chunkX - 1; x <= chunkX + 1; ++x) {
+            for(int z = chunkZ - 1; z <= chunkZ + 1; ++z) {
+                chunks.add(new ChunkCoordIntPair(x, z));
+            }
+        }
+    }
+
+    /**
+     * adds the line of chunks the transport will move through in the lookahead time at it's current speed,
+     * and the 3x3 area around the last one, since the rail could curve.
+     */
+    private static void addAhead(Set<ChunkCoordIntPair> chunks, GenericRailTransport transport){
+        double x = transport.motionX * lookaheadTicks, z = transport.motionZ * lookaheadTicks;
+        int steps = Math.min(MAX_LOOKAHEAD_CHUNKS, MathHelper.ceiling_double_int(Math.sqrt(x * x + z * z) / 16d));
+        int chunkX, chunkZ;
+        for(int i=1; i<=steps; i++){
+            chunkX = MathHelper.floor_double(transport.posX + (x * i / steps)) >> 4;
+            chunkZ = MathHelper.floor_double(transport.posZ + (z * i / steps)) >> 4;
+            if(i==steps){
+                addArea(chunks, chunkX, chunkZ);
+            } else {
+                chunks.add(new ChunkCoordIntPair(chunkX, chunkZ));
+            }
+        }
+    }
+
+    /**@return the chunks on the ticket, if it's new to us, any it already has forced, like from loading the world, are added.*/
+    @SuppressWarnings("unchecked")
+    private static Map<ChunkCoordIntPair, Long> getChunks(Ticket ticket, long now){
+        Map<ChunkCoordIntPair, Long> chunks = ticketChunks.get(ticket);
+        if(chunks==null){
+            chunks = new HashMap<>();
+            for(Object chunk : ticket.getChunkList()){
+                chunks.put((ChunkCoordIntPair) chunk, now);
+            }
+            ticketChunks.put(ticket, chunks);
+        }
+        return chunks;
+    }
+
+    /**@return the first ticket with room for another chunk, requesting one for a transport without one if they are all full, null if none can be had.*/
+    private static Ticket getTicketWithRoom(List<Ticket> tickets, List<GenericRailTransport> transports, long now){
+        for(Ticket ticket : tickets){
+            if(getChunks(ticket, now).size() < ticket.getMaxChunkListDepth()){
+                return ticket;
+            }
+        }
+        for(GenericRailTransport transport : transports){
+            if(transport.getChunkTicket()==null && !transport.isDead){
+                Ticket ticket = ForgeChunkManager.requestTicket(TrainsInMotion.instance, transport.worldObj, ForgeChunkManager.Type.ENTITY);
+                if(ticket==null){
+                    //the mod is out of tickets, so there's no point trying the others.
+                    return null;
                 }
+                ticket.bindEntity(transport);
+                transport.setChunkTicket(ticket);
+                tickets.add(ticket);
+                return ticket;
             }
-            /*and lastly we set the old chunk list to the new one*/
-            transport.chunkLocations = newChunks;
         }
+        return null;
     }
 
 
@@ -95,7 +274,7 @@ public class ChunkHandler implements ForgeChunkManager.LoadingCallback, ForgeChu
             if(!ticket.isPlayerTicket() && ticket.getEntity() instanceof GenericRailTransport) {
                 GenericRailTransport transport = (GenericRailTransport) ticket.getEntity();
                 transport.setChunkTicket(ticket);
-                forceChunkLoading(transport, transport.chunkCoordX, transport.chunkCoordZ);
+                update(transport);
             }
         }
     }
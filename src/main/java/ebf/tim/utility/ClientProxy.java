@@ -6,6 +6,7 @@ import cpw.mods.fml.client.registry.RenderingRegistry;
 import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.common.event.FMLPreInitializationEvent;
 import ebf.tim.TrainsInMotion;
+import ebf.tim.blocks.RailTileEntity;
 import ebf.tim.blocks.TileEntityStorage;
 import ebf.tim.blocks.rails.RailShapeCore;
 import ebf.tim.entities.EntityBogie;
@@ -15,9 +16,13 @@ import ebf.tim.gui.*;
 import ebf.tim.items.ItemCraftGuide;
 import ebf.tim.items.ItemPaintBucket;
 import ebf.tim.items.ItemRail;
+import ebf.tim.models.ParticleFX;
 import ebf.tim.models.RenderEntity;
 import ebf.tim.models.rails.ModelBallast;
+import ebf.tim.models.rails.RailSectionRenderer;
 import ebf.tim.registry.TiMGenericRegistry;
+import fexcraft.tmt.slim.MeshBatch;
+import fexcraft.tmt.slim.ModelBase;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.entity.AbstractClientPlayer;
 import net.minecraft.client.renderer.ItemRenderer;
@@ -32,7 +37,9 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.world.World;
+import net.minecraftforge.client.ClientCommandHandler;
 import net.minecraftforge.client.IItemRenderer;
+import net.minecraftforge.client.MinecraftForgeClient;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.common.config.Configuration;
 import org.lwjgl.input.Keyboard;
@@ -73,6 +80,14 @@ public class ClientProxy extends CommonProxy {
     public static boolean hdTransportItems = true;
     /*enables pre-render of models*/
     public static boolean preRenderModels = false;
+    /**the distances in blocks past which transports render at the near and far levels of detail, 0 turns it off*/
+    public static int lodDistance = 48, farLodDistance = 128;
+    /**the size in model pixels that parts thinner than are dropped at the near and far levels of detail*/
+    public static float lodDetailSize = 1, farLodDetailSize = 3;
+    /**the distance in blocks past which transports are drawn as a snapshot on a quad, 0 turns it off*/
+    public static int impostorDistance = 192;
+    /**if the static parts of transports are drawn in batches after the entity render*/
+    public static boolean batchedRendering = false;
     /**the keybind for the lamp toggle*/
     public static KeyBinding KeyLamp = new KeyBinding("Lamp Toggle", Keyboard.KEY_L, "Trains in Motion");
     /**the keybind for the horn/whistle*/
@@ -81,8 +96,20 @@ public class ClientProxy extends CommonProxy {
     public static KeyBinding KeyInventory = new KeyBinding("Open Train/rollingstock GUI",  Keyboard.KEY_I, "Trains in Motion");
     /**the skin to use for the rail*/
     public static int railSkin = 2;
+    /**if rails are merged into a display list for each 16x16x16 section, rather than one for each rail*/
+    public static boolean railSections = true;
+    /**the distance in blocks rail sections are rendered to, and the distance they use the flat skin past, 0 turns that off*/
+    public static int railRenderDistance = 128, railLODDistance = 64;
 
     public static boolean disableCache = false;
+    /**the most memory recolored skins can use on GPU, in megabytes*/
+    public static int recolorCacheMB = 64;
+    /**if recolored skins should also be saved to disk, so they don't have to be recolored again next time*/
+    public static boolean recolorDiskCache = false;
+    /**if skins are packed into shared atlas pages, so transports with different skins can use the same texture*/
+    public static boolean skinAtlas = false;
+    /**the most smoke, steam and spark particles that can be alive at once, across every transport*/
+    public static int particleBudget = 4000;
 
     public static KeyBinding raildevtoolUp, raildevtoolDown,
             raildevtoolLeft, raildevtoolRight, raildevtoolRaise, raildevtoolLower;
@@ -151,6 +178,10 @@ public class ClientProxy extends CommonProxy {
                 "Smoke, steam, sparks, and lighting effects are several hundred more lightweight than those of normal minecraft. These shouldn't cause much lag if any, but its client only so if you wanna disable it you can.");
 
 
+        particleBudget = config.getInt("ParticleBudget","Quality (Client only)", 4000,0,65536,
+                "The most smoke, steam and spark particles that can be alive at once, across every train. Lower this if a lot of trains in one place slows things down.");
+        ParticleFX.setBudget(particleBudget);
+
         EnableAnimations = config.getBoolean("EnableAnimations","Quality (Client only)", true,
                 "Animations are calculated by vector positioning and rotation every frame. These shouldn't cause much lag if any, but its client only so if you wanna disable it you can.");
 
@@ -163,15 +194,52 @@ public class ClientProxy extends CommonProxy {
         preRenderModels = config.getBoolean("preRenderModels","Quality (Client only)", false,
                 "Pre-renders transport entity and item models during loading screen and stores them on GPU, Requires a lot of VRAM but makes the game run smoother, Don't use if get the GL error 1285 (Out of memory)");
 
+        lodDistance = config.getInt("LODDistance","Quality (Client only)", 48,0,1024,
+                "Transports further away than this many blocks render without their thinnest parts, like rivets, pipes and ladder rungs. 0 turns off the level of detail.");
+
+        farLodDistance = config.getInt("FarLODDistance","Quality (Client only)", 128,0,1024,
+                "Transports further away than this many blocks only render their larger parts, without animations or cargo.");
+
+        lodDetailSize = config.getFloat("LODDetailSize","Quality (Client only)", 1,0,64,
+                "Parts thinner than this many model pixels aren't rendered past the LODDistance.");
+
+        farLodDetailSize = config.getFloat("FarLODDetailSize","Quality (Client only)", 3,0,64,
+                "Parts thinner than this many model pixels aren't rendered past the FarLODDistance.");
+        ModelBase.setDetailSizes(lodDetailSize, farLodDetailSize);
+
+        impostorDistance = config.getInt("ImpostorDistance","Quality (Client only)", 192,0,1024,
+                "Transports further away than this many blocks are drawn as a picture of them that turns to face you, which is made the first time it's needed. Needs the vanilla FBO setting on. 0 turns this off.");
+
+        batchedRendering = config.getBoolean("BatchedRendering","Quality (Client only)", false,
+                "Draws the static parts of transports that share a model and skin together after the entity render, binding the model and skin once for all of them, which is faster with a lot of the same rollingstock in view. Animated parts, cargo and particles are drawn normally.");
+
         disableCache = config.getBoolean("disableGLCache","Quality (Client only)", false,
                 "forces the render to skip model caching, this will cause significant lag, but is good for debugging, or if you get the GL error 1285 (Out of memory)");
 
         ForceTextureBinding = config.getBoolean("ForceTextureBinding","Quality (Client only)", false,
                 "Forces textures to be bound, slows performance on some machines, speeds it up on others, and fixes a rare bug where the the texture does not get bound. So... This REALLY depends on your machine, see what works best for you.");
 
+        recolorCacheMB = config.getInt("RecolorCacheMB","Quality (Client only)", 64,4,1024,
+                "The most memory in megabytes that recolored skins can use, including the SkinAtlas pages, the least recently used ones are dropped when it's full.");
+
+        recolorDiskCache = config.getBoolean("RecolorDiskCache","Quality (Client only)", false,
+                "Saves recolored skins to the TrainsInMotionCache folder, so they load faster next time, but use disk space.");
+
+        skinAtlas = config.getBoolean("SkinAtlas","Quality (Client only)", false,
+                "Packs transport skins and their recolors into shared atlas textures, so there are fewer texture changes while rendering. Works best with BatchedRendering. Uses pages of up to 2048x2048 pixels, each is 16MB of the RecolorCacheMB however much of it is used, skins that don't fit are kept as their own texture.");
+
         railSkin = config.getInt("railSkin","Quality (Client only)", 2,0,3,
                 "Defines the skin to use. 0: flat 2D rail similar to vanilla. 1: basic 3D rail similar to an extruded 2D. 2: Normal 3D rail. 3: High detail 3D rail");
 
+        railSections = config.getBoolean("RailSections","Quality (Client only)", true,
+                "Merges the rails in each 16x16x16 area into a single model that's only rebuilt when one of them changes, which is a lot faster for long lines of track.");
+
+        railRenderDistance = config.getInt("RailRenderDistance","Quality (Client only)", 128,16,1024,
+                "The distance in blocks rails are rendered to, when RailSections is on.");
+
+        railLODDistance = config.getInt("RailLODDistance","Quality (Client only)", 64,0,1024,
+                "Rails further away than this many blocks use the flat rail skin, when RailSections is on. 0 turns this off.");
+
         enableTransportTooltip = config.getBoolean("EnableTooltip","Quality (Client only)", true,
                 "Adds a Waila-esk tooltip for trains (Waila is not needed), if Waila is found then their configs will be used.");
 
@@ -221,6 +289,8 @@ public class ClientProxy extends CommonProxy {
         ClientRegistry.registerKeyBinding(KeyLamp);
         ClientRegistry.registerKeyBinding(KeyInventory);
 
+        ClientCommandHandler.instance.registerCommand(new ModelReportCommand());
+
         if(DebugUtil.dev()) {
             raildevtoolUp = new KeyBinding("Move Point Z+", Keyboard.KEY_UP, "Trains in Motion Dev");
             raildevtoolDown = new KeyBinding("Move Point Z-", Keyboard.KEY_DOWN, "Trains in Motion Dev");
@@ -268,7 +338,17 @@ public class ClientProxy extends CommonProxy {
     public static final TileEntitySpecialRenderer specialRenderer = new TileEntitySpecialRenderer() {
         @Override
         public void renderTileEntityAt(TileEntity tileEntity, double x, double y, double z, float p_147500_8_) {
+            //tile entities are rendered after the entities, but before the translucent blocks, so the batched transports are drawn here.
+            if(MinecraftForgeClient.getRenderPass()==0){
+                MeshBatch.flush(p_147500_8_);
+            }
             GL11.glPushMatrix();
+            if(tileEntity instanceof RailTileEntity && railSections){
+                //the section render does it's own translation, since it's relative to the section, not the rail.
+                RailSectionRenderer.render((RailTileEntity) tileEntity, x, y, z);
+                GL11.glPopMatrix();
+                return;
+            }
             GL11.glTranslated(x,y, z);
             tileEntity.func_145828_a(null);
             GL11.glPopMatrix();
@@ -0,0 +1,177 @@
+package ebf.tim.utility;
+
+import ebf.tim.entities.GenericRailTransport;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>Collision grid</h1>
+ * a uniform grid of the transports in each world, used as the broadphase for transport to transport checks, like coupling.
+ * each cell is the size of a chunk, and a transport is in every cell it's hitbox overlaps,
+ *     so a long transport can be found even when it's center is in another chunk.
+ * transports are only moved between cells when their hitbox crosses a cell border, most ticks it's just a range compare.
+ *
+ * the grids are mapped by dimension like the UUID index, so they can be used without a world, like in the benchmarks.
+ * other entities like players, items and mobs don't need this, the chunk sections are already a uniform grid for them.
+ * @see HitboxDynamic#getCollidingEntities(GenericRailTransport)
+ * @author Eternal Blue Flame
+ */
+public class CollisionGrid {
+
+    /**the grid for each world, mapped by dimension ID, the cells are mapped by their chunk coordinates.*/
+    private static final Map<Integer, LongHashMap> worlds = new HashMap<>();
+    /**incremented for each query, so a transport in multiple cells is only returned once, without having to make a set.*/
+    private static int queryStamp =0;
+
+    /**
+     * <h2>update transport</h2>
+     * moves the transport to the cells it's hitbox currently overlaps, if they changed.
+     * called after the hitbox has been positioned.
+     */
+    public static void update(GenericRailTransport transport){
+        update(transport.worldObj.provider.dimensionId, transport);
+    }
+
+    /**moves the transport to the cells it's hitbox currently overlaps in the grid of a dimension, if they changed.*/
+    public static void update(int dimension, GenericRailTransport transport){
+        HitboxDynamic hitbox = transport.collisionHandler;
+        int minX = MathHelper.floor_float(hitbox.minX) >> 4, maxX = MathHelper.floor_float(hitbox.maxX) >> 4;
+        int minZ = MathHelper.floor_float(hitbox.minZ) >> 4, maxZ = MathHelper.floor_float(hitbox.maxZ) >> 4;
+        if(hitbox.gridDimension != null && hitbox.gridDimension == dimension && minX == hitbox.cellMinX && maxX == hitbox.cellMaxX &&
+                minZ == hitbox.cellMinZ && maxZ == hitbox.cellMaxZ){
+            return;
+        }
+        remove(transport);
+        LongHashMap grid = worlds.get(dimension);
+        if(grid == null){
+            grid = new LongHashMap();
+            worlds.put(dimension, grid);
+        }
+        for(int x = minX; x <= maxX; x++){
+            for(int z = minZ; z <= maxZ; z++){
+                getCell(grid, x, z, true).add(transport);
+            }
+        }
+        hitbox.gridDimension = dimension;
+        hitbox.cellMinX = minX;
+        hitbox.cellMaxX = maxX;
+        hitbox.cellMinZ = minZ;
+        hitbox.cellMaxZ = maxZ;
+    }
+
+    /**removes the transport from every cell it's in, called when it dies or it's chunk unloads.*/
+    public static void remove(GenericRailTransport transport){
+        HitboxDynamic hitbox = transport.collisionHandler;
+        if(hitbox == null || hitbox.gridDimension == null){
+            return;
+        }
+        LongHashMap grid = worlds.get(hitbox.gridDimension);
+        if(grid != null) {
+            List<GenericRailTransport> cell;
+            for (int x = hitbox.cellMinX; x <= hitbox.cellMaxX; x++) {
+                for (int z = hitbox.cellMinZ; z <= hitbox.cellMaxZ; z++) {
+                    cell = getCell(grid, x, z, false);
+                    if (cell != null) {
+                        cell.remove(transport);
+                        if (cell.size() == 0) {
+                            grid.remove(ChunkCoordIntPair.chunkXZ2Int(x, z));
+                        }
+                    }
+                }
+            }
+        }
+        hitbox.gridDimension = null;
+    }
+
+    /**
+     * removes every transport in an unloading chunk from the grid.
+     * the grid is only for the server, client chunks are ignored, in single player the client world has the same dimension ID.
+     */
+    public static void removeChunk(Chunk chunk){
+        removeChunk(chunk.worldObj.provider.dimensionId, chunk.worldObj.isRemote, chunk.entityLists);
+    }
+
+    /**removes every transport in the entity lists of an unloading chunk in a dimension, unless it's a client chunk, the tests use this.*/
+    static void removeChunk(int dimension, boolean remote, List[] entityLists){
+        if(remote || !worlds.containsKey(dimension)){
+            return;
+        }
+        for(List list : entityLists){
+            for(Object entity : list){
+                if(entity instanceof GenericRailTransport){
+                    remove((GenericRailTransport) entity);
+                }
+            }
+        }
+    }
+
+    /**drops the entire grid for a world that's unloading, unless it's the client world, which would drop the server's grid with it.*/
+    public static void removeWorld(World world){
+        removeWorld(world.provider.dimensionId, world.isRemote);
+    }
+
+    /**drops the grid of a dimension, unless it's a client world that's unloading, the tests use this.*/
+    static void removeWorld(int dimension, boolean remote){
+        if(!remote){
+            worlds.remove(dimension);
+        }
+    }
+
+    /**
+     * <h2>get transports</h2>
+     * adds every transport with a hitbox in the cells that overlap the area to the provided list, each transport is only added once.
+     * the list is not cleared first, so the caller can reuse it.
+     */
+    public static void getTransports(World world, double minX, double minZ, double maxX, double maxZ, List<GenericRailTransport> transports){
+        getTransports(world.provider.dimensionId, minX, minZ, maxX, maxZ, transports);
+    }
+
+    /**adds every transport with a hitbox in the cells that overlap the area, in the grid of a dimension, to the provided list.*/
+    public static void getTransports(int dimension, double minX, double minZ, double maxX, double maxZ, List<GenericRailTransport> transports){
+        LongHashMap grid = worlds.get(dimension);
+        if(grid == null){
+            return;
+        }
+        queryStamp++;
+        List<GenericRailTransport> cell;
+        for(int x = MathHelper.floor_double(minX) >> 4; x <= MathHelper.floor_double(maxX) >> 4; x++){
+            for(int z = MathHelper.floor_double(minZ) >> 4; z <= MathHelper.floor_double(maxZ) >> 4; z++){
+                cell = getCell(grid, x, z, false);
+                if(cell == null){
+                    continue;
+                }
+                for(int i=0; i<cell.size(); i++){
+                    if(cell.get(i).collisionHandler.queryStamp != queryStamp){
+                        cell.get(i).collisionHandler.queryStamp = queryStamp;
+                        transports.add(cell.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    /**@return the number of cells that have transports in them, for debugging.*/
+    public static int getCellCount(World world){
+        LongHashMap grid = worlds.get(world.provider.dimensionId);
+        return grid==null?0:grid.getNumHashElements();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<GenericRailTransport> getCell(LongHashMap grid, int x, int z, boolean create){
+        long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        List<GenericRailTransport> cell = (List<GenericRailTransport>) grid.getValueByKey(key);
+        if(cell == null && create){
+            cell = new ArrayList<>();
+            grid.add(key, cell);
+        }
+        return cell;
+    }
+}
@@ -22,7 +22,6 @@ import net.minecraft.init.Blocks;
 import net.minecraft.init.Items;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.World;
 import net.minecraftforge.common.config.Configuration;
 import net.minecraftforge.fluids.Fluid;
@@ -88,6 +87,12 @@ public class CommonProxy implements IGuiHandler {
         SkinRegistry.forceSkinRegister = config.getBoolean("ForceSkinRegister", "Debug (Common)", false,
                 "Forces skins to register even if the add-on for said skin is not available, doesn't cause instability just uses unnecessary ram.");
 
+        config.addCustomCategoryComment("Chunk Loading (Common)", "How trains keep the chunks around them loaded.");
+        ChunkHandler.lookaheadTicks = config.getInt("LookaheadTicks", "Chunk Loading (Common)", 100, 0, 600,
+                "How far ahead of a moving train chunks are loaded, in ticks at it's current speed, 20 ticks is a second.");
+        ChunkHandler.releaseDelay = config.getInt("ReleaseDelay", "Chunk Loading (Common)", 200, 0, 6000,
+                "How long chunks stay loaded after a train doesn't need them anymore, in ticks, so trains sitting on a chunk border don't keep loading and unloading them.");
+
         config.addCustomCategoryComment("Debug (Common, IDE Only)", "Only runs from IDE instances.");
         SkinRegistry.debugSkinRegistration = config.getBoolean("DebugSkinRegister", "Debug (Common, IDE Only)",false,
                 "Logs all skin registration events to debug console.");
@@ -100,29 +105,17 @@ public class CommonProxy implements IGuiHandler {
 
     /**
      * <h2>load entity from UUID</h2>
-     * This checks every entity in every dimension for one with the proper UUID,
+     * This gets the entity with the proper UUID from any dimension, even ones from mods.
      * this is very similar to the system used in 1.8+.
      * NOTE: this is SERVER ONLY.
      *
-     * We can't use a foreach loop, if we do it will very often throw a java.util.ConcurrentModificationException
+     * the lookup is done through the UUID index rather than looping every loaded entity.
+     * @see EntityUuidIndex
      */
-    @Deprecated //use a world relative value via DimensionManager.getWorld(dimensionId)
+    @Deprecated //use a world relative value via EntityUuidIndex#getEntity(World, UUID)
     @Nullable
     public static Entity getEntityFromUuid(UUID uuid) {
-        //loop for dimensions, even ones from mods.
-        for (int w=0; w < MinecraftServer.getServer().worldServers.length; w++) {
-            if (MinecraftServer.getServer().worldServers[w] != null) {
-                //if the server isn't null, loop for the entities loaded in that server
-                for (int i=0; i< MinecraftServer.getServer().worldServers[w].loadedEntityList.size();i++) {
-                    //if it's an entity, not null, and has a matching UUID, then return it.
-                    if (MinecraftServer.getServer().worldServers[w].loadedEntityList.get(i) instanceof Entity &&
-                            ((Entity) MinecraftServer.getServer().worldServers[w].loadedEntityList.get(i)).getUniqueID().equals(uuid)) {
-                        return (Entity) MinecraftServer.getServer().worldServers[w].loadedEntityList.get(i);
-                    }
-                }
-            }
-        }
-        return null;
+        return EntityUuidIndex.getEntity(uuid);
     }
 
 
@@ -0,0 +1,352 @@
+package ebf.tim.utility;
+
+import cofh.api.energy.IEnergyHandler;
+import mods.railcraft.api.electricity.IElectricGrid;
+import net.minecraft.block.Block;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.util.ForgeDirection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>Energy source cache</h1>
+ * remembers the energy provider for each rail an electric train has been on, so it doesn't have to check the blocks above and below it every fuel tick.
+ *
+ * a source is the first CoFH energy handler, or railcraft electric grid, from 1 block below the rail to 4 above it, the same area the trains always checked.
+ * sources are dropped when their tile entity is removed, when a block in their area is placed or broken, and when their chunk or world unloads.
+ * there's no event for tile entities that are added without a block being placed, so rails without a source are checked again every
+ * @see #RECHECK_TICKS
+ * ticks.
+ * each world has it's own cache, which reads the blocks through
+ * @see BlockAccess
+ * so the tests can give it blocks without a world.
+ * electric trains are charged a consist at a time, through
+ * @see #charge(World, int[], int[], int)
+ * so a source under more than one of them is only drawn from once.
+ * @see ebf.tim.blocks.rails.RailPathCache
+ * @author Eternal Blue Flame
+ */
+public class EnergySourceCache {
+
+    /**how long a rail with no source is remembered before it's checked again, in ticks.*/
+    public static final int RECHECK_TICKS = 100;
+    /**the area around the rail that's checked for a source, as the lowest and highest Y offset.*/
+    public static final int MIN_OFFSET = -1, MAX_OFFSET = 4;
+
+    /**the cache for each world.*/
+    private static final Map<World, EnergySourceCache> caches = new HashMap<>();
+
+    /**the blocks this cache finds the sources in.*/
+    private final BlockAccess blocks;
+    /**the sources, mapped by the rail position.*/
+    private final LongHashMap sources = new LongHashMap();
+    /**the sources, grouped by the chunk they are in, so they can be dropped when it unloads.*/
+    private final LongHashMap chunks = new LongHashMap();
+
+    EnergySourceCache(BlockAccess blocks){
+        this.blocks = blocks;
+    }
+
+    /**
+     * <h2>draw</h2>
+     * takes energy from the source for the rail, if there is one.
+     * @param amount the most energy to take
+     * @return the energy that was taken, 0 if there's no source or it's empty.
+     */
+    public static int draw(World world, int x, int y, int z, int amount){
+        return getCache(world).draw(x, y, z, amount);
+    }
+
+    /**
+     * <h2>charge</h2>
+     * draws the energy for every electric train in a consist in one go, rather than each of them drawing from the rail it's on.
+     * trains on rails with the same source are asked for together, so the source is only drawn from once for all of them.
+     * @param positions the rail each train is on, as X, Y and Z, three for each train.
+     * @param amounts the most energy each train can take, it's replaced with the energy the train got.
+     * @param count the number of trains.
+     * @return the energy that was taken for all of them.
+     */
+    public static int charge(World world, int[] positions, int[] amounts, int count){
+        return getCache(world).charge(positions, amounts, count);
+    }
+
+    /**
+     * <h2>get source</h2>
+     * gets the cached source for the rail, finding it again if there isn't one, or the one there is out of date.
+     */
+    public static EnergySource getSource(World world, int x, int y, int z){
+        return getCache(world).getSource(x, y, z);
+    }
+
+    /**drops the sources that could use the block, called when a block is placed or broken.*/
+    public static void invalidate(World world, int x, int y, int z){
+        EnergySourceCache cache = caches.get(world);
+        if(cache != null){
+            cache.invalidate(x, y, z);
+        }
+    }
+
+    /**drops the sources in an unloading chunk*/
+    public static void removeChunk(Chunk chunk){
+        EnergySourceCache cache = caches.get(chunk.worldObj);
+        if(cache != null){
+            cache.removeChunk(chunk.xPosition, chunk.zPosition);
+        }
+    }
+
+    /**drops every source for a world that's unloading*/
+    public static void removeWorld(World world){
+        caches.remove(world);
+    }
+
+    private static EnergySourceCache getCache(World world){
+        EnergySourceCache cache = caches.get(world);
+        if(cache == null){
+            cache = new EnergySourceCache(new WorldAccess(world));
+            caches.put(world, cache);
+        }
+        return cache;
+    }
+
+
+    /*
+     * <h2>the cache for a world</h2>
+     */
+
+    int draw(int x, int y, int z, int amount){
+        return draw(getSource(x, y, z), amount);
+    }
+
+    int charge(int[] positions, int[] amounts, int count){
+        EnergySource[] found = new EnergySource[count];
+        for(int i=0; i<count; i++){
+            found[i] = getSource(positions[i*3], positions[i*3+1], positions[i*3+2]);
+        }
+        int total =0, drawn, wanted;
+        for(int i=0; i<count; i++){
+            if(found[i] == null){
+                continue;
+            }
+            EnergySource source = found[i];
+            if(source.handler == null && source.grid != null){
+                //the grid only gives whole draws, so each train gets all of what it asked for, or nothing.
+                for(int j=i; j<count; j++){
+                    if(found[j] == source){
+                        amounts[j] = draw(source, amounts[j]);
+                        total += amounts[j];
+                        found[j] = null;
+                    }
+                }
+                continue;
+            }
+            wanted =0;
+            for(int j=i; j<count; j++){
+                if(found[j] == source){
+                    wanted += amounts[j];
+                }
+            }
+            drawn = draw(source, wanted);
+            total += drawn;
+            //hand out what was drawn in the order the trains were given.
+            for(int j=i; j<count; j++){
+                if(found[j] == source){
+                    amounts[j] = Math.min(amounts[j], drawn);
+                    drawn -= amounts[j];
+                    found[j] = null;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static int draw(EnergySource source, int amount){
+        if(amount <= 0){
+            return 0;
+        }
+        if(source.handler != null){
+            int drawn;
+            for (ForgeDirection direction : ForgeDirection.VALID_DIRECTIONS) {
+                drawn = source.handler.extractEnergy(direction, amount, false);
+                if (drawn > 0) {
+                    return drawn;
+                }
+            }
+        } else if(source.grid != null && source.grid.getChargeHandler().getCharge() >= amount){
+            source.grid.getChargeHandler().removeCharge(amount);
+            return amount;
+        }
+        return 0;
+    }
+
+    EnergySource getSource(int x, int y, int z){
+        long key = getKey(x,y,z);
+        EnergySource source = (EnergySource) sources.getValueByKey(key);
+        if(source != null){
+            if(source.isValid(blocks)){
+                return source;
+            }
+            remove(source);
+        }
+
+        source = find(key, x, y, z);
+        sources.add(key, source);
+        getChunk(x >> 4, z >> 4, true).add(source);
+        return source;
+    }
+
+    void invalidate(int x, int y, int z){
+        EnergySource source;
+        for(int i = y - MAX_OFFSET; i <= y - MIN_OFFSET; i++){
+            source = (EnergySource) sources.getValueByKey(getKey(x, i, z));
+            if(source != null){
+                remove(source);
+            }
+        }
+    }
+
+    void removeChunk(int chunkX, int chunkZ){
+        List<EnergySource> list = getChunk(chunkX, chunkZ, false);
+        if(list != null){
+            for(EnergySource source : list){
+                sources.remove(source.key);
+            }
+            chunks.remove(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+        }
+    }
+
+    /**@return the number of rails with a cached source, or a cached lack of one.*/
+    int size(){
+        return sources.getNumHashElements();
+    }
+
+    /**checks the area around the rail for a source, closest to the bottom first.*/
+    private EnergySource find(long key, int x, int y, int z){
+        TileEntity te;
+        Block b;
+        long now = blocks.getTotalWorldTime();
+        for (int i = MIN_OFFSET; i <= MAX_OFFSET; i++) {
+            te = blocks.getTileEntity(x, y + i, z);
+            if (te instanceof IEnergyHandler) {
+                return new EnergySource(key, x, z, now, te, null, (IEnergyHandler) te, null);
+            } else if (te instanceof IElectricGrid) {
+                return new EnergySource(key, x, z, now, te, null, null, (IElectricGrid) te);
+            }
+            b = blocks.getBlock(x, y + i, z);
+            if (b instanceof IElectricGrid) {
+                return new EnergySource(key, x, z, now, null, b, null, (IElectricGrid) b).setBlockY(y + i);
+            }
+        }
+        return new EnergySource(key, x, z, now, null, null, null, null);
+    }
+
+    private void remove(EnergySource source){
+        sources.remove(source.key);
+        long chunkKey = ChunkCoordIntPair.chunkXZ2Int(source.chunkX, source.chunkZ);
+        List<EnergySource> list = getChunk(source.chunkX, source.chunkZ, false);
+        if(list != null){
+            list.remove(source);
+            if(list.size() == 0){
+                chunks.remove(chunkKey);
+            }
+        }
+    }
+
+    /**packs a block position into a single key, 26 bits for X and Z, and 8 for Y, the same limits as the world.*/
+    private static long getKey(int x, int y, int z){
+        return ((x & 0x3FFFFFFL) << 34) | ((z & 0x3FFFFFFL) << 8) | (y & 0xFFL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<EnergySource> getChunk(int x, int z, boolean create){
+        long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        List<EnergySource> list = (List<EnergySource>) chunks.getValueByKey(key);
+        if(list == null && create){
+            list = new ArrayList<>();
+            chunks.add(key, list);
+        }
+        return list;
+    }
+
+
+    /**
+     * <h2>Block access</h2>
+     * the blocks and tile entities the sources are found in, and the time, a world in game.
+     */
+    interface BlockAccess {
+        TileEntity getTileEntity(int x, int y, int z);
+        Block getBlock(int x, int y, int z);
+        long getTotalWorldTime();
+    }
+
+    /**the block access for a world.*/
+    private static class WorldAccess implements BlockAccess {
+        private final World world;
+        private WorldAccess(World world){
+            this.world = world;
+        }
+        @Override
+        public TileEntity getTileEntity(int x, int y, int z){return world.getTileEntity(x, y, z);}
+        @Override
+        public Block getBlock(int x, int y, int z){return world.getBlock(x, y, z);}
+        @Override
+        public long getTotalWorldTime(){return world.getTotalWorldTime();}
+    }
+
+
+    /**
+     * <h2>Energy source</h2>
+     * the energy provider for a single rail, or the lack of one.
+     */
+    public static class EnergySource {
+        /**the packed position, used as the key for the source map*/
+        private final long key;
+        /**the chunk the rail is in*/
+        private final int chunkX, chunkZ;
+        /**the world time the source was found*/
+        private final long checked;
+        /**the tile entity of the source, null if it's a block or there isn't one*/
+        public final TileEntity tile;
+        /**the block of the source, if it's a block based railcraft grid, and it's Y position*/
+        public final Block block;
+        private int blockX, blockY, blockZ;
+        /**the CoFH energy handler, null if the source isn't one*/
+        public final IEnergyHandler handler;
+        /**the railcraft electric grid, null if the source isn't one*/
+        public final IElectricGrid grid;
+
+        private EnergySource(long key, int x, int z, long checked, TileEntity tile, Block block, IEnergyHandler handler, IElectricGrid grid){
+            this.key = key;
+            this.chunkX = x >> 4;
+            this.chunkZ = z >> 4;
+            this.blockX = x;
+            this.blockZ = z;
+            this.checked = checked;
+            this.tile = tile;
+            this.block = block;
+            this.handler = handler;
+            this.grid = grid;
+        }
+
+        private EnergySource setBlockY(int y){
+            blockY = y;
+            return this;
+        }
+
+        /**@return false if the tile entity or block of the source is gone, or there wasn't one, and it's time to check again.*/
+        private boolean isValid(BlockAccess blocks){
+            if(tile != null){
+                return !tile.isInvalid();
+            } else if(block != null){
+                return blocks.getBlock(blockX, blockY, blockZ) == block;
+            }
+            return blocks.getTotalWorldTime() - checked < RECHECK_TICKS;
+        }
+    }
+}
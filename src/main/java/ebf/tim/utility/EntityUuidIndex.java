@@ -0,0 +1,141 @@
+package ebf.tim.utility;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * <h1>Entity UUID index</h1>
+ * a server side map of UUID to entity for every loaded world, so lookups don't have to walk every loaded entity.
+ * entries are added when an entity joins the world, and removed when the world removes it,
+ *     which is when it dies, changes world, or it's chunk unloads, that's from the
+ * @see EventManagerServer.WorldListener
+ * which is added to each server world as it loads, so entities in spawn and force loaded chunks don't stay in the index after they die.
+ * entities are also dropped when their chunk or world unloads, or if one somehow got missed, the next time they are looked up.
+ * the events that maintain this are in
+ * @see EventManagerServer
+ * @author Eternal Blue Flame
+ */
+public class EntityUuidIndex {
+
+    /**the index for each world, mapped by dimension ID*/
+    private static final Map<Integer, Map<UUID, Entity>> worlds = new HashMap<>();
+
+    /**adds an entity to the index of the world it's in, replacing any older entity with the same UUID*/
+    public static void add(Entity entity){
+        if(entity == null || entity.worldObj == null || entity.worldObj.isRemote){
+            return;
+        }
+        add(entity.worldObj.provider.dimensionId, entity);
+    }
+
+    /**adds an entity to the index of a dimension, replacing any older entity with the same UUID*/
+    public static void add(int dimension, Entity entity){
+        Map<UUID, Entity> index = worlds.get(dimension);
+        if(index == null){
+            index = new HashMap<>();
+            worlds.put(dimension, index);
+        }
+        index.put(entity.getUniqueID(), entity);
+    }
+
+    /**removes an entity from the index of the world it's in, if it's still the one indexed for it's UUID*/
+    public static void remove(Entity entity){
+        if(entity == null || entity.worldObj == null){
+            return;
+        }
+        remove(entity.worldObj.provider.dimensionId, entity);
+    }
+
+    /**removes an entity from the index of a dimension, if it's still the one indexed for it's UUID*/
+    public static void remove(int dimension, Entity entity){
+        Map<UUID, Entity> index = worlds.get(dimension);
+        if(index != null && index.get(entity.getUniqueID()) == entity){
+            index.remove(entity.getUniqueID());
+        }
+    }
+
+    /**removes all the entities in an unloading chunk from the index*/
+    public static void removeChunk(Chunk chunk){
+        if(chunk.worldObj.isRemote || !worlds.containsKey(chunk.worldObj.provider.dimensionId)){
+            return;
+        }
+        for(List list : chunk.entityLists){
+            for(Object entity : list){
+                remove((Entity) entity);
+            }
+        }
+    }
+
+    /**drops the entire index for a world that's unloading*/
+    public static void removeWorld(World world){
+        if(!world.isRemote){
+            worlds.remove(world.provider.dimensionId);
+        }
+    }
+
+    /**
+     * <h2>get entity from UUID</h2>
+     * gets a loaded entity by UUID from a specific world.
+     * NOTE: this is SERVER ONLY.
+     * @return the entity, or null if it isn't loaded in that world.
+     */
+    @Nullable
+    public static Entity getEntity(World world, UUID uuid){
+        if(uuid == null || world == null){
+            return null;
+        }
+        return getEntity(world.provider.dimensionId, uuid);
+    }
+
+    /**gets a loaded entity by UUID from the world of a dimension, or null if it isn't loaded there.*/
+    @Nullable
+    public static Entity getEntity(int dimension, UUID uuid){
+        Map<UUID, Entity> index = worlds.get(dimension);
+        return index==null?null:validate(index, uuid);
+    }
+
+    /**
+     * <h2>get entity from UUID</h2>
+     * gets a loaded entity by UUID from any world, this only checks one map per loaded dimension.
+     * NOTE: this is SERVER ONLY.
+     * @return the entity, or null if it isn't loaded in any world.
+     */
+    @Nullable
+    public static Entity getEntity(UUID uuid){
+        if(uuid == null){
+            return null;
+        }
+        Entity entity;
+        for(Map<UUID, Entity> index : worlds.values()){
+            entity = validate(index, uuid);
+            if(entity != null){
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    /**returns the number of entities indexed for a world, mostly for debugging.*/
+    public static int size(World world){
+        Map<UUID, Entity> index = worlds.get(world.provider.dimensionId);
+        return index==null?0:index.size();
+    }
+
+    /**returns the entity for the UUID, dropping it from the index if it died or changed world since it was added.*/
+    private static Entity validate(Map<UUID, Entity> index, UUID uuid){
+        Entity entity = index.get(uuid);
+        if(entity != null && (entity.isDead ||
+                (entity.worldObj != null && index != worlds.get(entity.worldObj.provider.dimensionId)))){
+            index.remove(uuid);
+            return null;
+        }
+        return entity;
+    }
+}
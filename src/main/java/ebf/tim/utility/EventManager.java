@@ -11,7 +11,11 @@ import ebf.tim.blocks.RailTileEntity;
 import ebf.tim.entities.EntitySeat;
 import ebf.tim.entities.EntityTrainCore;
 import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.models.Impostor;
+import ebf.tim.models.ParticleFX;
+import ebf.tim.models.rails.RailSectionRenderer;
 import ebf.tim.networking.PacketInteract;
+import fexcraft.tmt.slim.MeshBatch;
 import fexcraft.tmt.slim.ModelBase;
 import fexcraft.tmt.slim.Tessellator;
 import fexcraft.tmt.slim.TextureManager;
@@ -28,8 +32,11 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ChatComponentText;
 import net.minecraft.util.ReportedException;
 import net.minecraft.util.StatCollector;
+import net.minecraftforge.client.event.RenderGameOverlayEvent;
+import net.minecraftforge.client.event.RenderWorldLastEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.GL11;
@@ -252,18 +259,41 @@ public class EventManager {
             }
 
         }*/
-        for (Object te:e.getChunk().chunkTileEntityMap.entrySet()){
+        if(!e.world.isRemote){
+            return;
+        }
+        for (Object te:e.getChunk().chunkTileEntityMap.values()){
             if(te instanceof RailTileEntity){
-                GL11.glDeleteLists(((RailTileEntity) te).railGLID,1);
-                ((RailTileEntity) te).railGLID=null;
+                RailSectionRenderer.remove((RailTileEntity) te);
+                ((RailTileEntity) te).releaseList();
             }
         }
+        //anything the rails didn't free is a leak, it's freed here so it doesn't stay allocated.
+        GLResourceManager.releaseChunk(e.getChunk().xPosition, e.getChunk().zPosition);
+    }
+
+    /**frees the rail section lists, the particle and lamp meshes, and the impostor snapshots when the client world unloads.*/
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void unloadWorld(WorldEvent.Unload event){
+        if(event.world.isRemote){
+            RailSectionRenderer.clear();
+            ParticleFX.clear();
+            GLResourceManager.releaseChunks();
+            Impostor.clear();
+        }
     }
 
 
     @SubscribeEvent
     @SuppressWarnings("unused")
     public void onRenderTick(TickEvent.RenderTickEvent event) {
+        if(event.phase==TickEvent.Phase.START){
+            //anything left from a frame that didn't finish the world render is dropped.
+            MeshBatch.clear();
+            TextureManager.endRender();
+            GLResourceManager.processReleases();
+        }
         if(event.side.isClient() && Minecraft.getMinecraft().currentScreen==null && getSelected()!=null){
             left=new ScaledResolution(Minecraft.getMinecraft(),Minecraft.getMinecraft().displayWidth, Minecraft.getMinecraft().displayHeight).getScaledWidth()/2;
             disp=getStaticStrings(getSelected(), Minecraft.getMinecraft().thePlayer);
@@ -296,6 +326,27 @@ public class EventManager {
         }
     }
 
+    /**adds the GL resource counts to the debug screen.*/
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void onDebugText(RenderGameOverlayEvent.Text event) {
+        if(Minecraft.getMinecraft().gameSettings.showDebugInfo){
+            event.left.add("");
+            event.left.addAll(GLResourceManager.getDebugLines());
+            event.left.addAll(TextureManager.getDebugLines());
+            if(ClientProxy.batchedRendering){
+                event.left.add("TiM batch: " + MeshBatch.getLastInstances() + " meshes in " + MeshBatch.getLastGroups() + " groups");
+            }
+        }
+    }
+
+    /**draws the transport meshes that are left in the batch, when there wasn't a tile entity render after them to draw them sooner.*/
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void onRenderWorldLast(RenderWorldLastEvent event) {
+        MeshBatch.flush(event.partialTicks);
+    }
+
     private static int left=0,longest;
     private static String[] disp;
     private static RenderItem itemRender = new RenderItem();
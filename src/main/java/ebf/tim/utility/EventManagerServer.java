@@ -1,10 +1,25 @@
 package ebf.tim.utility;
 
+import cpw.mods.fml.common.eventhandler.EventPriority;
 import cpw.mods.fml.common.eventhandler.SubscribeEvent;
 import cpw.mods.fml.common.gameevent.PlayerEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+import ebf.tim.blocks.rails.RailPathCache;
+import ebf.tim.entities.Consist;
 import ebf.tim.entities.EntitySeat;
 import ebf.tim.entities.GenericRailTransport;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.world.IWorldAccess;
+import net.minecraft.world.World;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.entity.EntityStruckByLightningEvent;
+import net.minecraftforge.event.world.BlockEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.oredict.OreDictionary;
+
+import java.util.List;
 
 public class EventManagerServer {
 
@@ -17,6 +32,57 @@ public class EventManagerServer {
     }
 
 
+    /**
+     * <h2>Server action queue and tick profiler</h2>
+     * runs the actions queued by packets, at the start of the tick so they are done before the entities update.
+     * and at the end of the tick, the consists that entered new chunks are chunkloaded, then the profiler collects the times for the tick.
+     * @see ServerActionQueue
+     * @see ChunkHandler#updateEntered()
+     * @see TickProfiler
+     */
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void serverTickEvent(TickEvent.ServerTickEvent event){
+        if (event.phase == TickEvent.Phase.START){
+            ServerActionQueue.drain();
+        } else {
+            ChunkHandler.updateEntered();
+            TickProfiler.endTick();
+        }
+    }
+
+
+    /**keeps the ore dictionary roles and the cached rail table items up to date when something is added to the ore dictionary.*/
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void oreRegisterEvent(OreDictionary.OreRegisterEvent event){
+        RailUtility.addOreRoles(event.Name, event.Ore);
+        RecipeManager.invalidateRailItems();
+    }
+
+
+    /**
+     * <h2>Energy source cache management</h2>
+     * drops the cached energy sources near blocks that are placed or broken, since it could be a new source, or the one that's cached.
+     * @see EnergySourceCache
+     */
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void blockPlaceEvent(BlockEvent.PlaceEvent event){
+        if (!event.world.isRemote){
+            EnergySourceCache.invalidate(event.world, event.x, event.y, event.z);
+        }
+    }
+
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void blockBreakEvent(BlockEvent.BreakEvent event){
+        if (!event.world.isRemote){
+            EnergySourceCache.invalidate(event.world, event.x, event.y, event.z);
+        }
+    }
+
+
     @SubscribeEvent
     @SuppressWarnings("unused")
     public void entityStruckByLightningEvent(EntityStruckByLightningEvent event) {
@@ -25,4 +91,112 @@ public class EventManagerServer {
         }
     }
 
+
+    /**
+     * <h2>UUID index, collision grid, rail path and energy source cache management</h2>
+     * keeps the UUID index up to date as entities join, and it, the collision grid and the caches up to date as chunks or worlds unload.
+     * these are all only used by the server, so client chunks and worlds unloading are ignored.
+     * each server world gets a listener when it loads, so the UUID index and consists also drop entities as soon as the world removes them.
+     * @see EntityUuidIndex
+     * @see CollisionGrid
+     * @see RailPathCache
+     * @see EnergySourceCache
+     */
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    @SuppressWarnings("unused")
+    public void entityJoinWorldEvent(EntityJoinWorldEvent event) {
+        if (!event.world.isRemote){
+            EntityUuidIndex.add(event.entity);
+        }
+    }
+
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void worldLoadEvent(WorldEvent.Load event) {
+        if (!event.world.isRemote){
+            event.world.addWorldAccess(new WorldListener(event.world));
+        }
+    }
+
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void chunkUnloadEvent(ChunkEvent.Unload event) {
+        if (!event.world.isRemote){
+            for (List list : event.getChunk().entityLists){
+                for (Object entity : list){
+                    if (entity instanceof GenericRailTransport){
+                        Consist.unload((GenericRailTransport) entity);
+                    }
+                }
+            }
+            EntityUuidIndex.removeChunk(event.getChunk());
+            CollisionGrid.removeChunk(event.getChunk());
+            RailPathCache.removeChunk(event.getChunk());
+            EnergySourceCache.removeChunk(event.getChunk());
+        }
+    }
+
+    @SubscribeEvent
+    @SuppressWarnings("unused")
+    public void worldUnloadEvent(WorldEvent.Unload event) {
+        //the client world has the same dimension ID as the server one in single player, so it can't drop the server's caches.
+        if (!event.world.isRemote){
+            EntityUuidIndex.removeWorld(event.world);
+            CollisionGrid.removeWorld(event.world);
+            RailPathCache.removeWorld(event.world);
+            EnergySourceCache.removeWorld(event.world);
+        }
+    }
+
+
+    /**
+     * <h2>World listener</h2>
+     * removes entities from the UUID index, and transports from their consist, as the world removes them.
+     * this is added to every server world when it loads.
+     * the world calls onEntityDestroy for entities that died or changed world at the end of the entity update,
+     *     and for the ones in chunks that unload, so nothing stays referenced after the world lets go of it.
+     * the rest of the methods are for rendering and sound, which the server doesn't do anything with.
+     * @see EntityUuidIndex
+     * @see Consist#unload(GenericRailTransport)
+     */
+    public static class WorldListener implements IWorldAccess {
+        private final int dimension;
+
+        public WorldListener(World world){
+            this.dimension = world.provider.dimensionId;
+        }
+
+        @Override
+        public void onEntityDestroy(Entity entity) {
+            EntityUuidIndex.remove(dimension, entity);
+            if (entity instanceof GenericRailTransport){
+                Consist.unload((GenericRailTransport) entity);
+            }
+        }
+
+        @Override
+        public void onEntityCreate(Entity entity) {}
+        @Override
+        public void markBlockForUpdate(int x, int y, int z) {}
+        @Override
+        public void markBlockForRenderUpdate(int x, int y, int z) {}
+        @Override
+        public void markBlockRangeForRenderUpdate(int x, int y, int z, int x2, int y2, int z2) {}
+        @Override
+        public void playSound(String sound, double x, double y, double z, float volume, float pitch) {}
+        @Override
+        public void playSoundToNearExcept(EntityPlayer player, String sound, double x, double y, double z, float volume, float pitch) {}
+        @Override
+        public void spawnParticle(String particle, double x, double y, double z, double motionX, double motionY, double motionZ) {}
+        @Override
+        public void playRecord(String record, int x, int y, int z) {}
+        @Override
+        public void broadcastSound(int sound, int x, int y, int z, int data) {}
+        @Override
+        public void playAuxSFX(EntityPlayer player, int sound, int x, int y, int z, int data) {}
+        @Override
+        public void destroyBlockPartially(int breakerID, int x, int y, int z, int progress) {}
+        @Override
+        public void onStaticEntitiesChanged() {}
+    }
 }
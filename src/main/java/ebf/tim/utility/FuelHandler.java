@@ -2,25 +2,23 @@ package ebf.tim.utility;
 
 
 import cofh.api.energy.IEnergyContainerItem;
-import cofh.api.energy.IEnergyHandler;
 import ebf.tim.TrainsInMotion;
 import ebf.tim.entities.EntityTrainCore;
 import ebf.tim.entities.GenericRailTransport;
 import ebf.tim.registry.TiMFluids;
-import mods.railcraft.api.electricity.IElectricGrid;
-import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
 import net.minecraft.init.Items;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.tileentity.TileEntityFurnace;
 import net.minecraft.util.MathHelper;
-import net.minecraftforge.common.util.ForgeDirection;
 import net.minecraftforge.fluids.FluidContainerRegistry;
 import net.minecraftforge.fluids.FluidRegistry;
 import net.minecraftforge.fluids.FluidStack;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * <h1>Fuel management for trains</h1>
  * used to process burnHeat addition and consumption.
@@ -29,6 +27,8 @@ import net.minecraftforge.fluids.FluidStack;
  */
 public class FuelHandler{
 
+	/**how often a consist of electric trains is charged from the rails, the same as the fuel tick.*/
+	public static final int CHARGE_TICKS = 10;
 	/**the main burnHeat variable used by most trains*/
 	public int burnHeat =0;
 	private float burnTime =0;
@@ -197,33 +197,9 @@ public class FuelHandler{
 									.extractEnergy(slotId.getStack(), 100, false)), true);
 				}
 			}
-			if (train.fill(null, new FluidStack(TiMFluids.fluidRedstone, 100), false) == 0) {
-				int draw = 0;
-				TileEntity te;
-				Block b;
-				for (int i=-1; i<5;i++) {
-					te=train.worldObj.getTileEntity(MathHelper.floor_double(train.posX), MathHelper.floor_double(train.posY + i), MathHelper.floor_double(train.posZ));
-					if (te instanceof IEnergyHandler) {
-						for (ForgeDirection direction : ForgeDirection.VALID_DIRECTIONS) {
-							draw = ((IEnergyHandler) te).receiveEnergy(direction, 100, true);
-
-							if (draw != 0) {
-								((IEnergyHandler) te).receiveEnergy(direction, 100, false);
-								train.fill(null, new FluidStack(TiMFluids.fluidRedstone, 100), true);
-								break;
-							}
-						}
-					} else{
-						b= train.worldObj.getBlock(MathHelper.floor_double(train.posX), MathHelper.floor_double(train.posY + i), MathHelper.floor_double(train.posZ));
-						if (b instanceof IElectricGrid && ((IElectricGrid) b).getChargeHandler().getCharge()>=100){
-							((IElectricGrid) b).getChargeHandler().removeCharge(100);
-							train.fill(null, new FluidStack(TiMFluids.fluidRedstone, 100), true);
-						}
-					}
-					if (draw != 0) {
-						break;
-					}
-				}
+			//draw from the energy sources for the rails, this is done for the whole consist at once, and the sources are cached.
+			if (canCharge(train)) {
+				chargeConsist(train);
 			}
 		}
 
@@ -239,6 +215,48 @@ public class FuelHandler{
 	}
 
 
+	/**
+	 * <h2>consist charging</h2>
+	 * draws the energy from the rails for every electric train in the consist of the train, in one go.
+	 * the consist is only charged once every fuel tick, by whichever of it's trains gets there first, so the rest skip it.
+	 * @see EnergySourceCache#charge(net.minecraft.world.World, int[], int[], int)
+	 */
+	public static void chargeConsist(EntityTrainCore train){
+		if (!train.getConsist().charge(train.worldObj.getTotalWorldTime(), CHARGE_TICKS)){
+			return;
+		}
+		List<GenericRailTransport> transports = train.getConsist().getTransports();
+		List<EntityTrainCore> charging = new ArrayList<>();
+		charging.add(train);
+		for (GenericRailTransport transport : transports){
+			if (transport != train && transport instanceof EntityTrainCore &&
+					transport.getTypes().contains(TrainsInMotion.transportTypes.ELECTRIC) && canCharge((EntityTrainCore) transport)){
+				charging.add((EntityTrainCore) transport);
+			}
+		}
+		int[] positions = new int[charging.size()*3];
+		int[] amounts = new int[charging.size()];
+		for (int i=0; i<charging.size(); i++){
+			positions[i*3] = MathHelper.floor_double(charging.get(i).posX);
+			positions[i*3+1] = MathHelper.floor_double(charging.get(i).posY);
+			positions[i*3+2] = MathHelper.floor_double(charging.get(i).posZ);
+			amounts[i] = 100;
+		}
+		EnergySourceCache.charge(train.worldObj, positions, amounts, charging.size());
+		for (int i=0; i<charging.size(); i++){
+			if (amounts[i] > 0) {
+				charging.get(i).fill(null, new FluidStack(TiMFluids.fluidRedstone, amounts[i]), true);
+			}
+		}
+	}
+
+	/**@return true if the train has redstone in it's slot, and room in the tank for a full draw from the rails.*/
+	private static boolean canCharge(EntityTrainCore train){
+		ItemStackSlot slot = train.getSlotIndexByID(400);
+		return slot != null && slot.getStack() != null && train.fill(null, new FluidStack(TiMFluids.fluidRedstone, 100), false) == 0;
+	}
+
+
 	public static void manageTanker(GenericRailTransport transport){
 		if (transport.getStackInSlot(0) != null){
 			//fill from top slot
@@ -0,0 +1,285 @@
+package ebf.tim.utility;
+
+import net.minecraft.client.renderer.GLAllocation;
+import net.minecraft.world.ChunkCoordIntPair;
+import org.lwjgl.opengl.GL15;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>GL resource manager</h1>
+ * keeps track of the display lists and buffers the mod makes, who owns them, and what chunk they belong to,
+ *     so they can be freed when their chunk unloads and the ones that are never freed can be found.
+ *
+ * resources are reference counted by owner, the one that allocates it is the first, and anything that shares it retains it.
+ * each owner releases it's own reference, a release from something that doesn't hold one is ignored,
+ *     so a late release of an ID that's been freed and handed out again can't free it from under the new owner.
+ * when the last owner releases it, it isn't deleted right away, it's queued and
+ *     freed at the start of the next frame, so nothing drawn this frame is deleted under it.
+ * freed IDs are kept in a pool, up to
+ * @see #POOL_SIZE
+ * of each type, and handed out again before new ones are made, a reused list has to be compiled again before it's drawn.
+ *
+ * everything here has to be called from the client thread. the GL calls go through the allocator,
+ *     so it can be swapped out to check the counting without a GL context.
+ * @author Eternal Blue Flame
+ */
+public class GLResourceManager {
+
+    /**the most freed IDs of each type that are kept for reuse, any more are deleted.*/
+    public static final int POOL_SIZE = 256;
+    /**the chunk key of resources that don't belong to a chunk, like model meshes.*/
+    public static final long NO_CHUNK = Long.MIN_VALUE;
+
+    /**the kinds of resource that are managed.*/
+    public enum Type {
+        LIST, BUFFER
+    }
+
+    /**makes and deletes the actual GL objects.*/
+    public interface Allocator {
+        int generate(Type type);
+        void delete(Type type, int id);
+    }
+
+    /**the allocator that's used, the GL one unless it's been replaced.*/
+    public static Allocator allocator = new Allocator() {
+        @Override
+        public int generate(Type type) {
+            return type == Type.LIST ? GLAllocation.generateDisplayLists(1) : GL15.glGenBuffers();
+        }
+
+        @Override
+        public void delete(Type type, int id) {
+            if (type == Type.LIST) {
+                GLAllocation.deleteDisplayLists(id);
+            } else {
+                GL15.glDeleteBuffers(id);
+            }
+        }
+    };
+
+    /**the live resources, mapped by their type and ID.*/
+    private static final Map<Long, Resource> resources = new HashMap<>();
+    /**the live resources of each chunk.*/
+    private static final Map<Long, List<Resource>> chunks = new HashMap<>();
+    /**the freed IDs that can be reused, for each type.*/
+    private static final Deque<Integer>[] pools = createPools();
+    /**the resources that have been released and are waiting to be freed.*/
+    private static final List<Resource> pending = new ArrayList<>();
+
+    private static long generated =0, reused =0, deleted =0, leaked =0;
+
+    /**
+     * <h2>allocate</h2>
+     * gets a new resource, from the pool if there is one there.
+     * @param owner what the resource is for, it holds the first reference, and has to be the one that releases it.
+     * @param chunk the chunk key, from ChunkCoordIntPair.chunkXZ2Int, or NO_CHUNK.
+     */
+    public static int allocate(Type type, Object owner, long chunk){
+        Integer id = pools[type.ordinal()].poll();
+        if(id == null){
+            id = allocator.generate(type);
+            generated++;
+        } else {
+            reused++;
+        }
+        Resource resource = new Resource(type, id, owner, chunk);
+        resources.put(getKey(type, id), resource);
+        if(chunk != NO_CHUNK){
+            List<Resource> list = chunks.get(chunk);
+            if(list == null){
+                list = new ArrayList<>();
+                chunks.put(chunk, list);
+            }
+            list.add(resource);
+        }
+        return id;
+    }
+
+    /**allocates a resource that doesn't belong to a chunk.*/
+    public static int allocate(Type type, Object owner){
+        return allocate(type, owner, NO_CHUNK);
+    }
+
+    /**allocates a resource that belongs to the chunk at the chunk position.*/
+    public static int allocate(Type type, Object owner, int chunkX, int chunkZ){
+        return allocate(type, owner, ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+    }
+
+    /**adds a reference to the resource for the owner, so it isn't freed until the owner releases it as well.*/
+    public static void retain(Type type, int id, Object owner){
+        Resource resource = resources.get(getKey(type, id));
+        if(resource != null && resource.owners.size() > 0){
+            resource.owners.add(owner);
+        }
+    }
+
+    /**
+     * removes a reference the owner holds, if it was the last the resource is queued to be freed at the start of the next frame.
+     * if the owner doesn't hold a reference, because it already released it, or the ID has been handed to something else, nothing happens.
+     */
+    public static void release(Type type, int id, Object owner){
+        Resource resource = resources.get(getKey(type, id));
+        if(resource == null){
+            return;
+        }
+        for(int i=0; i<resource.owners.size(); i++){
+            //owners are compared by identity, two equal meshes are still different owners.
+            if(resource.owners.get(i) == owner){
+                resource.owners.remove(i);
+                if(resource.owners.size() == 0){
+                    pending.add(resource);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * releases everything still in the chunk, called after the chunk's rails have been removed,
+     * so anything left was never released by it's owner and is counted as a leak.
+     */
+    public static void releaseChunk(int chunkX, int chunkZ){
+        List<Resource> list = chunks.get(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+        if(list == null){
+            return;
+        }
+        for(Resource resource : list){
+            if(resource.owners.size() > 0){
+                leak(resource);
+            }
+        }
+    }
+
+    /**releases everything that belongs to a chunk, called when the client world unloads.*/
+    public static void releaseChunks(){
+        for(List<Resource> list : chunks.values()){
+            for(Resource resource : list){
+                if(resource.owners.size() > 0){
+                    leak(resource);
+                }
+            }
+        }
+    }
+
+    /**
+     * <h2>process releases</h2>
+     * frees the resources that were released, into the pool, or deletes them if it's full.
+     * called at the start of every frame.
+     */
+    public static void processReleases(){
+        if(pending.size() == 0){
+            return;
+        }
+        List<Resource> list;
+        for(Resource resource : pending){
+            resources.remove(getKey(resource.type, resource.id));
+            if(resource.chunk != NO_CHUNK){
+                list = chunks.get(resource.chunk);
+                if(list != null){
+                    list.remove(resource);
+                    if(list.size() == 0){
+                        chunks.remove(resource.chunk);
+                    }
+                }
+            }
+            if(pools[resource.type.ordinal()].size() < POOL_SIZE){
+                pools[resource.type.ordinal()].push(resource.id);
+            } else {
+                allocator.delete(resource.type, resource.id);
+                deleted++;
+            }
+        }
+        pending.clear();
+    }
+
+    /**@return the number of resources of the type that are in use.*/
+    public static int getLiveCount(Type type){
+        int count =0;
+        for(Resource resource : resources.values()){
+            if(resource.type == type && resource.owners.size() > 0){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**@return the number of freed IDs of the type waiting to be reused.*/
+    public static int getPooledCount(Type type){return pools[type.ordinal()].size();}
+
+    /**@return the number of resources waiting to be freed.*/
+    public static int getPendingCount(){return pending.size();}
+
+    /**@return the number of IDs that were made, reused from the pool, and deleted, since the game started.*/
+    public static long getGeneratedCount(){return generated;}
+    public static long getReusedCount(){return reused;}
+    public static long getDeletedCount(){return deleted;}
+
+    /**@return the number of resources that had to be freed because their owner never released them.*/
+    public static long getLeakedCount(){return leaked;}
+
+    /**@return the lines for the debug screen.*/
+    public static List<String> getDebugLines(){
+        List<String> lines = new ArrayList<>();
+        lines.add("TiM GL lists: " + getLiveCount(Type.LIST) + " live, " + getPooledCount(Type.LIST) + " pooled");
+        lines.add("TiM GL buffers: " + getLiveCount(Type.BUFFER) + " live, " + getPooledCount(Type.BUFFER) + " pooled");
+        lines.add("TiM GL: " + generated + " made, " + reused + " reused, " + deleted + " deleted, " +
+                pending.size() + " pending, " + leaked + " leaked");
+        return lines;
+    }
+
+    /**forgets every resource and count, without freeing anything, the tests use this.*/
+    static void reset(){
+        resources.clear();
+        chunks.clear();
+        for(Deque<Integer> pool : pools){
+            pool.clear();
+        }
+        pending.clear();
+        generated = reused = deleted = leaked =0;
+    }
+
+    private static void leak(Resource resource){
+        leaked++;
+        if(DebugUtil.dev()){
+            DebugUtil.println("GL resource leak", resource.type, resource.id, "owned by", resource.owners);
+        }
+        resource.owners.clear();
+        pending.add(resource);
+    }
+
+    private static long getKey(Type type, int id){
+        return ((long) type.ordinal() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Deque<Integer>[] createPools(){
+        Deque<Integer>[] pools = new Deque[Type.values().length];
+        for(int i=0; i<pools.length; i++){
+            pools[i] = new ArrayDeque<>();
+        }
+        return pools;
+    }
+
+
+    /**a display list or buffer, with it's chunk, and the owners that hold a reference to it, empty once it's been released.*/
+    private static class Resource {
+        private final Type type;
+        private final int id;
+        private final List<Object> owners = new ArrayList<>(1);
+        private final long chunk;
+
+        private Resource(Type type, int id, Object owner, long chunk){
+            this.type = type;
+            this.id = id;
+            owners.add(owner);
+            this.chunk = chunk;
+        }
+    }
+}
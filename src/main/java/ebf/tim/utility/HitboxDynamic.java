@@ -1,13 +1,15 @@
 package ebf.tim.utility;
 
 import ebf.tim.TrainsInMotion;
+import ebf.tim.entities.Consist;
 import ebf.tim.entities.EntityBogie;
 import ebf.tim.entities.EntitySeat;
 import ebf.tim.entities.GenericRailTransport;
+import fexcraft.tmt.slim.Vec3d;
 import fexcraft.tmt.slim.Vec3f;
 import net.minecraft.entity.Entity;
-import net.minecraft.entity.EntityLiving;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.AxisAlignedBB;
 import net.minecraft.util.MathHelper;
 import net.minecraft.util.Vec3;
 
@@ -19,6 +21,16 @@ public class HitboxDynamic {
 
     public Vec3f[] shape, pos, renderShape;
     float longest=0;
+    /**the axis aligned bounds of the positioned hitbox, used to skip the more expensive checks on anything that's nowhere near.*/
+    float minX, minY, minZ, maxX, maxY, maxZ;
+    /**the dimension and cells this is in on the collision grid, the dimension is null when it's not on the grid.
+     * @see CollisionGrid*/
+    Integer gridDimension=null;
+    int cellMinX, cellMaxX, cellMinZ, cellMaxZ;
+    /**the last grid query that found this.*/
+    int queryStamp=0;
+    /**the coupler point of the last coupling check, reused so the checks don't make garbage.*/
+    private final Vec3d coupler = new Vec3d(0,0,0);
 
 
     public HitboxDynamic(float width, float height, float depth){
@@ -27,9 +39,12 @@ public class HitboxDynamic {
         shape= new Vec3f[]{
                 new Vec3f(-width,0,depth),new Vec3f(width,0,depth),new Vec3f(width,0,-depth),new Vec3f(-width,0,-depth),
                 new Vec3f(-width,height,depth),new Vec3f(width,height,depth),new Vec3f(width,height,-depth),new Vec3f(-width,height,-depth)};
-        pos=new Vec3f[]{shape[0],shape[1], shape[6]};
+        pos=new Vec3f[]{new Vec3f(shape[0]),new Vec3f(shape[1]), new Vec3f(shape[6])};
         if(TrainsInMotion.proxy.isClient()) {
-            renderShape = shape.clone();
+            renderShape = new Vec3f[8];
+            for (int i = 0; i < 8; i++) {
+                renderShape[i] = new Vec3f(shape[i]);
+            }
         }
         if(Math.abs(width)>longest){
             longest=Math.abs(width);
@@ -40,13 +55,28 @@ public class HitboxDynamic {
     }
 
 
+    /**positions the hitbox, the existing vectors are reused so this doesn't make any garbage.*/
     public void position(double x, double y, double z, float pitch, float yaw){
-        pos[0] = RailUtility.rotatePoint(shape[0], pitch,  yaw, 0).addVector(f(x), f(y), f(z));
-        pos[1] = RailUtility.rotatePoint(shape[1], pitch,  yaw, 0).addVector(f(x), f(y), f(z));
-        pos[2] = RailUtility.rotatePoint(shape[6], pitch,  yaw, 0).addVector(f(x), f(y), f(z));
+        RailUtility.rotatePoint(shape[0], pitch,  yaw, 0, pos[0]);
+        RailUtility.rotatePoint(shape[1], pitch,  yaw, 0, pos[1]);
+        RailUtility.rotatePoint(shape[6], pitch,  yaw, 0, pos[2]);
+        for (Vec3f p : pos){
+            p.xCoord+=f(x);
+            p.yCoord+=f(y);
+            p.zCoord+=f(z);
+        }
+        //the fourth corner is the opposite of the second one.
+        float cornerX = pos[0].xCoord + pos[2].xCoord - pos[1].xCoord, cornerZ = pos[0].zCoord + pos[2].zCoord - pos[1].zCoord;
+        minX = Math.min(Math.min(pos[0].xCoord, pos[1].xCoord), Math.min(pos[2].xCoord, cornerX));
+        maxX = Math.max(Math.max(pos[0].xCoord, pos[1].xCoord), Math.max(pos[2].xCoord, cornerX));
+        minZ = Math.min(Math.min(pos[0].zCoord, pos[1].zCoord), Math.min(pos[2].zCoord, cornerZ));
+        maxZ = Math.max(Math.max(pos[0].zCoord, pos[1].zCoord), Math.max(pos[2].zCoord, cornerZ));
+        minY = Math.min(pos[0].yCoord, pos[2].yCoord);
+        maxY = Math.max(pos[0].yCoord, pos[2].yCoord);
+
         if (TrainsInMotion.proxy.isClient()) {
             for (int i = 0; i < 8; i++) {
-                renderShape[i] = RailUtility.rotatePoint(shape[i], pitch, yaw, 0);
+                RailUtility.rotatePoint(shape[i], pitch, yaw, 0, renderShape[i]);
             }
         }
     }
@@ -55,33 +85,28 @@ public class HitboxDynamic {
 
     /**
      * AWT methods
+     * the lists are reused between calls, so the result of one call is only valid until the next.
      */
 
     List<Entity> arraylist = new ArrayList<>();
+    List<GenericRailTransport> transports = new ArrayList<>();
     List[] entities;
-    int i,j,k,l;
-    public boolean contains(Entity host){
-
-        //todo: make a minecraft aabb, then move it along the axis of the rotation for the length and do checks
-        //    checking for a series of squares should be far simpler and more reliable than a polygon
-        //    additionally there only has to be one aabb.
-        //    distance between aabb's will have to change dependant on rotation,
-        //    width and depth will have to change based on rotation
 
-        arraylist = new ArrayList<>();
-        i = MathHelper.floor_double((-longest+host.posX - 0.25) / 16.0D);
-        j = MathHelper.floor_double((longest+host.posX + 0.25) / 16.0D);
-        k = MathHelper.floor_double((-longest+host.posZ - 0.25) / 16.0D);
-        l = MathHelper.floor_double((longest+host.posZ + 0.25) / 16.0D);
+    /**returns if there's a player inside the hitbox.*/
+    public boolean contains(Entity host){
+        return getCollidingPlayers(host).size()>0;
+    }
 
-        for (int i1 = i; i1 <= j; ++i1) {
-            for (int j1 = k; j1 <= l; ++j1) {
-                if (host.worldObj.getChunkProvider().chunkExists(i1, j1)) {
-                    entities = host.worldObj.getChunkFromChunkCoords(i1, j1).entityLists;
-                    for (List olist: entities) {
-                        for(Object obj : olist) {
-                            if(obj instanceof EntityLiving){
-                                arraylist.add((EntityLiving) obj);
+    public List<Entity> getCollidingPlayers(Entity host){
+        arraylist.clear();
+        for (int x = (MathHelper.floor_float(minX) - 2) >> 4; x <= (MathHelper.floor_float(maxX) + 2) >> 4; x++) {
+            for (int z = (MathHelper.floor_float(minZ) - 2) >> 4; z <= (MathHelper.floor_float(maxZ) + 2) >> 4; z++) {
+                if (host.worldObj.getChunkProvider().chunkExists(x, z)) {
+                    entities = host.worldObj.getChunkFromChunkCoords(x, z).entityLists;
+                    for (int y = getMinSection(); y <= getMaxSection(); y++) {
+                        for(Object obj : entities[y]) {
+                            if(obj instanceof EntityPlayer && intersects(((Entity) obj).boundingBox)){
+                                arraylist.add((Entity)obj);
                             }
                         }
                     }
@@ -89,82 +114,52 @@ public class HitboxDynamic {
             }
         }
 
-        for (Entity o : arraylist) {
-            if (o instanceof EntityPlayer) {
-                return containsPoint(o.posX,o.posY, o.posZ);
-            }
-        }
-        return false;
+        return arraylist;
     }
 
-    public List<Entity> getCollidingPlayers(GenericRailTransport host){
-        arraylist = new ArrayList<>();
-        i = MathHelper.floor_double((-longest+host.posX - 0.25) / 16.0D);
-        j = MathHelper.floor_double((longest+host.posX + 0.25) / 16.0D);
-        k = MathHelper.floor_double((-longest+host.posZ - 0.25) / 16.0D);
-        l = MathHelper.floor_double((longest+host.posZ + 0.25) / 16.0D);
-
-        for (int i1 = i; i1 <= j; ++i1) {
-            for (int j1 = k; j1 <= l; ++j1) {
-                if (host.worldObj.getChunkProvider().chunkExists(i1, j1)) {
-                    entities = host.worldObj.getChunkFromChunkCoords(i1, j1).entityLists;
-                    for (List olist: entities) {
-                        for(Object obj : olist) {
-                            if(obj instanceof EntityPlayer && containsPlayer((Entity) obj)){
-                                arraylist.add((Entity)obj);
-                            }
+    /**
+     * <h2>colliding entities</h2>
+     * gets the entities inside the hitbox, and if coupling is on, tries to couple with the transports near either end.
+     * transports are found through the collision grid, everything else is found through the chunk sections the hitbox overlaps.
+     * @see CollisionGrid
+     */
+    public List<Entity> getCollidingEntities(GenericRailTransport host){
+        arraylist.clear();
+        if(host.getBoolean(GenericRailTransport.boolValues.COUPLINGFRONT) || host.getBoolean(GenericRailTransport.boolValues.COUPLINGBACK)) {
+            transports.clear();
+            CollisionGrid.getTransports(host.worldObj, host.posX - longest - 0.5, host.posZ - longest - 0.5,
+                    host.posX + longest + 0.5, host.posZ + longest + 0.5, transports);
+            Vec3 vec;
+            for (GenericRailTransport stock : transports) {
+                if (stock == host) {
+                    continue;
+                }
+                if (host.getBoolean(GenericRailTransport.boolValues.COUPLINGFRONT)) {
+                    vec = getCouplerPoint(host, true);
+                    if (stock.collisionHandler.containsPoint(vec.xCoord, vec.yCoord, vec.zCoord)) {
+                        if (transportCollide(host, stock, true)) {
+                            continue;
                         }
                     }
                 }
+                if (host.getBoolean(GenericRailTransport.boolValues.COUPLINGBACK)) {
+                    vec = getCouplerPoint(host, false);
+                    if (stock.collisionHandler.containsPoint(vec.xCoord, vec.yCoord, vec.zCoord)) {
+                        transportCollide(host, stock, false);
+                    }
+                }
             }
         }
 
-        return arraylist;
-    }
+        for (int x = (MathHelper.floor_float(minX) - 2) >> 4; x <= (MathHelper.floor_float(maxX) + 2) >> 4; x++) {
+            for (int z = (MathHelper.floor_float(minZ) - 2) >> 4; z <= (MathHelper.floor_float(maxZ) + 2) >> 4; z++) {
+                if (host.worldObj.getChunkProvider().chunkExists(x, z)) {
+                    entities = host.worldObj.getChunkFromChunkCoords(x, z).entityLists;
+                    for (int y = getMinSection(); y <= getMaxSection(); y++) {
+                        for(Object obj : entities[y]) {
+                            if(obj instanceof EntitySeat || obj instanceof EntityBogie || obj instanceof GenericRailTransport){continue;}
 
-    GenericRailTransport stock;
-
-    public List<Entity> getCollidingEntities(GenericRailTransport host){
-        arraylist = new ArrayList<>();
-        i = MathHelper.floor_double((-longest+host.posX - 0.25) / 16.0D);
-        j = MathHelper.floor_double((longest+host.posX + 0.25) / 16.0D);
-        k = MathHelper.floor_double((-longest+host.posZ - 0.25) / 16.0D);
-        l = MathHelper.floor_double((longest+host.posZ + 0.25) / 16.0D);
-
-        for (int i1 = i; i1 <= j; ++i1) {
-            for (int j1 = k; j1 <= l; ++j1) {
-                if (host.worldObj.getChunkProvider().chunkExists(i1, j1)) {
-                    entities = host.worldObj.getChunkFromChunkCoords(i1, j1).entityLists;
-                    for (List olist: entities) {
-                        for(Object obj : olist) {
-                            if(obj instanceof EntitySeat || obj instanceof EntityBogie || obj ==host){continue;}
-
-                            if(obj instanceof GenericRailTransport) {
-                                stock=(GenericRailTransport)obj;
-                                Vec3 vec;
-                                if(host.getBoolean(GenericRailTransport.boolValues.COUPLINGFRONT)) {
-                                    vec =RailUtility.rotateDistance(longest+0.25f, host.rotationPitch, host.rotationYaw);
-                                    vec.addVector(host.posX, host.posY + 0.25, host.posZ);
-                                    if (stock.collisionHandler.containsPoint(vec.xCoord, vec.yCoord, vec.zCoord)) {
-                                        if (transportCollide(host, (GenericRailTransport) obj, true)) {
-                                            continue;
-                                        }
-                                    }
-                                }
-                                if(host.getBoolean(GenericRailTransport.boolValues.COUPLINGBACK)) {
-                                    vec = RailUtility.rotateDistance(-longest - 0.25f, host.rotationPitch, host.rotationYaw);
-                                    vec.addVector(host.posX, host.posY + 0.25, host.posZ);
-                                    if (stock.collisionHandler.containsPoint(vec.xCoord, vec.yCoord, vec.zCoord)) {
-                                        if (transportCollide(host, (GenericRailTransport) obj, false)) {
-                                            continue;
-                                        }
-                                    }
-                                }
-                                continue;
-
-                            }
-
-                            if(containsEntity((Entity) obj)){
+                            if(intersects(((Entity) obj).boundingBox)){
                                 arraylist.add((Entity)obj);
                             }
                         }
@@ -176,10 +171,29 @@ public class HitboxDynamic {
         return arraylist;
     }
 
+    /**the lowest chunk section an entity touching the hitbox could be stored in*/
+    private int getMinSection(){
+        return MathHelper.clamp_int((MathHelper.floor_float(minY) - 2) >> 4, 0, entities.length - 1);
+    }
+    /**the highest chunk section an entity touching the hitbox could be stored in*/
+    private int getMaxSection(){
+        return MathHelper.clamp_int((MathHelper.floor_float(maxY) + 2) >> 4, 0, entities.length - 1);
+    }
+
+    /**
+     * <h2>coupler point</h2>
+     * the point just past the front or back of a transport, where it's coupler reaches.
+     * the returned vector is reused by the next call, so it's only valid until then.
+     */
+    public Vec3 getCouplerPoint(GenericRailTransport transport, boolean front){
+        float distance = transport.collisionHandler.longest + 0.25f;
+        RailUtility.rotateDistance(front ? distance : -distance, transport.rotationPitch, transport.rotationYaw, coupler);
+        return coupler.addVector(transport.posX, transport.posY + 0.25, transport.posZ);
+    }
+
     public boolean transportCollide(GenericRailTransport host, GenericRailTransport target, boolean front){
         if(front){
-            Vec3 vec =RailUtility.rotateDistance(target.collisionHandler.longest+0.25f, target.rotationPitch, target.rotationYaw);
-            vec.addVector((target).posX,(target).posY+0.25,(target).posZ);
+            Vec3 vec =getCouplerPoint(target, true);
             if(containsPoint(vec.xCoord,vec.yCoord,vec.zCoord)){
                 if(target.getBoolean(GenericRailTransport.boolValues.COUPLINGFRONT)){
                     host.frontLinkedTransport=target.getUniqueID();
@@ -188,12 +202,11 @@ public class HitboxDynamic {
                     target.frontLinkedID=host.getEntityId();
                     host.setBoolean(GenericRailTransport.boolValues.COUPLINGFRONT,false);
                     target.setBoolean(GenericRailTransport.boolValues.COUPLINGFRONT,false);
-                    host.updateConsist();
+                    Consist.couple(host, target);
                     return true;
                 }
             } else {
-                vec =RailUtility.rotateDistance(-target.collisionHandler.longest-0.25f, target.rotationPitch, target.rotationYaw);
-                vec.addVector((target).posX,(target).posY+0.25,(target).posZ);
+                vec =getCouplerPoint(target, false);
                 if(containsPoint(vec.xCoord,vec.yCoord,vec.zCoord)) {
                     if (target.getBoolean(GenericRailTransport.boolValues.COUPLINGBACK)) {
                         host.frontLinkedTransport=target.getUniqueID();
@@ -202,14 +215,13 @@ public class HitboxDynamic {
                         target.backLinkedID=host.getEntityId();
                         host.setBoolean(GenericRailTransport.boolValues.COUPLINGFRONT,false);
                         target.setBoolean(GenericRailTransport.boolValues.COUPLINGBACK,false);
-                        host.updateConsist();
+                        Consist.couple(host, target);
                         return true;
                     }
                 }
             }
         } else {
-            Vec3 vec =RailUtility.rotateDistance(target.collisionHandler.longest+0.25f, target.rotationPitch, target.rotationYaw);
-            vec.addVector((target).posX,(target).posY+0.25,(target).posZ);
+            Vec3 vec =getCouplerPoint(target, true);
             if(containsPoint(vec.xCoord,vec.yCoord,vec.zCoord)){
                 if(target.getBoolean(GenericRailTransport.boolValues.COUPLINGFRONT)){
                     host.backLinkedTransport=target.getUniqueID();
@@ -218,12 +230,11 @@ public class HitboxDynamic {
                     target.frontLinkedID=host.getEntityId();
                     host.setBoolean(GenericRailTransport.boolValues.COUPLINGBACK,false);
                     target.setBoolean(GenericRailTransport.boolValues.COUPLINGFRONT,false);
-                    host.updateConsist();
+                    Consist.couple(host, target);
                     return true;
                 }
             } else {
-                vec =RailUtility.rotateDistance(-target.collisionHandler.longest-0.25f, target.rotationPitch, target.rotationYaw);
-                vec.addVector((target).posX,(target).posY+0.25,(target).posZ);
+                vec =getCouplerPoint(target, false);
                 if(containsPoint(vec.xCoord,vec.yCoord,vec.zCoord)) {
                     if (target.getBoolean(GenericRailTransport.boolValues.COUPLINGBACK)) {
                         host.backLinkedTransport=target.getUniqueID();
@@ -232,7 +243,7 @@ public class HitboxDynamic {
                         target.backLinkedID=host.getEntityId();
                         host.setBoolean(GenericRailTransport.boolValues.COUPLINGBACK,false);
                         target.setBoolean(GenericRailTransport.boolValues.COUPLINGBACK,false);
-                        host.updateConsist();
+                        Consist.couple(host, target);
                         return true;
                     }
                 }
@@ -242,15 +253,53 @@ public class HitboxDynamic {
 
     }
     public boolean containsPoint(double x, double y, double z){
-        return containsPoint(pos[0],pos[1],pos[2], new Vec3f(x,y,z));
+        if (x < minX || x > maxX || z < minZ || z > maxZ || y <= pos[0].yCoord || y >= pos[2].yCoord) {
+            return false;
+        }
+        //project the point on the length and width axis of the hitbox, same as the static version, just without making vectors for it.
+        float axisX = pos[0].xCoord - pos[1].xCoord, axisZ = pos[0].zCoord - pos[1].zCoord;
+        double point = x * axisX + z * axisZ;
+        if (point >= pos[0].xCoord * axisX + pos[0].zCoord * axisZ || point <= pos[1].xCoord * axisX + pos[1].zCoord * axisZ) {
+            return false;
+        }
+        axisX = pos[1].xCoord - pos[2].xCoord;
+        axisZ = pos[1].zCoord - pos[2].zCoord;
+        point = x * axisX + z * axisZ;
+        return point < pos[1].xCoord * axisX + pos[1].zCoord * axisZ && point > pos[2].xCoord * axisX + pos[2].zCoord * axisZ;
     }
 
     public boolean containsPlayer(Entity e){
-        return containsPoint(pos[0],pos[1],pos[2], new Vec3f(e.posX,e.posY+(e.worldObj.isRemote?-1:0.25f),e.posZ));
+        return containsPoint(e.posX,e.posY+(e.worldObj.isRemote?-1:0.25f),e.posZ);
     }
 
     public boolean containsEntity(Entity e){
-        return containsPoint(pos[0],pos[1],pos[2], new Vec3f(e.posX,e.posY+0.25,e.posZ));
+        return containsPoint(e.posX,e.posY+0.25,e.posZ);
+    }
+
+    /**
+     * <h2>intersects</h2>
+     * checks if an axis aligned box, like the one on vanilla entities, overlaps the hitbox.
+     * this is a separating axis check, the box is projected on the length and width axis of the hitbox,
+     *     the world axis and height are covered by the bounds check.
+     */
+    public boolean intersects(AxisAlignedBB box){
+        if (box == null || box.maxX < minX || box.minX > maxX || box.maxZ < minZ || box.minZ > maxZ || box.maxY < minY || box.minY > maxY) {
+            return false;
+        }
+        double centerX = (box.minX + box.maxX) * 0.5, centerZ = (box.minZ + box.maxZ) * 0.5;
+        double halfX = (box.maxX - box.minX) * 0.5, halfZ = (box.maxZ - box.minZ) * 0.5;
+
+        float axisX = pos[0].xCoord - pos[1].xCoord, axisZ = pos[0].zCoord - pos[1].zCoord;
+        double center = centerX * axisX + centerZ * axisZ;
+        double radius = halfX * Math.abs(axisX) + halfZ * Math.abs(axisZ);
+        if (center - radius >= pos[0].xCoord * axisX + pos[0].zCoord * axisZ || center + radius <= pos[1].xCoord * axisX + pos[1].zCoord * axisZ) {
+            return false;
+        }
+        axisX = pos[1].xCoord - pos[2].xCoord;
+        axisZ = pos[1].zCoord - pos[2].zCoord;
+        center = centerX * axisX + centerZ * axisZ;
+        radius = halfX * Math.abs(axisX) + halfZ * Math.abs(axisZ);
+        return center - radius < pos[1].xCoord * axisX + pos[1].zCoord * axisZ && center + radius > pos[2].xCoord * axisX + pos[2].zCoord * axisZ;
     }
 
     public static boolean containsPoint(Vec3f O, Vec3f X, Vec3f Z, Vec3f P){
@@ -301,6 +301,7 @@ public class ItemStackSlot extends Slot {
                     inventory.setInventorySlotContents(slotNumber, stack);
             } else {
                 this.stack = stack;
+                updateHostIndex();
             }
             this.onSlotChanged();
             if(hostInventory!=null) {
@@ -381,6 +382,14 @@ public class ItemStackSlot extends Slot {
 
     public void setStack(ItemStack p_75215_1_) {
         stack=p_75215_1_;
+        updateHostIndex();
+    }
+
+    /**lets the transport's inventory index know the stack in this slot changed.*/
+    private void updateHostIndex(){
+        if(inventory instanceof GenericRailTransport && ((GenericRailTransport) inventory).inventory!=null){
+            ((GenericRailTransport) inventory).inventory.onStackChanged(this);
+        }
     }
 
     /**
@@ -0,0 +1,194 @@
+package ebf.tim.utility;
+
+import ebf.tim.TrainsInMotion;
+import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.items.ItemCraftGuide;
+import ebf.tim.models.Bogie;
+import fexcraft.tmt.slim.MeshBaker;
+import fexcraft.tmt.slim.ModelBase;
+import fexcraft.tmt.slim.ModelRendererTurbo;
+import fexcraft.tmt.slim.TexturedPolygon;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.ChatComponentText;
+import net.minecraft.world.World;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h1>Model report command</h1>
+ * a client command that writes the triangle count of every registered transport and bogie model at each level of detail,
+ *     so model makers can see what their details cost, and what the LOD settings take off.
+ * usage: /timmodels
+ * the CSV is written to TrainsInMotion/model-lod.csv in the config folder.
+ * it can also be run without the game, so model makers can check a model before it goes in a mod.
+ * @see #main(String[])
+ * @see ModelBase#getStaticMesh(int)
+ * @author Eternal Blue Flame
+ */
+public class ModelReportCommand extends CommandBase {
+
+    @Override
+    public String getCommandName() {
+        return "timmodels";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/timmodels";
+    }
+
+    /**it only reads models on the client, so anyone can use it.*/
+    @Override
+    public boolean canCommandSenderUseCommand(ICommandSender sender) {
+        return true;
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) {
+        File file = new File(ClientProxy.configDirectory, "TrainsInMotion/model-lod.csv");
+        try {
+            int models = writeCSV(file, ItemCraftGuide.itemEntries);
+            sender.addChatMessage(new ChatComponentText(models + " models written to " + file.getPath()));
+        } catch (IOException e) {
+            sender.addChatMessage(new ChatComponentText("Couldn't write the model report: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * <h2>offline report</h2>
+     * writes the report without starting the game, for the transports in the classes after the file,
+     *     which are either transports, or classes with static methods that list transports, like the main class of TiM^2.
+     * usage: java -cp (the mod and minecraft classes) ebf.tim.utility.ModelReportCommand model-lod.csv ebf.timsquared.TiMSquared
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2){
+            System.out.println("usage: ModelReportCommand <csv file> <transport or transport list class>...");
+            return;
+        }
+        //transports can't be made without the proxy.
+        if(TrainsInMotion.proxy == null){
+            TrainsInMotion.proxy = new CommonProxy();
+        }
+        List<Class> transports = new ArrayList<>();
+        Class c;
+        for(int i=1; i<args.length; i++){
+            c = Class.forName(args[i]);
+            if(GenericRailTransport.class.isAssignableFrom(c)){
+                transports.add(c);
+                continue;
+            }
+            for(Method method : c.getMethods()){
+                if(Modifier.isStatic(method.getModifiers()) && method.getParameterTypes().length == 0 &&
+                        method.getReturnType() == GenericRailTransport[].class){
+                    for(GenericRailTransport transport : (GenericRailTransport[]) method.invoke(null)){
+                        if(!transports.contains(transport.getClass())){
+                            transports.add(transport.getClass());
+                        }
+                    }
+                }
+            }
+        }
+        File file = new File(args[0]);
+        System.out.println(writeCSV(file, transports) + " models written to " + file.getPath());
+    }
+
+    /**
+     * <h2>CSV dump</h2>
+     * writes a row for every model of every transport in the classes, each model class is only written once.
+     * the LOD columns are the triangles in the baked static mesh, the animated parts are only rendered at full and near,
+     *     and models with their own render method don't use the baked mesh at all, so the LOD doesn't change them.
+     * @return the number of models written.
+     */
+    public static int writeCSV(File file, List<Class> transports) throws IOException {
+        if(file.getParentFile() != null){
+            file.getParentFile().mkdirs();
+        }
+        Set<String> written = new HashSet<>();
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write("transport,model,custom_render,parts,full,near,far,animated,unbaked\n");
+            GenericRailTransport transport;
+            for(Class c : transports){
+                try {
+                    transport = (GenericRailTransport) c.getConstructor(World.class).newInstance((World) null);
+                } catch (Exception e){
+                    DebugUtil.println(c.getName(), "couldn't be made for the model report");
+                    continue;
+                }
+                if(transport.getModel() != null){
+                    for(ModelBase model : transport.getModel()){
+                        writeRow(writer, transport, model, written);
+                    }
+                }
+                if(transport.bogies() != null){
+                    for(Bogie bogie : transport.bogies()){
+                        writeRow(writer, transport, bogie.bogieModel, written);
+                        if(bogie.subBogies != null){
+                            for(Bogie sub : bogie.subBogies){
+                                writeRow(writer, transport, sub.bogieModel, written);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return written.size();
+    }
+
+    private static void writeRow(Writer writer, GenericRailTransport transport, ModelBase model, Set<String> written) throws IOException {
+        if(model == null || !written.add(model.getClass().getName())){
+            return;
+        }
+        if(model.init){
+            model.initAllParts();
+        }
+        writer.write("\"" + transport.transportName().replace("\"", "'") + "\"," + model.getClass().getName() + "," +
+                hasCustomRender(model) + "," + model.getParts().size() + "," +
+                MeshBaker.countVertices(model.boxList) / 3 + "," +
+                MeshBaker.countVertices(model.boxList, ModelBase.getDetailSize(ModelBase.LOD_NEAR)) / 3 + "," +
+                MeshBaker.countVertices(model.boxList, ModelBase.getDetailSize(ModelBase.LOD_FAR)) / 3 + "," +
+                countTriangles(model.animatedList) + "," + countTriangles(model.unbakedList) + "\n");
+    }
+
+    /**@return true if the model overrides the entity render, rather than using the baked one from ModelBase.*/
+    private static boolean hasCustomRender(ModelBase model){
+        try {
+            return model.getClass().getMethod("render", Entity.class, float.class, float.class, float.class,
+                    float.class, float.class, float.class).getDeclaringClass() != ModelBase.class;
+        } catch (NoSuchMethodException e){
+            return false;
+        }
+    }
+
+    /**@return the triangles in the parts, polygons with more than 3 sides count as a fan, the same as the baker splits them.*/
+    private static int countTriangles(List<ModelRendererTurbo> parts){
+        int count =0;
+        if(parts == null){
+            return 0;
+        }
+        for(ModelRendererTurbo part : parts){
+            if(part == null){
+                continue;
+            }
+            for(TexturedPolygon face : part.getFaces()){
+                if(face.vertices.size() >= 3){
+                    count += face.vertices.size() - 2;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,117 @@
+package ebf.tim.utility;
+
+import ebf.tim.entities.Consist;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.util.ChatComponentText;
+import net.minecraftforge.common.DimensionManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>Profiler command</h1>
+ * lets server operators control the tick profiler, and see what it's found.
+ * usage: /timprofile start|stop|reset|report|csv
+ * the CSV is written to the TrainsInMotion folder in the world save.
+ * @see TickProfiler
+ * @author Eternal Blue Flame
+ */
+public class ProfilerCommand extends CommandBase {
+
+    /**the number of consists listed in the report.*/
+    private static final int REPORT_CONSISTS = 5;
+
+    @Override
+    public String getCommandName() {
+        return "timprofile";
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender sender) {
+        return "/timprofile <start|stop|reset|report|csv>";
+    }
+
+    /**operators only, the same as most vanilla commands.*/
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void processCommand(ICommandSender sender, String[] args) {
+        if (args.length == 0) {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+        if (args[0].equals("start")) {
+            TickProfiler.enabled = true;
+            send(sender, "Transport profiler started.");
+        } else if (args[0].equals("stop")) {
+            TickProfiler.enabled = false;
+            send(sender, "Transport profiler stopped, the results are kept until it's reset.");
+        } else if (args[0].equals("reset")) {
+            TickProfiler.reset();
+            send(sender, "Transport profiler reset.");
+        } else if (args[0].equals("report")) {
+            report(sender);
+        } else if (args[0].equals("csv")) {
+            File file = new File(DimensionManager.getCurrentSaveRootDirectory(), "TrainsInMotion/profile-" +
+                    new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+            try {
+                TickProfiler.writeCSV(file);
+                send(sender, "Transport profile written to " + file.getPath());
+            } catch (IOException e) {
+                send(sender, "Couldn't write the transport profile: " + e.getMessage());
+            }
+        } else {
+            throw new WrongUsageException(getCommandUsage(sender));
+        }
+    }
+
+    /**sends the percentiles of each section, the most expensive consists, and the counters from the other systems.*/
+    private static void report(ICommandSender sender){
+        send(sender, "Transport profile, " + TickProfiler.getTicks() + " ticks" + (TickProfiler.enabled ? "" : " (stopped)") +
+                ", times per tick in ms, p50/p95/p99/max:");
+        TickProfiler.Window window;
+        for (TickProfiler.Section section : TickProfiler.Section.values()) {
+            window = TickProfiler.getWindow(section);
+            send(sender, " " + section.name().toLowerCase() + ": " + format(window));
+        }
+
+        List<Map.Entry<Consist, TickProfiler.ConsistWindow>> consists = TickProfiler.getConsists();
+        if (consists.size() > 0) {
+            send(sender, "Most expensive consists:");
+            for (int i = 0; i < consists.size() && i < REPORT_CONSISTS; i++) {
+                send(sender, " " + TickProfiler.getConsistName(consists.get(i).getKey()) + ": " + format(consists.get(i).getValue()));
+            }
+        }
+
+        send(sender, "Tank sync: " + TankSync.getPacketsSent() + " packets, " + TankSync.getBytesSent() + " bytes");
+        send(sender, "Action queue: " + ServerActionQueue.getProcessedCount() + " run, " + ServerActionQueue.getCoalescedCount() +
+                " coalesced, " + ServerActionQueue.getDroppedCount() + " dropped, " + ServerActionQueue.getQueueDepth() + " waiting");
+        send(sender, "Chunk loading: " + ChunkHandler.getTicketCount() + " tickets, " + ChunkHandler.getChunkCount() + " chunks");
+        send(sender, "Backups: " + WagonBackupWriter.getWrittenCount() + " written, " + WagonBackupWriter.getCoalescedCount() +
+                " coalesced, " + WagonBackupWriter.getDroppedCount() + " dropped, " + WagonBackupWriter.getQueueDepth() + " waiting, " +
+                String.format("%.2f", WagonBackupWriter.getAverageWriteMillis()) + "ms average write");
+    }
+
+    private static String format(TickProfiler.Window window){
+        return String.format("%.3f/%.3f/%.3f/%.3f", window.percentile(50) / 1000000d, window.percentile(95) / 1000000d,
+                window.percentile(99) / 1000000d, window.max() / 1000000d);
+    }
+
+    private static void send(ICommandSender sender, String message){
+        sender.addChatMessage(new ChatComponentText(message));
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List addTabCompletionOptions(ICommandSender sender, String[] args) {
+        return args.length == 1 ? getListOfStringsMatchingLastWord(args, "start", "stop", "reset", "report", "csv") : null;
+    }
+}
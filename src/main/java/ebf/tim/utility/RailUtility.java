@@ -20,8 +20,9 @@ import org.apache.commons.io.IOUtils;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -321,6 +322,44 @@ public class RailUtility {
         return xyz;
     }
 
+    /**
+     * same as the other version, but the result is put in the provided vector instead of making a new one.
+     * the source and the result may be the same vector.
+     */
+    public static Vec3f rotatePoint(Vec3f f, float pitch, float yaw, float roll, Vec3f xyz) {
+        float cos, sin, x = f.xCoord, y = f.yCoord, z = f.zCoord;
+        xyz.xCoord = x; xyz.yCoord = y; xyz.zCoord = z;
+        //rotate pitch
+        if (pitch != 0.0F) {
+            pitch *= radianF;
+            cos = MathHelper.cos(pitch);
+            sin = MathHelper.sin(pitch);
+
+            xyz.xCoord = (y * sin) + (x * cos);
+            xyz.yCoord = (y * cos) - (x * sin);
+        }
+        //rotate yaw
+        if (yaw != 0.0F) {
+            yaw *= radianF;
+            cos = MathHelper.cos(yaw);
+            sin = MathHelper.sin(yaw);
+
+            xyz.xCoord = (x * cos) - (z * sin);
+            xyz.zCoord = (x * sin) + (z * cos);
+        }
+        //rotate roll
+        if (roll != 0.0F) {
+            roll *=  radianF;
+            cos = MathHelper.cos(roll);
+            sin = MathHelper.sin(roll);
+
+            xyz.yCoord = (z * cos) - (y * sin);
+            xyz.zCoord = (z * sin) + (y * cos);
+        }
+
+        return xyz;
+    }
+
     public static Vec3d rotateDistance(double distance, float pitch, float yaw) {
         Vec3d xyz = new Vec3d(distance, 0,0);
         //rotate pitch
@@ -338,6 +377,26 @@ public class RailUtility {
         return xyz;
     }
 
+    /**same as the other rotate distance, but sets the provided vector, so it doesn't make garbage.*/
+    public static Vec3d rotateDistance(double distance, float pitch, float yaw, Vec3d xyz) {
+        xyz.xCoord = distance;
+        xyz.yCoord = 0;
+        xyz.zCoord = 0;
+        //rotate pitch
+        if (pitch != 0.0F) {
+            pitch *= radianF;
+            xyz.xCoord = distance * Math.cos(pitch);
+            xyz.yCoord = distance * Math.sin(pitch);
+        }
+        //rotate yaw
+        if (yaw != 0.0F) {
+            yaw *= radianF;
+            xyz.xCoord = (distance * MathHelper.cos(yaw));
+            xyz.zCoord = (distance * MathHelper.sin(yaw));
+        }
+        return xyz;
+    }
+
 
     /**
      * <h2>rail placement from item</h2>
@@ -416,46 +475,117 @@ public class RailUtility {
 
     /*
      *<h2> Ore Dictionary</h2>
-     * we use HashMaps to collect ore directory data because even though it takes longer to collect the data, it's far more efficient to see if an entry exists than a list.
-     * TODO: maybe have a post-init function to collect the ore directory data?
+     * every item in the ore dictionary that we care about is mapped by it's ID and damage to a bit set of what it can be used as.
+     * it's collected after post-init, and kept up to date as things are added to the ore dictionary, so checking an item is just a map lookup.
+     * items registered with the wildcard damage are mapped with that damage, and checked along with the exact damage.
      */
 
+    /**the material roles an item can have, these are bits, so an item can have more than one.*/
+    public static final int ORE_LOG =1, ORE_PLANK =2, ORE_COAL =4, ORE_INGOT =8, ORE_BALLAST =16;
 
-    private static LinkedList<String> OREDICT_PLANK = null;
-    private static LinkedList<String> OREDICT_LOG = null;
-    private static LinkedList<String> OREDICT_COAL = null;
+    /**the roles of each item, mapped by the item ID and damage, null until it's collected.*/
+    private static Map<Long, Integer> oreRoles = null;
 
     public static boolean isLog(ItemStack i){
-        if (OREDICT_LOG == null){
-            OREDICT_LOG = new LinkedList<>();
-            for (ItemStack item: OreDictionary.getOres("logWood")) {
-                OREDICT_LOG.add(i.getUnlocalizedName());
-            }
-        }
-        return OREDICT_LOG.contains(i.getUnlocalizedName());
+        return (getOreRoles(i) & ORE_LOG)!=0;
     }
 
     public static boolean isPlank(ItemStack i){
-        if (OREDICT_PLANK == null){
-            OREDICT_PLANK = new LinkedList<>();
-            for (ItemStack item: OreDictionary.getOres("plankWood")) {
-                OREDICT_PLANK.add(i.getUnlocalizedName());
-            }
-            for (ItemStack item: OreDictionary.getOres("slabWood")) {
-                OREDICT_PLANK.add(i.getUnlocalizedName());
-            }
-        }
-        return OREDICT_PLANK.contains(i.getUnlocalizedName());
+        return (getOreRoles(i) & ORE_PLANK)!=0;
     }
 
     public static boolean isCoal(ItemStack i){
-        if (OREDICT_COAL == null){
-            OREDICT_COAL = new LinkedList<>();
-            for (ItemStack item: OreDictionary.getOres("coal")) {
-                OREDICT_COAL.add(i.getUnlocalizedName());
+        return (getOreRoles(i) & ORE_COAL)!=0;
+    }
+
+    public static boolean isIngot(ItemStack i){
+        return (getOreRoles(i) & ORE_INGOT)!=0;
+    }
+
+    public static boolean isBallast(ItemStack i){
+        return (getOreRoles(i) & ORE_BALLAST)!=0;
+    }
+
+    /**@return the bits for every role the item has, 0 if it has none.*/
+    public static int getOreRoles(ItemStack i){
+        if(i==null || i.getItem()==null){
+            return 0;
+        }
+        return getOreRoles(Item.getIdFromItem(i.getItem()), i.getItemDamage());
+    }
+
+    /**@return the bits for every role of the item ID and damage, including the roles it has for any damage.*/
+    static int getOreRoles(int id, int damage){
+        if(oreRoles==null){
+            collectOreRoles();
+        }
+        Integer exact = oreRoles.get(getOreKey(id, damage));
+        Integer wildcard = oreRoles.get(getOreKey(id, OreDictionary.WILDCARD_VALUE));
+        return (exact==null?0:exact) | (wildcard==null?0:wildcard);
+    }
+
+    /**@return the roles given by an ore dictionary name.*/
+    public static int getOreRoles(String oreName){
+        if(oreName.equals("logWood")){
+            return ORE_LOG;
+        } else if(oreName.equals("plankWood") || oreName.equals("slabWood")){
+            return ORE_PLANK;
+        } else if(oreName.equals("coal")){
+            return ORE_COAL;
+        } else if(oreName.contains("ingot")){
+            return ORE_INGOT;
+        } else if(oreName.equals("gravel") || oreName.equals("sand") || oreName.equals("cobblestone")){
+            return ORE_BALLAST;
+        }
+        return 0;
+    }
+
+    /**
+     * <h3>collect ore roles</h3>
+     * collects the roles of everything in the ore dictionary, called after post-init, or on the first check if it's before then.
+     */
+    public static void collectOreRoles(){
+        oreRoles = new HashMap<>();
+        int roles;
+        for(String name : OreDictionary.getOreNames()){
+            roles = getOreRoles(name);
+            if(roles!=0){
+                for(ItemStack ore : OreDictionary.getOres(name)){
+                    addOreRoles(ore, roles);
+                }
             }
         }
-        return OREDICT_COAL.contains(i.getUnlocalizedName());
+    }
+
+    /**adds an entry to the ore dictionary roles, called when something is added to the ore dictionary.*/
+    public static void addOreRoles(String name, ItemStack ore){
+        //if it hasn't been collected yet, it will be with this in it.
+        if(oreRoles!=null && getOreRoles(name)!=0){
+            addOreRoles(ore, getOreRoles(name));
+        }
+    }
+
+    private static void addOreRoles(ItemStack ore, int roles){
+        if(ore==null || ore.getItem()==null){
+            return;
+        }
+        addOreRoles(Item.getIdFromItem(ore.getItem()), ore.getItemDamage(), roles);
+    }
+
+    /**adds the roles to the item ID and damage, on top of any it already has.*/
+    static void addOreRoles(int id, int damage, int roles){
+        long key = getOreKey(id, damage);
+        Integer existing = oreRoles.get(key);
+        oreRoles.put(key, existing==null?roles:existing|roles);
+    }
+
+    /**starts the roles over with nothing in them, rather than collecting them, for the tests, which have no ore dictionary.*/
+    static void clearOreRoles(){
+        oreRoles = new HashMap<>();
+    }
+
+    private static long getOreKey(int id, int damage){
+        return ((long)id<<32) | (damage & 0xFFFFFFFFL);
     }
 
 
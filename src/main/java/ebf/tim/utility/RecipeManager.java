@@ -13,11 +13,35 @@ import net.minecraftforge.oredict.OreDictionary;
 import javax.annotation.Nullable;
 import java.util.*;
 
+/**
+ * <h1>Recipe manager</h1>
+ * keeps the recipes for the transport and rail crafting tables.
+ *
+ * lookups go through an index rather than checking every recipe.
+ * recipes are indexed by a hash of the items in each slot, so matching the table only has to check the recipes with the same items,
+ *     recipes with an empty slot, which accepts anything, can't be hashed that way, so they are just checked every time.
+ * results are mapped by their item, to the first recipe that makes it.
+ * the index is made on the first lookup, and made again after anything is registered.
+ * @author Eternal Blue Flame
+ */
 public class RecipeManager {
 
     private static List<Recipe> recipeList = new ArrayList<>();
     //private static List<Item> ingotDirectory = new ArrayList<>();
 
+    /**the recipes mapped by the hash of their input items, null when it needs to be made again.*/
+    private static Map<Long, List<Recipe>> inputIndex = null;
+    /**the recipes that have a slot that accepts anything, in the order they were registered.*/
+    private static List<Recipe> wildcardRecipes = null;
+    /**the first recipe that makes each item.*/
+    private static Map<Item, Recipe> resultIndex = null;
+    /**the position of each recipe in the recipe list, so the first one that matches still wins.*/
+    private static Map<Recipe, Integer> recipeOrder = null;
+
+    /**the items accepted for the ingot slot of the rail table, null when it needs to be made again.*/
+    private static List<ItemStack> acceptedRailItems = null;
+    private static Set<Item> acceptedRailItemSet = null;
+
 
     public static void registerRecipe(Recipe recipe){
         DebugUtil.println("REGISTERING RECIPE"
@@ -27,44 +51,148 @@ public class RecipeManager {
         for(Recipe r : recipeList){
             if(r.recipeInputMatches(recipe.input)){
                 r.addResults(recipe.result);
+                invalidateIndex();
                 return;
             }
         }
 
         recipeList.add(recipe);
+        invalidateIndex();
 
         //todo: in later MC versions add function for IDE to write the recipe to a json in editor, and load it from json normally
     }
 
 
     public static Recipe getRecipe(ItemStack result){
-        for(Recipe r : recipeList){
+        buildIndex();
+        return resultIndex.get(result==null?null:result.getItem());
+    }
+
+    public static List<ItemStack> getResult(ItemStack[] recipe){
+        if(Arrays.equals(recipe, new ItemStack[]{null, null, null, null, null, null, null, null})){
+            return null;//if all inputs were null, then just return null. this is a common scenario, should save speed overall.
+        }
+        buildIndex();
+
+        //check the recipes with the same items, and the ones with a slot that accepts anything, the first one registered wins.
+        List<ItemStack> input = Arrays.asList(recipe);
+        Recipe match = null;
+        List<Recipe> candidates = inputIndex.get(hashInput(recipe));
+        if(candidates!=null) {
+            for (Recipe r : candidates) {
+                if (r.inputMatches(input)) {
+                    match = r;
+                    break;
+                }
+            }
+        }
+        for(Recipe r : wildcardRecipes){
+            if(match!=null && recipeOrder.get(r)>recipeOrder.get(match)){
+                break;
+            }
+            if(r.inputMatches(input)){
+                match = r;
+                break;
+            }
+        }
+        return match==null?null:match.result;
+    }
+
+    /**drops the index, so it's made again on the next lookup, call this if a recipe is changed after it's registered.*/
+    public static void invalidateIndex(){
+        inputIndex = null;
+        wildcardRecipes = null;
+        resultIndex = null;
+        recipeOrder = null;
+    }
+
+    /**makes the index if it needs to be made.*/
+    private static void buildIndex(){
+        if(inputIndex!=null){
+            return;
+        }
+        Map<Long, List<Recipe>> inputs = new HashMap<>();
+        List<Recipe> wildcards = new ArrayList<>();
+        Map<Item, Recipe> results = new HashMap<>();
+        Map<Recipe, Integer> order = new HashMap<>();
+        Item[] items = new Item[9];
+        Recipe r;
+        List<Recipe> bucket;
+        for(int i=0; i<recipeList.size(); i++){
+            r = recipeList.get(i);
+            order.put(r, i);
             for(ItemStack stack : r.getresult()){
-                if(stack==null || result==null){
-                    if(stack==null && result==null){
-                        return r;
+                Item item = stack==null?null:stack.getItem();
+                if(!results.containsKey(item)){
+                    results.put(item, r);
+                }
+            }
+
+            switch (getSlotItems(r, items)){
+                case 0:{//every slot has one item, so it can be hashed
+                    long hash = hashItems(items);
+                    bucket = inputs.get(hash);
+                    if(bucket==null){
+                        bucket = new ArrayList<>();
+                        inputs.put(hash, bucket);
                     }
+                    bucket.add(r);
+                    break;
                 }
-                else if(stack.getItem()==result.getItem()){
-                    return r;
+                case 1:{//a slot accepts anything
+                    wildcards.add(r);
+                    break;
                 }
+                //otherwise a slot needs every one of it's variants to match, and they are different items, so it can never match.
             }
+        }
+        inputIndex = inputs;
+        wildcardRecipes = wildcards;
+        resultIndex = results;
+        recipeOrder = order;
+    }
 
+    /**
+     * gets the item each slot of the recipe needs, the same as
+     * @see Recipe#inputMatches(List)
+     * @return 0 if every slot needs a single item, 1 if a slot accepts anything, 2 if a slot can't match anything.
+     */
+    private static int getSlotItems(Recipe r, Item[] items){
+        List<List<ItemStack>> input = r.getRecipeItems();
+        if(input.size()!=9){
+            return 1;
         }
-        return null;
+        boolean wildcard = false;
+        for(int i=0; i<9; i++){
+            if(input.get(i).size()==0){
+                wildcard=true;
+                continue;
+            }
+            items[i] = input.get(i).get(0)==null?null:input.get(i).get(0).getItem();
+            for(ItemStack s : input.get(i)){
+                if((s==null?null:s.getItem())!=items[i]){
+                    return 2;
+                }
+            }
+        }
+        return wildcard?1:0;
     }
 
-    public static List<ItemStack> getResult(ItemStack[] recipe){
-        if(Arrays.equals(recipe, new ItemStack[]{null, null, null, null, null, null, null, null})){
-            return null;//if all inputs were null, then just return null. this is a common scenario, should save speed overall.
+    private static long hashInput(ItemStack[] stacks){
+        Item[] items = new Item[9];
+        for(int i=0; i<9 && i<stacks.length; i++){
+            items[i] = stacks[i]==null?null:stacks[i].getItem();
         }
+        return hashItems(items);
+    }
 
-        for(Recipe r : recipeList){
-            if(r.inputMatches(Arrays.asList(recipe))){
-                return r.result;
-            }
+    /**a hash of the items in each slot, empty slots count as well, so their position matters.*/
+    private static long hashItems(Item[] items){
+        long hash = 0xcbf29ce484222325L;
+        for(Item item : items){
+            hash = (hash ^ (item==null?0:System.identityHashCode(item))) * 0x100000001b3L;
         }
-        return null;
+        return hash;
     }
 
 
@@ -100,7 +228,14 @@ public class RecipeManager {
     }
 
 
+    /**
+     * the items accepted for the ingot slot of the rail table.
+     * this is cached until something is added to the ore dictionary.
+     */
     public static List<ItemStack> getAcceptedRailItems(){
+        if(acceptedRailItems!=null){
+            return acceptedRailItems;
+        }
         List<ItemStack> Ores=new ArrayList<>();
 
         Ores.add(new ItemStack(Items.diamond));
@@ -111,7 +246,20 @@ public class RecipeManager {
                 Ores.addAll(OreDictionary.getOres(o));
             }
         }
-        return Ores;
+        acceptedRailItemSet = new HashSet<>();
+        for(ItemStack stack : Ores){
+            if(stack!=null){
+                acceptedRailItemSet.add(stack.getItem());
+            }
+        }
+        acceptedRailItems = Collections.unmodifiableList(Ores);
+        return acceptedRailItems;
+    }
+
+    /**drops the cached rail items, so they are collected again, called when something is added to the ore dictionary.*/
+    public static void invalidateRailItems(){
+        acceptedRailItems = null;
+        acceptedRailItemSet = null;
     }
 
     public static ItemStack[] getTransportRecipe(IInventory hostInventory){
@@ -151,12 +299,8 @@ public class RecipeManager {
 
 
     public static boolean ingotInDirectory(Item i){
-        for(ItemStack stack : getAcceptedRailItems()){
-            if (stack !=null && stack.getItem()==i){
-                return true;
-            }
-        }
-        return false;
+        getAcceptedRailItems();
+        return acceptedRailItemSet.contains(i);
     }
 
 }
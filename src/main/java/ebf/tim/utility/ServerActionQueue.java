@@ -0,0 +1,183 @@
+package ebf.tim.utility;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <h1>Server action queue</h1>
+ * packets from clients that change the world are queued here from the network thread,
+ * and run on the server thread at the start of the next tick, so they never race with the entity updates.
+ *
+ * each player can only queue so many actions each tick, anything past that is dropped,
+ *     so a client spamming keys, or a broken one, can't stall the server.
+ * if the same action, like the same key on the same transport, is queued more than once by the same player in the same tick, it's only run once.
+ * @see ebf.tim.networking.PacketInteract
+ * @see ebf.tim.networking.PacketRemove
+ * @author Eternal Blue Flame
+ */
+public class ServerActionQueue {
+
+    /**the most actions a single player can queue in a tick.*/
+    public static final int MAX_PER_PLAYER = 20;
+    /**the most actions that can be queued in a tick, across every player.*/
+    public static final int MAX_QUEUED = 4096;
+
+    /**the lock for everything below, the network threads add and the server thread drains.*/
+    private static final Object lock = new Object();
+    /**the actions waiting to run, in the order they came in.*/
+    private static List<Entry> pending = new ArrayList<>();
+    /**the actions each player has queued this tick, mapped by their entity ID.*/
+    private static final Map<Integer, Set<Long>> playerActions = new HashMap<>();
+
+    /**checks the player that sent an action is still on the server when it runs, the tests replace this since they have no server.*/
+    static ConnectionCheck connections = new ConnectionCheck();
+
+    /*statistics, for the admin tools and debugging.*/
+    private static long queued =0, coalesced =0, dropped =0, processed =0;
+
+    /**
+     * <h2>action</h2>
+     * something from a packet that has to be done on the server thread.
+     */
+    public interface Action {
+        /**@return a key for this action, actions from the same player with the same key in the same tick are only run once.*/
+        long getActionKey();
+        /**does the action, this is always called from the server thread.*/
+        void process(EntityPlayerMP player);
+    }
+
+    /**
+     * <h2>add</h2>
+     * queues an action from a player, this is safe to call from any thread.
+     */
+    public static void add(EntityPlayerMP player, Action action){
+        if(player==null){
+            return;
+        }
+        add(player.getEntityId(), player, action);
+    }
+
+    /**queues an action from the player with the entity ID.*/
+    static void add(int playerId, EntityPlayerMP player, Action action){
+        if(action==null){
+            return;
+        }
+        synchronized (lock){
+            if(pending.size()>=MAX_QUEUED){
+                dropped++;
+                return;
+            }
+            Set<Long> actions = playerActions.get(playerId);
+            if(actions==null){
+                actions = new HashSet<>();
+                playerActions.put(playerId, actions);
+            }
+            if(actions.contains(action.getActionKey())){
+                coalesced++;
+                return;
+            }
+            if(actions.size()>=MAX_PER_PLAYER){
+                dropped++;
+                return;
+            }
+            actions.add(action.getActionKey());
+            pending.add(new Entry(playerId, player, action));
+            queued++;
+        }
+    }
+
+    /**
+     * <h2>drain</h2>
+     * runs every queued action, called at the start of the server tick.
+     */
+    public static void drain(){
+        List<Entry> actions;
+        synchronized (lock){
+            if(pending.size()==0){
+                return;
+            }
+            actions = pending;
+            pending = new ArrayList<>();
+            playerActions.clear();
+        }
+        for(Entry entry : actions){
+            //if the player left before the tick, there's nothing to do it for.
+            //the player entity keeps it's network handler after it disconnects, so it has to be checked against the player list.
+            if(!connections.isConnected(entry.playerId, entry.player)){
+                synchronized (lock){
+                    dropped++;
+                }
+                continue;
+            }
+            try {
+                entry.action.process(entry.player);
+            } catch (Exception e){
+                //one bad packet shouldn't stop the rest of them.
+                e.printStackTrace();
+            }
+            synchronized (lock){
+                processed++;
+            }
+        }
+    }
+
+    /**drops everything queued, called when the server stops.*/
+    public static void clear(){
+        synchronized (lock){
+            pending = new ArrayList<>();
+            playerActions.clear();
+        }
+    }
+
+    /**@return the number of actions that have been queued.*/
+    public static long getQueuedCount(){
+        synchronized (lock){return queued;}
+    }
+    /**@return the number of actions that were the same as one already queued that tick.*/
+    public static long getCoalescedCount(){
+        synchronized (lock){return coalesced;}
+    }
+    /**@return the number of actions dropped because the player, or the queue, was over the limit, or the player left before they ran.*/
+    public static long getDroppedCount(){
+        synchronized (lock){return dropped;}
+    }
+    /**@return the number of actions that have been run.*/
+    public static long getProcessedCount(){
+        synchronized (lock){return processed;}
+    }
+    /**@return the number of actions waiting to run.*/
+    public static int getQueueDepth(){
+        synchronized (lock){return pending.size();}
+    }
+
+    /**a single queued action, and the player that sent it*/
+    private static class Entry {
+        private final int playerId;
+        private final EntityPlayerMP player;
+        private final Action action;
+        private Entry(int playerId, EntityPlayerMP player, Action action){
+            this.playerId = playerId;
+            this.player = player;
+            this.action = action;
+        }
+    }
+
+    /**
+     * <h2>connection check</h2>
+     * a player is still connected if it's alive and still in the server's player list,
+     *     a player that left, or respawned as a new entity, isn't.
+     */
+    static class ConnectionCheck {
+        boolean isConnected(int playerId, EntityPlayerMP player){
+            return player != null && !player.isDead &&
+                    MinecraftServer.getServer().getConfigurationManager().playerEntityList.contains(player);
+        }
+    }
+}
@@ -13,7 +13,6 @@ import net.minecraftforge.fluids.FluidStack;
 import net.minecraftforge.fluids.FluidTankInfo;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,29 +27,12 @@ public class ServerLogger {
      */
 
     //run this on server side when inventory opens or player mounts, maybe other common but not constant events.
+    //the text is built here, but the file is written by the backup writer, so this doesn't stall the tick.
     public static void writeWagonToFolder(GenericRailTransport wagon){
         try {
-            //make a stringbuilder to build the filename, faster than string+string+string+string etc. MUCH faster.
-            StringBuilder sb = new StringBuilder();
-            sb.append(DimensionManager.getCurrentSaveRootDirectory().getAbsolutePath());
-            sb.append("/traincraft/");
-            if (!new File(sb.toString()).exists()){
-                new File(sb.toString()).mkdir();
-            }
-            sb.append(wagon.getOwnerName().equals("")?"Unknown_Player":wagon.getOwnerName());
-            sb.append("/");
-            if (!new File(sb.toString()).exists()){
-                new File(sb.toString()).mkdir();
-            }
-            sb.append(wagon.getItem().delegate.name().replace(":", "~"));
-            sb.append("_");
-            sb.append(wagon.getUniqueID());
-            sb.append(".txt");
-            //gen the file with the path
-            FileOutputStream fileoutputstream = new FileOutputStream(new File(sb.toString()));
-            //reset the string builder then add all the data in an XML seeming format.
+            //make a stringbuilder to build the data in an XML seeming format, faster than string+string+string+string etc. MUCH faster.
             //you don't HAVE to do XML, you can use other formats and use libraries, i just like this way because its easy to read.
-            sb = new StringBuilder();
+            StringBuilder sb = new StringBuilder();
             sb.append("<xmlRoot>\n   <uuid>");
             sb.append(wagon.getUniqueID());
             sb.append("</uuid>\n   <delegate>");
@@ -83,30 +65,39 @@ public class ServerLogger {
                 sb.append("</fluids>\n");
             }
             sb.append("\n</xmlRoot>");//seemingly unnecessary new line added to the end, linux needs this sometimes.
-            fileoutputstream.write(sb.toString().getBytes());
+            WagonBackupWriter.queue(wagon.getUniqueID(), getWagonFile(wagon), sb.toString());
         } catch (Exception e){
-            //apparently we don't have permission, so, nevermind.
+            //something about the wagon couldn't be read, so, nevermind.
             e.printStackTrace();
         }
     }
 
     //run this on attack entity event if the entity dies
     public static void deleteWagon(GenericRailTransport wagon){
+        try {
+            //this goes through the writer too, so it can't be undone by a backup that's still queued.
+            WagonBackupWriter.queue(wagon.getUniqueID(), getWagonFile(wagon), null);
+        } catch (Exception e){e.printStackTrace();}//if it fails there was nothing to delete, so same result
+    }
+
+    //waits for every queued backup to be written, run this when the server stops.
+    public static void flush(){
+        WagonBackupWriter.flush();
+    }
+
+    //gets the backup file for the wagon, the folders are made by the writer if they don't exist.
+    private static File getWagonFile(GenericRailTransport wagon){
+        //make a stringbuilder to build the filename, faster than string+string+string+string etc. MUCH faster.
         StringBuilder sb = new StringBuilder();
         sb.append(DimensionManager.getCurrentSaveRootDirectory().getAbsolutePath());
         sb.append("/traincraft/");
-        sb.append(wagon.getOwner().getName()==null || wagon.getOwner().getName().equals("")?"Unknown_Player": wagon.getOwner().getName());
+        sb.append(wagon.getOwnerName().equals("")?"Unknown_Player":wagon.getOwnerName());
         sb.append("/");
-        sb.append(wagon.getInventoryName());
+        sb.append(wagon.getItem().delegate.name().replace(":", "~"));
         sb.append("_");
         sb.append(wagon.getUniqueID());
         sb.append(".txt");
-        try {
-            File f = new File(sb.toString());
-            if (f.exists() && !f.isDirectory()) {
-                f.delete();
-            }
-        } catch (Exception e){e.printStackTrace();}//if it fails there was nothing to delete, so same result
+        return new File(sb.toString());
     }
 
 
@@ -0,0 +1,123 @@
+package ebf.tim.utility;
+
+import cpw.mods.fml.common.network.ByteBufUtils;
+import ebf.tim.TrainsInMotion;
+import ebf.tim.entities.GenericRailTransport;
+import ebf.tim.networking.PacketTankSync;
+import io.netty.buffer.ByteBuf;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.fluids.Fluid;
+import net.minecraftforge.fluids.FluidRegistry;
+import net.minecraftforge.fluids.FluidTankInfo;
+
+/**
+ * <h1>Tank sync</h1>
+ * keeps the fluid tanks of a transport synced with the clients that can see it.
+ *
+ * the server remembers the fluid and amount of each tank from the last time they were sent,
+ *     and only sends the tanks that changed since then, as binary, to the players tracking the transport.
+ * players that start tracking the transport get every tank in the spawn data, so they never need the whole thing sent again.
+ * the client keeps the decoded tanks on the transport, so there's nothing to parse when the GUI or renderer reads them.
+ *
+ * fluids are sent by their registry ID plus one, so 0 is an empty tank.
+ * @see PacketTankSync
+ * @author Eternal Blue Flame
+ */
+public class TankSync {
+
+    /**the fluid ID, plus one, and the amount of each tank the last time they were sent.*/
+    private int[] sentFluid = new int[0], sentAmount = new int[0];
+
+    /*statistics, for the admin tools and debugging.*/
+    private static long packetsSent =0, bytesSent =0;
+
+    /**
+     * <h2>update</h2>
+     * compares the tanks to what was last sent, and sends the ones that changed, if any.
+     * called from the server's entity update.
+     */
+    public void update(GenericRailTransport transport){
+        FluidTankInfo[] tanks = transport.getTankInfo(null);
+        if(sentFluid.length!=tanks.length){
+            sentFluid = new int[tanks.length];
+            sentAmount = new int[tanks.length];
+        }
+
+        int changed =0;
+        int[] indexes =null, fluids=null, amounts=null;
+        int fluid, amount;
+        for(int i=0; i<tanks.length; i++){
+            fluid = getFluid(tanks[i]);
+            amount = getAmount(tanks[i]);
+            if(fluid==sentFluid[i] && amount==sentAmount[i]){
+                continue;
+            }
+            if(indexes==null){
+                indexes = new int[tanks.length];
+                fluids = new int[tanks.length];
+                amounts = new int[tanks.length];
+            }
+            indexes[changed] = i;
+            fluids[changed] = fluid;
+            amounts[changed] = amount;
+            changed++;
+            sentFluid[i] = fluid;
+            sentAmount[i] = amount;
+        }
+
+        if(changed>0 && transport.worldObj instanceof WorldServer){
+            PacketTankSync packet = new PacketTankSync(transport.getEntityId(), changed, indexes, fluids, amounts);
+            ((WorldServer) transport.worldObj).getEntityTracker().func_151247_a(transport, TrainsInMotion.keyChannel.getPacketFrom(packet));
+            packetsSent++;
+            bytesSent += packet.getSize();
+        }
+    }
+
+    /**@return the number of tank packets sent since the game started.*/
+    public static long getPacketsSent(){return packetsSent;}
+    /**@return the size of the tank packets sent since the game started, not counting the channel header, in bytes.*/
+    public static long getBytesSent(){return bytesSent;}
+
+
+    /*
+     * <h2>spawn data</h2>
+     * every tank is sent when a player starts tracking the transport.
+     */
+
+    /**writes every tank, called from the transport's spawn data.*/
+    public static void writeTanks(ByteBuf buffer, FluidTankInfo[] tanks){
+        ByteBufUtils.writeVarInt(buffer, tanks.length, 5);
+        for(FluidTankInfo tank : tanks){
+            ByteBufUtils.writeVarInt(buffer, getFluid(tank), 5);
+            ByteBufUtils.writeVarInt(buffer, getAmount(tank), 5);
+        }
+    }
+
+    /**reads every tank written by
+     * @see #writeTanks(ByteBuf, FluidTankInfo[])
+     */
+    public static void readTanks(ByteBuf buffer, GenericRailTransport transport){
+        int count = ByteBufUtils.readVarInt(buffer, 5);
+        for(int i=0; i<count; i++){
+            transport.setSyncedTank(i, toFluid(ByteBufUtils.readVarInt(buffer, 5)), ByteBufUtils.readVarInt(buffer, 5));
+        }
+    }
+
+
+    /**@return the registry ID of the fluid in the tank plus one, or 0 if it's empty.*/
+    public static int getFluid(FluidTankInfo tank){
+        return tank==null || tank.fluid==null || tank.fluid.getFluid()==null?0:
+                FluidRegistry.getFluidID(tank.fluid.getFluid().getName())+1;
+    }
+
+    /**@return the amount in the tank, 0 if it's empty.*/
+    public static int getAmount(FluidTankInfo tank){
+        return tank==null || tank.fluid==null?0:Math.max(tank.fluid.amount, 0);
+    }
+
+    /**@return the fluid from the ID that was sent, water if it's empty, since that's what empty tanks default to.*/
+    public static Fluid toFluid(int id){
+        Fluid fluid = id==0?null:FluidRegistry.getFluid(id-1);
+        return fluid==null?FluidRegistry.WATER:fluid;
+    }
+}
@@ -0,0 +1,255 @@
+package ebf.tim.utility;
+
+import ebf.tim.entities.Consist;
+import ebf.tim.entities.GenericRailTransport;
+import net.minecraft.world.World;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <h1>Tick profiler</h1>
+ * times the parts of the transport update on the server, so server owners can see what the trains cost them.
+ *
+ * each section adds up it's time over a tick, and at the end of the tick the totals are put in a rolling window of the last
+ * @see #WINDOW
+ * ticks, the percentiles are worked out from that window when they are asked for.
+ * the total of each transport is also added to it's consist, so the most expensive trains can be found.
+ *
+ * when it's disabled, which is the default, starting a section is a single boolean check and nothing is recorded.
+ * @see ProfilerCommand
+ * @author Eternal Blue Flame
+ */
+public class TickProfiler {
+
+    /**the number of ticks the percentiles are taken from, a minute at full speed.*/
+    public static final int WINDOW = 1200;
+
+    /**if the profiler is recording, only set this from the server thread.*/
+    public static boolean enabled = false;
+
+    /**
+     * <h2>sections</h2>
+     * the parts of the update that are timed.
+     * TRANSPORT is the whole of the transport update, the others are parts of it, except ACCELERATION, which is in the train update.
+     */
+    public enum Section {
+        TRANSPORT, BACKUP, CHUNKS, LINKS, BOGIES, POSITION, FUEL, SYNC, COLLISION, ACCELERATION
+    }
+
+    /**the time each section has taken so far this tick, in nanoseconds.*/
+    private static final long[] tickTotals = new long[Section.values().length];
+    /**the totals of each section for the last ticks.*/
+    private static final Window[] sections = new Window[Section.values().length];
+    static {
+        for(int i=0; i<sections.length; i++){
+            sections[i] = new Window();
+        }
+    }
+    /**the totals of each consist, weak so consists that are gone don't stay here.*/
+    private static final Map<Consist, ConsistWindow> consists = new WeakHashMap<>();
+    /**the number of ticks recorded since the profiler was last reset.*/
+    private static long ticks =0;
+
+
+    /**
+     * <h2>start</h2>
+     * @return the time to pass to end, or 0 if the profiler is off or this is the client, in which case end does nothing.
+     */
+    public static long start(World world){
+        return enabled && !world.isRemote ? System.nanoTime() : 0;
+    }
+
+    /**ends a section that was started with
+     * @see #start(World)
+     */
+    public static void end(Section section, long start){
+        if(start != 0){
+            record(section, System.nanoTime() - start, null);
+        }
+    }
+
+    /**ends a section, and adds the time to the consist of the transport as well.*/
+    public static void end(Section section, long start, GenericRailTransport transport){
+        if(start != 0){
+            record(section, System.nanoTime() - start, transport.getConsist());
+        }
+    }
+
+    /**adds the time to the section for this tick, and to the consist, if there is one.*/
+    static void record(Section section, long time, Consist consist){
+        tickTotals[section.ordinal()] += time;
+        if(consist != null){
+            ConsistWindow window = consists.get(consist);
+            if(window == null){
+                window = new ConsistWindow();
+                consists.put(consist, window);
+            }
+            window.tickTotal += time;
+            window.updated = true;
+        }
+    }
+
+    /**
+     * <h2>end tick</h2>
+     * moves this tick's totals into the windows, called at the end of every server tick.
+     */
+    public static void endTick(){
+        if(!enabled){
+            return;
+        }
+        for(int i=0; i<tickTotals.length; i++){
+            sections[i].add(tickTotals[i]);
+            tickTotals[i] = 0;
+        }
+        for(ConsistWindow window : consists.values()){
+            //consists that weren't updated this tick are unloaded, so they don't get a sample.
+            if(window.updated){
+                window.add(window.tickTotal);
+                window.tickTotal = 0;
+                window.updated = false;
+            }
+        }
+        ticks++;
+    }
+
+    /**drops everything that's been recorded.*/
+    public static void reset(){
+        Arrays.fill(tickTotals, 0);
+        for(int i=0; i<sections.length; i++){
+            sections[i] = new Window();
+        }
+        consists.clear();
+        ticks =0;
+    }
+
+    /**@return the number of ticks recorded since the last reset.*/
+    public static long getTicks(){return ticks;}
+
+    /**@return the rolling window of the section.*/
+    public static Window getWindow(Section section){
+        return sections[section.ordinal()];
+    }
+
+    /**@return the consists that have been recorded, with the most expensive first, by their 95th percentile.*/
+    public static List<Map.Entry<Consist, ConsistWindow>> getConsists(){
+        List<Map.Entry<Consist, ConsistWindow>> list = new ArrayList<>(consists.entrySet());
+        Collections.sort(list, new Comparator<Map.Entry<Consist, ConsistWindow>>() {
+            @Override
+            public int compare(Map.Entry<Consist, ConsistWindow> o1, Map.Entry<Consist, ConsistWindow> o2) {
+                return Long.compare(o2.getValue().percentile(95), o1.getValue().percentile(95));
+            }
+        });
+        return list;
+    }
+
+    /**@return a name for the consist in reports, the name, entity ID, and position of the first transport.*/
+    public static String getConsistName(Consist consist){
+        List<GenericRailTransport> transports = consist.getTransports();
+        if(transports.size()==0){
+            return "empty";
+        }
+        GenericRailTransport head = transports.get(0);
+        return head.transportName() + " #" + head.getEntityId() + " (" + transports.size() + " long) at " +
+                (int) head.posX + "," + (int) head.posY + "," + (int) head.posZ;
+    }
+
+
+    /**
+     * <h2>CSV dump</h2>
+     * writes the percentiles of every section and consist to the file, times are in microseconds.
+     */
+    public static void writeCSV(File file) throws IOException {
+        if(file.getParentFile() != null){
+            file.getParentFile().mkdirs();
+        }
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write("type,name,samples,mean_us,p50_us,p95_us,p99_us,max_us\n");
+            for(Section section : Section.values()){
+                writeRow(writer, "section", section.name().toLowerCase(), sections[section.ordinal()]);
+            }
+            for(Map.Entry<Consist, ConsistWindow> entry : getConsists()){
+                //the name may have commas in it, so it's quoted.
+                writeRow(writer, "consist", "\"" + getConsistName(entry.getKey()).replace("\"", "'") + "\"", entry.getValue());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeRow(Writer writer, String type, String name, Window window) throws IOException {
+        writer.write(type + "," + name + "," + window.size() + "," + window.mean() / 1000 + "," +
+                window.percentile(50) / 1000 + "," + window.percentile(95) / 1000 + "," +
+                window.percentile(99) / 1000 + "," + window.max() / 1000 + "\n");
+    }
+
+
+    /**
+     * <h2>Window</h2>
+     * a ring of the last tick totals, in nanoseconds.
+     */
+    public static class Window {
+        private final long[] values = new long[WINDOW];
+        private int count =0, next =0;
+
+        void add(long value){
+            values[next] = value;
+            next = (next + 1) % values.length;
+            if(count < values.length){
+                count++;
+            }
+        }
+
+        /**@return the number of ticks in the window.*/
+        public int size(){return count;}
+
+        /**@return the value at the percentile, from 0 to 100, 0 if there's nothing recorded.*/
+        public long percentile(int percentile){
+            if(count == 0){
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            //nearest rank, so the 100th is the max and the 0th is the min.
+            int rank = (int) Math.ceil(percentile * 0.01 * count);
+            return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+        }
+
+        /**@return the average of the window, 0 if there's nothing recorded.*/
+        public long mean(){
+            if(count == 0){
+                return 0;
+            }
+            long total =0;
+            for(int i=0; i<count; i++){
+                total += values[i];
+            }
+            return total / count;
+        }
+
+        /**@return the largest value in the window.*/
+        public long max(){
+            long max =0;
+            for(int i=0; i<count; i++){
+                max = Math.max(max, values[i]);
+            }
+            return max;
+        }
+    }
+
+    /**a window for a consist, with the total it's taken so far this tick.*/
+    public static class ConsistWindow extends Window {
+        private long tickTotal =0;
+        private boolean updated = false;
+    }
+}
@@ -0,0 +1,106 @@
+package ebf.tim.utility;
+
+/**
+ * <h1>Train physics</h1>
+ * the acceleration and drag math of the trains and their bogies, as pure functions of the numbers they need.
+ * the trains and bogies call these with their own values, and the simulation tests call them with theirs,
+ *     so both move by exactly the same math.
+ * @see ebf.tim.entities.EntityTrainCore#calculateAcceleration()
+ * @see ebf.tim.entities.EntityBogie#minecartMove(ebf.tim.entities.GenericRailTransport, boolean, boolean, float)
+ * @author Eternal Blue Flame
+ */
+public class TrainPhysics {
+
+    /**the velocity a bogie gets pushed downhill by every step on a slope, before the drag multiplier.*/
+    public static final double SLOPE_PUSH = 0.0078125D;
+
+    /**@return the throttle position as a percentage with 1 as max and -1 as max reverse, the accelerator goes from -6 to 6.*/
+    public static float throttle(int accelerator){
+        return (accelerator*0.16666666666f)*0.05f;
+    }
+
+    /**@return the weight of the consist the acceleration and drag are calculated with, the brakes double it.*/
+    public static float brakeWeight(float weight, boolean brake){
+        return weight * (brake?2:1);
+    }
+
+    /**
+     * <h2>applied power</h2>
+     * speed is defined by the power in newtons divided by the weight, divided by the number of ticks in a second.
+     * weight's effect on HP is generally inverse of HP itself, it can be described as
+     * 30 lbs of coal about 100 feet in one minute = 33,000 lbf for 1.01387 MHP
+     * however this is for vertical, converting to horizontal means multiplying by around 85% of gravity
+     * so say you have a train with 75mhp, that means your carrying capacity sits around
+     * 75*1.11039648 tons. (83.279)
+     * it's clamped to a max of the pulling power as to not generate negative pulling power.
+     */
+    public static float appliedPower(float power, float weight, float throttle){
+        return Math.max(0, power / (weight*1.11039648f))*throttle;
+    }
+
+    /**
+     * <h2>drag</h2>
+     * slows the velocity by the weight, this is applied always, it never changes the direction, it only stops it.
+     */
+    public static float drag(float velocity, float weight){
+        if (velocity>0) {
+            velocity *= (1 - (0.005* (weight * 0.0007457)));
+            if (velocity <0){
+                velocity =0;
+            }
+        } else {
+            velocity *= (1 - (0.005* (weight * 0.0007457)));
+            if (velocity >0){
+                velocity =0;
+            }
+        }
+        return velocity;
+    }
+
+    /**@return the velocity capped to the top speed in km/h, in either direction.*/
+    public static float capSpeed(float velocity, float topSpeed){
+        if (velocity > (topSpeed*0.00694445f)){
+            return topSpeed*0.00694445f;
+        } else if (velocity < (-topSpeed*0.00694445f)){
+            return -topSpeed*0.00694445f;
+        }
+        //todo: make the max reduced when going reverse
+        return velocity;
+    }
+
+    /**
+     * <h2>accelerate</h2>
+     * the velocity a train adds to it's bogies every tick, recalculated twice a second.
+     * the power is only applied when the throttle is open, and not on the ticks that are a multiple of 20,
+     *     the drag and the speed cap are always applied.
+     * todo: rain should reduce the grip, and too much power for the grip should spin the wheels.
+     * @param velocity the velocity from the last time it was calculated.
+     * @param tick the number of ticks the train has existed.
+     * @param powered if the train itself has power, a consist is only pushed by it's trains.
+     * @param power the combined pulling power of the consist.
+     * @param weight the weight of the consist, with the brakes
+     * @see #brakeWeight(float, boolean)
+     * @param topSpeed the top speed of the train in km/h.
+     */
+    public static float accelerate(float velocity, int accelerator, int tick, boolean powered, float power, float weight, float topSpeed){
+        if (accelerator !=0 && tick%20!=0 && powered) {
+            velocity = appliedPower(power, weight, throttle(accelerator));
+        }
+        return capSpeed(drag(velocity, weight), topSpeed);
+    }
+
+    /**@return the weight the bogies move with, the slopes make it heavier, more for the back bogie than the front.*/
+    public static float bogieWeight(float weight, boolean frontOnSlope, boolean backOnSlope){
+        return weight * (frontOnSlope?1.5f:1) * (backOnSlope?2:1);
+    }
+
+    /**@return the multiplier for the bogie motion every step on flat rails, when the transport has drag.*/
+    public static double bogieDrag(float weight){
+        return Math.pow(weight, -0.07457);
+    }
+
+    /**@return the multiplier for the bogie motion every tick the parking brake is on.*/
+    public static double parkingBrake(float weight){
+        return 0.9-(0.01* (weight * 0.0007457));
+    }
+}
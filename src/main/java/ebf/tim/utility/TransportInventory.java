@@ -0,0 +1,215 @@
+package ebf.tim.utility;
+
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <h1>Transport inventory</h1>
+ * the list of slots for a transport's inventory, that also keeps an index of them, so it doesn't have to loop the whole thing to find something.
+ *
+ * the index covers:
+ *     the list index of each slot ID, so getting a slot by ID is just an array lookup.
+ *     the slots that have a stack, and the count of them, so the renderer can get how full it is without checking every slot.
+ *     the slots holding each item, so adding an item only has to check the stacks it could merge with, then the empty slots.
+ *
+ * the slots tell the index when their stack changes, so it's always up to date.
+ * adding slots to the end, which is what the transports do, only indexes the new slot, anything else re-indexes the whole list.
+ * @see ItemStackSlot#setSlotContents(ItemStack, java.util.List)
+ * @author Eternal Blue Flame
+ */
+public class TransportInventory extends ArrayList<ItemStackSlot> {
+
+    /**the list index of each slot ID, -1 if there isn't a slot with that ID.*/
+    private int[] idIndex = new int[0];
+    /**the list index of each slot.*/
+    private final Map<ItemStackSlot, Integer> slotIndex = new IdentityHashMap<>();
+    /**the slots that have a stack in them.*/
+    private final BitSet usedSlots = new BitSet();
+    /**the slots holding each item.*/
+    private final Map<Item, BitSet> itemSlots = new HashMap<>();
+    /**the item that was indexed for each slot, so it's removed from the right place even if the stack was changed directly.*/
+    private Item[] slotItems = new Item[0];
+    /**the number of slots that have a stack in them.*/
+    private int usedCount =0;
+
+    /**@return the slot with the ID, or null if there isn't one. if more than one slot has the ID, the first one is returned.*/
+    public ItemStackSlot getSlotByID(int id){
+        return id<0 || id>=idIndex.length || idIndex[id]==-1?null:get(idIndex[id]);
+    }
+
+    /**@return the number of slots that have a stack in them.*/
+    public int getUsedSlots(){
+        return usedCount;
+    }
+
+    /**
+     * <h2>add item</h2>
+     * merges the item into the stacks of the same item first, then the empty slots, in the order of the slots.
+     * @return what's left of the item after there's no more room, or null if it all fit.
+     */
+    public ItemStack addItem(ItemStack item){
+        if(item==null){
+            return null;
+        }
+        BitSet slots = itemSlots.get(item.getItem());
+        if(slots!=null){
+            for(int i=slots.nextSetBit(0); i>=0; i=slots.nextSetBit(i+1)){
+                item = get(i).mergeStack(item, this);
+                if(item==null){
+                    return null;
+                }
+            }
+        }
+        for(int i=usedSlots.nextClearBit(0); i<size(); i=usedSlots.nextClearBit(i+1)){
+            item = get(i).mergeStack(item, this);
+            if(item==null){
+                return null;
+            }
+        }
+        return item;
+    }
+
+    /**
+     * <h2>stack changed</h2>
+     * called by the slot when it's stack is set, updates the index for it.
+     */
+    public void onStackChanged(ItemStackSlot slot){
+        Integer index = slotIndex.get(slot);
+        if(index!=null){
+            unindexStack(index);
+            indexStack(index);
+        }
+    }
+
+
+    /*
+     * <h2>list changes</h2>
+     * keeps the index up to date when slots are added or removed.
+     */
+
+    @Override
+    public boolean add(ItemStackSlot slot){
+        super.add(slot);
+        indexSlot(size()-1);
+        return true;
+    }
+
+    @Override
+    public void add(int index, ItemStackSlot slot){
+        super.add(index, slot);
+        reindex();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends ItemStackSlot> slots){
+        for(ItemStackSlot slot : slots){
+            add(slot);
+        }
+        return slots.size()>0;
+    }
+
+    @Override
+    public ItemStackSlot set(int index, ItemStackSlot slot){
+        ItemStackSlot old = super.set(index, slot);
+        reindex();
+        return old;
+    }
+
+    @Override
+    public ItemStackSlot remove(int index){
+        ItemStackSlot old = super.remove(index);
+        reindex();
+        return old;
+    }
+
+    @Override
+    public boolean remove(Object slot){
+        if(super.remove(slot)){
+            reindex();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void clear(){
+        super.clear();
+        reindex();
+    }
+
+    /**rebuilds the whole index.*/
+    private void reindex(){
+        idIndex = new int[0];
+        slotIndex.clear();
+        usedSlots.clear();
+        itemSlots.clear();
+        slotItems = new Item[0];
+        usedCount =0;
+        for(int i=0; i<size(); i++){
+            indexSlot(i);
+        }
+    }
+
+    /**adds the slot at the list index to the index.*/
+    private void indexSlot(int index){
+        ItemStackSlot slot = get(index);
+        slotIndex.put(slot, index);
+        int id = slot.getSlotID();
+        if(id>=0){
+            if(id>=idIndex.length){
+                int oldLength = idIndex.length;
+                idIndex = Arrays.copyOf(idIndex, Math.max(id+1, oldLength*2));
+                Arrays.fill(idIndex, oldLength, idIndex.length, -1);
+            }
+            if(idIndex[id]==-1){
+                idIndex[id]=index;
+            }
+        }
+        if(index>=slotItems.length){
+            slotItems = Arrays.copyOf(slotItems, Math.max(index+1, slotItems.length*2));
+        }
+        indexStack(index);
+    }
+
+    /**adds the stack in the slot at the list index to the index.*/
+    private void indexStack(int index){
+        ItemStack stack = get(index).getStack();
+        if(stack==null){
+            return;
+        }
+        usedSlots.set(index);
+        usedCount++;
+        slotItems[index] = stack.getItem();
+        BitSet slots = itemSlots.get(stack.getItem());
+        if(slots==null){
+            slots = new BitSet();
+            itemSlots.put(stack.getItem(), slots);
+        }
+        slots.set(index);
+    }
+
+    /**removes the stack that was indexed for the slot at the list index.*/
+    private void unindexStack(int index){
+        if(!usedSlots.get(index)){
+            return;
+        }
+        usedSlots.clear(index);
+        usedCount--;
+        BitSet slots = itemSlots.get(slotItems[index]);
+        if(slots!=null){
+            slots.clear(index);
+            if(slots.isEmpty()){
+                itemSlots.remove(slotItems[index]);
+            }
+        }
+        slotItems[index] = null;
+    }
+}
@@ -0,0 +1,197 @@
+package ebf.tim.utility;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * <h1>Wagon backup writer</h1>
+ * writes the wagon backups from
+ * @see ServerLogger
+ * on a background thread, so autosaves don't stall the server tick.
+ *
+ * the server thread only builds the text, everything to do with the disk happens here.
+ * if a wagon is queued again before it's written, the older one is replaced, since only the newest backup matters.
+ * the queue is bounded, if it's full a backup of a wagon that isn't already waiting is dropped, the server thread never writes itself.
+ *     the wagon is backed up again on the next autosave anyway, deleting a backup is never dropped though, nothing would redo it.
+ * only this thread writes, in the order they were queued, so an older backup can never be written over a newer one,
+ *     and nothing about a wagon is kept once it's backup is written.
+ * files are written to a temp file first and then moved over the old one, so a crash never leaves a half written backup.
+ * @author Eternal Blue Flame
+ */
+public class WagonBackupWriter {
+
+    /**the most backups that can be waiting to be written at once.*/
+    public static final int MAX_QUEUED = 1024;
+
+    /**the backups waiting to be written, mapped by wagon UUID, so repeated writes replace the older one.*/
+    private static final Map<UUID, Entry> queue = new LinkedHashMap<>();
+    /**the thread that writes the queue, made when the first backup is queued.*/
+    private static Thread thread = null;
+    /**true while the thread is writing an entry it took from the queue.*/
+    private static boolean writing = false;
+
+    /*statistics, for the admin tools and debugging.*/
+    private static long written =0, coalesced =0, dropped =0, totalNanos =0, maxNanos =0;
+
+    /**
+     * <h2>queue</h2>
+     * adds a backup to be written, replacing any that's waiting for the same wagon.
+     * if the queue is full the backup is dropped, unless it's a delete.
+     * @param content the text to write, or null to delete the file.
+     */
+    public static void queue(UUID uuid, File file, String content){
+        synchronized (queue){
+            Entry entry = new Entry(file, content);
+            if(queue.containsKey(uuid)){
+                coalesced++;
+                queue.put(uuid, entry);
+                return;
+            }
+            if(queue.size() < MAX_QUEUED || content == null){
+                queue.put(uuid, entry);
+                if(thread == null){
+                    thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            process();
+                        }
+                    }, "TiM wagon backup writer");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+                queue.notifyAll();
+                return;
+            }
+            dropped++;
+        }
+    }
+
+    /**
+     * <h2>flush</h2>
+     * blocks until every queued backup has been written, called when the server stops.
+     */
+    public static void flush(){
+        synchronized (queue){
+            while (queue.size() > 0 || writing){
+                try {
+                    queue.wait(100);
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**@return the number of backups waiting to be written.*/
+    public static int getQueueDepth(){
+        synchronized (queue){return queue.size();}
+    }
+    /**@return the number of backups that have been written or deleted.*/
+    public static long getWrittenCount(){
+        synchronized (queue){return written;}
+    }
+    /**@return the number of backups that replaced an older one before it was written.*/
+    public static long getCoalescedCount(){
+        synchronized (queue){return coalesced;}
+    }
+    /**@return the number of backups that weren't written because the queue was full.*/
+    public static long getDroppedCount(){
+        synchronized (queue){return dropped;}
+    }
+    /**@return the average time it took to write a backup, in milliseconds.*/
+    public static double getAverageWriteMillis(){
+        synchronized (queue){return written==0?0:(totalNanos / (double)written) * 0.000001;}
+    }
+    /**@return the longest time it took to write a backup, in milliseconds.*/
+    public static double getMaxWriteMillis(){
+        synchronized (queue){return maxNanos * 0.000001;}
+    }
+
+    /**the loop of the writer thread, takes the oldest entry and writes it, or waits for one.*/
+    private static void process(){
+        Entry entry;
+        Iterator<Entry> iterator;
+        while (true){
+            synchronized (queue){
+                writing = false;
+                queue.notifyAll();
+                while (queue.size() == 0){
+                    try {
+                        queue.wait();
+                    } catch (InterruptedException e){
+                        //nothing should interrupt this, but if something does, just keep waiting.
+                    }
+                }
+                iterator = queue.values().iterator();
+                entry = iterator.next();
+                iterator.remove();
+                writing = true;
+            }
+            write(entry);
+        }
+    }
+
+    /**writes or deletes the file for a single entry, and records how long it took.*/
+    private static void write(Entry entry){
+        long start = System.nanoTime();
+        File temp = null;
+        try {
+            if (entry.content == null){
+                if (entry.file.exists() && !entry.file.isDirectory()){
+                    entry.file.delete();
+                }
+            } else {
+                if (!entry.file.getParentFile().exists()){
+                    entry.file.getParentFile().mkdirs();
+                }
+                temp = File.createTempFile(entry.file.getName(), ".tmp", entry.file.getParentFile());
+                FileOutputStream stream = new FileOutputStream(temp);
+                try {
+                    stream.write(entry.content.getBytes("UTF-8"));
+                } finally {
+                    stream.close();
+                }
+                try {
+                    Files.move(temp.toPath(), entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e){
+                    Files.move(temp.toPath(), entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e){
+            //apparently we don't have permission, so, nevermind.
+            e.printStackTrace();
+        } finally {
+            //if the move failed, don't leave the temp file behind.
+            if (temp != null && temp.exists()){
+                temp.delete();
+            }
+        }
+        long time = System.nanoTime() - start;
+        synchronized (queue){
+            written++;
+            totalNanos += time;
+            if (time > maxNanos){
+                maxNanos = time;
+            }
+        }
+    }
+
+    /**a single queued backup*/
+    private static class Entry {
+        private final File file;
+        private final String content;
+        private Entry(File file, String content){
+            this.file = file;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package fexcraft.tmt.slim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CPU side of the skin atlas, it places rectangles on a square page in shelves, there's nothing to do with GL in here.
+ * <br /><br />
+ * Each rectangle is padded by {@link #PADDING} pixels on every side, the edge pixels are copied into the padding so
+ * faces on the edge of a skin don't pick up the one next to it.
+ * A shelf is a row as tall as the first rectangle in it, later ones go in the first shelf that is tall enough
+ * without wasting more than a quarter of it's height, otherwise a new shelf is started under the last.
+ * Freed spaces are kept and reused for rectangles of the same size, since most skins are one of a few sizes.
+ * @see SkinAtlas
+ * @author Eternal Blue Flame
+ */
+public class AtlasPacker {
+
+    /**the pixels of padding on each side of a rectangle.*/
+    public static final int PADDING = 1;
+
+    /**the width and height of the page.*/
+    public final int size;
+    private final List<int[]> shelves = new ArrayList<>();
+    private final List<Region> free = new ArrayList<>();
+    /**the top of the next shelf.*/
+    private int nextShelf = 0;
+    /**the pixels used by placed rectangles, without their padding.*/
+    private long usedArea = 0;
+    private int regionCount = 0;
+
+    public AtlasPacker(int size){
+        this.size = size;
+    }
+
+    /**
+     * <h2>insert</h2>
+     * places a rectangle on the page.
+     * @return the region, or null if there's no room for it.
+     */
+    public Region insert(int width, int height){
+        int paddedWidth = width + PADDING * 2, paddedHeight = height + PADDING * 2;
+        if(paddedWidth > size || paddedHeight > size){
+            return null;
+        }
+        Region region = null;
+        int index = findFree(width, height);
+        if(index != -1){
+            region = free.remove(index);
+        } else {
+            int[] shelf = findShelf(paddedWidth, paddedHeight);
+            if(shelf != null){
+                region = new Region(this, shelf[2] + PADDING, shelf[0] + PADDING, width, height);
+                shelf[2] += paddedWidth;
+            }
+        }
+        if(region == null){
+            if(nextShelf + paddedHeight > size){
+                return null;
+            }
+            shelves.add(new int[]{nextShelf, paddedHeight, paddedWidth});
+            region = new Region(this, PADDING, nextShelf + PADDING, width, height);
+            nextShelf += paddedHeight;
+        }
+        usedArea += (long) width * height;
+        regionCount++;
+        return region;
+    }
+
+    /**@return true if a rectangle of the size would be placed on the page, without placing it.*/
+    public boolean fits(int width, int height){
+        int paddedWidth = width + PADDING * 2, paddedHeight = height + PADDING * 2;
+        if(paddedWidth > size || paddedHeight > size){
+            return false;
+        }
+        return findFree(width, height) != -1 || findShelf(paddedWidth, paddedHeight) != null || nextShelf + paddedHeight <= size;
+    }
+
+    /**@return the index of a freed region of the size, or -1 if there isn't one.*/
+    private int findFree(int width, int height){
+        for(int i = 0; i < free.size(); i++){
+            if(free.get(i).width == width && free.get(i).height == height){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**@return the first shelf with room for the padded rectangle, or null if there isn't one, each shelf is the Y, the height, and the X of the free space.*/
+    private int[] findShelf(int paddedWidth, int paddedHeight){
+        for(int[] shelf : shelves){
+            if(shelf[1] >= paddedHeight && shelf[1] * 3 <= paddedHeight * 4 && shelf[2] + paddedWidth <= size){
+                return shelf;
+            }
+        }
+        return null;
+    }
+
+    /**frees the region so it can be reused by another of the same size.*/
+    public void remove(Region region){
+        if(region.packer == this && !free.contains(region)){
+            free.add(region);
+            usedArea -= (long) region.width * region.height;
+            regionCount--;
+        }
+    }
+
+    /**@return the number of regions in use.*/
+    public int getRegionCount(){return regionCount;}
+
+    /**@return the part of the page used by regions, from 0 to 1, not counting padding.*/
+    public float getOccupancy(){
+        return usedArea / (float) ((long) size * size);
+    }
+
+    /**
+     * @return the pixels of the rectangle with the padding around them, the edge pixels are copied out into it.
+     * @param pixels the pixels of the rectangle, starting from the offset
+     */
+    public static int[] pad(Region region, int[] pixels, int offset){
+        int paddedWidth = region.width + PADDING * 2;
+        int[] padded = new int[paddedWidth * (region.height + PADDING * 2)];
+        int x, y, px, py;
+        for(y = -PADDING; y < region.height + PADDING; y++){
+            py = Math.max(0, Math.min(region.height - 1, y));
+            for(x = -PADDING; x < region.width + PADDING; x++){
+                px = Math.max(0, Math.min(region.width - 1, x));
+                padded[(y + PADDING) * paddedWidth + x + PADDING] = pixels[offset + py * region.width + px];
+            }
+        }
+        return padded;
+    }
+
+
+    /**
+     * <h2>Region</h2>
+     * a rectangle on a page, the position is in pixels, without the padding.
+     * the UV offset and scale map the 0 to 1 coordinates of a skin onto it's place in the page.
+     */
+    public static class Region {
+        private final AtlasPacker packer;
+        public final int x, y, width, height;
+        public final float u, v, scaleU, scaleV;
+
+        private Region(AtlasPacker packer, int x, int y, int width, int height){
+            this.packer = packer;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.u = x / (float) packer.size;
+            this.v = y / (float) packer.size;
+            this.scaleU = width / (float) packer.size;
+            this.scaleV = height / (float) packer.size;
+        }
+
+        /**@return the packer of the page the region is on.*/
+        public AtlasPacker getPacker(){return packer;}
+    }
+}
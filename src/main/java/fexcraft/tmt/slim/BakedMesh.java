@@ -0,0 +1,151 @@
+package fexcraft.tmt.slim;
+
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import ebf.tim.utility.GLResourceManager;
+import net.minecraft.client.renderer.OpenGlHelper;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GLContext;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A mesh made by the MeshBaker, stored on the GPU.
+ * <br /><br />
+ * When VBOs are supported the interleaved data is uploaded to one and drawn with a single call,
+ * otherwise it's compiled to a display list, which older drivers handle just as well.
+ * The upload is done on the first draw, so the mesh can be made before there's a GL context.
+ * The MeshBatch binds the VBO once and draws it for every instance that uses it.
+ * @see MeshBaker
+ * @author Eternal Blue Flame
+ */
+@SideOnly(Side.CLIENT)
+public class BakedMesh {
+
+    /**the baked vertex data, dropped once it's uploaded.*/
+    private float[] data;
+    /**the number of vertices in the mesh*/
+    private final int vertexCount;
+    /**the ID of the VBO, or display list, -1 if it hasn't been uploaded.*/
+    private int glID = -1;
+    /**true if the ID is a VBO, false if it's a display list.*/
+    private boolean isVBO = false;
+
+    public BakedMesh(float[] data){
+        this.data = data;
+        this.vertexCount = data.length / MeshBaker.STRIDE;
+    }
+
+    /**@return the number of vertices in the mesh*/
+    public int getVertexCount(){
+        return vertexCount;
+    }
+
+    /**@return true if VBOs can be used, they are core in GL 1.5.*/
+    public static boolean useVBO(){
+        return GLContext.getCapabilities().OpenGL15;
+    }
+
+    public void draw(){
+        if(!prepare()){
+            return;
+        }
+        if(!isVBO){
+            GL11.glCallList(glID);
+            return;
+        }
+        bind();
+        drawArrays();
+        unbind();
+    }
+
+    /**
+     * uploads the mesh if it hasn't been yet.
+     * @return false if there's nothing to draw, because it's empty or was deleted.
+     */
+    public boolean prepare(){
+        if(!hasData()){
+            return false;
+        }
+        if(glID == -1){
+            upload();
+        }
+        return true;
+    }
+
+    /**@return false if there's nothing to draw, because it's empty or was deleted, this doesn't need GL, the tests use this.*/
+    boolean hasData(){
+        return vertexCount != 0 && (glID != -1 || data != null);
+    }
+
+    /**@return true if the mesh was uploaded to a VBO, false if it's a display list, or hasn't been uploaded yet.*/
+    boolean isVBO(){
+        return isVBO && glID != -1;
+    }
+
+    /**
+     * binds the VBO and sets the client state for it, so it can be drawn any number of times with
+     * @see #drawArrays()
+     * only call this when it's a VBO, and call unbind when done.
+     */
+    void bind(){
+        OpenGlHelper.setClientActiveTexture(OpenGlHelper.defaultTexUnit);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, glID);
+        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        GL11.glEnableClientState(GL11.GL_NORMAL_ARRAY);
+        GL11.glVertexPointer(3, GL11.GL_FLOAT, MeshBaker.STRIDE_BYTES, 0L);
+        GL11.glTexCoordPointer(2, GL11.GL_FLOAT, MeshBaker.STRIDE_BYTES, 12L);
+        GL11.glNormalPointer(GL11.GL_FLOAT, MeshBaker.STRIDE_BYTES, 20L);
+    }
+
+    /**draws the bound VBO with the current matrix.*/
+    void drawArrays(){
+        GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, vertexCount);
+    }
+
+    /**resets the client state that was set by bind.*/
+    static void unbind(){
+        GL11.glDisableClientState(GL11.GL_NORMAL_ARRAY);
+        GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+    }
+
+    private void upload(){
+        if(useVBO()){
+            FloatBuffer buffer = BufferUtils.createFloatBuffer(data.length);
+            buffer.put(data);
+            buffer.flip();
+            glID = GLResourceManager.allocate(GLResourceManager.Type.BUFFER, this);
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, glID);
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW);
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+            isVBO = true;
+        } else {
+            glID = GLResourceManager.allocate(GLResourceManager.Type.LIST, this);
+            GL11.glNewList(glID, GL11.GL_COMPILE);
+            GL11.glBegin(GL11.GL_TRIANGLES);
+            for(int i = 0; i < data.length; i += MeshBaker.STRIDE){
+                GL11.glNormal3f(data[i + 5], data[i + 6], data[i + 7]);
+                GL11.glTexCoord2f(data[i + 3], data[i + 4]);
+                GL11.glVertex3f(data[i], data[i + 1], data[i + 2]);
+            }
+            GL11.glEnd();
+            GL11.glEndList();
+            isVBO = false;
+        }
+        data = null;
+    }
+
+    /**frees the VBO or display list, the mesh can't be drawn after this.*/
+    public void delete(){
+        if(glID != -1){
+            GLResourceManager.release(isVBO?GLResourceManager.Type.BUFFER:GLResourceManager.Type.LIST, glID, this);
+        }
+        glID = -1;
+        data = null;
+    }
+}
@@ -0,0 +1,175 @@
+package fexcraft.tmt.slim;
+
+import java.util.List;
+
+/**
+ * Bakes static ModelRendererTurbo parts into a single interleaved vertex array,
+ * with the position, rotation and scale of each part already applied.
+ * <br /><br />
+ * Each vertex is {@link #STRIDE} floats: x, y, z, u, v, normal x, normal y, normal z.
+ * Faces are split into triangles, quads as two and larger polygons as a fan, so the whole array is drawn as GL_TRIANGLES.
+ * <br /><br />
+ * This only does math on the CPU, there are no GL calls in here, the upload and drawing is done by
+ * @see BakedMesh
+ * @author Eternal Blue Flame
+ */
+public class MeshBaker {
+
+    /**the number of floats for each vertex*/
+    public static final int STRIDE = 8;
+    /**the number of bytes for each vertex*/
+    public static final int STRIDE_BYTES = STRIDE * 4;
+
+    /**@return true if the part can be baked, parts that change the lightmap or are hidden have to be rendered normally.*/
+    public static boolean canBake(ModelRendererTurbo part){
+        return part != null && part.showModel && !part.ignoresLighting;
+    }
+
+    /**@return true if the part can be baked, and isn't thinner than the min size, in model pixels.*/
+    public static boolean canBake(ModelRendererTurbo part, float minSize){
+        return canBake(part) && (minSize <= 0 || getDetailSize(part) >= minSize);
+    }
+
+    /**
+     * @return the middle of the 3 extents of the part, in model pixels.
+     * the middle one is used so small bits like rivets, and thin ones like pipes, rails and ladder rungs,
+     *     both come out small, while flat panels, which are thin in only one direction, don't.
+     */
+    public static float getDetailSize(ModelRendererTurbo part){
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for(TexturedPolygon face : part.getFaces()){
+            for(TexturedVertex vert : face.vertices){
+                minX = Math.min(minX, vert.vector3F.xCoord);
+                minY = Math.min(minY, vert.vector3F.yCoord);
+                minZ = Math.min(minZ, vert.vector3F.zCoord);
+                maxX = Math.max(maxX, vert.vector3F.xCoord);
+                maxY = Math.max(maxY, vert.vector3F.yCoord);
+                maxZ = Math.max(maxZ, vert.vector3F.zCoord);
+            }
+        }
+        if(minX > maxX){
+            return 0;
+        }
+        float x = maxX - minX, y = maxY - minY, z = maxZ - minZ;
+        return Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+    }
+
+    /**@return the number of vertices the parts will bake to.*/
+    public static int countVertices(List<ModelRendererTurbo> parts){
+        return countVertices(parts, 0);
+    }
+
+    /**@return the number of vertices the parts will bake to, without the ones thinner than the min size.*/
+    public static int countVertices(List<ModelRendererTurbo> parts, float minSize){
+        int count = 0;
+        for(ModelRendererTurbo part : parts){
+            if(canBake(part, minSize)){
+                for(TexturedPolygon face : part.getFaces()){
+                    if(face.vertices.size() >= 3){
+                        count += (face.vertices.size() - 2) * 3;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * bakes the parts that can be baked into an interleaved array.
+     * @param scale the scale of the model, the same one that would be passed to render, usually 0.0625.
+     */
+    public static float[] bake(List<ModelRendererTurbo> parts, float scale){
+        return bake(parts, scale, 0);
+    }
+
+    /**
+     * bakes the parts that can be baked, without the ones thinner than the min size, for the simpler levels of detail.
+     * @see #getDetailSize(ModelRendererTurbo)
+     */
+    public static float[] bake(List<ModelRendererTurbo> parts, float scale, float minSize){
+        float[] data = new float[countVertices(parts, minSize) * STRIDE];
+        int index = 0;
+        for(ModelRendererTurbo part : parts){
+            if(canBake(part, minSize)){
+                index = bake(part, scale, data, index);
+            }
+        }
+        return data;
+    }
+
+    /**bakes a single part into the array, starting at the index, and returns the index after it.*/
+    private static int bake(ModelRendererTurbo part, float scale, float[] data, int index){
+        //the same transforms render does, in the same order, translate, then rotate on Y, Z, then X.
+        float[] rotation = rotationMatrix(part.rotateAngleY, part.rotateAngleZ, part.rotateAngleX);
+        float tx = part.rotationPointX * scale, ty = part.rotationPointY * scale, tz = part.rotationPointZ * scale;
+        float nx, ny, nz, length;
+        List<TexturedVertex> verts;
+        TexturedVertex v0, v1, v2;
+        for(TexturedPolygon face : part.getFaces()){
+            verts = face.vertices;
+            if(verts.size() < 3){
+                continue;
+            }
+            //face normal from the first three vertices, normalized so lighting doesn't depend on the size of the face.
+            v0 = verts.get(0);
+            v1 = verts.get(1);
+            v2 = verts.get(2);
+            float ax = v1.vector3F.xCoord - v2.vector3F.xCoord, ay = v1.vector3F.yCoord - v2.vector3F.yCoord, az = v1.vector3F.zCoord - v2.vector3F.zCoord;
+            float bx = v1.vector3F.xCoord - v0.vector3F.xCoord, by = v1.vector3F.yCoord - v0.vector3F.yCoord, bz = v1.vector3F.zCoord - v0.vector3F.zCoord;
+            nx = ay * bz - az * by;
+            ny = az * bx - ax * bz;
+            nz = ax * by - ay * bx;
+            length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if(length != 0){
+                nx /= length;
+                ny /= length;
+                nz /= length;
+            }
+            float rnx = rotation[0] * nx + rotation[1] * ny + rotation[2] * nz;
+            float rny = rotation[3] * nx + rotation[4] * ny + rotation[5] * nz;
+            float rnz = rotation[6] * nx + rotation[7] * ny + rotation[8] * nz;
+
+            for(int i = 1; i < verts.size() - 1; i++){
+                index = put(data, index, verts.get(0), scale, rotation, tx, ty, tz, rnx, rny, rnz);
+                index = put(data, index, verts.get(i), scale, rotation, tx, ty, tz, rnx, rny, rnz);
+                index = put(data, index, verts.get(i + 1), scale, rotation, tx, ty, tz, rnx, rny, rnz);
+            }
+        }
+        return index;
+    }
+
+    private static int put(float[] data, int index, TexturedVertex vert, float scale, float[] r, float tx, float ty, float tz, float nx, float ny, float nz){
+        float x = vert.vector3F.xCoord * scale, y = vert.vector3F.yCoord * scale, z = vert.vector3F.zCoord * scale;
+        data[index] = r[0] * x + r[1] * y + r[2] * z + tx;
+        data[index + 1] = r[3] * x + r[4] * y + r[5] * z + ty;
+        data[index + 2] = r[6] * x + r[7] * y + r[8] * z + tz;
+        data[index + 3] = vert.textureX;
+        data[index + 4] = vert.textureY;
+        data[index + 5] = nx;
+        data[index + 6] = ny;
+        data[index + 7] = nz;
+        return index + STRIDE;
+    }
+
+    /**
+     * @return the row major 3x3 matrix of glRotatef on Y, then Z, then X, the angles are in degrees.
+     * GL applies the last rotation to the vertex first, so this is Ry * Rz * Rx.
+     */
+    private static float[] rotationMatrix(float yaw, float roll, float pitch){
+        double y = Math.toRadians(yaw), z = Math.toRadians(roll), x = Math.toRadians(pitch);
+        float cy = (float) Math.cos(y), sy = (float) Math.sin(y);
+        float cz = (float) Math.cos(z), sz = (float) Math.sin(z);
+        float cx = (float) Math.cos(x), sx = (float) Math.sin(x);
+        //Rz * Rx
+        float[] zx = new float[]{
+                cz, -sz * cx, sz * sx,
+                sz, cz * cx, -cz * sx,
+                0, sx, cx};
+        //Ry * (Rz * Rx)
+        return new float[]{
+                cy * zx[0] + sy * zx[6], cy * zx[1] + sy * zx[7], cy * zx[2] + sy * zx[8],
+                zx[3], zx[4], zx[5],
+                -sy * zx[0] + cy * zx[6], -sy * zx[1] + cy * zx[7], -sy * zx[2] + cy * zx[8]};
+    }
+}
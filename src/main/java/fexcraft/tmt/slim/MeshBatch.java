@@ -0,0 +1,370 @@
+package fexcraft.tmt.slim;
+
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.OpenGlHelper;
+import net.minecraft.client.renderer.RenderHelper;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <h1>Mesh batch</h1>
+ * collects the baked static meshes of every transport in a frame, grouped by the mesh and the texture they use,
+ *     then draws each group together, so the texture and the mesh's VBO are only bound once per group rather than once per transport.
+ *
+ * the transform of each instance is worked out on the CPU, the entity render moves and rotates through
+ * @see #translate(double, double, double)
+ * @see #rotate(float, float, float, float)
+ *     which do the same to GL and to the instance transform, so the modelview never has to be read back from GL.
+ * when the batch is drawn, the mesh stays on the GPU, each instance multiplies it's transform onto the camera transform,
+ *     which is the modelview when the world render starts on entities and tile entities, sets it's lightmap, and draws the VBO.
+ * meshes that are display lists, because VBOs aren't supported, are drawn the same way with a call to the list for each instance.
+ *
+ * <h2>300 wagons</h2>
+ * for 300 of the same wagon, the UP3Bay100TonHopper is 166 boxes, about 6000 vertices,
+ *     drawing each transport on it's own binds the texture and sets up the VBO 300 times.
+ * transforming the vertices on the CPU made that one draw, but it was 1.8 million vertices transformed,
+ *     and about 72MB of vertex data sent to the driver, every frame.
+ * this binds them once, then it's 300 small matrix multiplies and draws of the VBO that's already on the GPU, and nothing is sent but the matrices.
+ * the frame time can be compared in game with the BatchedRendering option on and off, the F3 screen shows the meshes and groups drawn.
+ *
+ * the batch is drawn by the first tile entity render after the entities, which is before the translucent blocks,
+ *     so water and glass in front of a transport are drawn over it, and anything left is drawn at the end of the world render.
+ * skins on the skin atlas are grouped by their region as well, groups on the same page are drawn without binding it again.
+ * @see BakedMesh
+ * @author Eternal Blue Flame
+ */
+@SideOnly(Side.CLIENT)
+public class MeshBatch {
+
+    /**the floats each instance takes, the 4x4 transform, then the lightmap X and Y.*/
+    static final int STRIDE = 18;
+    /**the most transforms the entity render pushes inside each other.*/
+    private static final int STACK_DEPTH = 16;
+
+    /**if meshes should be added to the batch, rather than drawn right away.*/
+    private static boolean capturing = false;
+    /**if fog was on when the instances were captured.*/
+    private static boolean fog = false;
+    /**the groups, mapped by the mesh identity, texture ID and atlas region.*/
+    private static final Map<Long, Group> groups = new LinkedHashMap<>();
+    /**the number of instances in the batch.*/
+    private static int instanceCount =0;
+    /**the transforms the entity render has pushed, the last one is the transform of the instances added now.*/
+    private static final float[] stack = new float[STACK_DEPTH * 16];
+    private static int depth =0;
+    /**the transform of the instance being drawn, as GL takes it.*/
+    private static final FloatBuffer matrix = BufferUtils.createFloatBuffer(16);
+
+    /**the number of instances and groups drawn this frame, so they can be checked while profiling.*/
+    private static int lastInstances =0, lastGroups =0;
+
+    /**starts adding meshes to the batch, with no transform, call this before the entity render moves to the transport.*/
+    public static void begin(){
+        capturing = true;
+        depth =0;
+        identity(stack, 0);
+    }
+
+    /**stops adding meshes to the batch, so the next are drawn right away.*/
+    public static void end(){
+        capturing = false;
+    }
+
+
+    /*
+     * <h2>transforms</h2>
+     * these do the same as the GL calls, and keep the instance transform while the batch is capturing.
+     */
+
+    public static void pushMatrix(){
+        GL11.glPushMatrix();
+        if(capturing){
+            pushInstance();
+        }
+    }
+
+    public static void popMatrix(){
+        GL11.glPopMatrix();
+        if(capturing){
+            popInstance();
+        }
+    }
+
+    public static void translate(double x, double y, double z){
+        GL11.glTranslated(x, y, z);
+        if(capturing){
+            translate(stack, depth * 16, (float) x, (float) y, (float) z);
+        }
+    }
+
+    public static void rotate(float angle, float x, float y, float z){
+        GL11.glRotatef(angle, x, y, z);
+        if(capturing){
+            rotate(stack, depth * 16, angle, x, y, z);
+        }
+    }
+
+    /**copies the instance transform, so it can be changed and put back, the tests use this without GL.*/
+    static void pushInstance(){
+        if(depth + 1 < STACK_DEPTH){
+            System.arraycopy(stack, depth * 16, stack, (depth + 1) * 16, 16);
+        }
+        //past the end of the stack the last one is just shared, the same as GL would have overflowed.
+        depth = Math.min(depth + 1, STACK_DEPTH - 1);
+    }
+
+    static void popInstance(){
+        if(depth > 0){
+            depth--;
+        }
+    }
+
+    /**@return the array the instance transforms are in, it's at the offset, these are for the tests.*/
+    static float[] getStack(){return stack;}
+    static int getStackOffset(){return depth * 16;}
+
+    /**
+     * <h2>add</h2>
+     * adds the mesh to the batch with the instance transform, and the current lightmap and texture.
+     * @return false if it wasn't added and has to be drawn now, because the batch isn't capturing.
+     */
+    public static boolean add(BakedMesh mesh){
+        if(!capturing){
+            return false;
+        }
+        if(instanceCount == 0){
+            fog = GL11.glIsEnabled(GL11.GL_FOG);
+        }
+        return add(mesh, TextureManager.lastTexture, TextureManager.lastRegion,
+                OpenGlHelper.lastBrightnessX, OpenGlHelper.lastBrightnessY);
+    }
+
+    /**adds the mesh with the texture and lightmap, without asking GL for anything, the tests use this.*/
+    static boolean add(BakedMesh mesh, int textureID, AtlasPacker.Region region, float lightX, float lightY){
+        if(!mesh.hasData()){
+            //empty or deleted, there's nothing to draw either way.
+            return true;
+        }
+        long key = key(mesh, textureID, region);
+        Group group = groups.get(key);
+        if(group == null || group.mesh != mesh || group.texture != textureID || group.region != region){
+            if(group != null){
+                //a hash collision, draw this one now rather than mix them up.
+                return false;
+            }
+            group = new Group(mesh, textureID, region);
+            groups.put(key, group);
+        }
+        float[] data = group.next();
+        int offset = (group.count - 1) * STRIDE;
+        System.arraycopy(stack, depth * 16, data, offset, 16);
+        data[offset + 16] = lightX;
+        data[offset + 17] = lightY;
+        instanceCount++;
+        return true;
+    }
+
+    /**@return the key of the group for the mesh, texture and atlas region.*/
+    private static long key(BakedMesh mesh, int textureID, AtlasPacker.Region region){
+        int texture = region == null ? textureID : textureID * 31 + System.identityHashCode(region);
+        return ((long) mesh.hashCode() << 32) | (texture & 0xFFFFFFFFL);
+    }
+
+    /**
+     * <h2>flush</h2>
+     * draws every group in the batch, and empties it,
+     *     the modelview has to be the camera transform, like it is when entities and tile entities are rendered.
+     */
+    public static void flush(float partialTick){
+        capturing = false;
+        if(instanceCount == 0){
+            return;
+        }
+
+        GL11.glPushAttrib(GL11.GL_ENABLE_BIT | GL11.GL_COLOR_BUFFER_BIT | GL11.GL_LIGHTING_BIT);
+        RenderHelper.enableStandardItemLighting();
+        Minecraft.getMinecraft().entityRenderer.enableLightmap(partialTick);
+        GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        GL11.glEnable(GL11.GL_BLEND);
+        GL11.glEnable(GL11.GL_ALPHA_TEST);
+        GL11.glAlphaFunc(GL11.GL_GREATER, 0.1f);
+        GL11.glEnable(GL11.GL_TEXTURE_2D);
+        GL11.glEnable(GL11.GL_NORMALIZE);
+        GL11.glEnable(GL11.GL_LIGHTING);
+        if(fog){
+            GL11.glEnable(GL11.GL_FOG);
+        }
+        GL11.glColor4f(1, 1, 1, 1);
+
+        //the lightmap is set for every instance, so it's put back after, the same as the tessellator expects it.
+        float lightX = OpenGlHelper.lastBrightnessX, lightY = OpenGlHelper.lastBrightnessY;
+        Group group;
+        TextureManager.beginRender();
+        Iterator<Group> iterator = groups.values().iterator();
+        while (iterator.hasNext()){
+            group = iterator.next();
+            //groups that weren't used this frame are dropped, so meshes that are gone don't stay referenced.
+            if(group.count == 0 || !group.mesh.prepare()){
+                iterator.remove();
+                continue;
+            }
+            TextureManager.bindTextureID(group.texture);
+            TextureManager.setTextureMatrix(group.region);
+            if(group.mesh.isVBO()){
+                group.mesh.bind();
+                draw(group, true);
+                BakedMesh.unbind();
+            } else {
+                draw(group, false);
+            }
+            group.count =0;
+            lastGroups++;
+        }
+        TextureManager.endRender();
+        OpenGlHelper.setLightmapTextureCoords(OpenGlHelper.lightmapTexUnit, lightX, lightY);
+
+        //the lightmap, lighting and the rest are put back by the attributes, so the render after this carries on like before.
+        GL11.glPopAttrib();
+        lastInstances += instanceCount;
+        instanceCount =0;
+    }
+
+    /**draws every instance of the group with it's own transform and lightmap, the VBO has to be bound already if it's one.*/
+    private static void draw(Group group, boolean vbo){
+        int offset;
+        for(int i=0; i<group.count; i++){
+            offset = i * STRIDE;
+            matrix.clear();
+            matrix.put(group.data, offset, 16);
+            matrix.flip();
+            GL11.glPushMatrix();
+            GL11.glMultMatrix(matrix);
+            OpenGlHelper.setLightmapTextureCoords(OpenGlHelper.lightmapTexUnit, group.data[offset + 16], group.data[offset + 17]);
+            if(vbo){
+                group.mesh.drawArrays();
+            } else {
+                group.mesh.draw();
+            }
+            GL11.glPopMatrix();
+        }
+    }
+
+    /**drops everything in the batch without drawing it, called at the start of every frame.*/
+    public static void clear(){
+        capturing = false;
+        for(Group group : groups.values()){
+            group.count =0;
+        }
+        instanceCount =0;
+        lastInstances =0;
+        lastGroups =0;
+    }
+
+    /**@return the number of instances drawn this frame, or last frame before the world render.*/
+    public static int getLastInstances(){return lastInstances;}
+
+    /**@return the number of groups drawn this frame, each is one texture bind and one VBO setup.*/
+    public static int getLastGroups(){return lastGroups;}
+
+    /**@return the number of instances waiting to be drawn.*/
+    static int getInstanceCount(){return instanceCount;}
+
+    /**@return the transforms and lightmaps of the instances waiting in the group, or null if there's no group, the tests use this.*/
+    static float[] getInstances(BakedMesh mesh, int textureID, AtlasPacker.Region region){
+        Group group = groups.get(key(mesh, textureID, region));
+        return group == null || group.mesh != mesh ? null : Arrays.copyOf(group.data, group.count * STRIDE);
+    }
+
+    /**@return the number of groups that have instances waiting to be drawn.*/
+    static int getGroupCount(){
+        int count =0;
+        for(Group group : groups.values()){
+            if(group.count > 0){
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /*
+     * <h2>matrix math</h2>
+     * the matrices are 4x4, column by column the same as GL, at the offset of the array.
+     */
+
+    static void identity(float[] m, int o){
+        for(int i=0; i<16; i++){
+            m[o + i] = i % 5 == 0 ? 1 : 0;
+        }
+    }
+
+    /**multiplies the matrix by a translation, the same as glTranslate.*/
+    static void translate(float[] m, int o, float x, float y, float z){
+        for(int row=0; row<4; row++){
+            m[o + 12 + row] += m[o + row] * x + m[o + 4 + row] * y + m[o + 8 + row] * z;
+        }
+    }
+
+    /**multiplies the matrix by a rotation of the angle in degrees around the axis, the same as glRotate.*/
+    static void rotate(float[] m, int o, float angle, float x, float y, float z){
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if(length == 0){
+            return;
+        }
+        x /= length;
+        y /= length;
+        z /= length;
+        float c = (float) Math.cos(Math.toRadians(angle)), s = (float) Math.sin(Math.toRadians(angle)), t = 1 - c;
+        //the columns of the rotation.
+        float r00 = x * x * t + c, r10 = y * x * t + z * s, r20 = x * z * t - y * s;
+        float r01 = x * y * t - z * s, r11 = y * y * t + c, r21 = y * z * t + x * s;
+        float r02 = x * z * t + y * s, r12 = y * z * t - x * s, r22 = z * z * t + c;
+        float m0, m1, m2;
+        for(int row=0; row<4; row++){
+            m0 = m[o + row];
+            m1 = m[o + 4 + row];
+            m2 = m[o + 8 + row];
+            m[o + row] = m0 * r00 + m1 * r10 + m2 * r20;
+            m[o + 4 + row] = m0 * r01 + m1 * r11 + m2 * r21;
+            m[o + 8 + row] = m0 * r02 + m1 * r12 + m2 * r22;
+        }
+    }
+
+
+    /**
+     * <h2>Group</h2>
+     * the instances of a single mesh with a single texture, and atlas region if the skin is on the atlas.
+     */
+    private static class Group {
+        private final BakedMesh mesh;
+        private final int texture;
+        private final AtlasPacker.Region region;
+        private float[] data = new float[STRIDE * 4];
+        private int count =0;
+
+        private Group(BakedMesh mesh, int texture, AtlasPacker.Region region){
+            this.mesh = mesh;
+            this.texture = texture;
+            this.region = region;
+        }
+
+        /**makes room for another instance, and returns the array to put it in.*/
+        private float[] next(){
+            count++;
+            if(count * STRIDE > data.length){
+                float[] grown = new float[data.length * 2];
+                System.arraycopy(data, 0, grown, 0, (count - 1) * STRIDE);
+                data = grown;
+            }
+            return data;
+        }
+    }
+}
@@ -29,7 +29,16 @@ public class ModelBase extends ArrayList<ModelRendererTurbo> {
 
 	public List<Integer> displayList=new ArrayList<>();
 
-	public static Map<String,Integer> staticPartMap = new HashMap<>();
+	/**the baked static parts of each model class, so each only exists once on GPU no matter how many instances there are.*/
+	public static Map<String,BakedMesh> staticPartMap = new HashMap<>();
+	/**static parts that can't be baked, like ones that ignore lighting, these are still rendered part by part.*/
+	public List<ModelRendererTurbo> unbakedList = new ArrayList<>();
+
+	/**the levels of detail, full is everything, near drops the thinnest static parts,
+	 * far drops more of them and the animated parts too.*/
+	public static final int LOD_FULL=0, LOD_NEAR=1, LOD_FAR=2;
+	/**the level of detail models are rendered at, set by the entity render for each transport, and back to full after.*/
+	public static int renderLOD = LOD_FULL;
 
 	public void render(){
 		if(init){
@@ -41,17 +50,14 @@ public class ModelBase extends ArrayList<ModelRendererTurbo> {
 		//if(displayList.size()==0) {
 		//	return;
 		//}
-		if(staticPartMap.get(this.getClass().getName())==null) {
-			staticPartMap.put(this.getClass().getName(), GLAllocation.generateDisplayLists(1));
-			GL11.glNewList(staticPartMap.get(this.getClass().getName()), GL11.GL_COMPILE);
-			render(boxList);
-			GL11.glEndList();
-			boxList=null;
-		} else {
-			GL11.glCallList(staticPartMap.get(this.getClass().getName()));
+		BakedMesh mesh = getStaticMesh(renderLOD);
+		if(!MeshBatch.add(mesh)) {
+			mesh.draw();
 		}
+		render(unbakedList);
 
-		if(animatedList==null){return;}
+		//far away the moving parts are too small to see, so they aren't worth the draw calls.
+		if(animatedList==null || renderLOD==LOD_FAR){return;}
 		for(int i=1;i<animatedList.size();i++){
 			if(displayList.get(i)!=-1){
 				GL11.glCallList(displayList.get(i));
@@ -66,6 +72,38 @@ public class ModelBase extends ArrayList<ModelRendererTurbo> {
 		}
 	}
 
+	/**
+	 * gets the baked static parts for the level of detail, baking them on first use.
+	 * if none of the parts are thin enough to drop, the level just uses the full mesh.
+	 */
+	public BakedMesh getStaticMesh(int lod){
+		String key = lod==LOD_FULL?this.getClass().getName():this.getClass().getName()+"#"+lod;
+		BakedMesh mesh = staticPartMap.get(key);
+		if(mesh==null) {
+			if(lod!=LOD_FULL && MeshBaker.countVertices(boxList, getDetailSize(lod))==MeshBaker.countVertices(boxList)){
+				mesh = getStaticMesh(LOD_FULL);
+			} else {
+				mesh = new BakedMesh(MeshBaker.bake(boxList, 0.0625F, getDetailSize(lod)));
+			}
+			staticPartMap.put(key, mesh);
+		}
+		return mesh;
+	}
+
+	/**the size in model pixels that parts thinner than are dropped at each level of detail, nothing is dropped at full.*/
+	private static final float[] detailSizes = {0, 1, 3};
+
+	/**@return the size in model pixels that parts thinner than are dropped at the level of detail.*/
+	public static float getDetailSize(int lod){
+		return lod>0 && lod<detailSizes.length?detailSizes[lod]:0;
+	}
+
+	/**sets the sizes parts are dropped at, the levels are baked the first time they are used, so this has to be before any are rendered.*/
+	public static void setDetailSizes(float near, float far){
+		detailSizes[LOD_NEAR] = near;
+		detailSizes[LOD_FAR] = far;
+	}
+
 	/** render sub-model array */
 	public void render(List<ModelRendererTurbo> model){
 		if(model==null){return;}
@@ -252,6 +290,12 @@ public class ModelBase extends ArrayList<ModelRendererTurbo> {
         r7=initList(r7);
         r8=initList(r8);
         r9=initList(r9);
+        //static parts are baked on the first render, the ones that can't be are kept to render normally.
+        for(ModelRendererTurbo part : boxList){
+            if(part!=null && !MeshBaker.canBake(part)){
+                unbakedList.add(part);
+            }
+        }
         init=false;
     }
 
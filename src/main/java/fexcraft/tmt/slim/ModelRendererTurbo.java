@@ -1299,6 +1299,11 @@ public class ModelRendererTurbo {
     }
 
 
+    /**@return the faces of the shape, used to bake it into a mesh.*/
+    public List<TexturedPolygon> getFaces(){
+        return faces;
+    }
+
     public void render(){
         render(0.0625F);
     }
@@ -0,0 +1,187 @@
+package fexcraft.tmt.slim;
+
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h1>Skin atlas</h1>
+ * the GL side of the skin atlas, it keeps the pages as textures and uploads skins into the regions the packer gives them.
+ * a skin on a page is drawn by binding the page and setting the texture matrix to the region,
+ * @see TextureManager#setTextureMatrix(AtlasPacker.Region)
+ * so the baked meshes don't need different UVs for each skin they are drawn with.
+ *
+ * pages are 2048x2048, or the most the graphics card supports if it's less, skins that don't fit on an empty page aren't added.
+ * the whole of every page counts against the recolor cache budget, not just the skins on it.
+ * @see AtlasPacker
+ * @author Eternal Blue Flame
+ */
+@SideOnly(Side.CLIENT)
+public class SkinAtlas {
+
+    /**the biggest page size used, a full page is 16 megabytes on the GPU.*/
+    private static final int MAX_PAGE_SIZE = 2048;
+
+    private static final List<Page> pages = new ArrayList<>();
+    /**the width and height of the pages, 0 until the first page is made.*/
+    private static int pageSize = 0;
+
+    /**
+     * <h2>add</h2>
+     * places the skin on the first page with room for it, making a new page if none have, and uploads it.
+     * this binds the page, so the texture shadow in TextureManager has to be reset after.
+     * @param pixels the skin in ARGB, starting from the offset.
+     * @return the region of the skin, or null if it's too big for a page.
+     */
+    public static AtlasPacker.Region add(int[] pixels, int offset, int width, int height){
+        int pageSize = getPageSize();
+        AtlasPacker.Region region = null;
+        Page page = null;
+        for(Page p : pages){
+            region = p.packer.insert(width, height);
+            if(region != null){
+                page = p;
+                break;
+            }
+        }
+        if(region == null){
+            page = new Page(pageSize);
+            region = page.packer.insert(width, height);
+            if(region == null){
+                page.delete();
+                return null;
+            }
+            pages.add(page);
+        }
+
+        int[] padded = AtlasPacker.pad(region, pixels, offset);
+        IntBuffer buffer = BufferUtils.createIntBuffer(padded.length);
+        buffer.put(padded);
+        buffer.flip();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, page.glID);
+        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, region.x - AtlasPacker.PADDING, region.y - AtlasPacker.PADDING,
+                width + AtlasPacker.PADDING * 2, height + AtlasPacker.PADDING * 2,
+                GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, buffer);
+        return region;
+    }
+
+    /**
+     * <h2>added bytes</h2>
+     * the pages are the same size no matter how much of them is used, so adding a skin only takes more memory when it needs a new page.
+     * @return the bytes adding the skin would take, 0 if it fits on a page there already is, or -1 if it's too big for a page.
+     */
+    public static long getAddedBytes(int width, int height){
+        for(Page page : pages){
+            if(page.packer.fits(width, height)){
+                return 0;
+            }
+        }
+        int pageSize = getPageSize();
+        return new AtlasPacker(pageSize).fits(width, height) ? pageSize * (long) pageSize * 4 : -1;
+    }
+
+    /**@return the memory used by the pages on the GPU, in bytes.*/
+    public static long getBytes(){
+        return pages.size() * (long) pageSize * pageSize * 4;
+    }
+
+    /**@return the width and height of the pages, the graphics card is asked the first time.*/
+    private static int getPageSize(){
+        if(pageSize == 0){
+            pageSize = Math.min(MAX_PAGE_SIZE, GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE));
+        }
+        return pageSize;
+    }
+
+    /**@return the GL texture of the page the region is on, or 0 if the page is gone.*/
+    public static int getTextureID(AtlasPacker.Region region){
+        Page page = getPage(region);
+        return page == null ? 0 : page.glID;
+    }
+
+    /**frees the region, and the page with it if it was the last region on it.*/
+    public static void remove(AtlasPacker.Region region){
+        Page page = getPage(region);
+        if(page != null){
+            page.packer.remove(region);
+            if(page.packer.getRegionCount() == 0){
+                page.delete();
+                pages.remove(page);
+            }
+        }
+    }
+
+    /**deletes every page, used when the recolor cache is cleared.*/
+    public static void clear(){
+        for(Page page : pages){
+            page.delete();
+        }
+        pages.clear();
+    }
+
+    /**@return the number of pages.*/
+    public static int getPageCount(){return pages.size();}
+
+    /**@return the number of skins on the pages.*/
+    public static int getRegionCount(){
+        int count =0;
+        for(Page page : pages){
+            count += page.packer.getRegionCount();
+        }
+        return count;
+    }
+
+    /**@return the average part of the pages used by skins, from 0 to 1.*/
+    public static float getOccupancy(){
+        if(pages.size() == 0){
+            return 0;
+        }
+        float occupancy =0;
+        for(Page page : pages){
+            occupancy += page.packer.getOccupancy();
+        }
+        return occupancy / pages.size();
+    }
+
+    private static Page getPage(AtlasPacker.Region region){
+        for(Page page : pages){
+            if(page.packer == region.getPacker()){
+                return page;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * <h2>Page</h2>
+     * a texture the size of the page, and the packer for it.
+     * skins use nearest filtering, so nothing from the neighboring skins gets blended in past the padding.
+     */
+    private static class Page {
+        private final AtlasPacker packer;
+        private final int glID;
+
+        private Page(int size){
+            packer = new AtlasPacker(size);
+            glID = GL11.glGenTextures();
+            GL11.glBindTexture(GL11.GL_TEXTURE_2D, glID);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, size, size, 0,
+                    GL12.GL_BGRA, GL12.GL_UNSIGNED_INT_8_8_8_8_REV, (IntBuffer) null);
+        }
+
+        private void delete(){
+            GL11.glDeleteTextures(glID);
+        }
+    }
+}
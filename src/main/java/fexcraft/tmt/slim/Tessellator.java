@@ -5,7 +5,7 @@ import cpw.mods.fml.relauncher.SideOnly;
 import net.minecraft.util.ResourceLocation;
 import org.lwjgl.opengl.GL11;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -19,8 +19,13 @@ public class Tessellator{
 
 	private static Float x, y, z;
 	private static Vec3f normal=null;
-	//@Depreciated
-	private static List<float[]> verticies = new ArrayList<>(); //0,1,2 are the position, 3,4,5,6 are the texture vectors.
+	/**the normal of the last face drawn with drawTexturedVertsWithNormal, reused so it doesn't allocate per face.*/
+	private static final Vec3f faceNormal=new Vec3f();
+	/**the number of floats for each vertex, 0,1,2 are the position, 3,4,5,6 are the texture vectors, 7 is 1 if it's textured.*/
+	private static final int STRIDE=8;
+	//reused between draws, it only grows, so drawing doesn't allocate for every vertex.
+	private static float[] verticies = new float[STRIDE*64];
+	private static int vertexCount=0;
 
 	public static Tessellator getInstance(){
 		return INSTANCE;
@@ -28,7 +33,7 @@ public class Tessellator{
 
 	//use this to reset and define the drawing mode
 	public void startDrawing(int mode){
-		verticies=new ArrayList<>();
+		vertexCount=0;
 		normal=null;
 		GL11.glBegin(mode);
 	}
@@ -37,29 +42,28 @@ public class Tessellator{
 		if(normal!=null) {
 			GL11.glNormal3f(normal.xCoord, normal.yCoord, normal.zCoord);
 		}
-		for(float[] f : verticies){
-			if(f.length>3) {
-				GL11.glTexCoord2f(f[3], f[4]);
+		for(int i=0; i<vertexCount*STRIDE; i+=STRIDE){
+			if(verticies[i+7]!=0) {
+				GL11.glTexCoord2f(verticies[i+3], verticies[i+4]);
 			}
-			GL11.glVertex3f(f[0],f[1],f[2]);
+			GL11.glVertex3f(verticies[i],verticies[i+1],verticies[i+2]);
 		}
 		GL11.glEnd();
 	}
 	
 	public void addVertex(float i, float j, float k){
 		if(x!=null){
-			verticies.add(new float[]{i + x, j + y, k + z});
-
+			put(i + x, j + y, k + z, 0, 0, 0, false);
 		} else {
-			verticies.add(new float[]{i, j, k});
+			put(i, j, k, 0, 0, 0, false);
 		}
 	}
 	
 	public void addVertexWithUV(float i, float j, float k, float u, float v){
 		if(x!=null){
-			verticies.add(new float[]{i + x, j + y, k + z, u, v});
+			put(i + x, j + y, k + z, u, v, 0, true);
 		} else {
-			verticies.add(new float[]{i, j, k, u, v});
+			put(i, j, k, u, v, 0, true);
 		}
 	}
 
@@ -69,13 +73,37 @@ public class Tessellator{
 	}
 
 	public void setTextureUV(float u, float v){
-		float[] vert = verticies.get(verticies.size()-1);
-		verticies.set(verticies.size()-1, new float[]{vert[0],vert[1],vert[2],u,v});
+		int i=(vertexCount-1)*STRIDE;
+		verticies[i+3]=u;
+		verticies[i+4]=v;
+		verticies[i+5]=0;
+		verticies[i+6]=0;
+		verticies[i+7]=1;
 	}
 	
 	public void setTextureUVW(float u, float v, float w){
-		float[] vert = verticies.get(verticies.size()-1);
-		verticies.set(verticies.size()-1, new float[]{vert[0],vert[1],vert[2],u,v,0.0f,w});
+		int i=(vertexCount-1)*STRIDE;
+		verticies[i+3]=u;
+		verticies[i+4]=v;
+		verticies[i+5]=0;
+		verticies[i+6]=w;
+		verticies[i+7]=1;
+	}
+
+	private static void put(float i, float j, float k, float u, float v, float w, boolean textured){
+		if((vertexCount+1)*STRIDE>verticies.length){
+			verticies=Arrays.copyOf(verticies, verticies.length*2);
+		}
+		int index=vertexCount*STRIDE;
+		verticies[index]=i;
+		verticies[index+1]=j;
+		verticies[index+2]=k;
+		verticies[index+3]=u;
+		verticies[index+4]=v;
+		verticies[index+5]=0;
+		verticies[index+6]=w;
+		verticies[index+7]=textured?1:0;
+		vertexCount++;
 	}
 
 	public static void setTranslation(float xOffset, float yOffset, float zOffset){
@@ -101,8 +129,14 @@ public class Tessellator{
 			}
 
 		}
-		normal = vertexList.get(1).vector3F.subtract(vertexList.get(2).vector3F)
-						.crossProduct(vertexList.get(1).vector3F.subtract(vertexList.get(0).vector3F));
+		//same as (v1-v2)x(v1-v0), without making three vectors for it.
+		Vec3f v0=vertexList.get(0).vector3F, v1=vertexList.get(1).vector3F, v2=vertexList.get(2).vector3F;
+		float ax=v1.xCoord-v2.xCoord, ay=v1.yCoord-v2.yCoord, az=v1.zCoord-v2.zCoord;
+		float bx=v1.xCoord-v0.xCoord, by=v1.yCoord-v0.yCoord, bz=v1.zCoord-v0.zCoord;
+		faceNormal.xCoord=ay*bz-az*by;
+		faceNormal.yCoord=az*bx-ax*bz;
+		faceNormal.zCoord=ax*by-ay*bx;
+		normal=faceNormal;
 		GL11.glNormal3f(normal.xCoord,normal.yCoord,normal.zCoord);
 		GL11.glEnd();
 	}
@@ -26,9 +26,7 @@ import org.lwjgl.opengl.GL11;
 import sun.awt.image.InputStreamImageSource;
 import sun.awt.image.PNGImageDecoder;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.FileInputStream;
@@ -47,8 +45,10 @@ public class TextureManager {
     //public static ByteBuffer renderPixels = ByteBuffer.allocateDirect((4096*4096)*4);
     private static int  skyLight;
     private static Set<?> MCResourcePacks;
-    public static Map<String, Integer> tmtBoundTextures = new HashMap<>();
-    private static Integer currentKey;
+    /**the recolored skins, mapped by their signature, in least recently used order.*/
+    private static LinkedHashMap<Long, RecolorEntry> recolorCache = new LinkedHashMap<>(16, 0.75f, true);
+    /**the memory used by the recolored skins that have their own texture, in bytes, the atlas pages are counted by SkinAtlas.*/
+    private static long recolorCacheBytes = 0;
 
     public static Map<ItemStack,int[]> ingotColors = new HashMap<>();
 
@@ -57,6 +57,96 @@ public class TextureManager {
 
     private static ITextureObject object;
 
+    /**the GL ID of the last texture bound through here, so the mesh batch knows what texture a mesh uses without asking GL.*/
+    public static int lastTexture = 0;
+    /**the atlas region of the last skin bound through here, null if it wasn't on the atlas, the mesh batch groups by this too.*/
+    public static AtlasPacker.Region lastRegion = null;
+
+    /**
+     * the texture that was last bound through here, so binds of the texture that's already bound can be skipped without asking GL.
+     * vanilla binds textures without going through here, so it's only trusted between beginRender and endRender, and -1 is unknown.
+     */
+    private static int boundTexture = -1;
+    private static boolean tracking = false;
+    /**the region the texture matrix is set to, null when it's the identity.*/
+    private static AtlasPacker.Region matrixRegion = null;
+    /**the binds that were sent to GL, and the ones that were skipped because the texture was already bound, since the game started.*/
+    private static long binds = 0, skippedBinds = 0;
+
+    /**starts trusting the bound texture, call it before a render that only binds textures through here.*/
+    public static void beginRender(){
+        tracking = true;
+        boundTexture = -1;
+    }
+
+    /**stops trusting the bound texture, and puts the texture matrix back, call it before anything else can bind a texture.*/
+    public static void endRender(){
+        tracking = false;
+        boundTexture = -1;
+        setTextureMatrix(null);
+    }
+
+    /**
+     * binds the GL texture, unless it's already bound and that can be trusted.
+     * this replaces asking GL for the bound texture, which stalls the render until the GPU catches up.
+     */
+    public static void bindTextureID(int id){
+        lastTexture = id;
+        if(trackBind(id, ClientProxy.ForceTextureBinding)){
+            GL11.glBindTexture(GL_TEXTURE_2D, id);
+        }
+    }
+
+    /**
+     * counts the bind, and remembers the texture if it can be trusted, the tests use this.
+     * @param force true if the texture has to be bound even when it already is.
+     * @return true if the texture has to be bound.
+     */
+    static boolean trackBind(int id, boolean force){
+        if(tracking && boundTexture == id && !force){
+            skippedBinds++;
+            return false;
+        }
+        boundTexture = tracking ? id : -1;
+        binds++;
+        return true;
+    }
+
+    /**
+     * sets the texture matrix so the 0 to 1 UVs of a skin land on it's region of the atlas page, or back to the identity for null.
+     * the matrix mode is put back to the modelview after.
+     */
+    public static void setTextureMatrix(AtlasPacker.Region region){
+        lastRegion = region;
+        if(region == matrixRegion){
+            return;
+        }
+        GL11.glMatrixMode(GL_TEXTURE);
+        GL11.glLoadIdentity();
+        if(region != null){
+            GL11.glTranslatef(region.u, region.v, 0);
+            GL11.glScalef(region.scaleU, region.scaleV, 1);
+        }
+        GL11.glMatrixMode(GL_MODELVIEW);
+        matrixRegion = region;
+    }
+
+    /**@return the lines for the debug screen, the atlas use, the recolor cache memory, and how many binds were skipped.*/
+    public static List<String> getDebugLines(){
+        List<String> lines = new ArrayList<>();
+        if(ClientProxy.skinAtlas){
+            lines.add("TiM skin atlas: " + SkinAtlas.getRegionCount() + " skins on " + SkinAtlas.getPageCount() + " pages, " +
+                    Math.round(SkinAtlas.getOccupancy() * 100) + "% used");
+        }
+        lines.add("TiM recolor cache: " + (getRecolorCacheBytes() / 1048576) + " of " + ClientProxy.recolorCacheMB + "MB");
+        lines.add("TiM texture binds: " + binds + " bound, " + skippedBinds + " skipped");
+        return lines;
+    }
+
+    /**@return the binds that were sent to GL, and the ones that were skipped, since the game started.*/
+    public static long getBindCount(){return binds;}
+    public static long getSkippedBindCount(){return skippedBinds;}
+
     /**
      * custom texture binding method, generally same as vanilla, but possible to improve performance later.
      * @param textureURI
@@ -69,15 +159,17 @@ public class TextureManager {
         if(MCResourcePacks!= Minecraft.getMinecraft().getResourceManager().getResourceDomains()){
             MCResourcePacks= Minecraft.getMinecraft().getResourceManager().getResourceDomains();
             tmtMap=new HashMap<>();
-            tmtBoundTextures = new HashMap<>();
+            clearRecolorCache();
         }
         if(ClientProxy.ForceTextureBinding) {
              object = Minecraft.getMinecraft().getTextureManager().getTexture(textureURI);
             if (object == null) {
                 object = new SimpleTexture(textureURI);
                 Minecraft.getMinecraft().getTextureManager().loadTexture(textureURI, object);
+                //loading binds it without going through here.
+                boundTexture = -1;
             }
-            GL11.glBindTexture(GL_TEXTURE_2D, object.getGlTextureId());
+            bindTextureID(object.getGlTextureId());
         } else {
             Integer id = tmtMap.get(textureURI);
             if (id ==null){
@@ -85,23 +177,22 @@ public class TextureManager {
                 if (object == null) {
                     object = new SimpleTexture(textureURI);
                     Minecraft.getMinecraft().getTextureManager().loadTexture(textureURI, object);
+                    //loading binds it without going through here.
+                    boundTexture = -1;
                 }
                 id=object.getGlTextureId();
                 tmtMap.put(textureURI, id);
             }
-            if(GL11.glGetInteger(GL_TEXTURE_2D) !=id) {
-                GL11.glBindTexture(GL_TEXTURE_2D, id);
-            }
+            bindTextureID(id);
         }
+        setTextureMatrix(null);
     }
 
     //most compilers should process this type of function faster than a normal typecast.
     public static byte b(int i){return (byte) i;}
 
     public static boolean colorInRange(int r, int g, int b, int oldR, int oldG, int oldB){
-        return oldR-r>-17 && oldR-r <17 &&
-                oldG-g>-17 && oldG-g <17 &&
-                oldB-b>-17 && oldB-b <17;
+        return TextureRecolor.colorInRange(r, g, b, oldR, oldG, oldB);
     }
 
 
@@ -226,178 +317,207 @@ public class TextureManager {
 
 
     public static void bindTexture(ResourceLocation textureURI, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom, List<Integer> colorsTo){
+        if(textureURI==null){
+            bindTexture(null);
+            return;
+        }
         //clean out the texture bind map when texturepacks are reloaded.
         if(MCResourcePacks!= Minecraft.getMinecraft().getResourceManager().getResourceDomains()){
             MCResourcePacks= Minecraft.getMinecraft().getResourceManager().getResourceDomains();
             tmtMap=new HashMap<>();
-            tmtBoundTextures = new HashMap<>();
+            clearRecolorCache();
         }
 
         GL11.glEnable(GL_TEXTURE_2D);
-        if(!tmtBoundTextures.containsKey(getID(textureURI,skinColorsFrom, skinColorsTo, colorsFrom,colorsTo,false))){
-            if(createAWT(textureURI, skinColorsFrom, skinColorsTo, colorsFrom, colorsTo)){
-                try {
-                    BufferedImage image = ImageIO.read(new File(getID(textureURI,skinColorsFrom, skinColorsTo, colorsFrom, colorsTo, true)));
-
-                    currentKey =tmtBoundTextures.put(getID(textureURI,skinColorsFrom, skinColorsTo, colorsFrom, colorsTo, false),
-                            Minecraft.getMinecraft().getTextureManager().getTexture(
-                                    Minecraft.getMinecraft().getTextureManager().getDynamicTextureLocation(
-                                            getID(textureURI,skinColorsFrom, skinColorsTo, colorsFrom, colorsTo, true),
-                                    new DynamicTexture(image))).getGlTextureId());
-                } catch (IOException ignored){
-                    DebugUtil.println("AWT FAILED");
-                    ignored.printStackTrace();
-                }
-            }
-        } else {
-            currentKey = tmtBoundTextures.get(getID(textureURI,skinColorsFrom, skinColorsTo, colorsFrom, colorsTo, false));
+        long signature = TextureRecolor.signature(textureURI.getResourceDomain(), textureURI.getResourcePath(),
+                skinColorsFrom, skinColorsTo, colorsFrom, colorsTo);
+        RecolorEntry entry = recolorCache.get(signature);
+        if(entry!=null && !entry.matches(textureURI, skinColorsFrom, skinColorsTo, colorsFrom, colorsTo)){
+            //a signature collision, this should basically never happen, but if it does, the newer one wins.
+            removeRecolor(signature);
+            entry=null;
+        }
+        if(entry==null){
+            entry = createRecolor(textureURI, signature, skinColorsFrom, skinColorsTo, colorsFrom, colorsTo);
         }
 
-        //if for some reason the texture couldn't be written to I/O, which should never be an issue.
-        if(currentKey==null){
+        //if for some reason the texture couldn't be recolored, just use the original.
+        if(entry==null){
             bindTexture(textureURI);
+        } else if(entry.region!=null){
+            bindTextureID(SkinAtlas.getTextureID(entry.region));
+            setTextureMatrix(entry.region);
         } else {
-            if(GL11.glGetInteger(GL_TEXTURE_2D) !=currentKey) {
-                GL11.glBindTexture(GL_TEXTURE_2D, currentKey);
-            }
+            bindTextureID(entry.texture.getGlTextureId());
+            setTextureMatrix(null);
         }
 
     }
 
 
+    /**
+     * recolors the texture and uploads it, this is only done the first time a combination of skin and colors is used,
+     * or after it was dropped from the cache.
+     */
+    private static RecolorEntry createRecolor(ResourceLocation textureURI, long signature, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom, List<Integer> colorsTo){
+        File cacheFile = !ClientProxy.recolorDiskCache?null:
+                new File(ClientProxy.configDirectory+"/TrainsInMotionCache/"+resourceLocation(textureURI)+"/"+
+                        Long.toHexString(signature)+"_"+Integer.toHexString(Minecraft.getMinecraft().gameSettings.resourcePacks.hashCode())+".bin");
+        int width, height;
+        int[] pixels = cacheFile==null?null:TextureRecolor.readCache(cacheFile);
+        int offset = 2;
+        if(pixels!=null){
+            width = pixels[0];
+            height = pixels[1];
+        } else {
+            bindTexture(textureURI);
 
-    public static boolean createAWT(ResourceLocation textureURI, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom, List<Integer> colorsTo){
-        bindTexture(textureURI);
+            //get image data from the currently bound image
+            width =glGetTexLevelParameteri(GL_TEXTURE_2D, 0, GL_TEXTURE_WIDTH);
+            height =glGetTexLevelParameteri(GL_TEXTURE_2D, 0, GL_TEXTURE_HEIGHT);
+            if(width*height<4){
+                return null;
+            }
+            ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
+            GL11.glGetTexImage(GL_TEXTURE_2D, 0, GL11.GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+            byte[] rgba = new byte[width * height * 4];
+            buffer.get(rgba);
+
+            pixels = TextureRecolor.recolor(TextureRecolor.fromRGBA(rgba), skinColorsFrom, skinColorsTo, colorsFrom);
+            offset = 0;
+            if(cacheFile!=null){
+                TextureRecolor.writeCache(cacheFile, width, height, pixels);
+            }
+        }
 
-        //get image data from the currently bound image
-        int width =glGetTexLevelParameteri(GL_TEXTURE_2D, 0, GL_TEXTURE_WIDTH);
-        int height =glGetTexLevelParameteri(GL_TEXTURE_2D, 0, GL_TEXTURE_HEIGHT);
-        if(width*height<4){
-            return false;
+        //make room for it first, so the one that's about to be used is never the one dropped.
+        //a skin on the atlas only takes more room when it needs a new page, dropping skins only frees a page once it's empty.
+        long bytes = width * height * 4L, budget = ClientProxy.recolorCacheMB*1048576L;
+        while (recolorCache.size()>0 && getRecolorCacheBytes()+getRecolorCost(width, height, bytes, budget) > budget){
+            removeRecolor(recolorCache.keySet().iterator().next());
         }
 
-        ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
+        //put it on the atlas if it's on and there's room, otherwise it gets it's own texture.
+        AtlasPacker.Region region = !useAtlas(width, height, budget)?null:SkinAtlas.add(pixels, offset, width, height);
+        DynamicTexture texture = null;
+        if(region==null) {
+            texture = new DynamicTexture(width, height);
+            System.arraycopy(pixels, offset, texture.getTextureData(), 0, width * height);
+            texture.updateDynamicTexture();
+        }
+        //both of those bind their texture without going through here.
+        boundTexture = -1;
+        //the atlas pages are counted by SkinAtlas, so only skins with their own texture count their bytes.
+        RecolorEntry entry = new RecolorEntry(textureURI, skinColorsFrom, skinColorsTo, colorsFrom, colorsTo, texture, region, region==null?bytes:0);
+        recolorCache.put(signature, entry);
+        recolorCacheBytes += entry.bytes;
+        return entry;
+    }
 
-        GL11.glGetTexImage(GL_TEXTURE_2D, 0, GL11.GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+    /**@return true if the skin goes on the atlas, a new page that's bigger than the whole budget is never made, the skin gets it's own texture instead.*/
+    private static boolean useAtlas(int width, int height, long budget){
+        if(!ClientProxy.skinAtlas){
+            return false;
+        }
+        long added = SkinAtlas.getAddedBytes(width, height);
+        return added != -1 && added <= budget;
+    }
 
-        //create a buffered image and push the data to it
-        BufferedImage skin = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    /**@return the bytes the skin would add to the cache, the bytes of it's own texture, or of the new page it needs.*/
+    private static long getRecolorCost(int width, int height, long bytes, long budget){
+        return useAtlas(width, height, budget) ? SkinAtlas.getAddedBytes(width, height) : bytes;
+    }
 
-        int i,r,g,b,a, y,ii;
-        int[] col;
+    private static void removeRecolor(Long signature){
+        RecolorEntry entry = recolorCache.remove(signature);
+        if(entry!=null){
+            entry.delete();
+            recolorCacheBytes -= entry.bytes;
+            //the ID can be given to a new texture now.
+            boundTexture = -1;
+        }
+    }
 
-        for (int x = 0; x < width; x++) {
-            for (y = 0; y < height; y++) {
+    /**drops every recolored skin, used when resource packs change.*/
+    public static void clearRecolorCache(){
+        for(RecolorEntry entry : recolorCache.values()){
+            entry.delete();
+        }
+        recolorCache.clear();
+        SkinAtlas.clear();
+        boundTexture = -1;
+        recolorCacheBytes = 0;
+    }
 
-                i = (x + (width * y)) * 4;
-                r = buffer.get(i) & 0xff;
-                g = buffer.get(i + 1) & 0xff;
-                b = buffer.get(i + 2) & 0xff;
-                a = buffer.get(i + 3) & 0xff;
-                if(a==0){
-                    skin.setRGB(x,y,0x00000000);
-                    continue;
-                }
+    /**@return the memory used by recolored skins, in bytes, the whole of every atlas page is counted, not just the skins on it.*/
+    public static long getRecolorCacheBytes(){
+        return recolorCacheBytes + SkinAtlas.getBytes();
+    }
 
-                //recolor from skin
-                if(skinColorsFrom!=null&&skinColorsFrom.length>0){
-                    for (ii=0;ii<skinColorsFrom.length;ii++){
-                        col = hexTorgb(skinColorsFrom[ii]);
-                        if(colorInRange(r,g,b,col[2],col[1],col[0])){
-                            col=postProcessColor(skinColorsTo[ii],r,g,b);
-                            r=col[2];
-                            g=col[1];
-                            b=col[0];
-                        }
-                    }
-                }
-                //recolor from player settings. ORDER IS IMPORTANT
-                if(colorsFrom!=null && colorsFrom.size()>0) {
-                    for (ii=0;ii<colorsFrom.size();ii++){
-                        col = hexTorgba(colorsFrom.get(ii));
-                        if(colorInRange(r,g,b,col[2],col[1],col[0])){
-                            col=postProcessColor(skinColorsTo[ii],r,g,b);
-                            r=col[2];
-                            g=col[1];
-                            b=col[0];
-                        }
-                    }
-                }
+    /**
+     * a recolored skin, the colors are copied so the signature can be confirmed, and later changes to the lists don't effect it.
+     * it's either it's own texture, or a region of the skin atlas, the other is null.
+     */
+    private static class RecolorEntry {
+        private final String domain, path;
+        private final int[] skinColorsFrom, skinColorsTo, colorsFrom, colorsTo;
+        private final DynamicTexture texture;
+        private final AtlasPacker.Region region;
+        private final long bytes;
+
+        private RecolorEntry(ResourceLocation textureURI, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom, List<Integer> colorsTo, DynamicTexture texture, AtlasPacker.Region region, long bytes){
+            this.domain = textureURI.getResourceDomain();
+            this.path = textureURI.getResourcePath();
+            this.skinColorsFrom = skinColorsFrom==null?new int[0]:skinColorsFrom.clone();
+            this.skinColorsTo = skinColorsTo==null?new int[0]:skinColorsTo.clone();
+            this.colorsFrom = toArray(colorsFrom);
+            this.colorsTo = toArray(colorsTo);
+            this.texture = texture;
+            this.region = region;
+            this.bytes = bytes;
+        }
 
-                skin.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+        private void delete(){
+            if(texture!=null){
+                texture.deleteGlTexture();
+            }
+            if(region!=null){
+                SkinAtlas.remove(region);
             }
         }
 
-        try {
-            if(!new File(ClientProxy.configDirectory+"/TrainsInMotionCache/"+
-                    resourceLocation(textureURI)).exists()){
-                new File(ClientProxy.configDirectory+"/TrainsInMotionCache/"+
-                        resourceLocation(textureURI)).mkdirs();
-            }
-            ImageIO.write(skin, "PNG", new File(getID(textureURI,skinColorsFrom, skinColorsTo, colorsFrom,colorsTo,true)));
-            buffer.clear();
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            buffer.clear();
-            return false;
+        private boolean matches(ResourceLocation textureURI, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom, List<Integer> colorsTo){
+            return domain.equals(textureURI.getResourceDomain()) && path.equals(textureURI.getResourcePath()) &&
+                    matches(this.skinColorsFrom, skinColorsFrom) && matches(this.skinColorsTo, skinColorsTo) &&
+                    matches(this.colorsFrom, colorsFrom) && matches(this.colorsTo, colorsTo);
         }
-    }
 
-    private static String getID(ResourceLocation textureURI, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom, List<Integer> colorsTo, boolean isFile){
-        StringBuilder filePath = new StringBuilder();
-        if(isFile) {
-            filePath.append(ClientProxy.configDirectory);
-            filePath.append("/TrainsInMotionCache/");
-            filePath.append(resourceLocation(textureURI));
-            filePath.append("/");
-            if(skinColorsFrom!=null && skinColorsTo!=null && skinColorsFrom.length>0 && skinColorsTo.length>0) {
-                for (Integer i : skinColorsFrom) {
-                    filePath.append(Integer.toHexString(i));
-                }
-                filePath.append("_");
-                for (Integer i : skinColorsTo) {
-                    filePath.append(Integer.toHexString(i));
-                }
-                filePath.append("+");
+        private static boolean matches(int[] stored, int[] colors){
+            return colors==null?stored.length==0:Arrays.equals(stored, colors);
+        }
+
+        private static boolean matches(int[] stored, List<Integer> colors){
+            if(colors==null){
+                return stored.length==0;
             }
-            if(colorsFrom==null || colorsTo==null || colorsFrom.size()+colorsTo.size()==0){
-                filePath.append("000_000");
-            } else {
-                for (Integer i : colorsFrom) {
-                    filePath.append(Integer.toHexString(i));
-                }
-                filePath.append("_");
-                for (Integer i : colorsTo) {
-                    filePath.append(Integer.toHexString(i));
-                }
+            if(colors.size()!=stored.length){
+                return false;
             }
-            filePath.append(".png");
-        } else {
-            filePath.append(resourceLocation(textureURI));
-            filePath.append(".");
-            if(skinColorsFrom!=null && skinColorsTo!=null && skinColorsFrom.length>0 && skinColorsTo.length>0) {
-                for (Integer i : skinColorsFrom) {
-                    filePath.append(Integer.toHexString(i));
-                }
-                filePath.append("_");
-                for (Integer i : skinColorsTo) {
-                    filePath.append(Integer.toHexString(i));
-                }
-                if(colorsFrom!=null && colorsTo!=null && colorsFrom.size()+colorsTo.size()>1) {
-                    filePath.append("+");
+            for(int i=0; i<stored.length; i++){
+                if(colors.get(i)!=stored[i]){
+                    return false;
                 }
             }
-            if(colorsFrom!=null && colorsTo!=null && colorsFrom.size()+colorsTo.size()>1){
-                for (Integer i : colorsFrom) {
-                    filePath.append(Integer.toHexString(i));
-                }
-                for (Integer i : colorsTo) {
-                    filePath.append(Integer.toHexString(i));
-                }
+            return true;
+        }
+
+        private static int[] toArray(List<Integer> colors){
+            int[] array = new int[colors==null?0:colors.size()];
+            for(int i=0; i<array.length; i++){
+                array[i] = colors.get(i);
             }
+            return array;
         }
-        return filePath.toString();
     }
 
     private static String resourceLocation(ResourceLocation res){
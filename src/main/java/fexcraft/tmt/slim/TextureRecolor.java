@@ -0,0 +1,215 @@
+package fexcraft.tmt.slim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The CPU side of recoloring skins, it works on ARGB int arrays, there's nothing to do with GL or AWT in here.
+ * <br /><br />
+ * The color rules are unpacked once per recolor rather than per pixel,
+ * and since skins only use a handful of colors, the result for each distinct color is remembered,
+ * so most pixels are just a lookup.
+ * The math is exactly the same as it was when this was done on a BufferedImage, so the pixels are identical.
+ * <br /><br />
+ * Recolors are identified by a 64 bit signature of the texture and colors, rather than a string ID.
+ * @see TextureManager#bindTexture(net.minecraft.util.ResourceLocation, int[], int[], List, List)
+ * @author Eternal Blue Flame
+ */
+public class TextureRecolor {
+
+    /**the first int of a disk cache file, followed by the width, height, then the pixels.*/
+    private static final int DISK_MAGIC = 0x54694D52;//TiMR
+
+    /**
+     * <h2>recolor</h2>
+     * recolors the pixels in place.
+     * skin colors are applied first, then the player colors, ORDER IS IMPORTANT.
+     * @param pixels the pixels in ARGB
+     */
+    public static int[] recolor(int[] pixels, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom){
+        int skinRules = skinColorsFrom==null?0:skinColorsFrom.length;
+        int playerRules = colorsFrom==null?0:colorsFrom.size();
+        int rules = skinRules + playerRules;
+        //unpack every rule once, as r, g, b of the color it's from, and the color it goes to.
+        int[] from = new int[rules*3], to = new int[rules*3];
+        boolean[] valid = new boolean[rules];
+        int color;
+        for(int i=0; i<rules; i++){
+            color = i<skinRules?skinColorsFrom[i]:colorsFrom.get(i-skinRules);
+            from[i*3] = (color>>16)&0xFF;
+            from[i*3+1] = (color>>8)&0xFF;
+            from[i*3+2] = color&0xFF;
+            //todo the player colors use the skin's color to, not their own, this is how it always worked, so the output stays the same.
+            valid[i] = skinColorsTo!=null && (i<skinRules?i:i-skinRules) < skinColorsTo.length;
+            if(valid[i]){
+                color = skinColorsTo[i<skinRules?i:i-skinRules];
+                to[i*3] = (color>>16)&0xFF;
+                to[i*3+1] = (color>>8)&0xFF;
+                to[i*3+2] = color&0xFF;
+            }
+        }
+
+        //remembers the result for each color, keys have bit 24 set so an empty slot is never a match.
+        int[] memoKeys = new int[1024], memoValues = new int[1024];
+        int memoSize = 0, slot, key, r, g, b;
+        for(int p=0; p<pixels.length; p++){
+            if(pixels[p]>>>24==0){
+                pixels[p]=0;
+                continue;
+            }
+            key = (pixels[p]&0xFFFFFF)|0x1000000;
+            slot = (key*0x9E3779B1)>>>22;
+            while (memoKeys[slot]!=0 && memoKeys[slot]!=key){
+                slot = (slot+1)&1023;
+            }
+            if(memoKeys[slot]==key){
+                pixels[p] = (pixels[p]&0xFF000000) | memoValues[slot];
+                continue;
+            }
+
+            r = (pixels[p]>>16)&0xFF;
+            g = (pixels[p]>>8)&0xFF;
+            b = pixels[p]&0xFF;
+            for(int i=0; i<rules; i++){
+                if(valid[i] && colorInRange(r,g,b,from[i*3],from[i*3+1],from[i*3+2])){
+                    r = to[i*3]*2-r;
+                    g = to[i*3+1]*2-g;
+                    b = to[i*3+2]*2-b;
+                }
+            }
+            //the channels can go out of range, they are packed the same way they always were so the output is identical.
+            color = (r << 16) | (g << 8) | b;
+            //only fill half the table, so the probing stays short, any colors past that are just calculated.
+            if(memoSize<512){
+                memoKeys[slot] = key;
+                memoValues[slot] = color;
+                memoSize++;
+            }
+            pixels[p] = (pixels[p]&0xFF000000) | color;
+        }
+        return pixels;
+    }
+
+    /**@return true if each channel of the color is within 16 of the channel it's compared to.*/
+    public static boolean colorInRange(int r, int g, int b, int oldR, int oldG, int oldB){
+        return oldR-r>-17 && oldR-r <17 &&
+                oldG-g>-17 && oldG-g <17 &&
+                oldB-b>-17 && oldB-b <17;
+    }
+
+    /**converts RGBA bytes, the way GL gives them, to ARGB ints.*/
+    public static int[] fromRGBA(byte[] rgba){
+        int[] pixels = new int[rgba.length/4];
+        for(int i=0; i<pixels.length; i++){
+            pixels[i] = ((rgba[i*4+3]&0xFF)<<24) | ((rgba[i*4]&0xFF)<<16) | ((rgba[i*4+1]&0xFF)<<8) | (rgba[i*4+2]&0xFF);
+        }
+        return pixels;
+    }
+
+    /**
+     * <h2>signature</h2>
+     * a 64 bit FNV-1a hash of the texture domain and path, and the colors, null and empty colors are the same.
+     * the player colors to are included even though they aren't used yet, so fixing that won't need a new key.
+     */
+    public static long signature(String domain, String path, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom, List<Integer> colorsTo){
+        long hash = 0xcbf29ce484222325L;
+        for(int i=0; i<domain.length(); i++){
+            hash = (hash ^ domain.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ ':') * 0x100000001b3L;
+        for(int i=0; i<path.length(); i++){
+            hash = (hash ^ path.charAt(i)) * 0x100000001b3L;
+        }
+        hash = hash(hash, skinColorsFrom==null?0:skinColorsFrom.length);
+        if(skinColorsFrom!=null){for(int c : skinColorsFrom){hash = hash(hash, c);}}
+        hash = hash(hash, skinColorsTo==null?0:skinColorsTo.length);
+        if(skinColorsTo!=null){for(int c : skinColorsTo){hash = hash(hash, c);}}
+        hash = hash(hash, colorsFrom==null?0:colorsFrom.size());
+        if(colorsFrom!=null){for(int i=0; i<colorsFrom.size(); i++){hash = hash(hash, colorsFrom.get(i));}}
+        hash = hash(hash, colorsTo==null?0:colorsTo.size());
+        if(colorsTo!=null){for(int i=0; i<colorsTo.size(); i++){hash = hash(hash, colorsTo.get(i));}}
+        return hash;
+    }
+
+    private static long hash(long hash, int value){
+        for(int i=0; i<4; i++){
+            hash = (hash ^ ((value >>> (i*8)) & 0xFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+
+    /*
+     * <h2>disk cache</h2>
+     * optional, stores recolored pixels raw so they can be loaded without reading back and recoloring the source.
+     */
+
+    /**@return the pixels from the file, with the width and height as the first two values, or null if it's not there or not valid.*/
+    public static int[] readCache(File file){
+        if(!file.exists()){
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if(in.readInt()!=DISK_MAGIC){
+                return null;
+            }
+            int width = in.readInt(), height = in.readInt();
+            if(width<=0 || height<=0 || (long)width*height*4+12 != file.length()){
+                return null;
+            }
+            int[] data = new int[width*height+2];
+            data[0]=width;
+            data[1]=height;
+            for(int i=2; i<data.length; i++){
+                data[i] = in.readInt();
+            }
+            return data;
+        } catch (IOException e){
+            e.printStackTrace();
+            return null;
+        } finally {
+            if(in!=null){
+                try {in.close();} catch (IOException ignored){}
+            }
+        }
+    }
+
+    /**writes the pixels to the file, to a temp file first so a partial write is never read.*/
+    public static void writeCache(File file, int width, int height, int[] pixels){
+        DataOutputStream out = null;
+        File temp = new File(file.getPath()+".tmp");
+        try {
+            if(!file.getParentFile().exists()){
+                file.getParentFile().mkdirs();
+            }
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(DISK_MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+            for(int p : pixels){
+                out.writeInt(p);
+            }
+            out.close();
+            out = null;
+            if((file.exists() && !file.delete()) || !temp.renameTo(file)){
+                temp.delete();
+            }
+        } catch (IOException e){
+            e.printStackTrace();
+        } finally {
+            if(out!=null){
+                try {out.close();} catch (IOException ignored){}
+                temp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package ebf;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>XmlBuilder tests</h1>
+ * fuzzes the binary format with random data, nested xml, and every kind of int, float and string, and checks it reads back the same.
+ * the old string format is checked with data it can actually hold, since existing worlds still load through it.
+ * the seed is fixed, so a failure can be repeated.
+ * @author Eternal Blue Flame
+ */
+public class XmlBuilderTest {
+
+    /**letters that can't spell the type names the string format looks for, like int or xml, so random keys don't confuse it.*/
+    private static final String SAFE_LETTERS = "abcdeghjkmnpqruvwz";
+    private static final int[] EDGE_INTS = new int[]{0, 1, -1, 63, 64, -64, -65, 127, 128, Short.MAX_VALUE, Short.MIN_VALUE,
+            Integer.MAX_VALUE, Integer.MIN_VALUE};
+    private static final float[] EDGE_FLOATS = new float[]{0, -0f, 1, -1, 0.1f, Float.MIN_VALUE, Float.MAX_VALUE,
+            Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+    @Test
+    public void binaryRoundTripsRandomData(){
+        Random rand = new Random(1234);
+        for(int i=0; i<2000; i++){
+            XmlBuilder xml = randomXml(rand, 3, false, new int[1]);
+            assertSame(xml, new XmlBuilder(xml.toBytes()));
+        }
+    }
+
+    @Test
+    public void stringRoundTripsRandomData(){
+        Random rand = new Random(4321);
+        for(int i=0; i<2000; i++){
+            XmlBuilder xml = randomXml(rand, 3, true, new int[1]);
+            assertSame(xml, new XmlBuilder(xml.toXMLString()));
+        }
+    }
+
+    @Test
+    public void oldStringBytesAreStillRead(){
+        //tile entities saved before the binary format have the string, and the byte constructor has to take it as it is.
+        Random rand = new Random(5678);
+        for(int i=0; i<200; i++){
+            XmlBuilder xml = randomXml(rand, 2, true, new int[1]);
+            assertSame(xml, new XmlBuilder(xml.toXMLString().getBytes(Charset.forName("UTF-8"))));
+        }
+        assertTrue(new XmlBuilder(new byte[0]).intMap.isEmpty());
+        assertTrue(new XmlBuilder((byte[]) null).intMap.isEmpty());
+    }
+
+    @Test
+    public void binaryIsSmallerThanTheString(){
+        XmlBuilder rail = railData(new Random(1234));
+        int binary = rail.toBytes().length, string = rail.toXMLString().getBytes(Charset.forName("UTF-8")).length;
+        assertTrue("binary " + binary + " bytes, string " + string + " bytes", binary < string);
+    }
+
+    @Test
+    public void emptyItemsAreKept(){
+        XmlBuilder xml = new XmlBuilder();
+        xml.itemMap.put("empty", new String[0]);
+        xml.itemMap.put("rail", new String[]{"minecraft:iron_ingot", "1", "0"});
+        assertSame(xml, new XmlBuilder(xml.toBytes()));
+        //the string format has no way to write it, so it's written the same as no item.
+        XmlBuilder fromString = new XmlBuilder(xml.toXMLString());
+        assertArrayEquals(new String[]{"null"}, fromString.itemMap.get("empty"));
+        assertArrayEquals(new String[]{"minecraft:iron_ingot", "1", "0"}, fromString.itemMap.get("rail"));
+    }
+
+    @Test
+    public void keysAreOnlyWrittenOnce(){
+        XmlBuilder xml = new XmlBuilder();
+        for(int i=0; i<20; i++){
+            xml.putXml("slot" + i, new XmlBuilder().putInt("recipeCount", i));
+        }
+        byte[] bytes = xml.toBytes();
+        String raw = new String(bytes, Charset.forName("ISO-8859-1"));
+        assertEquals(raw.indexOf("recipeCount"), raw.lastIndexOf("recipeCount"));
+        assertSame(xml, new XmlBuilder(bytes));
+    }
+
+    @Test
+    public void cutOffOrCorruptedDataDoesNotThrow(){
+        Random rand = new Random(8765);
+        //the reader prints the error for each of these, which isn't useful here.
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            for(int i=0; i<200; i++){
+                byte[] bytes = randomXml(rand, 2, false, new int[1]).toBytes();
+                for(int length=1; length<bytes.length; length++){
+                    new XmlBuilder(Arrays.copyOf(bytes, length));
+                }
+                //garbage after the header, counts that go past the end have to fail rather than make huge arrays.
+                for(int b=2; b<bytes.length; b++){
+                    bytes[b] = (byte) rand.nextInt(256);
+                }
+                new XmlBuilder(bytes);
+            }
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    /**
+     * makes random data, the keys are unique across all the nested xml, and the same length, so the string format can't mix them up.
+     * @param forString limits the data to what the string format can hold, no markup characters, commas in items, or nulls.
+     * @param counter the number of keys made so far, to keep them unique.
+     */
+    private static XmlBuilder randomXml(Random rand, int depth, boolean forString, int[] counter){
+        XmlBuilder xml = new XmlBuilder();
+        int entries = rand.nextInt(6);
+        for(int i=0; i<entries; i++){
+            xml.intMap.put(key(counter, forString, rand),
+                    rand.nextBoolean() ? EDGE_INTS[rand.nextInt(EDGE_INTS.length)] : rand.nextInt());
+        }
+        entries = rand.nextInt(6);
+        for(int i=0; i<entries; i++){
+            xml.floatMap.put(key(counter, forString, rand),
+                    rand.nextBoolean() ? EDGE_FLOATS[rand.nextInt(EDGE_FLOATS.length)] : Float.intBitsToFloat(rand.nextInt()));
+        }
+        entries = rand.nextInt(6);
+        for(int i=0; i<entries; i++){
+            xml.stringMap.put(key(counter, forString, rand), randomString(rand, forString));
+        }
+        entries = rand.nextInt(4);
+        for(int i=0; i<entries; i++){
+            String[] item;
+            switch (rand.nextInt(forString ? 2 : 4)){
+                case 0:{item = new String[]{"null"};break;}
+                case 1:{item = new String[]{"minecraft:" + randomString(rand, true).replace(",", ""),
+                        rand.nextInt(65) + "", (rand.nextBoolean() ? rand.nextInt() : rand.nextInt(16)) + ""};break;}
+                case 2:{item = new String[]{randomString(rand, false), "not a number", "3"};break;}
+                default:{item = new String[]{randomString(rand, false), randomString(rand, false)};}
+            }
+            xml.itemMap.put(key(counter, forString, rand), item);
+        }
+        if(depth > 0){
+            entries = rand.nextInt(3);
+            for(int i=0; i<entries; i++){
+                xml.xmlMap.put(key(counter, forString, rand), randomXml(rand, depth - 1, forString, counter));
+            }
+        }
+        return xml;
+    }
+
+    private static String key(int[] counter, boolean forString, Random rand){
+        int id = counter[0]++;
+        if(!forString){
+            //the binary format takes any key, so sometimes use ones that would break the string format.
+            return rand.nextBoolean() ? "type<" + id + ">\u00e9" : "k" + id;
+        }
+        StringBuilder key = new StringBuilder("k");
+        for(int i=0; i<4; i++){
+            key.append(SAFE_LETTERS.charAt(id % SAFE_LETTERS.length()));
+            id /= SAFE_LETTERS.length();
+        }
+        return key.toString();
+    }
+
+    private static String randomString(Random rand, boolean forString){
+        int length = rand.nextInt(12);
+        StringBuilder s = new StringBuilder();
+        for(int i=0; i<length; i++){
+            if(forString){
+                s.append((char) ('0' + rand.nextInt(75)));//digits, letters, and a few symbols, none of them markup.
+                if(s.charAt(s.length() - 1) == '<' || s.charAt(s.length() - 1) == '>'){
+                    s.setCharAt(s.length() - 1, '_');
+                }
+            } else {
+                switch (rand.nextInt(3)){
+                    case 0:{s.append((char) rand.nextInt(128));break;}
+                    case 1:{s.append((char) (0x400 + rand.nextInt(0x100)));break;}
+                    default:{s.appendCodePoint(0x1F600 + rand.nextInt(0x40));}
+                }
+            }
+        }
+        return s.toString();
+    }
+
+    /**the kind of data a rail tile entity has, the route and the items it was made from.*/
+    private static XmlBuilder railData(Random rand){
+        XmlBuilder xml = new XmlBuilder();
+        StringBuilder route = new StringBuilder();
+        for(int i=0; i<64; i++){
+            route.append(rand.nextFloat()).append(",").append(rand.nextFloat()).append(",").append(rand.nextFloat()).append(",");
+        }
+        xml.stringMap.put("route", route.toString());
+        xml.itemMap.put("rail", new String[]{"minecraft:iron_ingot", "1", "0"});
+        xml.itemMap.put("ties", new String[]{"minecraft:planks", "1", "2"});
+        xml.itemMap.put("ballast", new String[]{"minecraft:gravel", "1", "0"});
+        xml.intMap.put("gauge", 1435);
+        xml.floatMap.put("speed", 0.5f);
+        return xml;
+    }
+
+    /**checks every map of both has the same entries, nested xml is checked the same way.*/
+    private static void assertSame(XmlBuilder expected, XmlBuilder actual){
+        assertEquals(expected.intMap, actual.intMap);
+        assertEquals(expected.floatMap, actual.floatMap);
+        assertEquals(expected.stringMap, actual.stringMap);
+        assertEquals(expected.itemMap.keySet(), actual.itemMap.keySet());
+        for(Map.Entry<String, String[]> e : expected.itemMap.entrySet()){
+            assertArrayEquals(e.getKey(), e.getValue(), actual.itemMap.get(e.getKey()));
+        }
+        assertEquals(expected.xmlMap.keySet(), actual.xmlMap.keySet());
+        for(Map.Entry<String, XmlBuilder> e : expected.xmlMap.entrySet()){
+            assertSame(e.getValue(), actual.xmlMap.get(e.getKey()));
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ebf.tim.blocks.rails;
+
+import ebf.tim.utility.RailUtility;
+import net.minecraft.util.MathHelper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Rail path parity tests</h1>
+ * checks a bogie moved by the precompiled paths ends up in exactly the same place as one moved the original way,
+ *     with the rail matrix, the atan2 and the rotation every step.
+ * the rails are a map of positions to vanilla metadata, and the walk is the same as the bogie's, every tick it finds the rail,
+ *     going down a block if it's under the bogie, then moves it in increments of 0.3 until it runs out of velocity or rail.
+ * both bogies are walked side by side and compared after every increment, so the first step that's different is the one that fails.
+ * @author Eternal Blue Flame
+ */
+public class RailPathParityTest {
+
+    /**the rail matrix the bogies used before the paths were precompiled.*/
+    private static final int[][][] vanillaRailMatrix = new int[][][] {{{0, 0, -1}, {0, 0, 1}}, {{ -1, 0, 0}, {1, 0, 0}}, {{ -1, -1, 0}, {1, 0, 0}}, {{ -1, 0, 0}, {1, -1, 0}}, {{0, 0, -1}, {0, -1, 1}}, {{0, -1, -1}, {0, 0, 1}}, {{0, 0, 1}, {1, 0, 0}}, {{0, 0, 1}, { -1, 0, 0}}, {{0, 0, -1}, { -1, 0, 0}}, {{0, 0, -1}, {1, 0, 0}}};
+    private static final int Y = 64, TICKS = 40;
+    /**the drag for a 10 ton transport.*/
+    private static final double DRAG = Math.pow(10000f, -0.07457);
+
+    /**the metadata of the rails, mapped by position.*/
+    private final Map<Long, Integer> rails = new HashMap<>();
+    /**every rail a walk went over.*/
+    private final Set<Long> visited = new HashSet<>();
+    /**the metadata of every rail a walk went over.*/
+    private final Set<Integer> shapes = new HashSet<>();
+
+    @Before
+    public void setup(){
+        rails.clear();
+        visited.clear();
+        shapes.clear();
+    }
+
+    @Test
+    public void straights(){
+        for(int i=0; i<16; i++){
+            rails.put(key(0, Y, i), 0);
+            rails.put(key(i, Y, 20), 1);
+        }
+        walk(0.5, Y, 0.5, 0, 0.1, 0.8, 0f);
+        assertTrue(visited.contains(key(0, Y, 12)));
+        walk(0.5, Y, 15.5, 0, -0.1, 0.8, 0f);
+        walk(0.5, Y, 20.5, 0.1, 0, 1.1, 0f);
+        assertTrue(visited.contains(key(12, Y, 20)));
+        walk(15.5, Y, 20.5, -0.1, 0, 1.1, 0f);
+        //the pitch is only used when the path has no yaw, going east.
+        walk(0.5, Y, 20.5, 0.1, 0, 0.7, 12.5f);
+        walk(0.5, Y, 20.5, 0.1, 0, 0.7, -3f);
+        //starting off the center line, it's pulled back onto the rail.
+        walk(0.2, Y, 3.9, 0, 0.1, 0.5, 0f);
+        walk(7.7, Y, 20.1, -0.1, 0, 0.5, 0f);
+        assertEquals(2, shapes.size());
+    }
+
+    @Test
+    public void slopes(){
+        //a straight that goes up a block in the middle, the slope is on the low side, like vanilla places them.
+        for(int i=0; i<16; i++){
+            rails.put(key(i, i<8?Y:Y+1, 0), i==7?2:1);
+            rails.put(key(i, i>8?Y:Y+1, 10), i==9?3:1);
+            rails.put(key(0, i>8?Y:Y+1, 20 + i), i==9?4:0);
+            rails.put(key(10, i<8?Y:Y+1, 20 + i), i==7?5:0);
+        }
+        for(float pitch : new float[]{0f, 8f}){
+            //up and down each slope.
+            walk(0.5, Y, 0.5, 0.1, 0, 0.9, pitch);
+            walk(15.5, Y + 1, 0.5, -0.1, 0, 0.9, pitch);
+            walk(0.5, Y + 1, 10.5, 0.1, 0, 0.9, pitch);
+            walk(15.5, Y, 10.5, -0.1, 0, 0.9, pitch);
+            walk(0.5, Y + 1, 20.5, 0, 0.1, 0.9, pitch);
+            walk(0.5, Y, 35.5, 0, -0.1, 0.9, pitch);
+            walk(10.5, Y, 20.5, 0, 0.1, 0.9, pitch);
+            walk(10.5, Y + 1, 35.5, 0, -0.1, 0.9, pitch);
+        }
+        for(int meta=2; meta<6; meta++){
+            assertTrue("never went over the slope " + meta, shapes.contains(meta));
+        }
+    }
+
+    @Test
+    public void curves(){
+        //a loop, with a curve in each corner.
+        for(int i=1; i<7; i++){
+            rails.put(key(i, Y, 0), 1);
+            rails.put(key(i, Y, 7), 1);
+            rails.put(key(0, Y, i), 0);
+            rails.put(key(7, Y, i), 0);
+        }
+        rails.put(key(0, Y, 0), 6);
+        rails.put(key(7, Y, 0), 7);
+        rails.put(key(7, Y, 7), 8);
+        rails.put(key(0, Y, 7), 9);
+
+        //clockwise and counter-clockwise, at a few speeds, it goes around more than once.
+        for(double velocity : new double[]{0.35, 0.9, 1.6}){
+            walk(3.5, Y, 0.5, 0.1, 0, velocity, 0f);
+            walk(3.5, Y, 0.5, -0.1, 0, velocity, 0f);
+            walk(0.5, Y, 4.5, 0, 0.1, velocity, 5f);
+        }
+        for(int meta=6; meta<10; meta++){
+            assertTrue("never went around the curve " + meta, shapes.contains(meta));
+        }
+    }
+
+
+    /**
+     * walks a bogie both ways for the ticks, checking they are the same after every increment.
+     * the walk ends early if the bogie runs off the rails, both of them have to do that at the same time.
+     */
+    private void walk(double x, double y, double z, double motionX, double motionZ, double velocity, float pitch){
+        Bogie original = new Bogie(x, y, z, motionX, motionZ, true), path = new Bogie(x, y, z, motionX, motionZ, false);
+        int steps =0;
+        for(int tick=0; tick<TICKS; tick++){
+            boolean onRail = original.tick(velocity), pathOnRail = path.tick(velocity);
+            assertEquals(onRail, pathOnRail);
+            if(!onRail){
+                break;
+            }
+            //both are stepped together, compare every increment.
+            while(true){
+                boolean moved = original.step(pitch);
+                assertEquals("the walks took a different number of steps", moved, path.step(pitch));
+                if(!moved){
+                    break;
+                }
+                steps++;
+                for(int i=0; i<5; i++){
+                    assertEquals("different after " + steps + " steps", original.state[i], path.state[i], 0);
+                }
+                assertEquals(original.railMetadata, path.railMetadata);
+            }
+        }
+        assertTrue("the bogie didn't move", steps > 0);
+    }
+
+    private static long key(int x, int y, int z){
+        return ((long) x << 40) ^ ((long) z << 16) ^ y;
+    }
+
+
+    /**the parts of a bogie the movement uses, and the movement itself, the parts that need a world use the rail map instead.*/
+    private class Bogie {
+        /**X, Y and Z, then the X and Z motion, the same layout as the path uses.*/
+        private final double[] state = new double[5];
+        /**if this moves with the rail matrix, rather than the paths.*/
+        private final boolean useMatrix;
+        private int railMetadata =0, floorX, floorY, floorZ;
+        private double velocity;
+
+        private Bogie(double x, double y, double z, double motionX, double motionZ, boolean useMatrix){
+            state[0] = x;
+            state[1] = y;
+            state[2] = z;
+            state[3] = motionX;
+            state[4] = motionZ;
+            this.useMatrix = useMatrix;
+        }
+
+        /**starts the tick, finding the rail the bogie is on.
+         * @return false if it's not on one.*/
+        private boolean tick(double velocity){
+            floorX = MathHelper.floor_double(state[0]);
+            floorY = MathHelper.floor_double(state[1]);
+            floorZ = MathHelper.floor_double(state[2]);
+            if(!rails.containsKey(key(floorX, floorY, floorZ)) && rails.containsKey(key(floorX, floorY - 1, floorZ))){
+                floorY--;
+            }
+            this.velocity = velocity;
+            return rails.containsKey(key(floorX, floorY, floorZ));
+        }
+
+        /**moves the bogie one increment, the same as the loop in the bogie's segment movement.
+         * @return false if it's out of velocity, or rail.*/
+        private boolean step(float pitch){
+            if(!rails.containsKey(key(floorX, floorY, floorZ))){
+                return false;
+            }
+            switch (railMetadata){
+                case 2:{state[3] -= 0.0078125D*DRAG; state[1] = (floorY + 1d); break;}
+                case 3:{state[3] += 0.0078125D*DRAG; state[1] = (floorY + 1d); break;}
+                case 4:{state[4] += 0.0078125D*DRAG; state[1] = (floorY + 1d); break;}
+                case 5:{state[4] -= 0.0078125D*DRAG; state[1] = (floorY + 1d); break;}
+            }
+            if(velocity>0.3){
+                velocity-=0.3;
+            } else {
+                return false;
+            }
+            railMetadata = rails.get(key(floorX, floorY, floorZ));
+            visited.add(key(floorX, floorY, floorZ));
+            shapes.add(railMetadata);
+            if(useMatrix){
+                moveWithMatrix(0.3f, pitch);
+            } else {
+                RailPathCache.getPath(railMetadata).move(state, 0.3f, pitch, floorX, floorZ);
+            }
+            floorX = MathHelper.floor_double(state[0]);
+            floorY = MathHelper.floor_double(state[1]);
+            floorZ = MathHelper.floor_double(state[2]);
+            return true;
+        }
+
+        /**the bogie movement from before the paths were precompiled.*/
+        private void moveWithMatrix(double currentMotion, float pitch){
+            double railPathX = (vanillaRailMatrix[railMetadata][1][0] - vanillaRailMatrix[railMetadata][0][0]);
+            double railPathZ = (vanillaRailMatrix[railMetadata][1][2] - vanillaRailMatrix[railMetadata][0][2]);
+            double railPathSqrt = Math.sqrt(railPathX * railPathX + railPathZ * railPathZ);
+
+            if (state[3] * railPathX + state[4] * railPathZ < 0.0D) {
+                railPathX = -railPathX;
+                railPathZ = -railPathZ;
+            }
+
+            double[] motionPath = RailUtility.rotatePoint(currentMotion, pitch, (Math.atan2((railPathZ),(railPathX))*(180d/Math.PI)));
+
+            double motionSqrt = Math.sqrt(state[3] * state[3] + state[4] * state[4]);
+            state[3] = motionSqrt * (railPathX / railPathSqrt);
+            state[4] = motionSqrt * (railPathZ / railPathSqrt);
+
+            double railPathX2 = Math.floor(state[0]) + 0.5D + vanillaRailMatrix[railMetadata][0][0] * 0.5D;
+            double railPathZ2 = Math.floor(state[2]) + 0.5D + vanillaRailMatrix[railMetadata][0][2] * 0.5D;
+            railPathX = (Math.floor(state[0]) + 0.5D + vanillaRailMatrix[railMetadata][1][0] * 0.5D) - railPathX2;
+            railPathZ = (Math.floor(state[2]) + 0.5D + vanillaRailMatrix[railMetadata][1][2] * 0.5D) - railPathZ2;
+
+            double railPathDirection;
+            if (railPathX == 0.0D) {
+                railPathDirection = state[2] - floorZ;
+            } else if (railPathZ == 0.0D) {
+                railPathDirection = state[0] - floorX;
+            } else {
+                railPathDirection = ((state[0] - railPathX2) * railPathX + (state[2] - railPathZ2) * railPathZ) * 2.0D;
+            }
+            state[0] = (railPathX2 + railPathX * railPathDirection)+motionPath[0];
+            state[2] = (railPathZ2 + railPathZ * railPathDirection)+motionPath[2];
+
+            if (vanillaRailMatrix[railMetadata][0][1] != 0 && MathHelper.floor_double(state[0]) - floorX == vanillaRailMatrix[railMetadata][0][0] && MathHelper.floor_double(state[2]) - floorZ == vanillaRailMatrix[railMetadata][0][2]) {
+                state[1]+=vanillaRailMatrix[railMetadata][0][1];
+            }
+            else if (vanillaRailMatrix[railMetadata][1][1] != 0 && MathHelper.floor_double(state[0]) - floorX == vanillaRailMatrix[railMetadata][1][0] && MathHelper.floor_double(state[2]) - floorZ == vanillaRailMatrix[railMetadata][1][2]) {
+                state[1]+=vanillaRailMatrix[railMetadata][1][1];
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package ebf.tim.blocks.rails;
+
+import ebf.tim.utility.Vec6f;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Rail shape arc length tests</h1>
+ * checks the arc length table lookups give exactly what summing the segments for every lookup used to,
+ *     on long random curves, at the table entries themselves, and past both ends.
+ * @author Eternal Blue Flame
+ */
+public class RailShapeCoreTest {
+
+    @Test
+    public void tableLookupsMatchSummingTheSegments(){
+        Random rand = new Random(1234);
+        for(int curve=0; curve<50; curve++){
+            List<Vec6f> points = randomCurve(rand, 2 + rand.nextInt(500));
+            float[] lengths = RailShapeCore.buildArcLengths(points);
+            float end = lengths[lengths.length - 1];
+            //every quarter block, like the ties, then random distances, then the exact ends of the segments.
+            for(float t=-0.25f; t<end + 0.5f; t+=0.25f){
+                assertMatches(t, points, lengths);
+            }
+            for(int i=0; i<200; i++){
+                assertMatches(rand.nextFloat() * end * 1.1f, points, lengths);
+            }
+            for(float length : lengths){
+                assertMatches(length, points, lengths);
+                assertMatches(Math.nextUp(length), points, lengths);
+                assertMatches(Math.nextAfter(length, Double.NEGATIVE_INFINITY), points, lengths);
+            }
+        }
+    }
+
+    @Test
+    public void tableIsTheRunningTotal(){
+        List<Vec6f> points = randomCurve(new Random(4321), 300);
+        float[] lengths = RailShapeCore.buildArcLengths(points);
+        assertEquals(points.size() - 1, lengths.length);
+        float total =0;
+        for(int i=0; i<lengths.length; i++){
+            total += points.get(i).distance2d(points.get(i + 1));
+            assertEquals(total, lengths[i], 0);
+        }
+    }
+
+    @Test
+    public void repeatedPointsDoNotBreakTheSearch(){
+        //a zero length segment gives the same length twice in a row, the first segment that reaches it is still the one returned.
+        List<Vec6f> points = new ArrayList<>();
+        points.add(new Vec6f(0, 0, 0));
+        points.add(new Vec6f(1, 0, 0));
+        points.add(new Vec6f(1, 0, 0));
+        points.add(new Vec6f(1, 0, 0));
+        points.add(new Vec6f(3, 0, 0));
+        float[] lengths = RailShapeCore.buildArcLengths(points);
+        for(float t=-1; t<4; t+=0.125f){
+            assertMatches(t, points, lengths);
+        }
+        assertSame(points.get(0), RailShapeCore.getPosition(1, points, lengths));
+        assertSame(points.get(3), RailShapeCore.getPosition(1.5f, points, lengths));
+    }
+
+    @Test
+    public void emptyPathsAreAlwaysPastTheEnd(){
+        assertTrue(RailShapeCore.positionPastEnd(0, new ArrayList<Vec6f>()));
+        assertTrue(RailShapeCore.positionPastEnd(-1, Collections.singletonList(new Vec6f(0, 0, 0))));
+        List<Vec6f> points = new ArrayList<>();
+        points.add(new Vec6f(0, 0, 0));
+        points.add(new Vec6f(0, 0, 1));
+        assertFalse(RailShapeCore.positionPastEnd(0.99f, points));
+        assertTrue(RailShapeCore.positionPastEnd(1, points));
+    }
+
+    @Test
+    public void theShapeKeepsItsTableUntilThePathChanges(){
+        RailShapeCore shape = new RailShapeCore();
+        shape.activePath = randomCurve(new Random(2468), 200);
+        float[] lengths = shape.getArcLengths();
+        assertSame(lengths, shape.getArcLengths());
+        float end = shape.getLength();
+        assertEquals(lengths[lengths.length - 1], end, 0);
+        for(float t=-0.25f; t<end + 0.5f; t+=0.25f){
+            assertEquals(oldPositionPastEnd(t, shape.activePath), shape.positionPastEnd(t));
+            assertSame(oldGetPosition(t, shape.activePath), shape.getPosition(t));
+        }
+        //walking it didn't build it again.
+        assertSame(lengths, shape.getArcLengths());
+
+        //adding a point, replacing the list, or invalidating it builds it again.
+        shape.activePath.add(new Vec6f(100, 0, 100));
+        float[] added = shape.getArcLengths();
+        assertNotSame(lengths, added);
+        assertEquals(lengths.length + 1, added.length);
+        shape.activePath = randomCurve(new Random(1357), 200);
+        float[] replaced = shape.getArcLengths();
+        assertNotSame(added, replaced);
+        shape.activePath.get(1).xCoord += 5;
+        assertSame(replaced, shape.getArcLengths());
+        shape.invalidateArcLengths();
+        assertNotSame(replaced, shape.getArcLengths());
+        assertEquals(RailShapeCore.buildArcLengths(shape.activePath)[0], shape.getArcLengths()[0], 0);
+    }
+
+    @Test
+    public void parsingARouteRebuildsTheTable(){
+        RailShapeCore shape = new RailShapeCore();
+        shape.gauge = new int[]{1, 2};
+        shape.activePath = randomCurve(new Random(8642), 20);
+        float length = shape.getLength();
+        RailShapeCore parsed = new RailShapeCore();
+        assertEquals(0, parsed.getLength(), 0);
+        //the points are added to the list it already has, and the table it built for the empty one is dropped.
+        parsed.parseString(shape.toString());
+        assertEquals(20, parsed.activePath.size());
+        assertEquals(length, parsed.getLength(), 0);
+    }
+
+
+    /**a path that wanders like a long custom curve, with uneven point spacing, and height, which the 2d distance ignores.*/
+    private static List<Vec6f> randomCurve(Random rand, int size){
+        List<Vec6f> points = new ArrayList<>();
+        float x=0, y=0, z=0, angle=0;
+        for(int i=0; i<size; i++){
+            points.add(new Vec6f(x, y, z));
+            angle += (rand.nextFloat() - 0.5f) * 0.3f;
+            float step = rand.nextInt(10) == 0 ? 0 : rand.nextFloat() * 0.5f;
+            x += Math.cos(angle) * step;
+            z += Math.sin(angle) * step;
+            y += rand.nextFloat() * 0.1f;
+        }
+        return points;
+    }
+
+    private static void assertMatches(float distance, List<Vec6f> points, float[] lengths){
+        assertEquals("past end at " + distance, oldPositionPastEnd(distance, points), RailShapeCore.positionPastEnd(distance, lengths));
+        assertSame("position at " + distance, oldGetPosition(distance, points), RailShapeCore.getPosition(distance, points, lengths));
+    }
+
+    /**how positionPastEnd worked before the table, summing the segments on every call.*/
+    private static boolean oldPositionPastEnd(float distance, List<Vec6f> points){
+        float totalTraveled = 0;
+        for(int i = 0; i < points.size() - 1; i++){
+            if((totalTraveled += points.get(i).distance2d(points.get(i + 1))) > distance){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**how getPosition worked before the table, summing the segments on every call.*/
+    private static Vec6f oldGetPosition(float distance, List<Vec6f> points){
+        float totalTraveled = 0, traveled;
+        for(int i = 0; i < points.size() - 1; i++){
+            traveled = totalTraveled += points.get(i).distance2d(points.get(i + 1));
+            if(traveled >= distance){
+                return points.get(i);
+            }
+        }
+        return points.get(1);
+    }
+}
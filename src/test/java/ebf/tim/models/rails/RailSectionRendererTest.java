@@ -0,0 +1,253 @@
+package ebf.tim.models.rails;
+
+import ebf.tim.blocks.RailTileEntity;
+import ebf.tim.utility.GLResourceManager;
+import net.minecraft.util.AxisAlignedBB;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Rail section renderer tests</h1>
+ * checks rails are put in the right sections, the first rail in each is the one that renders it,
+ *     and that the lists are only built when they are out of date, and freed when the section is.
+ * the GL allocator and the section builder are swapped for ones that only count, so nothing here needs GL.
+ * @author Eternal Blue Flame
+ */
+public class RailSectionRendererTest {
+
+    private static final int SKIN = 2, RENDER_DISTANCE = 128, LOD_DISTANCE = 64;
+    /**squared distances that are close, past the LOD distance, and past the render distance.*/
+    private static final double NEAR = 16 * 16, FAR = 100 * 100, OUT = 200 * 200;
+
+    private GLResourceManager.Allocator glAllocator;
+    private RailSectionRenderer.Builder glBuilder;
+    /**every list the builder compiled, in order.*/
+    private final List<Build> builds = new ArrayList<>();
+    /**the freed lists are pooled between tests, so the IDs carry on from the last test rather than starting again.*/
+    private static int nextID = 1;
+
+    @Before
+    public void setup(){
+        glAllocator = GLResourceManager.allocator;
+        glBuilder = RailSectionRenderer.builder;
+        GLResourceManager.allocator = new GLResourceManager.Allocator() {
+            @Override
+            public int generate(GLResourceManager.Type type) {
+                return nextID++;
+            }
+
+            @Override
+            public void delete(GLResourceManager.Type type, int id) {}
+        };
+        RailSectionRenderer.builder = new RailSectionRenderer.Builder() {
+            @Override
+            public void build(int id, List<RailTileEntity> rails, int x, int y, int z, int skin) {
+                builds.add(new Build(id, new ArrayList<>(rails), x, y, z, skin));
+            }
+        };
+        RailSectionRenderer.clear();
+        GLResourceManager.processReleases();
+    }
+
+    @After
+    public void cleanup(){
+        RailSectionRenderer.clear();
+        GLResourceManager.processReleases();
+        GLResourceManager.allocator = glAllocator;
+        RailSectionRenderer.builder = glBuilder;
+    }
+
+    @Test
+    public void railsInTheSameSectionShareIt(){
+        RailTileEntity first = rail(0, 64, 0), second = rail(15, 79, 15), east = rail(16, 64, 0), west = rail(-1, 64, 0);
+        RailSectionRenderer.add(first);
+        RailSectionRenderer.add(second);
+        RailSectionRenderer.add(east);
+        RailSectionRenderer.add(west);
+        //adding the same rail again doesn't put it in twice.
+        RailSectionRenderer.add(first);
+        assertEquals(3, RailSectionRenderer.getSectionCount());
+
+        assertTrue(RailSectionRenderer.isOwner(first));
+        assertFalse(RailSectionRenderer.isOwner(second));
+        assertTrue(RailSectionRenderer.isOwner(east));
+        assertTrue(RailSectionRenderer.isOwner(west));
+        assertSame(RailSectionRenderer.getBounds(first), RailSectionRenderer.getBounds(second));
+        assertNull(RailSectionRenderer.getBounds(rail(100, 64, 100)));
+
+        //the render box is the section, a block bigger on every side.
+        AxisAlignedBB bounds = RailSectionRenderer.getBounds(west);
+        assertEquals(-17, bounds.minX, 0);
+        assertEquals(63, bounds.minY, 0);
+        assertEquals(-1, bounds.minZ, 0);
+        assertEquals(1, bounds.maxX, 0);
+        assertEquals(81, bounds.maxY, 0);
+        assertEquals(17, bounds.maxZ, 0);
+    }
+
+    @Test
+    public void keysSplitAtSectionEdges(){
+        assertEquals(RailSectionRenderer.getKey(0, 0, 0), RailSectionRenderer.getKey(15, 15, 15));
+        assertEquals(RailSectionRenderer.getKey(-1, 0, -1), RailSectionRenderer.getKey(-16, 15, -16));
+        assertNotEquals(RailSectionRenderer.getKey(0, 0, 0), RailSectionRenderer.getKey(-1, 0, 0));
+        assertNotEquals(RailSectionRenderer.getKey(0, 0, 0), RailSectionRenderer.getKey(0, 16, 0));
+        assertNotEquals(RailSectionRenderer.getKey(0, 0, 0), RailSectionRenderer.getKey(0, 0, -1));
+        //the x and z don't run into each other.
+        assertNotEquals(RailSectionRenderer.getKey(16, 0, 0), RailSectionRenderer.getKey(0, 0, 16));
+    }
+
+    @Test
+    public void theBuilderGetsEveryRailInTheSection(){
+        RailTileEntity first = rail(-20, 70, 5), second = rail(-17, 70, 9);
+        RailSectionRenderer.add(first);
+        RailSectionRenderer.add(second);
+        RailSectionRenderer.add(rail(0, 70, 5));
+
+        int id = RailSectionRenderer.prepare(first, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        assertEquals(1, builds.size());
+        Build build = builds.get(0);
+        assertEquals(id, build.id);
+        assertEquals(2, build.rails.size());
+        assertSame(first, build.rails.get(0));
+        assertSame(second, build.rails.get(1));
+        assertEquals(-2, build.x);
+        assertEquals(4, build.y);
+        assertEquals(0, build.z);
+        assertEquals(SKIN, build.skin);
+    }
+
+    @Test
+    public void sectionsAreOnlyBuiltWhenTheyChange(){
+        RailTileEntity first = rail(0, 64, 0), second = rail(1, 64, 0);
+        RailSectionRenderer.add(first);
+        RailSectionRenderer.add(second);
+
+        int id = RailSectionRenderer.prepare(first, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        assertEquals(id, RailSectionRenderer.prepare(first, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE));
+        assertEquals(1, builds.size());
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+
+        //a change to any rail in the section builds it again, and the old list is freed.
+        RailSectionRenderer.markDirty(second);
+        RailSectionRenderer.prepare(first, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        assertEquals(2, builds.size());
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        assertEquals(1, GLResourceManager.getPendingCount());
+
+        //so does a change of skin.
+        RailSectionRenderer.prepare(first, NEAR, 1, RENDER_DISTANCE, LOD_DISTANCE);
+        assertEquals(3, builds.size());
+        assertEquals(1, builds.get(2).skin);
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+    }
+
+    @Test
+    public void theFlatListIsOnlyBuiltPastTheLODDistance(){
+        RailTileEntity rail = rail(0, 64, 0);
+        RailSectionRenderer.add(rail);
+
+        int near = RailSectionRenderer.prepare(rail, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        assertEquals(1, builds.size());
+        int far = RailSectionRenderer.prepare(rail, FAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        assertNotEquals(near, far);
+        assertEquals(2, builds.size());
+        assertEquals(0, builds.get(1).skin);
+        //both are kept, so going back and forth over the distance doesn't build anything.
+        assertEquals(near, RailSectionRenderer.prepare(rail, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE));
+        assertEquals(far, RailSectionRenderer.prepare(rail, FAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE));
+        assertEquals(2, builds.size());
+
+        //a LOD distance of 0 and the flat skin never use the second list.
+        assertEquals(near, RailSectionRenderer.prepare(rail, FAR, SKIN, RENDER_DISTANCE, 0));
+        assertEquals(RailSectionRenderer.prepare(rail, NEAR, 0, RENDER_DISTANCE, LOD_DISTANCE),
+                RailSectionRenderer.prepare(rail, FAR, 0, RENDER_DISTANCE, LOD_DISTANCE));
+        assertEquals(3, builds.size());
+    }
+
+    @Test
+    public void outOfRangeAndOtherRailsDrawNothing(){
+        RailTileEntity first = rail(0, 64, 0), second = rail(1, 64, 0);
+        RailSectionRenderer.add(first);
+        RailSectionRenderer.add(second);
+        assertEquals(-1, RailSectionRenderer.prepare(first, OUT, SKIN, RENDER_DISTANCE, LOD_DISTANCE));
+        assertEquals(-1, RailSectionRenderer.prepare(second, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE));
+        assertEquals(-1, RailSectionRenderer.prepare(rail(100, 64, 100), NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE));
+        assertEquals(0, builds.size());
+    }
+
+    @Test
+    public void removingRailsPassesTheSectionOnAndFreesIt(){
+        RailTileEntity first = rail(0, 64, 0), second = rail(1, 64, 0);
+        RailSectionRenderer.add(first);
+        RailSectionRenderer.add(second);
+        RailSectionRenderer.prepare(first, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        RailSectionRenderer.prepare(first, FAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        assertEquals(2, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+
+        //the next rail renders the section, and builds it without the one that's gone.
+        RailSectionRenderer.remove(first);
+        assertTrue(RailSectionRenderer.isOwner(second));
+        RailSectionRenderer.prepare(second, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        assertEquals(3, builds.size());
+        assertEquals(1, builds.get(2).rails.size());
+        assertSame(second, builds.get(2).rails.get(0));
+
+        RailSectionRenderer.remove(second);
+        assertEquals(0, RailSectionRenderer.getSectionCount());
+        assertFalse(RailSectionRenderer.isOwner(second));
+        assertEquals(0, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        //removing a rail that isn't there does nothing.
+        RailSectionRenderer.remove(second);
+        assertEquals(0, RailSectionRenderer.getSectionCount());
+    }
+
+    @Test
+    public void clearingFreesEverySection(){
+        RailTileEntity first = rail(0, 64, 0), second = rail(40, 64, 40);
+        RailSectionRenderer.add(first);
+        RailSectionRenderer.add(second);
+        RailSectionRenderer.prepare(first, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        RailSectionRenderer.prepare(second, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE);
+        assertEquals(2, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+
+        RailSectionRenderer.clear();
+        assertEquals(0, RailSectionRenderer.getSectionCount());
+        assertEquals(0, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        assertEquals(-1, RailSectionRenderer.prepare(first, NEAR, SKIN, RENDER_DISTANCE, LOD_DISTANCE));
+    }
+
+
+    private static RailTileEntity rail(int x, int y, int z){
+        RailTileEntity rail = new RailTileEntity();
+        rail.xCoord = x;
+        rail.yCoord = y;
+        rail.zCoord = z;
+        return rail;
+    }
+
+    /**what the builder was asked to compile.*/
+    private static class Build {
+        private final int id, x, y, z, skin;
+        private final List<RailTileEntity> rails;
+
+        private Build(int id, List<RailTileEntity> rails, int x, int y, int z, int skin){
+            this.id = id;
+            this.rails = rails;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.skin = skin;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ebf.tim.networking;
+
+import cpw.mods.fml.common.network.ByteBufUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <h1>Tank sync packet tests</h1>
+ * checks the packet is read back the same as it was written, the size it reports is what's actually written,
+ *     and that reading it doesn't need a world, since it's read on the network thread.
+ * the bytes per second compare it to the tank string the datawatcher used to send, both sent at the same rate,
+ *     twice a second, when the fuel is managed.
+ * @author Eternal Blue Flame
+ */
+public class PacketTankSyncTest {
+
+    /**the number of times a second the tanks are synced, every 10 ticks.*/
+    private static final int SYNCS_PER_SECOND = 2;
+    /**the registry IDs of the fluids, plus one, like they are sent.*/
+    private static final int WATER = 1, LAVA = 2;
+
+    @Test
+    public void readsBackWhatWasWritten(){
+        PacketTankSync packet = read(new PacketTankSync(1234, 3, new int[]{0, 2, 5}, new int[]{0, WATER, LAVA},
+                new int[]{0, 11990, Integer.MAX_VALUE}));
+        assertEquals(1234, packet.getEntityId());
+        assertEquals(3, packet.getCount());
+        assertEquals(2, packet.getIndex(1));
+        assertEquals(5, packet.getIndex(2));
+        assertEquals(0, packet.getFluid(0));
+        assertEquals(LAVA, packet.getFluid(2));
+        assertEquals(11990, packet.getAmount(1));
+        assertEquals(Integer.MAX_VALUE, packet.getAmount(2));
+    }
+
+    @Test
+    public void theSizeIsWhatsWritten(){
+        int[][] amounts = {{0}, {127}, {128}, {16383}, {16384}, {Integer.MAX_VALUE}, {0, 1000, 16000, 2000000}};
+        for(int[] amount : amounts){
+            int[] indexes = new int[amount.length], fluids = new int[amount.length];
+            for(int i=0; i<amount.length; i++){
+                indexes[i] = i;
+                fluids[i] = WATER;
+            }
+            PacketTankSync packet = new PacketTankSync(-1, amount.length, indexes, fluids, amount);
+            ByteBuf buffer = Unpooled.buffer();
+            packet.toBytes(buffer);
+            assertEquals(buffer.readableBytes(), packet.getSize());
+        }
+        //one tank is the entity ID, the count, and the index, fluid and amount of the tank.
+        assertEquals(4 + 1 + 1 + 1 + 2, new PacketTankSync(1234, 1, new int[]{0}, new int[]{WATER}, new int[]{11990}).getSize());
+    }
+
+    @Test
+    public void bytesPerSecondComparedToTheDatawatcher(){
+        //a steam locomotive burning water, the second tank is empty.
+        assertEquals(56, datawatcherBytes("11990,water;0,water;") * SYNCS_PER_SECOND);
+        assertEquals(42, channelBytes(new PacketTankSync(1234, 1, new int[]{0}, new int[]{WATER}, new int[]{11990})) * SYNCS_PER_SECOND);
+
+        //a tank car being filled, only the last tank is still changing, but the string has all of them.
+        assertEquals(102, datawatcherBytes("16000,lava;16000,lava;16000,lava;7990,lava;") * SYNCS_PER_SECOND);
+        assertEquals(42, channelBytes(new PacketTankSync(1234, 1, new int[]{3}, new int[]{LAVA}, new int[]{7990})) * SYNCS_PER_SECOND);
+
+        //a full tank car doesn't send anything, the string isn't sent either, since it didn't change.
+    }
+
+
+    private static PacketTankSync read(PacketTankSync sent){
+        ByteBuf buffer = Unpooled.buffer();
+        sent.toBytes(buffer);
+        PacketTankSync packet = new PacketTankSync();
+        packet.fromBytes(buffer);
+        assertEquals(0, buffer.readableBytes());
+        return packet;
+    }
+
+    /**the entity metadata packet with the tank string, the packet ID, entity ID, the key, the string, and the end marker.*/
+    private static int datawatcherBytes(String tanks){
+        return 1 + 4 + 1 + ByteBufUtils.varIntByteCount(tanks.length()) + tanks.length() + 1;
+    }
+
+    /**the custom payload packet, the packet ID, the channel name, the length, the message ID, and the tank packet.*/
+    private static int channelBytes(PacketTankSync packet){
+        String channel = "TiM.key";
+        return 1 + ByteBufUtils.varIntByteCount(channel.length()) + channel.length() + 2 + 1 + packet.getSize();
+    }
+}
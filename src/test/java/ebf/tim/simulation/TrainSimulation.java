@@ -0,0 +1,593 @@
+package ebf.tim.simulation;
+
+import ebf.tim.blocks.rails.RailPathCache;
+import ebf.tim.blocks.rails.RailShapeCore;
+import ebf.tim.blocks.rails.RailSimpleShape;
+import ebf.tim.blocks.rails.RailVanillaShapes;
+import ebf.tim.utility.TrainPhysics;
+import net.minecraft.util.MathHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>Train simulation</h1>
+ * a headless, fixed step simulation of consists on a rail layout, so train behaviour can be reproduced without a client or a world.
+ * the layout is vanilla rail metadata, the shapes are made by the same rail shape code the rail blocks use,
+ *     and the consists are moved by the same math as the trains and bogies, with a fixed tick and nothing random,
+ *     so the same setup always records the same thing.
+ * a world can't be made without starting minecraft, so each consist is moved as one, by the front bogie of it's first car,
+ *     that's moved along the rails with the same steps and paths as a real bogie, and the rest of the consist follows the way it went.
+ * every car is recorded each tick, along with how long the tick took, which is the only part of a record that changes between runs.
+ * @see TrainPhysics
+ * @see RailPathCache.RailPath#move(double[], double, float, int, int)
+ * @author Eternal Blue Flame
+ */
+public class TrainSimulation {
+
+    /**the gauge the layouts are built with, the same as the rail blocks use.*/
+    public static final int[] GAUGE = {750};
+    /**how close the couplers of two consists have to be for them to couple, in blocks, a bogie moves 0.3 at a time.*/
+    public static final float COUPLER_REACH = 0.5f;
+
+    private final Layout layout;
+    private final List<Car> cars = new ArrayList<>();
+    private final List<Train> trains = new ArrayList<>();
+    private final List<TickRecord> records = new ArrayList<>();
+    private int tick =0;
+
+    public TrainSimulation(Layout layout){
+        this.layout = layout;
+    }
+
+    /**
+     * <h2>add a train</h2>
+     * puts a consist on the layout, the front is on the center of the rail, by the order the rails were added,
+     *     facing the rail after it, and the cars are in order from the front.
+     */
+    public Train addTrain(int rail, Car... cars){
+        Train train = new Train(layout, rail);
+        for(Car car : cars){
+            car.id = this.cars.size();
+            this.cars.add(car);
+            train.cars.add(car);
+        }
+        train.trail.extend(layout, train.lead, train.length() + 1);
+        trains.add(train);
+        return train;
+    }
+
+    /**runs the ticks, and returns the records of them.*/
+    public List<TickRecord> run(int ticks){
+        for(int i=0; i<ticks; i++){
+            step();
+        }
+        return records;
+    }
+
+    /**
+     * <h2>step</h2>
+     * moves every consist one tick, couples the ones that have run into each other, and records the tick.
+     */
+    public TickRecord step(){
+        long start = System.nanoTime();
+        for(Train train : trains){
+            train.move(tick, layout);
+        }
+        couple();
+        TickRecord record = new TickRecord(tick, cars.size());
+        double[] front, back, center;
+        for(Train train : trains){
+            float offset =0;
+            for(Car car : train.cars){
+                front = train.trail.get(offset);
+                back = train.trail.get(offset + car.length);
+                center = train.trail.get(offset + car.length * 0.5f);
+                record.set(car.id, trains.indexOf(train), center,
+                        (float) Math.toDegrees(Math.atan2(front[2] - back[2], front[0] - back[0])), train.velocity());
+                offset += car.length;
+            }
+        }
+        record.nanos = System.nanoTime() - start;
+        records.add(record);
+        tick++;
+        return record;
+    }
+
+    /**couples a consist to the one in front of it, if it's front bogie has reached the back of the other.*/
+    private void couple(){
+        Train ahead, behind;
+        for(int i=0; i<trains.size(); i++){
+            for(int j=0; j<trains.size(); j++){
+                if(i == j){
+                    continue;
+                }
+                ahead = trains.get(i);
+                behind = trains.get(j);
+                double[] tail = ahead.trail.get(ahead.length());
+                double x = behind.lead.state[0] - tail[0], y = behind.lead.state[1] - tail[1], z = behind.lead.state[2] - tail[2];
+                //a fast consist can pass the coupler in a single tick, so it's reach is how far it went too.
+                if(Math.sqrt(x*x + y*y + z*z) > COUPLER_REACH + behind.velocity()){
+                    continue;
+                }
+                //the velocity after the coupling keeps the momentum of both.
+                ahead.lead.setSpeed((ahead.velocity() * ahead.weight() + behind.velocity() * behind.weight()) / (ahead.weight() + behind.weight()));
+                ahead.trail.join(behind.trail, ahead.length());
+                ahead.cars.addAll(behind.cars);
+                if(ahead.accelerator == 0){
+                    ahead.accelerator = behind.accelerator;
+                    ahead.applied = behind.applied;
+                }
+                ahead.brake |= behind.brake;
+                trains.remove(j);
+                //start over, the list changed.
+                i = -1;
+                break;
+            }
+        }
+    }
+
+    public List<Train> getTrains(){return trains;}
+
+    public List<TickRecord> getRecords(){return records;}
+
+    public Layout getLayout(){return layout;}
+
+
+    /**
+     * <h2>Layout</h2>
+     * the rails the consists run on, as vanilla rail metadata, in the order they were added.
+     * the shapes are made from it with the same code as the rail blocks, they are bent to meet the rails around them.
+     */
+    public static class Layout implements RailVanillaShapes.RailAccess {
+        /**the position of each rail, in the order they were added.*/
+        public final List<int[]> rails = new ArrayList<>();
+        private final Map<Long, Integer> metadata = new HashMap<>();
+        private List<RailShapeCore> shapes = null;
+
+        /**adds a rail with the vanilla metadata at the position.*/
+        public Layout rail(int x, int y, int z, int meta){
+            rails.add(new int[]{x, y, z});
+            metadata.put(key(x, y, z), meta);
+            shapes = null;
+            return this;
+        }
+
+        /**adds straight rails going south from the position, like vanilla rails on the Z axis.*/
+        public Layout straight(int x, int y, int z, int length){
+            for(int i=0; i<length; i++){
+                rail(x, y, z + i, 0);
+            }
+            return this;
+        }
+
+        /**adds straight rails going east from the position, like vanilla rails on the X axis.*/
+        public Layout east(int x, int y, int z, int length){
+            for(int i=0; i<length; i++){
+                rail(x + i, y, z, 1);
+            }
+            return this;
+        }
+
+        /**adds a slope going up to the south, the rail after it should be a block higher.*/
+        public Layout slope(int x, int y, int z){
+            return rail(x, y, z, 5);
+        }
+
+        /**
+         * <h2>shapes</h2>
+         * the shape of every rail, made by the vanilla shapes, in the same order as the rails.
+         * @see RailVanillaShapes#getShape(RailVanillaShapes.RailAccess, int, int, int, int)
+         */
+        public List<RailShapeCore> getShapes(){
+            if(shapes == null){
+                shapes = new ArrayList<>();
+                RailSimpleShape shape;
+                for(int[] rail : rails){
+                    shape = RailVanillaShapes.getShape(this, getBlockMetadata(rail[0], rail[1], rail[2]), rail[0], rail[1], rail[2]);
+                    //the world is only needed to save the path to the tile entity, which the simulation doesn't have.
+                    shapes.add(RailShapeCore.multiTriGenModel(null, rail[0], rail[1], rail[2], shape, GAUGE));
+                }
+            }
+            return shapes;
+        }
+
+        @Override
+        public int getBlockMetadata(int x, int y, int z){
+            Integer meta = metadata.get(key(x, y, z));
+            return meta == null ? -1 : meta;
+        }
+
+        /**vanilla rails don't have a powered bit, so it's the same as the metadata.*/
+        @Override
+        public int getBasicRailMetadata(int x, int y, int z){
+            return getBlockMetadata(x, y, z);
+        }
+
+        private static long key(int x, int y, int z){
+            return ((long) x << 40) ^ ((long) z << 16) ^ y;
+        }
+    }
+
+
+    /**
+     * <h2>Car</h2>
+     * a single transport, the weight and power are in the same units as the transports use.
+     * @see ebf.tim.entities.GenericRailTransport#weightKg()
+     */
+    public static class Car {
+        public final float length, weight, power, topSpeed;
+        private int id;
+
+        public Car(float length, float weight, float power, float topSpeed){
+            this.length = length;
+            this.weight = weight;
+            this.power = power;
+            this.topSpeed = topSpeed;
+        }
+
+        /**a car without power that can go as fast as anything pulling it.*/
+        public static Car wagon(float length, float weight){
+            return new Car(length, weight, 0, Float.MAX_VALUE);
+        }
+
+        public int getID(){return id;}
+    }
+
+
+    /**
+     * <h2>Train</h2>
+     * a consist of cars that move together, behind the front bogie of the first car.
+     * the accelerator goes from 0 to 6, the same as the train's throttle, consists only run forward.
+     */
+    public static class Train {
+        public final List<Car> cars = new ArrayList<>();
+        public int accelerator =0;
+        public boolean brake = false;
+        /**the velocity the consist adds to it's bogie every tick, the same as the train's.*/
+        private float applied =0;
+        private final Bogie lead;
+        private final Trail trail = new Trail();
+
+        private Train(Layout layout, int rail){
+            int[] start = layout.rails.get(rail);
+            int[] next = layout.rails.get(rail + 1 < layout.rails.size() ? rail + 1 : rail);
+            int[] previous = layout.rails.get(rail > 0 ? rail - 1 : rail);
+            lead = new Bogie(start[0] + 0.5, start[1], start[2] + 0.5);
+            //face the next rail, or away from the one before if this is the last.
+            lead.headingX = rail + 1 < layout.rails.size() ? next[0] - start[0] : start[0] - previous[0];
+            lead.headingZ = rail + 1 < layout.rails.size() ? next[2] - start[2] : start[2] - previous[2];
+        }
+
+        public float length(){
+            float length =0;
+            for(Car car : cars){
+                length += car.length;
+            }
+            return length;
+        }
+
+        public float weight(){
+            float weight =0;
+            for(Car car : cars){
+                weight += car.weight;
+            }
+            return weight;
+        }
+
+        public float power(){
+            float power =0;
+            for(Car car : cars){
+                power += car.power;
+            }
+            return power;
+        }
+
+        /**@return the top speed of the slowest car, a consist can't go faster than any of it's cars.*/
+        public float topSpeed(){
+            float top = Float.MAX_VALUE;
+            for(Car car : cars){
+                top = Math.min(top, car.topSpeed);
+            }
+            return top;
+        }
+
+        /**@return the speed of the front bogie, the same as the train's velocity.*/
+        public float velocity(){
+            return (float)(Math.abs(lead.motionX()) + Math.abs(lead.motionZ()));
+        }
+
+        /**@return the position of the front bogie, X, Y and Z.*/
+        public double[] getPosition(){
+            return Arrays.copyOf(lead.state, 3);
+        }
+
+        /**sets the speed of the front bogie, in the direction it's going.*/
+        public void setVelocity(float velocity){
+            lead.setSpeed(velocity);
+        }
+
+        /**
+         * <h2>move</h2>
+         * the velocity is recalculated twice a second, and added to the bogie every tick, the same as the train update,
+         *     then the bogie is moved with the same drag and steps as a real one.
+         * consists that run off the end of the rails are stopped there.
+         * @see ebf.tim.entities.EntityTrainCore#onUpdate()
+         * @see ebf.tim.entities.EntityBogie#minecartMove(ebf.tim.entities.GenericRailTransport, boolean, boolean, float)
+         */
+        void move(int tick, Layout layout){
+            if(accelerator !=0){
+                if(tick%10==0){
+                    applied = TrainPhysics.accelerate(applied, accelerator, tick, power() !=0, power(),
+                            TrainPhysics.brakeWeight(weight(), brake), topSpeed());
+                }
+                //the train pushes it's bogies the way it's facing, from the back of the first car to the front.
+                double[] back = trail.get(cars.get(0).length);
+                double x = lead.state[0] - back[0], z = lead.state[2] - back[2], length = Math.sqrt(x*x + z*z);
+                if(length > 0){
+                    lead.addVelocity(applied * x / length, applied * z / length);
+                }
+            }
+            //the consist moves as one, so the bogie moves with the weight of all of it.
+            int[] backRail = floor(trail.get(length()));
+            boolean backOnSlope = layout.getBasicRailMetadata(backRail[0], backRail[1], backRail[2]) >= 2 &&
+                    layout.getBasicRailMetadata(backRail[0], backRail[1], backRail[2]) <= 5;
+            if(!lead.move(layout, trail, accelerator==0, brake, TrainPhysics.bogieWeight(weight(), lead.isOnSlope, backOnSlope))){
+                lead.setSpeed(0);
+                applied =0;
+            }
+        }
+    }
+
+
+    /**
+     * <h2>Bogie</h2>
+     * the parts of a bogie the movement uses, the movement is the same as the server side of the bogie,
+     *     with the rails from the layout instead of the world.
+     */
+    private static class Bogie {
+        /**X, Y and Z, then the X and Z motion, the same layout as the rail path uses.*/
+        private final double[] state = new double[5];
+        /**the velocity of the last time the bogie was pushed, the bogie moves by this, it's motion is turned to follow the rails.*/
+        private double cartVelocityX, cartVelocityZ;
+        /**the direction the bogie was last going, so it can start again after it stopped.*/
+        private double headingX, headingZ;
+        private int railMetadata =0;
+        private boolean isOnSlope = false;
+
+        private Bogie(double x, double y, double z){
+            state[0] = x;
+            state[1] = y;
+            state[2] = z;
+        }
+
+        private double motionX(){return state[3];}
+        private double motionZ(){return state[4];}
+
+        private void addVelocity(double x, double z){
+            cartVelocityX = state[3] = state[3] + x;
+            cartVelocityZ = state[4] = state[4] + z;
+        }
+
+        /**sets the speed in the direction of the motion, or the way it was last going if it's stopped.*/
+        private void setSpeed(double speed){
+            double length = Math.sqrt(state[3]*state[3] + state[4]*state[4]);
+            if(length > 0){
+                headingX = state[3] / length;
+                headingZ = state[4] / length;
+            }
+            cartVelocityX = state[3] = headingX * speed;
+            cartVelocityZ = state[4] = headingZ * speed;
+        }
+
+        /**
+         * moves the bogie for a tick, the loop is the same as the bogie's segment movement.
+         * every step is added to the trail.
+         * @return false if the bogie isn't on a rail.
+         */
+        private boolean move(Layout layout, Trail trail, boolean hasDrag, boolean parking, float weight){
+            int floorX = MathHelper.floor_double(state[0]);
+            int floorY = MathHelper.floor_double(state[1]);
+            int floorZ = MathHelper.floor_double(state[2]);
+            if(layout.getBasicRailMetadata(floorX, floorY, floorZ) == -1 && layout.getBasicRailMetadata(floorX, floorY - 1, floorZ) != -1){
+                --floorY;
+            }
+
+            //apply parking brake
+            if (parking){
+                double parkingMultiplier = TrainPhysics.parkingBrake(weight);
+                if (state[3] <0.005 && state[3] >-0.005){
+                    cartVelocityX = state[3] =0;
+                } else {
+                    state[3] *= parkingMultiplier;
+                    cartVelocityX *= parkingMultiplier;
+                }
+                if (state[4] <0.005 && state[4] >-0.005){
+                    cartVelocityZ = state[4] =0;
+                } else {
+                    state[4] *= parkingMultiplier;
+                    cartVelocityZ *= parkingMultiplier;
+                }
+            }
+            double dragMultiplier = TrainPhysics.bogieDrag(weight);
+
+            if(layout.getBasicRailMetadata(floorX, floorY, floorZ) == -1){
+                return false;
+            }
+            double velocity = Math.abs(cartVelocityX) + Math.abs(cartVelocityZ);
+            while (true) {
+                //add the uphill/downhill velocity
+                switch (railMetadata) {
+                    case 2:{state[3] -= TrainPhysics.SLOPE_PUSH*dragMultiplier; state[1] = (floorY + 1d); isOnSlope=true; break;}
+                    case 3:{state[3] += TrainPhysics.SLOPE_PUSH*dragMultiplier; state[1] = (floorY + 1d); isOnSlope=true; break;}
+                    case 4:{state[4] += TrainPhysics.SLOPE_PUSH*dragMultiplier; state[1] = (floorY + 1d); isOnSlope=true; break;}
+                    case 5:{state[4] -= TrainPhysics.SLOPE_PUSH*dragMultiplier; state[1] = (floorY + 1d); isOnSlope=true; break;}
+                    default:{
+                        isOnSlope=false;
+                        //apply drag
+                        if (hasDrag){
+                            if (state[3] <0.005 && state[3] >-0.005){
+                                cartVelocityX = state[3] =0;
+                            } else {
+                                state[3] *= dragMultiplier;
+                                cartVelocityX *= dragMultiplier;
+                            }
+                            if (state[4] <0.005 && state[4] >-0.005){
+                                cartVelocityZ = state[4] =0;
+                            } else {
+                                state[4] *= dragMultiplier;
+                                cartVelocityZ *= dragMultiplier;
+                            }
+                        }
+                    }
+                }
+
+                if(velocity>0.3){
+                    velocity-=0.3;
+                } else {
+                    return true;
+                }
+                railMetadata = layout.getBasicRailMetadata(floorX, floorY, floorZ);
+                RailPathCache.getPath(railMetadata).move(state, 0.3f, 0, floorX, floorZ);
+                trail.add(state);
+
+                floorX = MathHelper.floor_double(state[0]);
+                floorY = MathHelper.floor_double(state[1]);
+                floorZ = MathHelper.floor_double(state[2]);
+                if(layout.getBasicRailMetadata(floorX, floorY, floorZ) == -1){
+                    return true;
+                }
+            }
+        }
+    }
+
+    private static int[] floor(double[] position){
+        return new int[]{MathHelper.floor_double(position[0]), MathHelper.floor_double(position[1]), MathHelper.floor_double(position[2])};
+    }
+
+
+    /**
+     * <h2>Trail</h2>
+     * the points the front bogie of a consist went through, oldest first, with the distance along them,
+     *     the rest of the consist is placed along it behind the bogie.
+     */
+    private static class Trail {
+        /**X, Y, Z and the distance from the start of the trail, for each point.*/
+        private final List<double[]> points = new ArrayList<>();
+
+        private void add(double[] position){
+            double distance =0;
+            if(points.size() > 0){
+                double[] last = points.get(points.size()-1);
+                double x = position[0] - last[0], y = position[1] - last[1], z = position[2] - last[2];
+                distance = last[3] + Math.sqrt(x*x + y*y + z*z);
+            }
+            points.add(new double[]{position[0], position[1], position[2], distance});
+        }
+
+        /**@return the point that's the distance behind the newest one, on the line between the points on either side of it.*/
+        private double[] get(double behind){
+            double[] newest = points.get(points.size()-1);
+            double target = newest[3] - behind;
+            int i = points.size()-1;
+            while(i > 0 && points.get(i-1)[3] > target){
+                i--;
+            }
+            if(i == 0){
+                return new double[]{points.get(0)[0], points.get(0)[1], points.get(0)[2], target};
+            }
+            double[] before = points.get(i-1), after = points.get(i);
+            double t = after[3] == before[3] ? 0 : (target - before[3]) / (after[3] - before[3]);
+            return new double[]{before[0] + (after[0] - before[0]) * t, before[1] + (after[1] - before[1]) * t,
+                    before[2] + (after[2] - before[2]) * t, target};
+        }
+
+        /**
+         * starts the trail behind the bogie, by walking a copy of it backwards over the rails with the same steps.
+         * @throws IllegalArgumentException if the rails end before the length.
+         */
+        private void extend(Layout layout, Bogie bogie, float length){
+            Bogie probe = new Bogie(bogie.state[0], bogie.state[1], bogie.state[2]);
+            probe.headingX = -bogie.headingX;
+            probe.headingZ = -bogie.headingZ;
+            Trail backwards = new Trail();
+            backwards.add(probe.state);
+            while(backwards.points.get(backwards.points.size()-1)[3] < length){
+                //the same push every tick, with no drag, so it only goes a step at a time.
+                probe.setSpeed(0.31);
+                if(!probe.move(layout, backwards, false, false, 1) || backwards.points.size() > 10000){
+                    throw new IllegalArgumentException("the rails behind the train end before the train does");
+                }
+            }
+            points.clear();
+            for(int i=backwards.points.size()-1; i>=0; i--){
+                add(backwards.points.get(i));
+            }
+        }
+
+        /**adds the trail of a consist that coupled to the back of this one, behind the part of this trail the length covers.*/
+        private void join(Trail behind, float length){
+            List<double[]> ahead = new ArrayList<>();
+            double start = points.get(points.size()-1)[3] - length;
+            for(double[] point : points){
+                if(point[3] >= start){
+                    ahead.add(point);
+                }
+            }
+            points.clear();
+            for(double[] point : behind.points){
+                add(point);
+            }
+            for(double[] point : ahead){
+                add(point);
+            }
+        }
+    }
+
+
+    /**
+     * <h2>Tick record</h2>
+     * the state of every car at the end of a tick, in the order the cars were added.
+     * each car has the index of the consist it's in, and the distance, position, yaw and velocity of it's center.
+     * the distance is along the trail of the consist, so it only compares cars in the same consist.
+     */
+    public static class TickRecord {
+        public static final int DISTANCE=0, X=1, Y=2, Z=3, YAW=4, VELOCITY=5, FIELDS=6;
+
+        public final int tick;
+        public final int[] consist;
+        public final float[] state;
+        /**how long the tick took, this is the only thing that isn't the same every run.*/
+        public long nanos;
+
+        TickRecord(int tick, int cars){
+            this.tick = tick;
+            consist = new int[cars];
+            state = new float[cars * FIELDS];
+        }
+
+        void set(int car, int consistIndex, double[] center, float yaw, float velocity){
+            consist[car] = consistIndex;
+            int i = car * FIELDS;
+            state[i+DISTANCE] = (float) center[3];
+            state[i+X] = (float) center[0];
+            state[i+Y] = (float) center[1];
+            state[i+Z] = (float) center[2];
+            state[i+YAW] = yaw;
+            state[i+VELOCITY] = velocity;
+        }
+
+        public float get(int car, int field){
+            return state[car * FIELDS + field];
+        }
+
+        /**@return true if every car is in the same place and consist, to the bit, the time the tick took isn't compared.*/
+        public boolean sameState(TickRecord other){
+            //Arrays.equals compares floats by their bits, so even a difference in the last bit is caught.
+            return tick == other.tick && Arrays.equals(consist, other.consist) && Arrays.equals(state, other.state);
+        }
+    }
+}
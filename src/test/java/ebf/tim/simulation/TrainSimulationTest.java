@@ -0,0 +1,180 @@
+package ebf.tim.simulation;
+
+import ebf.tim.blocks.rails.RailShapeCore;
+import ebf.tim.blocks.rails.RailSimpleShape;
+import ebf.tim.simulation.TrainSimulation.Car;
+import ebf.tim.simulation.TrainSimulation.Layout;
+import ebf.tim.simulation.TrainSimulation.TickRecord;
+import ebf.tim.simulation.TrainSimulation.Train;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Train simulation tests</h1>
+ * runs the same consists on the same layout more than once, and checks every tick is the same to the bit,
+ *     then checks the consists couple, brake, climb, turn and stop the way they should.
+ * @author Eternal Blue Flame
+ */
+public class TrainSimulationTest {
+
+    @Test
+    public void theSameSetupRecordsTheSameEveryRun(){
+        List<TickRecord> first = scenario().run(2000);
+        List<TickRecord> second = scenario().run(2000);
+        assertEquals(first.size(), second.size());
+        for(int i=0; i<first.size(); i++){
+            assertTrue("tick " + i, first.get(i).sameState(second.get(i)));
+        }
+        //the train caught up to the wagons somewhere in there, so the coupling is part of what was compared.
+        TickRecord last = first.get(first.size()-1);
+        assertEquals(last.consist[0], last.consist[2]);
+    }
+
+    @Test
+    public void theLayoutIsTheSameEveryTimeItsBuilt(){
+        List<RailShapeCore> first = layout().getShapes(), second = layout().getShapes();
+        assertEquals(layout().rails.size(), first.size());
+        for(int i=0; i<first.size(); i++){
+            assertEquals(first.get(i).toString(), second.get(i).toString());
+        }
+        //the rail saved for a block is the same no matter when it's made.
+        RailSimpleShape shape = new RailSimpleShape().setStart(0, 0, -0.5f).setEnd(0, 0, 0.5f);
+        assertEquals(RailShapeCore.multiTriGenModel(null, 10, 64, -30, shape, TrainSimulation.GAUGE).toString(),
+                RailShapeCore.multiTriGenModel(null, 10, 64, -30, shape, TrainSimulation.GAUGE).toString());
+    }
+
+    @Test
+    public void tieOffsetsDependOnlyOnThePosition(){
+        Set<Integer> offsets = new HashSet<>();
+        for(int x=-8; x<8; x++){
+            for(int z=-8; z<8; z++){
+                for(int point=1; point<5; point++){
+                    int offset = RailShapeCore.getTieOffset(x, 64, z, point);
+                    assertTrue(offset >= 0 && offset < 10);
+                    assertEquals(offset, RailShapeCore.getTieOffset(x, 64, z, point));
+                    offsets.add(offset);
+                }
+            }
+        }
+        //neighbouring rails still get different offsets, which is what keeps their ties from overlapping.
+        assertEquals(10, offsets.size());
+    }
+
+    @Test
+    public void aFasterTrainCouplesAndKeepsTheMomentum(){
+        TrainSimulation simulation = new TrainSimulation(layout());
+        Train loco = simulation.addTrain(10, new Car(3, 2000, 100, 60));
+        simulation.addTrain(40, Car.wagon(2, 1000), Car.wagon(2, 1000));
+        loco.accelerator = 6;
+
+        float before =0;
+        int tick =0;
+        while(simulation.getTrains().size() > 1){
+            assertTrue("never coupled", tick++ < 2000);
+            before = loco.velocity();
+            simulation.step();
+        }
+        assertEquals(3, simulation.getTrains().get(0).cars.size());
+        //the wagons were stopped, so the velocity is shared out by weight, this is a tick after the one the loco had before.
+        float after = simulation.getTrains().get(0).velocity();
+        assertTrue(after > 0 && after < before);
+        TickRecord record = simulation.getRecords().get(simulation.getRecords().size()-1);
+        assertEquals(record.consist[0], record.consist[1]);
+        assertEquals(record.consist[0], record.consist[2]);
+        //the loco is pushing from the back, the cars are end to end, so the centers are half of each car apart.
+        assertEquals(2f, record.get(1, TickRecord.DISTANCE) - record.get(2, TickRecord.DISTANCE), 0.0001f);
+        assertEquals(2.5f, record.get(2, TickRecord.DISTANCE) - record.get(0, TickRecord.DISTANCE), 0.0001f);
+    }
+
+    @Test
+    public void brakingStopsAConsistShorterThanCoasting(){
+        TrainSimulation coasting = new TrainSimulation(layout()), braking = new TrainSimulation(layout());
+        Train coast = coasting.addTrain(10, new Car(3, 2000, 100, 60), Car.wagon(2, 1000));
+        Train brake = braking.addTrain(10, new Car(3, 2000, 100, 60), Car.wagon(2, 1000));
+        coast.setVelocity(3f);
+        brake.setVelocity(3f);
+        brake.brake = true;
+        coasting.run(20);
+        braking.run(20);
+        //the drag is applied every step, so both stop within a few ticks, the brake takes some of the steps away before they're made.
+        assertEquals(0, coast.velocity(), 0);
+        assertEquals(0, brake.velocity(), 0);
+        assertTrue(brake.getPosition()[2] < coast.getPosition()[2]);
+        assertTrue(coast.getPosition()[2] > 10.5);
+    }
+
+    @Test
+    public void heavierConsistsAccelerateSlower(){
+        TrainSimulation light = new TrainSimulation(layout()), heavy = new TrainSimulation(layout());
+        Train lightTrain = light.addTrain(10, new Car(3, 2000, 100, 60));
+        Train heavyTrain = heavy.addTrain(10, new Car(3, 2000, 100, 60), Car.wagon(2, 3000));
+        lightTrain.accelerator = heavyTrain.accelerator = 6;
+        light.run(200);
+        heavy.run(200);
+        assertTrue(heavyTrain.velocity() < lightTrain.velocity());
+        assertTrue(heavyTrain.velocity() > 0);
+    }
+
+    @Test
+    public void consistsClimbTheSlopeAndStopAtTheEndOfTheLine(){
+        TrainSimulation simulation = new TrainSimulation(layout());
+        Train train = simulation.addTrain(10, new Car(3, 2000, 100, 60));
+        train.accelerator = 6;
+        simulation.run(3000);
+        //the front bogie is on the last rail, or just past it.
+        int[] last = simulation.getLayout().rails.get(simulation.getLayout().rails.size()-1);
+        assertEquals(last[2] + 0.5, train.getPosition()[2], 1);
+        assertEquals(0, train.velocity(), 0);
+        //the top of the slope is higher than the start.
+        TickRecord record = simulation.getRecords().get(simulation.getRecords().size()-1);
+        assertTrue(record.get(0, TickRecord.Y) > 64.5f);
+    }
+
+    @Test
+    public void consistsFollowTheCurves(){
+        Layout layout = new Layout().straight(0, 64, 0, 16).rail(0, 64, 16, 9).east(1, 64, 16, 32);
+        TrainSimulation simulation = new TrainSimulation(layout);
+        Train train = simulation.addTrain(10, new Car(3, 2000, 100, 60), Car.wagon(2, 1000));
+        train.accelerator = 6;
+        TickRecord record = null;
+        while(train.getPosition()[0] < 20){
+            assertTrue("never got around the curve", simulation.getRecords().size() < 2000);
+            record = simulation.step();
+        }
+        //both cars are past the curve, going east on the rails.
+        for(int car=0; car<2; car++){
+            assertEquals(16.5f, record.get(car, TickRecord.Z), 0.01f);
+            assertEquals(0, record.get(car, TickRecord.YAW), 0.5f);
+        }
+    }
+
+    @Test
+    public void everyTickIsRecordedAndTimed(){
+        List<TickRecord> records = scenario().run(50);
+        assertEquals(50, records.size());
+        for(int i=0; i<records.size(); i++){
+            assertEquals(i, records.get(i).tick);
+            assertTrue(records.get(i).nanos >= 0);
+        }
+    }
+
+
+    /**a straight, then a slope up a block, then another straight, all going south.*/
+    private static Layout layout(){
+        return new Layout().straight(0, 64, 0, 64).slope(0, 64, 64).straight(0, 65, 65, 48);
+    }
+
+    /**a train that starts behind two wagons and catches up to them.*/
+    private static TrainSimulation scenario(){
+        TrainSimulation simulation = new TrainSimulation(layout());
+        simulation.addTrain(10, new Car(3, 2000, 100, 60)).accelerator = 6;
+        simulation.addTrain(40, Car.wagon(2, 1000), Car.wagon(2, 1000));
+        return simulation;
+    }
+}
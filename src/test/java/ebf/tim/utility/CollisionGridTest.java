@@ -0,0 +1,98 @@
+package ebf.tim.utility;
+
+import ebf.tim.TrainsInMotion;
+import ebf.tim.entities.GenericRailTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * <h1>Collision grid tests</h1>
+ * checks the grid of a dimension is only dropped by the server world or chunks unloading,
+ *     in single player the client world has the same dimension ID, and unloading it used to drop the server's grid.
+ * the grid is used by dimension, so there's no world, the unloads are called with the dimension and if it's the client.
+ * @author Eternal Blue Flame
+ */
+public class CollisionGridTest {
+
+    private static final int DIMENSION = 0, OTHER_DIMENSION = -1;
+
+    private final List<GenericRailTransport> found = new ArrayList<>();
+
+    @Before
+    public void setup(){
+        if(TrainsInMotion.proxy==null){
+            TrainsInMotion.proxy = new CommonProxy();
+        }
+    }
+
+    @After
+    public void cleanup(){
+        CollisionGrid.removeWorld(DIMENSION, false);
+        CollisionGrid.removeWorld(OTHER_DIMENSION, false);
+    }
+
+    @Test
+    public void clientWorldUnloadLeavesTheServerGrid(){
+        GenericRailTransport transport = transport(DIMENSION, 8, 8);
+        CollisionGrid.removeWorld(DIMENSION, true);
+        assertEquals(1, query(DIMENSION, 8, 8).size());
+        assertSame(transport, found.get(0));
+
+        //the server world unloading does drop it.
+        CollisionGrid.removeWorld(DIMENSION, false);
+        assertEquals(0, query(DIMENSION, 8, 8).size());
+    }
+
+    @Test
+    public void clientChunkUnloadLeavesTheServerGrid(){
+        GenericRailTransport transport = transport(DIMENSION, 8, 8);
+        List[] chunk = chunk(transport);
+        CollisionGrid.removeChunk(DIMENSION, true, chunk);
+        assertEquals(1, query(DIMENSION, 8, 8).size());
+
+        CollisionGrid.removeChunk(DIMENSION, false, chunk);
+        assertEquals(0, query(DIMENSION, 8, 8).size());
+    }
+
+    @Test
+    public void worldUnloadOnlyDropsItsDimension(){
+        transport(DIMENSION, 8, 8);
+        transport(OTHER_DIMENSION, 8, 8);
+        CollisionGrid.removeWorld(OTHER_DIMENSION, false);
+        assertEquals(1, query(DIMENSION, 8, 8).size());
+        assertEquals(0, query(OTHER_DIMENSION, 8, 8).size());
+    }
+
+
+    /**makes a transport at the position, and puts it in the grid of the dimension.*/
+    private static GenericRailTransport transport(int dimension, double x, double z){
+        GenericRailTransport transport = new GenericRailTransport(null);
+        transport.collisionHandler = new HitboxDynamic(3f, 2.5f, 3f);
+        transport.collisionHandler.position(x, 64, z, 0, 0);
+        CollisionGrid.update(dimension, transport);
+        return transport;
+    }
+
+    /**the entity lists of a chunk with the transport in it.*/
+    private static List[] chunk(GenericRailTransport transport){
+        List[] lists = new List[16];
+        for(int i=0; i<lists.length; i++){
+            lists[i] = new ArrayList();
+        }
+        lists[4].add(transport);
+        return lists;
+    }
+
+    private List<GenericRailTransport> query(int dimension, double x, double z){
+        found.clear();
+        CollisionGrid.getTransports(dimension, x - 1, z - 1, x + 1, z + 1, found);
+        return found;
+    }
+}
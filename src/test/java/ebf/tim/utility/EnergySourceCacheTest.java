@@ -0,0 +1,298 @@
+package ebf.tim.utility;
+
+import cofh.api.energy.IEnergyHandler;
+import mods.railcraft.api.electricity.IElectricGrid;
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraftforge.common.util.ForgeDirection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Energy source cache tests</h1>
+ * checks the cache finds the same source the trains used to look for, draws from it the same way,
+ *     and only looks at the blocks again when the source could have changed.
+ * the blocks are a map, and the energy handlers are stubs that count what's taken from them, so there's no world.
+ * @author Eternal Blue Flame
+ */
+public class EnergySourceCacheTest {
+
+    private Blocks blocks;
+    private EnergySourceCache cache;
+
+    @Before
+    public void setup(){
+        blocks = new Blocks();
+        cache = new EnergySourceCache(blocks);
+    }
+
+    @Test
+    public void drawsFromAHandlerAndCachesIt(){
+        StubHandler handler = new StubHandler(1000, null);
+        blocks.tiles.put(key(0, 63, 0), handler);
+        assertEquals(100, cache.draw(0, 64, 0, 100));
+        int lookups = blocks.lookups;
+        for(int i=0; i<5; i++){
+            assertEquals(100, cache.draw(0, 64, 0, 100));
+        }
+        assertEquals("the blocks were checked again", lookups, blocks.lookups);
+        assertEquals(400, handler.energy);
+    }
+
+    @Test
+    public void drawsWhatTheHandlerHasLeft(){
+        StubHandler handler = new StubHandler(30, null);
+        blocks.tiles.put(key(0, 66, 0), handler);
+        assertEquals(30, cache.draw(0, 64, 0, 100));
+        assertEquals(0, cache.draw(0, 64, 0, 100));
+        assertEquals(0, handler.energy);
+    }
+
+    @Test
+    public void drawsFromTheSideTheHandlerGivesEnergyOn(){
+        StubHandler handler = new StubHandler(1000, ForgeDirection.EAST);
+        blocks.tiles.put(key(0, 64, 0), handler);
+        assertEquals(100, cache.draw(0, 64, 0, 100));
+        assertEquals(ForgeDirection.VALID_DIRECTIONS.length, handler.calls);
+    }
+
+    @Test
+    public void theLowestSourceInTheAreaIsUsed(){
+        StubHandler low = new StubHandler(1000, null), high = new StubHandler(1000, null);
+        blocks.tiles.put(key(3, 63 + EnergySourceCache.MIN_OFFSET, 5), low);
+        blocks.tiles.put(key(3, 63 + EnergySourceCache.MAX_OFFSET, 5), high);
+        assertSame(low, cache.getSource(3, 63, 5).handler);
+        //only what's in the area counts.
+        blocks.tiles.put(key(7, 70 + EnergySourceCache.MIN_OFFSET - 1, 7), new StubHandler(1000, null));
+        blocks.tiles.put(key(7, 70 + EnergySourceCache.MAX_OFFSET + 1, 7), new StubHandler(1000, null));
+        assertEquals(0, cache.draw(7, 70, 7, 100));
+    }
+
+    @Test
+    public void anInvalidTileEntityIsFoundAgain(){
+        StubHandler first = new StubHandler(1000, null), second = new StubHandler(1000, null);
+        blocks.tiles.put(key(0, 65, 0), first);
+        assertSame(first, cache.getSource(0, 64, 0).handler);
+        first.invalidate();
+        blocks.tiles.put(key(0, 65, 0), second);
+        assertSame(second, cache.getSource(0, 64, 0).handler);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void placingABlockInTheAreaDropsTheSource(){
+        blocks.tiles.put(key(0, 64, 0), new StubHandler(1000, null));
+        cache.getSource(0, 64, 0);
+        cache.getSource(20, 64, 0);
+        int lookups = blocks.lookups;
+        //a block above the area doesn't matter, one in it does.
+        cache.invalidate(0, 64 + EnergySourceCache.MAX_OFFSET + 1, 0);
+        cache.getSource(0, 64, 0);
+        assertEquals(lookups, blocks.lookups);
+        cache.invalidate(0, 64 + EnergySourceCache.MAX_OFFSET, 0);
+        cache.getSource(0, 64, 0);
+        assertTrue(blocks.lookups > lookups);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void railsWithoutASourceAreCheckedAgainLater(){
+        assertNull(cache.getSource(0, 64, 0).handler);
+        int lookups = blocks.lookups;
+        blocks.tiles.put(key(0, 64, 0), new StubHandler(1000, null));
+        blocks.time += EnergySourceCache.RECHECK_TICKS - 1;
+        assertEquals(0, cache.draw(0, 64, 0, 100));
+        assertEquals(lookups, blocks.lookups);
+        blocks.time++;
+        assertEquals(100, cache.draw(0, 64, 0, 100));
+        assertTrue(blocks.lookups > lookups);
+    }
+
+    @Test
+    public void blockGridsAreDroppedWhenTheBlockChanges(){
+        GridBlock grid = new GridBlock();
+        grid.charge.setCharge(150);
+        blocks.blocks.put(key(0, 62, 0), grid);
+        EnergySourceCache.EnergySource source = cache.getSource(0, 63, 0);
+        assertSame(grid, source.grid);
+        //the grid only gives whole draws.
+        assertEquals(100, cache.draw(0, 63, 0, 100));
+        assertEquals(0, cache.draw(0, 63, 0, 100));
+        assertEquals(50, grid.charge.getCharge(), 0);
+
+        blocks.blocks.remove(key(0, 62, 0));
+        assertNull(cache.getSource(0, 63, 0).grid);
+    }
+
+    @Test
+    public void unloadingAChunkOnlyDropsItsSources(){
+        for(int x=0; x<64; x+=4){
+            blocks.tiles.put(key(x, 64, 8), new StubHandler(1000, null));
+            cache.getSource(x, 64, 8);
+        }
+        assertEquals(16, cache.size());
+        cache.removeChunk(1, 0);
+        assertEquals(12, cache.size());
+        cache.removeChunk(1, 0);
+        cache.removeChunk(5, 5);
+        assertEquals(12, cache.size());
+        int lookups = blocks.lookups;
+        cache.getSource(0, 64, 8);
+        assertEquals(lookups, blocks.lookups);
+        cache.getSource(16, 64, 8);
+        assertTrue(blocks.lookups > lookups);
+    }
+
+    @Test
+    public void aConsistOnOneSourceDrawsFromItOnce(){
+        StubHandler handler = new StubHandler(1000, null);
+        blocks.tiles.put(key(0, 63, 0), handler);
+        //three locomotives on the rails over the same handler, and one on a rail without a source.
+        int[] positions = {0, 64, 0, 0, 64, 0, 0, 64, 0, 10, 64, 0};
+        int[] amounts = {100, 100, 100, 100};
+        assertEquals(300, cache.charge(positions, amounts, 4));
+        assertEquals(1, handler.calls);
+        assertEquals(700, handler.energy);
+        assertEquals(100, amounts[0]);
+        assertEquals(100, amounts[2]);
+        assertEquals(0, amounts[3]);
+    }
+
+    @Test
+    public void whatsLeftIsHandedOutInOrder(){
+        StubHandler handler = new StubHandler(250, null);
+        blocks.tiles.put(key(0, 63, 0), handler);
+        int[] positions = {0, 64, 0, 0, 64, 0, 0, 64, 0};
+        int[] amounts = {100, 100, 100};
+        assertEquals(250, cache.charge(positions, amounts, 3));
+        assertEquals(100, amounts[0]);
+        assertEquals(100, amounts[1]);
+        assertEquals(50, amounts[2]);
+    }
+
+    @Test
+    public void eachSourceIsDrawnFromForItsTrains(){
+        StubHandler first = new StubHandler(1000, null), second = new StubHandler(1000, null);
+        blocks.tiles.put(key(0, 63, 0), first);
+        blocks.tiles.put(key(5, 63, 0), second);
+        int[] positions = {0, 64, 0, 5, 64, 0, 0, 64, 0};
+        int[] amounts = {100, 60, 100};
+        assertEquals(260, cache.charge(positions, amounts, 3));
+        assertEquals(800, first.energy);
+        assertEquals(940, second.energy);
+        assertEquals(1, first.calls);
+        assertEquals(1, second.calls);
+    }
+
+    @Test
+    public void gridsGiveEachTrainAWholeDraw(){
+        GridBlock grid = new GridBlock();
+        grid.charge.setCharge(250);
+        blocks.blocks.put(key(0, 62, 0), grid);
+        int[] positions = {0, 63, 0, 0, 63, 0, 0, 63, 0};
+        int[] amounts = {100, 100, 100};
+        assertEquals(200, cache.charge(positions, amounts, 3));
+        assertEquals(100, amounts[1]);
+        assertEquals(0, amounts[2]);
+        assertEquals(50, grid.charge.getCharge(), 0);
+    }
+
+    @Test
+    public void chargingMatchesDrawingOneAtATime(){
+        int[] positions = {0, 64, 0, 0, 64, 0, 3, 64, 0, 3, 64, 0, 3, 64, 0};
+        int[] amounts = {100, 100, 100, 100, 100};
+        blocks.tiles.put(key(0, 64, 0), new StubHandler(150, null));
+        blocks.tiles.put(key(3, 64, 0), new StubHandler(1000, ForgeDirection.UP));
+        int charged = cache.charge(positions, amounts, 5);
+
+        setup();
+        blocks.tiles.put(key(0, 64, 0), new StubHandler(150, null));
+        blocks.tiles.put(key(3, 64, 0), new StubHandler(1000, ForgeDirection.UP));
+        int drawn =0;
+        for(int i=0; i<5; i++){
+            int draw = cache.draw(positions[i*3], positions[i*3+1], positions[i*3+2], 100);
+            assertEquals(draw, amounts[i]);
+            drawn += draw;
+        }
+        assertEquals(drawn, charged);
+    }
+
+
+    private static long key(int x, int y, int z){
+        return ((long) x << 40) ^ ((long) z << 16) ^ y;
+    }
+
+    /**the blocks around the rails, and how many times the cache looked for a source in them.*/
+    private static class Blocks implements EnergySourceCache.BlockAccess {
+        private final Map<Long, TileEntity> tiles = new HashMap<>();
+        private final Map<Long, Block> blocks = new HashMap<>();
+        private long time =0;
+        /**the number of tile entities looked at, only looking for a source does that, checking a cached one doesn't.*/
+        private int lookups =0;
+
+        @Override
+        public TileEntity getTileEntity(int x, int y, int z){
+            lookups++;
+            return tiles.get(key(x, y, z));
+        }
+        @Override
+        public Block getBlock(int x, int y, int z){
+            return blocks.get(key(x, y, z));
+        }
+        @Override
+        public long getTotalWorldTime(){
+            return time;
+        }
+    }
+
+    /**an energy handler with some energy, that only gives it from one side, or any side if that's null.*/
+    private static class StubHandler extends TileEntity implements IEnergyHandler {
+        private int energy, calls =0;
+        private final ForgeDirection side;
+        private StubHandler(int energy, ForgeDirection side){
+            this.energy = energy;
+            this.side = side;
+        }
+        @Override
+        public int extractEnergy(ForgeDirection from, int maxExtract, boolean simulate){
+            calls++;
+            if(side != null && from != side){
+                return 0;
+            }
+            int drawn = Math.min(energy, maxExtract);
+            if(!simulate){
+                energy -= drawn;
+            }
+            return drawn;
+        }
+        @Override
+        public int receiveEnergy(ForgeDirection from, int maxReceive, boolean simulate){return 0;}
+        @Override
+        public int getEnergyStored(ForgeDirection from){return energy;}
+        @Override
+        public int getMaxEnergyStored(ForgeDirection from){return 1000;}
+        @Override
+        public boolean canConnectEnergy(ForgeDirection from){return true;}
+    }
+
+    /**a railcraft grid that's a block, rather than a tile entity.*/
+    private static class GridBlock extends Block implements IElectricGrid {
+        private final ChargeHandler charge = new ChargeHandler(this, ChargeHandler.ConnectType.BLOCK, 0);
+        private GridBlock(){
+            super(Material.iron);
+        }
+        @Override
+        public ChargeHandler getChargeHandler(){return charge;}
+        @Override
+        public TileEntity getTile(){return null;}
+    }
+}
@@ -0,0 +1,231 @@
+package ebf.tim.utility;
+
+import net.minecraft.launchwrapper.Launch;
+import net.minecraft.world.ChunkCoordIntPair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>GL resource manager tests</h1>
+ * allocates and releases lists and buffers through an allocator that only keeps track of the IDs it handed out,
+ *     and checks nothing is freed in the frame it's released, IDs are reused, and the ones a chunk's owners never released are counted as leaks.
+ * at the end of each test every ID the allocator made has to be either live, pooled, or deleted, so nothing is lost.
+ * @author Eternal Blue Flame
+ */
+public class GLResourceManagerTest {
+
+    private GLResourceManager.Allocator glAllocator;
+    /**the IDs the allocator made and hasn't deleted, for each type.*/
+    private final Set<Integer> lists = new HashSet<>(), buffers = new HashSet<>();
+    private final List<Integer> deletedIDs = new ArrayList<>();
+    private int nextID = 1;
+
+    @Before
+    public void setup(){
+        //the leak log checks for a dev environment, which comes from the launcher.
+        if(Launch.blackboard == null){
+            Launch.blackboard = new HashMap<>();
+            Launch.blackboard.put("fml.deobfuscatedEnvironment", false);
+        }
+        glAllocator = GLResourceManager.allocator;
+        GLResourceManager.allocator = new GLResourceManager.Allocator() {
+            @Override
+            public int generate(GLResourceManager.Type type) {
+                int id = nextID++;
+                (type == GLResourceManager.Type.LIST ? lists : buffers).add(id);
+                return id;
+            }
+
+            @Override
+            public void delete(GLResourceManager.Type type, int id) {
+                assertTrue("deleted an ID that wasn't made", (type == GLResourceManager.Type.LIST ? lists : buffers).remove(id));
+                deletedIDs.add(id);
+            }
+        };
+        GLResourceManager.reset();
+    }
+
+    @After
+    public void cleanup(){
+        GLResourceManager.reset();
+        GLResourceManager.allocator = glAllocator;
+    }
+
+    @Test
+    public void releasedIDsAreFreedNextFrameAndReused(){
+        int list = GLResourceManager.allocate(GLResourceManager.Type.LIST, this);
+        int buffer = GLResourceManager.allocate(GLResourceManager.Type.BUFFER, this);
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.BUFFER));
+
+        GLResourceManager.release(GLResourceManager.Type.LIST, list, this);
+        assertEquals(0, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        assertEquals(1, GLResourceManager.getPendingCount());
+        //it's still being drawn this frame, so a new one can't have it's ID.
+        int other = GLResourceManager.allocate(GLResourceManager.Type.LIST, this);
+        assertFalse(other == list);
+
+        GLResourceManager.processReleases();
+        assertEquals(0, GLResourceManager.getPendingCount());
+        assertEquals(1, GLResourceManager.getPooledCount(GLResourceManager.Type.LIST));
+        assertEquals(list, GLResourceManager.allocate(GLResourceManager.Type.LIST, this));
+        assertEquals(1, GLResourceManager.getReusedCount());
+        //the pools are kept apart, a list ID is never handed out as a buffer.
+        GLResourceManager.release(GLResourceManager.Type.BUFFER, buffer, this);
+        GLResourceManager.processReleases();
+        assertEquals(buffer, GLResourceManager.allocate(GLResourceManager.Type.BUFFER, this));
+        assertEquals(3, GLResourceManager.getGeneratedCount());
+        assertNothingLost();
+    }
+
+    @Test
+    public void releasingTwiceOnlyFreesOnce(){
+        int list = GLResourceManager.allocate(GLResourceManager.Type.LIST, this);
+        GLResourceManager.release(GLResourceManager.Type.LIST, list, this);
+        GLResourceManager.release(GLResourceManager.Type.LIST, list, this);
+        assertEquals(1, GLResourceManager.getPendingCount());
+        GLResourceManager.processReleases();
+        GLResourceManager.release(GLResourceManager.Type.LIST, list, this);
+        //an ID that was never made is ignored too.
+        GLResourceManager.release(GLResourceManager.Type.BUFFER, 9999, this);
+        assertEquals(0, GLResourceManager.getPendingCount());
+        assertEquals(1, GLResourceManager.getPooledCount(GLResourceManager.Type.LIST));
+        assertNothingLost();
+    }
+
+    @Test
+    public void sharedResourcesAreFreedByTheLastOwner(){
+        Object first = new Object(), second = new Object(), stranger = new Object();
+        int mesh = GLResourceManager.allocate(GLResourceManager.Type.BUFFER, first);
+        GLResourceManager.retain(GLResourceManager.Type.BUFFER, mesh, second);
+        GLResourceManager.retain(GLResourceManager.Type.BUFFER, mesh, second);
+
+        GLResourceManager.release(GLResourceManager.Type.BUFFER, mesh, first);
+        //something that never had a reference can't release one, and the first owner can't release it twice.
+        GLResourceManager.release(GLResourceManager.Type.BUFFER, mesh, stranger);
+        GLResourceManager.release(GLResourceManager.Type.BUFFER, mesh, first);
+        GLResourceManager.release(GLResourceManager.Type.BUFFER, mesh, second);
+        GLResourceManager.processReleases();
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.BUFFER));
+
+        GLResourceManager.release(GLResourceManager.Type.BUFFER, mesh, second);
+        assertEquals(0, GLResourceManager.getLiveCount(GLResourceManager.Type.BUFFER));
+        assertEquals(1, GLResourceManager.getPendingCount());
+        //once it's been released, it can't be retained again.
+        GLResourceManager.retain(GLResourceManager.Type.BUFFER, mesh, first);
+        GLResourceManager.processReleases();
+        assertEquals(1, GLResourceManager.getPooledCount(GLResourceManager.Type.BUFFER));
+        assertNothingLost();
+    }
+
+    @Test
+    public void aLateReleaseDoesntFreeTheReusedID(){
+        Object oldOwner = new Object(), newOwner = new Object();
+        int list = GLResourceManager.allocate(GLResourceManager.Type.LIST, oldOwner);
+        GLResourceManager.release(GLResourceManager.Type.LIST, list, oldOwner);
+        GLResourceManager.processReleases();
+        assertEquals(list, GLResourceManager.allocate(GLResourceManager.Type.LIST, newOwner));
+
+        //the old owner still had the ID, and releases it again after it was handed out.
+        GLResourceManager.release(GLResourceManager.Type.LIST, list, oldOwner);
+        GLResourceManager.processReleases();
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        assertEquals(0, GLResourceManager.getPooledCount(GLResourceManager.Type.LIST));
+        //so the ID isn't handed out a third time while the new owner has it.
+        assertFalse(GLResourceManager.allocate(GLResourceManager.Type.LIST, this) == list);
+
+        GLResourceManager.release(GLResourceManager.Type.LIST, list, newOwner);
+        GLResourceManager.processReleases();
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        assertEquals(1, GLResourceManager.getPooledCount(GLResourceManager.Type.LIST));
+        assertNothingLost();
+    }
+
+    @Test
+    public void thePoolOverflowIsDeleted(){
+        List<Integer> ids = new ArrayList<>();
+        for(int i=0; i<GLResourceManager.POOL_SIZE + 10; i++){
+            ids.add(GLResourceManager.allocate(GLResourceManager.Type.LIST, this));
+        }
+        for(int id : ids){
+            GLResourceManager.release(GLResourceManager.Type.LIST, id, this);
+        }
+        GLResourceManager.processReleases();
+        assertEquals(GLResourceManager.POOL_SIZE, GLResourceManager.getPooledCount(GLResourceManager.Type.LIST));
+        assertEquals(10, GLResourceManager.getDeletedCount());
+        assertEquals(10, deletedIDs.size());
+        assertNothingLost();
+    }
+
+    @Test
+    public void unreleasedChunkResourcesAreLeaks(){
+        int released = GLResourceManager.allocate(GLResourceManager.Type.LIST, this, 0, 0);
+        int leaked = GLResourceManager.allocate(GLResourceManager.Type.LIST, this, 0, 0);
+        int otherChunk = GLResourceManager.allocate(GLResourceManager.Type.LIST, this, 1, 0);
+        int mesh = GLResourceManager.allocate(GLResourceManager.Type.BUFFER, this);
+
+        GLResourceManager.release(GLResourceManager.Type.LIST, released, this);
+        GLResourceManager.releaseChunk(0, 0);
+        assertEquals(1, GLResourceManager.getLeakedCount());
+        assertEquals(2, GLResourceManager.getPendingCount());
+        GLResourceManager.processReleases();
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        assertTrue(lists.contains(leaked));
+        //a chunk that has nothing left, or was never used, has nothing to leak.
+        GLResourceManager.releaseChunk(0, 0);
+        GLResourceManager.releaseChunk(5, 5);
+        assertEquals(1, GLResourceManager.getLeakedCount());
+
+        //the world unloading leaks what's left in every chunk, but not the meshes, they don't belong to a chunk.
+        GLResourceManager.releaseChunks();
+        GLResourceManager.processReleases();
+        assertEquals(2, GLResourceManager.getLeakedCount());
+        assertEquals(0, GLResourceManager.getLiveCount(GLResourceManager.Type.LIST));
+        assertEquals(1, GLResourceManager.getLiveCount(GLResourceManager.Type.BUFFER));
+        assertEquals(3, GLResourceManager.getPooledCount(GLResourceManager.Type.LIST));
+        assertTrue(buffers.contains(mesh));
+        assertTrue(lists.contains(otherChunk));
+        assertNothingLost();
+    }
+
+    @Test
+    public void theChunkKeyMatchesVanilla(){
+        int list = GLResourceManager.allocate(GLResourceManager.Type.LIST, this, -3, 7);
+        GLResourceManager.allocate(GLResourceManager.Type.LIST, this, ChunkCoordIntPair.chunkXZ2Int(-3, 7));
+        GLResourceManager.release(GLResourceManager.Type.LIST, list, this);
+        GLResourceManager.releaseChunk(-3, 7);
+        assertEquals(1, GLResourceManager.getLeakedCount());
+        assertNothingLost();
+    }
+
+    @Test
+    public void theDebugLinesHaveTheCounts(){
+        GLResourceManager.allocate(GLResourceManager.Type.LIST, this);
+        GLResourceManager.allocate(GLResourceManager.Type.BUFFER, this);
+        List<String> lines = GLResourceManager.getDebugLines();
+        assertEquals(3, lines.size());
+        assertEquals("TiM GL lists: 1 live, 0 pooled", lines.get(0));
+        assertEquals("TiM GL: 2 made, 0 reused, 0 deleted, 0 pending, 0 leaked", lines.get(2));
+    }
+
+
+    /**every ID the allocator made and hasn't deleted is either live, waiting to be freed, or in a pool.*/
+    private void assertNothingLost(){
+        int tracked =0;
+        for(GLResourceManager.Type type : GLResourceManager.Type.values()){
+            tracked += GLResourceManager.getLiveCount(type) + GLResourceManager.getPooledCount(type);
+        }
+        assertEquals(lists.size() + buffers.size(), tracked + GLResourceManager.getPendingCount());
+    }
+}
@@ -0,0 +1,107 @@
+package ebf.tim.utility;
+
+import net.minecraftforge.oredict.OreDictionary;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <h1>Ore dictionary role tests</h1>
+ * checks the roles are found by the item ID and damage they were registered with,
+ *     and that items registered with the wildcard damage have their roles for every damage, on top of the exact ones.
+ * there's no ore dictionary here, so the roles are added by ID and damage, the same as collecting them does for each ore.
+ * @author Eternal Blue Flame
+ */
+public class RailUtilityOreTest {
+
+    private static final int LOG =17, PLANK =5, COAL =263, SLAB =126, IRON =265, GRAVEL =13;
+
+    @Before
+    public void setup(){
+        RailUtility.clearOreRoles();
+    }
+
+    @Test
+    public void exactDamageOnlyMatchesThatDamage(){
+        RailUtility.addOreRoles(COAL, 0, RailUtility.getOreRoles("coal"));
+        assertEquals(RailUtility.ORE_COAL, RailUtility.getOreRoles(COAL, 0));
+        assertEquals(0, RailUtility.getOreRoles(COAL, 1));
+        assertEquals(0, RailUtility.getOreRoles(COAL, OreDictionary.WILDCARD_VALUE - 1));
+    }
+
+    @Test
+    public void wildcardMatchesEveryDamage(){
+        RailUtility.addOreRoles(LOG, OreDictionary.WILDCARD_VALUE, RailUtility.getOreRoles("logWood"));
+        for(int damage=0; damage<16; damage++){
+            assertEquals(RailUtility.ORE_LOG, RailUtility.getOreRoles(LOG, damage));
+        }
+        assertEquals(RailUtility.ORE_LOG, RailUtility.getOreRoles(LOG, OreDictionary.WILDCARD_VALUE));
+        assertEquals(RailUtility.ORE_LOG, RailUtility.getOreRoles(LOG, -1));
+        //only for that item.
+        assertEquals(0, RailUtility.getOreRoles(LOG + 1, 0));
+        assertEquals(0, RailUtility.getOreRoles(PLANK, 0));
+    }
+
+    @Test
+    public void wildcardAndExactRolesAreCombined(){
+        //logs are wood for every damage, and one of them is also registered as coal.
+        RailUtility.addOreRoles(LOG, OreDictionary.WILDCARD_VALUE, RailUtility.ORE_LOG);
+        RailUtility.addOreRoles(LOG, 2, RailUtility.ORE_COAL);
+        assertEquals(RailUtility.ORE_LOG | RailUtility.ORE_COAL, RailUtility.getOreRoles(LOG, 2));
+        assertEquals(RailUtility.ORE_LOG, RailUtility.getOreRoles(LOG, 3));
+    }
+
+    @Test
+    public void rolesFromSeveralNamesAreMerged(){
+        //the same item in more than one ore name, and the same role from more than one name.
+        RailUtility.addOreRoles(SLAB, OreDictionary.WILDCARD_VALUE, RailUtility.getOreRoles("slabWood"));
+        RailUtility.addOreRoles(SLAB, OreDictionary.WILDCARD_VALUE, RailUtility.getOreRoles("plankWood"));
+        RailUtility.addOreRoles(SLAB, OreDictionary.WILDCARD_VALUE, RailUtility.getOreRoles("coal"));
+        assertEquals(RailUtility.ORE_PLANK | RailUtility.ORE_COAL, RailUtility.getOreRoles(SLAB, 0));
+        assertEquals(RailUtility.ORE_PLANK | RailUtility.ORE_COAL, RailUtility.getOreRoles(SLAB, 7));
+    }
+
+    @Test
+    public void idAndDamageDoNotOverlap(){
+        //a negative damage fills the low bits, it can't reach the ID above it.
+        RailUtility.addOreRoles(PLANK, -1, RailUtility.ORE_PLANK);
+        assertEquals(RailUtility.ORE_PLANK, RailUtility.getOreRoles(PLANK, -1));
+        assertEquals(0, RailUtility.getOreRoles(PLANK - 1, -1));
+        assertEquals(0, RailUtility.getOreRoles(PLANK, 0));
+        assertEquals(0, RailUtility.getOreRoles(-1, PLANK));
+        RailUtility.addOreRoles(0, PLANK, RailUtility.ORE_COAL);
+        assertEquals(0, RailUtility.getOreRoles(PLANK, 0));
+        assertEquals(RailUtility.ORE_COAL, RailUtility.getOreRoles(0, PLANK));
+    }
+
+    @Test
+    public void oreNamesMapToRoles(){
+        assertEquals(RailUtility.ORE_LOG, RailUtility.getOreRoles("logWood"));
+        assertEquals(RailUtility.ORE_PLANK, RailUtility.getOreRoles("plankWood"));
+        assertEquals(RailUtility.ORE_PLANK, RailUtility.getOreRoles("slabWood"));
+        assertEquals(RailUtility.ORE_COAL, RailUtility.getOreRoles("coal"));
+        assertEquals(RailUtility.ORE_INGOT, RailUtility.getOreRoles("ingotIron"));
+        assertEquals(RailUtility.ORE_INGOT, RailUtility.getOreRoles("ingotSteel"));
+        assertEquals(RailUtility.ORE_BALLAST, RailUtility.getOreRoles("gravel"));
+        assertEquals(RailUtility.ORE_BALLAST, RailUtility.getOreRoles("sand"));
+        assertEquals(RailUtility.ORE_BALLAST, RailUtility.getOreRoles("cobblestone"));
+        assertEquals(0, RailUtility.getOreRoles("nuggetIron"));
+        assertEquals(0, RailUtility.getOreRoles("logRubber"));
+    }
+
+    @Test
+    public void ingotAndBallastRolesAreKept(){
+        RailUtility.addOreRoles(IRON, 0, RailUtility.getOreRoles("ingotIron"));
+        RailUtility.addOreRoles(GRAVEL, OreDictionary.WILDCARD_VALUE, RailUtility.getOreRoles("gravel"));
+        assertEquals(RailUtility.ORE_INGOT, RailUtility.getOreRoles(IRON, 0));
+        assertEquals(0, RailUtility.getOreRoles(IRON, 1));
+        assertEquals(RailUtility.ORE_BALLAST, RailUtility.getOreRoles(GRAVEL, 0));
+        assertEquals(RailUtility.ORE_BALLAST, RailUtility.getOreRoles(GRAVEL, 3));
+        //they don't get mixed up with the fuel roles.
+        assertEquals(0, RailUtility.getOreRoles(IRON, 0) & (RailUtility.ORE_LOG | RailUtility.ORE_PLANK | RailUtility.ORE_COAL));
+        RailUtility.addOreRoles(GRAVEL, 0, RailUtility.ORE_COAL);
+        assertEquals(RailUtility.ORE_BALLAST | RailUtility.ORE_COAL, RailUtility.getOreRoles(GRAVEL, 0));
+        assertEquals(RailUtility.ORE_BALLAST, RailUtility.getOreRoles(GRAVEL, 1));
+    }
+}
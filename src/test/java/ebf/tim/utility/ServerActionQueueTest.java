@@ -0,0 +1,224 @@
+package ebf.tim.utility;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Server action queue tests</h1>
+ * floods the queue with packets from hundreds of players, from one thread and from several at once like the netty threads,
+ *     and checks the limits hold, nothing runs twice, and every action sent is counted as run, coalesced or dropped.
+ * there's no server here, so the players are just entity IDs, and the connection check is replaced with a set of players that left.
+ * @author Eternal Blue Flame
+ */
+public class ServerActionQueueTest {
+
+    /**the entity IDs of the players that left.*/
+    private final Set<Integer> disconnected = new HashSet<>();
+    private ServerActionQueue.ConnectionCheck connections;
+
+    @Before
+    public void setup(){
+        connections = ServerActionQueue.connections;
+        ServerActionQueue.connections = new ServerActionQueue.ConnectionCheck(){
+            @Override
+            boolean isConnected(int playerId, EntityPlayerMP player){
+                synchronized (disconnected){
+                    return !disconnected.contains(playerId);
+                }
+            }
+        };
+        //anything left over from another test.
+        ServerActionQueue.clear();
+    }
+
+    @After
+    public void restore(){
+        ServerActionQueue.clear();
+        ServerActionQueue.connections = connections;
+    }
+
+    @Test
+    public void floodFromOneThreadIsLimited(){
+        long[] before = counts();
+        AtomicIntegerArray runs = new AtomicIntegerArray(150 * 50);
+        int sent =0;
+        //150 players, each sending 50 different keys 3 times over, in one tick, under the queue limit so only the player limit drops them.
+        for(int repeat=0; repeat<3; repeat++){
+            for(int player=0; player<150; player++){
+                for(int key=0; key<50; key++){
+                    ServerActionQueue.add(player, null, new Counted(key, runs, player * 50 + key));
+                    sent++;
+                }
+            }
+        }
+        assertTrue(ServerActionQueue.getQueueDepth() <= ServerActionQueue.MAX_QUEUED);
+        assertEquals(150 * ServerActionQueue.MAX_PER_PLAYER, ServerActionQueue.getQueueDepth());
+        ServerActionQueue.drain();
+        assertEquals(0, ServerActionQueue.getQueueDepth());
+
+        for(int player=0; player<150; player++){
+            int ran =0;
+            for(int key=0; key<50; key++){
+                assertTrue(runs.get(player * 50 + key) <= 1);
+                ran += runs.get(player * 50 + key);
+            }
+            assertEquals(ServerActionQueue.MAX_PER_PLAYER, ran);
+        }
+        assertAccounted(before, sent);
+    }
+
+    @Test
+    public void queueLimitHoldsAcrossPlayers(){
+        long[] before = counts();
+        AtomicIntegerArray runs = new AtomicIntegerArray(1);
+        int sent =0;
+        //more players than the queue can take even at one action each.
+        for(int player=0; player<ServerActionQueue.MAX_QUEUED + 500; player++){
+            ServerActionQueue.add(player, null, new Counted(1, runs, 0));
+            sent++;
+        }
+        assertEquals(ServerActionQueue.MAX_QUEUED, ServerActionQueue.getQueueDepth());
+        ServerActionQueue.drain();
+        assertEquals(ServerActionQueue.MAX_QUEUED, runs.get(0));
+        assertAccounted(before, sent);
+    }
+
+    @Test
+    public void limitsResetEachTick(){
+        AtomicIntegerArray runs = new AtomicIntegerArray(1);
+        for(int tick=0; tick<5; tick++){
+            for(int i=0; i<ServerActionQueue.MAX_PER_PLAYER * 2; i++){
+                ServerActionQueue.add(7, null, new Counted(i, runs, 0));
+            }
+            ServerActionQueue.drain();
+        }
+        assertEquals(ServerActionQueue.MAX_PER_PLAYER * 5, runs.get(0));
+    }
+
+    @Test
+    public void floodFromNetworkThreadsWhileTheServerTicks() throws InterruptedException {
+        long[] before = counts();
+        final int threads = 8, players = 200, packets = 20000;
+        final AtomicIntegerArray runs = new AtomicIntegerArray(threads * packets);
+        final AtomicInteger sent = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1), done = new CountDownLatch(threads);
+        for(int t=0; t<threads; t++){
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run(){
+                    try {
+                        start.await();
+                        for(int i=0; i<packets; i++){
+                            //each action is unique, so one that ran twice shows up in it's own count.
+                            ServerActionQueue.add((thread * 31 + i) % players, null,
+                                    new Counted(((long) thread << 32) | i, runs, thread * packets + i));
+                            sent.incrementAndGet();
+                        }
+                    } catch (InterruptedException ignored){
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        //the server thread, ticking until the network threads are done.
+        while(done.getCount() > 0){
+            ServerActionQueue.drain();
+            assertTrue(ServerActionQueue.getQueueDepth() <= ServerActionQueue.MAX_QUEUED);
+        }
+        done.await();
+        ServerActionQueue.drain();
+
+        int ran =0;
+        for(int i=0; i<runs.length(); i++){
+            assertTrue("action " + i + " ran " + runs.get(i) + " times", runs.get(i) <= 1);
+            ran += runs.get(i);
+        }
+        assertEquals(ran, ServerActionQueue.getProcessedCount() - before[0]);
+        assertAccounted(before, sent.get());
+    }
+
+    @Test
+    public void actionsFromPlayersThatLeftAreDropped(){
+        long[] before = counts();
+        AtomicIntegerArray runs = new AtomicIntegerArray(10);
+        for(int player=0; player<10; player++){
+            ServerActionQueue.add(player, null, new Counted(1, runs, player));
+        }
+        //they left after the packet came in, but before the tick.
+        synchronized (disconnected){
+            disconnected.add(3);
+            disconnected.add(8);
+        }
+        ServerActionQueue.drain();
+        for(int player=0; player<10; player++){
+            assertEquals(player==3 || player==8 ? 0 : 1, runs.get(player));
+        }
+        assertEquals(2, ServerActionQueue.getDroppedCount() - before[2]);
+        assertAccounted(before, 10);
+    }
+
+    @Test
+    public void aThrowingActionDoesNotStopTheRest(){
+        final AtomicIntegerArray runs = new AtomicIntegerArray(3);
+        ServerActionQueue.add(1, null, new Counted(1, runs, 0));
+        ServerActionQueue.add(1, null, new ServerActionQueue.Action() {
+            @Override
+            public long getActionKey(){return 2;}
+            @Override
+            public void process(EntityPlayerMP player){
+                runs.incrementAndGet(1);
+                throw new IllegalStateException("bad packet");
+            }
+        });
+        ServerActionQueue.add(1, null, new Counted(3, runs, 2));
+        ServerActionQueue.drain();
+        assertEquals(1, runs.get(0));
+        assertEquals(1, runs.get(1));
+        assertEquals(1, runs.get(2));
+    }
+
+
+    /**@return the processed, coalesced and dropped counts, the statistics are kept for the life of the server, so the tests compare the change.*/
+    private static long[] counts(){
+        return new long[]{ServerActionQueue.getProcessedCount(), ServerActionQueue.getCoalescedCount(), ServerActionQueue.getDroppedCount()};
+    }
+
+    /**checks every action sent since the counts were taken was either run, coalesced or dropped, and none are still waiting.*/
+    private static void assertAccounted(long[] before, int sent){
+        long[] after = counts();
+        assertEquals(0, ServerActionQueue.getQueueDepth());
+        assertEquals(sent, (after[0] - before[0]) + (after[1] - before[1]) + (after[2] - before[2]));
+    }
+
+    /**an action that counts how many times it was run.*/
+    private static class Counted implements ServerActionQueue.Action {
+        private final long key;
+        private final AtomicIntegerArray runs;
+        private final int index;
+        private Counted(long key, AtomicIntegerArray runs, int index){
+            this.key = key;
+            this.runs = runs;
+            this.index = index;
+        }
+        @Override
+        public long getActionKey(){return key;}
+        @Override
+        public void process(EntityPlayerMP player){
+            runs.incrementAndGet(index);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package ebf.tim.utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Tick profiler tests</h1>
+ * records made up section times, so the results are known, and checks the windows, percentiles and CSV dump.
+ * the times go in through record, the same as end does with the time it measured, so there's no world or clock.
+ * @author Eternal Blue Flame
+ */
+public class TickProfilerTest {
+
+    @Before
+    public void setup(){
+        TickProfiler.reset();
+        TickProfiler.enabled = true;
+    }
+
+    @After
+    public void restore(){
+        TickProfiler.enabled = false;
+        TickProfiler.reset();
+    }
+
+    @Test
+    public void disabledRecordsNothing(){
+        TickProfiler.enabled = false;
+        //the world isn't looked at when it's off, so the server can start sections before it has one.
+        assertEquals(0, TickProfiler.start(null));
+        TickProfiler.end(TickProfiler.Section.FUEL, 0);
+        TickProfiler.endTick();
+        assertEquals(0, TickProfiler.getTicks());
+        assertEquals(0, TickProfiler.getWindow(TickProfiler.Section.FUEL).size());
+    }
+
+    @Test
+    public void sectionTimesAreAddedUpOverATick(){
+        TickProfiler.record(TickProfiler.Section.BOGIES, 1000, null);
+        TickProfiler.record(TickProfiler.Section.BOGIES, 2500, null);
+        TickProfiler.record(TickProfiler.Section.SYNC, 700, null);
+        TickProfiler.endTick();
+        TickProfiler.record(TickProfiler.Section.BOGIES, 10, null);
+        TickProfiler.endTick();
+
+        TickProfiler.Window bogies = TickProfiler.getWindow(TickProfiler.Section.BOGIES);
+        assertEquals(2, TickProfiler.getTicks());
+        assertEquals(2, bogies.size());
+        assertEquals(3500, bogies.max());
+        assertEquals((3500 + 10) / 2, bogies.mean());
+        //a section that didn't run still gets a sample for the tick, of 0.
+        assertEquals(2, TickProfiler.getWindow(TickProfiler.Section.FUEL).size());
+        assertEquals(0, TickProfiler.getWindow(TickProfiler.Section.FUEL).max());
+        assertEquals(700, TickProfiler.getWindow(TickProfiler.Section.SYNC).max());
+    }
+
+    @Test
+    public void percentilesAreTheNearestRank(){
+        //1 to 100 in a scrambled order, so the window has to sort them.
+        for(int i=0; i<100; i++){
+            TickProfiler.record(TickProfiler.Section.POSITION, (i * 37) % 100 + 1, null);
+            TickProfiler.endTick();
+        }
+        TickProfiler.Window window = TickProfiler.getWindow(TickProfiler.Section.POSITION);
+        assertEquals(1, window.percentile(0));
+        assertEquals(1, window.percentile(1));
+        assertEquals(50, window.percentile(50));
+        assertEquals(95, window.percentile(95));
+        assertEquals(99, window.percentile(99));
+        assertEquals(100, window.percentile(100));
+        assertEquals(100, window.max());
+        assertEquals(50, window.mean());
+    }
+
+    @Test
+    public void emptyWindowsAreAllZero(){
+        TickProfiler.Window window = TickProfiler.getWindow(TickProfiler.Section.LINKS);
+        assertEquals(0, window.size());
+        assertEquals(0, window.percentile(50));
+        assertEquals(0, window.mean());
+        assertEquals(0, window.max());
+    }
+
+    @Test
+    public void theWindowOnlyKeepsTheLastTicks(){
+        //a slow minute, then a full window of fast ticks, the slow ones have to be gone.
+        for(int i=0; i<TickProfiler.WINDOW; i++){
+            TickProfiler.record(TickProfiler.Section.COLLISION, 1000000, null);
+            TickProfiler.endTick();
+        }
+        for(int i=0; i<TickProfiler.WINDOW; i++){
+            TickProfiler.record(TickProfiler.Section.COLLISION, 20 + i % 10, null);
+            TickProfiler.endTick();
+        }
+        TickProfiler.Window window = TickProfiler.getWindow(TickProfiler.Section.COLLISION);
+        assertEquals(TickProfiler.WINDOW, window.size());
+        assertEquals(29, window.max());
+        assertEquals(20, window.percentile(0));
+        assertEquals(2 * TickProfiler.WINDOW, TickProfiler.getTicks());
+    }
+
+    @Test
+    public void resetDropsEverything(){
+        TickProfiler.record(TickProfiler.Section.TRANSPORT, 5000, null);
+        TickProfiler.endTick();
+        //recorded but not ended yet, that has to go as well.
+        TickProfiler.record(TickProfiler.Section.TRANSPORT, 5000, null);
+        TickProfiler.reset();
+        TickProfiler.endTick();
+        assertEquals(1, TickProfiler.getTicks());
+        assertEquals(0, TickProfiler.getWindow(TickProfiler.Section.TRANSPORT).max());
+        assertEquals(0, TickProfiler.getConsists().size());
+    }
+
+    @Test
+    public void csvHasARowForEverySectionInMicroseconds() throws IOException {
+        for(int i=1; i<=10; i++){
+            TickProfiler.record(TickProfiler.Section.ACCELERATION, i * 1000, null);
+            TickProfiler.endTick();
+        }
+        File folder = Files.createTempDirectory("timprofiler").toFile();
+        File file = new File(folder, "reports/profile.csv");
+        try {
+            TickProfiler.writeCSV(file);
+            List<String> lines = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+            assertEquals("type,name,samples,mean_us,p50_us,p95_us,p99_us,max_us", lines.get(0));
+            assertEquals(1 + TickProfiler.Section.values().length, lines.size());
+            assertTrue(lines.contains("section,acceleration,10,5,5,10,10,10"));
+            assertTrue(lines.contains("section,fuel,10,0,0,0,0,0"));
+        } finally {
+            file.delete();
+            file.getParentFile().delete();
+            folder.delete();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ebf.tim.utility;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Wagon backup writer tests</h1>
+ * stress tests the background writer with more wagons than the queue holds, and checks the ones that don't fit are dropped
+ *     rather than written on the calling thread, every file that's written has the right backup, and no temp files are left.
+ * @author Eternal Blue Flame
+ */
+public class WagonBackupWriterTest {
+
+    private File folder;
+
+    @Before
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("timbackups").toFile();
+    }
+
+    @After
+    public void cleanup(){
+        File[] files = folder.listFiles();
+        if(files != null){
+            for(File file : files){
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private static UUID uuid(int i){
+        return new UUID(0x7153L, i);
+    }
+
+    private File file(int i){
+        return new File(folder, "wagon" + i + ".txt");
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    @Test
+    public void backsUpFiveThousandWagons() throws IOException {
+        WagonBackupWriter.flush();
+        long written = WagonBackupWriter.getWrittenCount(), dropped = WagonBackupWriter.getDroppedCount();
+        for(int i=0; i<5000; i++){
+            WagonBackupWriter.queue(uuid(i), file(i), "wagon " + i);
+            assertTrue(WagonBackupWriter.getQueueDepth() <= WagonBackupWriter.MAX_QUEUED);
+        }
+        WagonBackupWriter.flush();
+
+        assertEquals(0, WagonBackupWriter.getQueueDepth());
+        //this is more than the queue holds, so the ones that didn't fit were dropped, not written here.
+        assertEquals(5000, (WagonBackupWriter.getWrittenCount() - written) + (WagonBackupWriter.getDroppedCount() - dropped));
+        assertTrue(WagonBackupWriter.getDroppedCount() > dropped);
+        int files =0;
+        for(int i=0; i<5000; i++){
+            if(file(i).exists()){
+                assertEquals("wagon " + i, read(file(i)));
+                files++;
+            }
+        }
+        assertEquals(WagonBackupWriter.getWrittenCount() - written, files);
+        //no temp files were left behind.
+        assertEquals(files, folder.listFiles().length);
+        assertTrue(WagonBackupWriter.getAverageWriteMillis() > 0);
+        assertTrue(WagonBackupWriter.getMaxWriteMillis() >= WagonBackupWriter.getAverageWriteMillis());
+    }
+
+    @Test
+    public void everyBackupIsWrittenCoalescedOrDropped() throws IOException {
+        WagonBackupWriter.flush();
+        long written = WagonBackupWriter.getWrittenCount(), coalesced = WagonBackupWriter.getCoalescedCount(),
+                dropped = WagonBackupWriter.getDroppedCount();
+        //each round is more than the queue holds, the wagons already waiting are replaced, the rest are dropped until there's room.
+        for(int round=0; round<10; round++){
+            for(int i=0; i<WagonBackupWriter.MAX_QUEUED * 2; i++){
+                WagonBackupWriter.queue(uuid(i), file(i), "round " + round);
+            }
+        }
+        WagonBackupWriter.flush();
+
+        assertEquals(10 * WagonBackupWriter.MAX_QUEUED * 2, (WagonBackupWriter.getWrittenCount() - written) +
+                (WagonBackupWriter.getCoalescedCount() - coalesced) + (WagonBackupWriter.getDroppedCount() - dropped));
+        for(File file : folder.listFiles()){
+            assertTrue(file.getName(), file.getName().endsWith(".txt"));
+            assertTrue(read(file).startsWith("round "));
+        }
+
+        //once there's room, a wagon is backed up again like nothing happened.
+        for(int i=0; i<WagonBackupWriter.MAX_QUEUED; i++){
+            WagonBackupWriter.queue(uuid(i), file(i), "after");
+        }
+        WagonBackupWriter.flush();
+        for(int i=0; i<WagonBackupWriter.MAX_QUEUED; i++){
+            assertEquals("after", read(file(i)));
+        }
+    }
+
+    @Test
+    public void deletesAreNeverDropped(){
+        for(int i=0; i<WagonBackupWriter.MAX_QUEUED * 2; i++){
+            WagonBackupWriter.queue(uuid(i), file(i), "wagon " + i);
+        }
+        WagonBackupWriter.flush();
+        for(int i=0; i<WagonBackupWriter.MAX_QUEUED * 2; i++){
+            WagonBackupWriter.queue(uuid(i), file(i), null);
+        }
+        WagonBackupWriter.flush();
+        assertEquals(0, folder.listFiles().length);
+    }
+
+    @Test
+    public void repeatedBackupsAreCoalesced() throws IOException {
+        WagonBackupWriter.flush();
+        long coalesced = WagonBackupWriter.getCoalescedCount(), written = WagonBackupWriter.getWrittenCount();
+        for(int i=0; i<100; i++){
+            WagonBackupWriter.queue(uuid(-1), file(-1), "backup " + i);
+        }
+        WagonBackupWriter.flush();
+        assertEquals("backup 99", read(file(-1)));
+        //every backup was either written, or replaced in the queue by a newer one.
+        assertEquals(100, (WagonBackupWriter.getWrittenCount() - written) + (WagonBackupWriter.getCoalescedCount() - coalesced));
+    }
+
+    @Test
+    public void aNullBackupDeletesTheFile(){
+        WagonBackupWriter.queue(uuid(-2), file(-2), "removed soon");
+        WagonBackupWriter.flush();
+        assertTrue(file(-2).exists());
+        WagonBackupWriter.queue(uuid(-2), file(-2), null);
+        WagonBackupWriter.flush();
+        assertFalse(file(-2).exists());
+    }
+}
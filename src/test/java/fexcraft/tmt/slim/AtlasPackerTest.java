@@ -0,0 +1,145 @@
+package fexcraft.tmt.slim;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Atlas packer tests</h1>
+ * packs skins onto pages and checks where they land, how much of the page is counted as used,
+ *     that freed space is reused, and that fits always agrees with what insert would do.
+ * @author Eternal Blue Flame
+ */
+public class AtlasPackerTest {
+
+    private static final float DELTA = 0.000001f;
+
+    @Test
+    public void occupancyOnlyCountsTheSkins(){
+        AtlasPacker packer = new AtlasPacker(256);
+        assertEquals(0, packer.getOccupancy(), 0);
+        AtlasPacker.Region first = packer.insert(64, 32);
+        AtlasPacker.Region second = packer.insert(128, 64);
+        assertEquals(2, packer.getRegionCount());
+        //the padding around them isn't counted.
+        assertEquals((64 * 32 + 128 * 64) / (256f * 256f), packer.getOccupancy(), DELTA);
+
+        packer.remove(first);
+        assertEquals(1, packer.getRegionCount());
+        assertEquals((128 * 64) / (256f * 256f), packer.getOccupancy(), DELTA);
+        //removing it again, or a region from another page, changes nothing.
+        packer.remove(first);
+        packer.remove(new AtlasPacker(256).insert(16, 16));
+        assertEquals(1, packer.getRegionCount());
+        packer.remove(second);
+        assertEquals(0, packer.getOccupancy(), 0);
+    }
+
+    @Test
+    public void skinsArePlacedInShelves(){
+        AtlasPacker packer = new AtlasPacker(256);
+        AtlasPacker.Region first = packer.insert(64, 32);
+        assertEquals(1, first.x);
+        assertEquals(1, first.y);
+        //the same height goes next to it, after both of their padding.
+        AtlasPacker.Region next = packer.insert(64, 32);
+        assertEquals(67, next.x);
+        assertEquals(1, next.y);
+        //a bit shorter still uses the shelf, it wastes less than a quarter of it.
+        AtlasPacker.Region shorter = packer.insert(32, 26);
+        assertEquals(133, shorter.x);
+        assertEquals(1, shorter.y);
+        //much shorter, or taller, starts a new shelf under it.
+        AtlasPacker.Region flat = packer.insert(32, 8);
+        assertEquals(1, flat.x);
+        assertEquals(35, flat.y);
+        AtlasPacker.Region tall = packer.insert(32, 64);
+        assertEquals(1, tall.x);
+        assertEquals(45, tall.y);
+
+        //the UVs put the 0 to 1 of the skin on it's region.
+        assertEquals(67 / 256f, next.u, DELTA);
+        assertEquals(1 / 256f, next.v, DELTA);
+        assertEquals(64 / 256f, next.scaleU, DELTA);
+        assertEquals(32 / 256f, next.scaleV, DELTA);
+        assertSame(packer, next.getPacker());
+    }
+
+    @Test
+    public void aFullPageHasNoRoom(){
+        AtlasPacker packer = new AtlasPacker(64);
+        //with the padding, four of these fill the page.
+        for(int i=0; i<4; i++){
+            assertTrue(packer.fits(30, 30));
+            assertNotNull(packer.insert(30, 30));
+        }
+        assertFalse(packer.fits(30, 30));
+        assertNull(packer.insert(30, 30));
+        assertFalse(packer.fits(1, 1));
+        //too big for an empty page too, the padding counts.
+        assertFalse(new AtlasPacker(64).fits(63, 10));
+        assertNull(new AtlasPacker(64).insert(63, 10));
+        assertEquals(4 * 30 * 30 / (64f * 64f), packer.getOccupancy(), DELTA);
+    }
+
+    @Test
+    public void freedSpaceIsReusedBySkinsOfTheSameSize(){
+        AtlasPacker packer = new AtlasPacker(64);
+        AtlasPacker.Region[] regions = new AtlasPacker.Region[4];
+        for(int i=0; i<regions.length; i++){
+            regions[i] = packer.insert(30, 30);
+        }
+        packer.remove(regions[2]);
+        //a smaller skin can't use it, only the same size.
+        assertFalse(packer.fits(16, 16));
+        assertTrue(packer.fits(30, 30));
+        AtlasPacker.Region again = packer.insert(30, 30);
+        assertEquals(regions[2].x, again.x);
+        assertEquals(regions[2].y, again.y);
+        assertEquals(4, packer.getRegionCount());
+    }
+
+    @Test
+    public void fitsAgreesWithInsert(){
+        Random rand = new Random(25);
+        for(int page=0; page<20; page++){
+            AtlasPacker packer = new AtlasPacker(512);
+            for(int i=0; i<200; i++){
+                //mostly the usual skin sizes, with some odd ones.
+                int width = rand.nextBoolean() ? 64 << rand.nextInt(3) : 1 + rand.nextInt(200);
+                int height = rand.nextBoolean() ? width / 2 : 1 + rand.nextInt(200);
+                int regions = packer.getRegionCount();
+                float occupancy = packer.getOccupancy();
+                boolean fits = packer.fits(width, height);
+                //asking doesn't place anything.
+                assertEquals(regions, packer.getRegionCount());
+                assertEquals(occupancy, packer.getOccupancy(), 0);
+                AtlasPacker.Region region = packer.insert(width, height);
+                assertEquals(width + "x" + height, fits, region != null);
+                if(region != null && rand.nextInt(4) == 0){
+                    packer.remove(region);
+                }
+            }
+            assertTrue(packer.getOccupancy() > 0 && packer.getOccupancy() <= 1);
+        }
+    }
+
+    @Test
+    public void paddingCopiesTheEdges(){
+        AtlasPacker.Region region = new AtlasPacker(16).insert(2, 2);
+        int[] padded = AtlasPacker.pad(region, new int[]{0, 1, 2, 3, 4}, 1);
+        assertArrayEquals(new int[]{
+                1, 1, 2, 2,
+                1, 1, 2, 2,
+                3, 3, 4, 4,
+                3, 3, 4, 4}, padded);
+    }
+}
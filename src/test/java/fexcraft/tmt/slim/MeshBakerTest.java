@@ -0,0 +1,169 @@
+package fexcraft.tmt.slim;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Mesh baker tests</h1>
+ * checks the vertex counts and buffer contents of baked parts, the baker is only math so this runs without GL.
+ * @author Eternal Blue Flame
+ */
+public class MeshBakerTest {
+
+    private static final float DELTA = 0.0001f;
+
+    private static ModelRendererTurbo box(float x, float y, float z, int w, int h, int d){
+        ModelRendererTurbo part = new ModelRendererTurbo("box", 0, 0, 64, 32);
+        part.addBox(x, y, z, w, h, d);
+        return part;
+    }
+
+    /**@return the min x, y, z, then max x, y, z, of the baked positions.*/
+    private static float[] bounds(float[] data){
+        float[] bounds = new float[]{Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for(int i=0; i<data.length; i+=MeshBaker.STRIDE){
+            for(int axis=0; axis<3; axis++){
+                bounds[axis] = Math.min(bounds[axis], data[i + axis]);
+                bounds[axis + 3] = Math.max(bounds[axis + 3], data[i + axis]);
+            }
+        }
+        return bounds;
+    }
+
+    @Test
+    public void boxBakesToTwelveTriangles(){
+        List<ModelRendererTurbo> parts = Collections.singletonList(box(0, 0, 0, 2, 4, 8));
+        assertEquals(36, MeshBaker.countVertices(parts));
+        assertEquals(36 * MeshBaker.STRIDE, MeshBaker.bake(parts, 0.0625f).length);
+    }
+
+    @Test
+    public void emptyPartsBakeToAnEmptyArray(){
+        assertEquals(0, MeshBaker.bake(new ArrayList<ModelRendererTurbo>(), 0.0625f).length);
+        assertEquals(0, MeshBaker.bake(Collections.singletonList(new ModelRendererTurbo("empty")), 0.0625f).length);
+    }
+
+    @Test
+    public void positionsAreScaledAndMovedToTheRotationPoint(){
+        ModelRendererTurbo part = box(0, 0, 0, 2, 4, 8);
+        part.setRotationPoint(16, 0, -16);
+        float[] bounds = bounds(MeshBaker.bake(Collections.singletonList(part), 0.0625f));
+        assertEquals(1, bounds[0], DELTA);
+        assertEquals(0, bounds[1], DELTA);
+        assertEquals(-1, bounds[2], DELTA);
+        assertEquals(1.125f, bounds[3], DELTA);
+        assertEquals(0.25f, bounds[4], DELTA);
+        assertEquals(-0.5f, bounds[5], DELTA);
+    }
+
+    @Test
+    public void rotationMatchesGLRotateOnY(){
+        //glRotatef(90, 0, 1, 0) takes x to -z, and z to x.
+        ModelRendererTurbo part = box(0, 0, 0, 2, 4, 8);
+        part.rotateAngleY = 90;
+        float[] data = MeshBaker.bake(Collections.singletonList(part), 1);
+        float[] bounds = bounds(data);
+        assertEquals(0, bounds[0], DELTA);
+        assertEquals(0, bounds[1], DELTA);
+        assertEquals(-2, bounds[2], DELTA);
+        assertEquals(8, bounds[3], DELTA);
+        assertEquals(4, bounds[4], DELTA);
+        assertEquals(0, bounds[5], DELTA);
+        //the normals are rotated with it, so they stay flat on X and Z.
+        for(int i=0; i<data.length; i+=MeshBaker.STRIDE){
+            assertUnitAxis(data, i + 5);
+        }
+    }
+
+    @Test
+    public void normalsAreUnitLengthAndPerpendicularToTheFace(){
+        float[] data = MeshBaker.bake(Collections.singletonList(box(-1, -2, -3, 2, 4, 8)), 0.0625f);
+        int triangle = MeshBaker.STRIDE * 3;
+        for(int i=0; i<data.length; i+=triangle){
+            assertUnitAxis(data, i + 5);
+            for(int v=1; v<3; v++){
+                //every edge of the triangle is perpendicular to it's normal.
+                float ex = data[i + v * MeshBaker.STRIDE] - data[i];
+                float ey = data[i + v * MeshBaker.STRIDE + 1] - data[i + 1];
+                float ez = data[i + v * MeshBaker.STRIDE + 2] - data[i + 2];
+                assertEquals(0, ex * data[i + 5] + ey * data[i + 6] + ez * data[i + 7], DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void polygonsAreSplitAsAFan(){
+        ModelRendererTurbo part = new ModelRendererTurbo("pentagon");
+        TexturedVertex[] verts = new TexturedVertex[]{
+                new TexturedVertex(0, 0, 0, 0.5f, 0),
+                new TexturedVertex(1, 0, 0, 1, 0.4f),
+                new TexturedVertex(1, 1, 0, 0.8f, 1),
+                new TexturedVertex(0, 2, 0, 0.2f, 1),
+                new TexturedVertex(-1, 1, 0, 0, 0.4f)};
+        part.copyTo(Collections.singletonList(new TexturedPolygon(new ArrayList<>(Arrays.asList(verts)))));
+        float[] data = MeshBaker.bake(Collections.singletonList(part), 1);
+        assertEquals(9 * MeshBaker.STRIDE, data.length);
+        //triangle i is vertex 0, i+1, i+2, with the UVs carried over as they are.
+        for(int t=0; t<3; t++){
+            int[] order = new int[]{0, t + 1, t + 2};
+            for(int v=0; v<3; v++){
+                int index = (t * 3 + v) * MeshBaker.STRIDE;
+                TexturedVertex vert = verts[order[v]];
+                assertEquals(vert.vector3F.xCoord, data[index], DELTA);
+                assertEquals(vert.vector3F.yCoord, data[index + 1], DELTA);
+                assertEquals(vert.vector3F.zCoord, data[index + 2], DELTA);
+                assertEquals(vert.textureX, data[index + 3], DELTA);
+                assertEquals(vert.textureY, data[index + 4], DELTA);
+                assertEquals(1, Math.abs(data[index + 7]), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void hiddenAndUnlitPartsAreNotBaked(){
+        ModelRendererTurbo hidden = box(0, 0, 0, 1, 1, 1), unlit = box(0, 0, 0, 1, 1, 1);
+        hidden.showModel = false;
+        unlit.ignoresLighting = true;
+        List<ModelRendererTurbo> parts = new ArrayList<>();
+        parts.add(hidden);
+        parts.add(unlit);
+        parts.add(null);
+        parts.add(box(0, 0, 0, 1, 1, 1));
+        assertEquals(36, MeshBaker.countVertices(parts));
+        assertEquals(36 * MeshBaker.STRIDE, MeshBaker.bake(parts, 1).length);
+    }
+
+    @Test
+    public void detailSizeDropsRivetsButNotPanels(){
+        ModelRendererTurbo rivet = box(0, 0, 0, 1, 1, 1), panel = box(0, 0, 0, 16, 16, 1), pipe = box(0, 0, 0, 1, 1, 32);
+        assertEquals(1, MeshBaker.getDetailSize(rivet), DELTA);
+        assertEquals(16, MeshBaker.getDetailSize(panel), DELTA);
+        assertEquals(1, MeshBaker.getDetailSize(pipe), DELTA);
+
+        List<ModelRendererTurbo> parts = new ArrayList<>();
+        parts.add(rivet);
+        parts.add(panel);
+        parts.add(pipe);
+        assertEquals(108, MeshBaker.countVertices(parts, 0));
+        assertEquals(36, MeshBaker.countVertices(parts, 2));
+        float[] data = MeshBaker.bake(parts, 1, 2);
+        assertEquals(36 * MeshBaker.STRIDE, data.length);
+        float[] bounds = bounds(data);
+        assertEquals(16, bounds[3], DELTA);
+        assertEquals(16, bounds[4], DELTA);
+    }
+
+    /**checks the normal at the index is a unit vector on one axis, which every face of an unrotated or square rotated box is.*/
+    private static void assertUnitAxis(float[] data, int index){
+        float x = Math.abs(data[index]), y = Math.abs(data[index + 1]), z = Math.abs(data[index + 2]);
+        assertEquals(1, x * x + y * y + z * z, DELTA);
+        assertTrue(Math.max(x, Math.max(y, z)) > 1 - DELTA);
+    }
+}
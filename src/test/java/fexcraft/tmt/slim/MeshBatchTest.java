@@ -0,0 +1,162 @@
+package fexcraft.tmt.slim;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Mesh batch tests</h1>
+ * checks the instances are grouped by mesh, texture and atlas region, that the transforms worked out on the CPU
+ *     are the same as GL would make them, and that each instance keeps the transform and lightmap it's drawn with.
+ * nothing here needs GL, only the grouping and the math are tested.
+ * @author Eternal Blue Flame
+ */
+public class MeshBatchTest {
+
+    private static final float DELTA = 0.00001f;
+
+    @Before
+    public void setup(){
+        MeshBatch.clear();
+        MeshBatch.begin();
+    }
+
+    @After
+    public void cleanup(){
+        MeshBatch.clear();
+    }
+
+    @Test
+    public void instancesOfTheSameMeshAndSkinShareAGroup(){
+        BakedMesh first = triangle(), second = triangle();
+        AtlasPacker.Region region = new AtlasPacker(256).insert(64, 32);
+        for(int i=0; i<3; i++){
+            assertTrue(MeshBatch.add(first, 1, null, 0, 0));
+        }
+        assertTrue(MeshBatch.add(first, 2, null, 0, 0));
+        assertTrue(MeshBatch.add(second, 1, null, 0, 0));
+        assertTrue(MeshBatch.add(second, 1, null, 0, 0));
+        //the same texture on a different part of the atlas is a different group.
+        assertTrue(MeshBatch.add(first, 1, region, 0, 0));
+        assertEquals(7, MeshBatch.getInstanceCount());
+        assertEquals(4, MeshBatch.getGroupCount());
+
+        MeshBatch.clear();
+        assertEquals(0, MeshBatch.getInstanceCount());
+        assertEquals(0, MeshBatch.getGroupCount());
+    }
+
+    @Test
+    public void emptyAndDeletedMeshesAreSkipped(){
+        BakedMesh deleted = triangle();
+        deleted.delete();
+        assertTrue(MeshBatch.add(new BakedMesh(new float[0]), 1, null, 0, 0));
+        assertTrue(MeshBatch.add(deleted, 1, null, 0, 0));
+        assertEquals(0, MeshBatch.getInstanceCount());
+    }
+
+    @Test
+    public void nothingIsAddedWhenNotCapturing(){
+        MeshBatch.end();
+        assertFalse(MeshBatch.add(triangle()));
+        assertEquals(0, MeshBatch.getInstanceCount());
+    }
+
+    @Test
+    public void transformsMatchGL(){
+        float[] m = new float[16];
+        MeshBatch.identity(m, 0);
+        MeshBatch.translate(m, 0, 1, 2, 3);
+        MeshBatch.rotate(m, 0, 90, 0, 1, 0);
+        //glTranslate then glRotate turns the point first, so 1 on X turns to -1 on Z, then moves.
+        assertPoint(m, 1, 0, 0, 1, 2, 2);
+        MeshBatch.rotate(m, 0, 90, 0, 0, 2);
+        assertPoint(m, 1, 0, 0, 1, 3, 3);
+
+        //an axis that isn't one of the three, a third of a turn around the diagonal swaps the axes around.
+        MeshBatch.identity(m, 0);
+        MeshBatch.rotate(m, 0, 120, 1, 1, 1);
+        assertPoint(m, 1, 0, 0, 0, 1, 0);
+        assertPoint(m, 0, 0, 1, 1, 0, 0);
+    }
+
+    @Test
+    public void pushAndPopKeepTheTransformUnderneath(){
+        float[] stack = MeshBatch.getStack();
+        MeshBatch.translate(stack, MeshBatch.getStackOffset(), 5, 0, 0);
+        MeshBatch.pushInstance();
+        MeshBatch.rotate(stack, MeshBatch.getStackOffset(), 90, 0, 1, 0);
+        MeshBatch.translate(stack, MeshBatch.getStackOffset(), 0, 0, 1);
+        assertPoint(stack, MeshBatch.getStackOffset(), 0, 0, 0, 6, 0, 0);
+        MeshBatch.popInstance();
+        assertPoint(stack, MeshBatch.getStackOffset(), 0, 0, 0, 5, 0, 0);
+        //popping past the bottom stays at the bottom, the same as begin left it.
+        MeshBatch.popInstance();
+        assertPoint(stack, MeshBatch.getStackOffset(), 0, 0, 0, 5, 0, 0);
+    }
+
+    @Test
+    public void instancesArePackedWithTheirTransformAndLightmap(){
+        BakedMesh mesh = triangle();
+        float[] stack = MeshBatch.getStack();
+        MeshBatch.translate(stack, MeshBatch.getStackOffset(), 10, 20, 30);
+        MeshBatch.add(mesh, 1, null, 240, 15);
+        MeshBatch.pushInstance();
+        MeshBatch.rotate(stack, MeshBatch.getStackOffset(), 90, 0, 1, 0);
+        MeshBatch.add(mesh, 1, null, 0, 120);
+        MeshBatch.popInstance();
+        //a different texture goes in it's own group, and doesn't change the instances of this one.
+        MeshBatch.add(mesh, 2, null, 15, 15);
+
+        float[] instances = MeshBatch.getInstances(mesh, 1, null);
+        assertEquals(MeshBatch.STRIDE * 2, instances.length);
+        //the first is only moved, the second is turned as well, the transform is what glMultMatrix gets for each of them.
+        assertPoint(instances, 0, 1, 0, 0, 11, 20, 30);
+        assertPoint(instances, MeshBatch.STRIDE, 1, 0, 0, 10, 20, 29);
+        assertEquals(240, instances[16], 0);
+        assertEquals(15, instances[17], 0);
+        assertEquals(0, instances[MeshBatch.STRIDE + 16], 0);
+        assertEquals(120, instances[MeshBatch.STRIDE + 17], 0);
+        assertEquals(MeshBatch.STRIDE, MeshBatch.getInstances(mesh, 2, null).length);
+        assertNull(MeshBatch.getInstances(triangle(), 1, null));
+    }
+
+    @Test
+    public void instancesKeepTheTransformTheyWereAddedWith(){
+        BakedMesh mesh = triangle();
+        float[] stack = MeshBatch.getStack();
+        MeshBatch.translate(stack, MeshBatch.getStackOffset(), 1, 0, 0);
+        MeshBatch.add(mesh, 1, null, 0, 0);
+        MeshBatch.translate(stack, MeshBatch.getStackOffset(), 1, 0, 0);
+        MeshBatch.add(mesh, 1, null, 0, 0);
+        //a new transport starts from nothing again.
+        MeshBatch.begin();
+        MeshBatch.add(mesh, 1, null, 0, 0);
+        assertEquals(3, MeshBatch.getInstanceCount());
+        assertEquals(1, MeshBatch.getGroupCount());
+    }
+
+
+    /**a single triangle with the normal up.*/
+    private static BakedMesh triangle(){
+        return new BakedMesh(new float[]{
+                0, 0, 0, 0, 0, 0, 1, 0,
+                1, 0, 0, 1, 0, 0, 1, 0,
+                0, 0, 1, 0, 1, 0, 1, 0});
+    }
+
+    private static void assertPoint(float[] m, float x, float y, float z, float ex, float ey, float ez){
+        assertPoint(m, 0, x, y, z, ex, ey, ez);
+    }
+
+    private static void assertPoint(float[] m, int o, float x, float y, float z, float ex, float ey, float ez){
+        assertEquals(ex, m[o] * x + m[o + 4] * y + m[o + 8] * z + m[o + 12], DELTA);
+        assertEquals(ey, m[o + 1] * x + m[o + 5] * y + m[o + 9] * z + m[o + 13], DELTA);
+        assertEquals(ez, m[o + 2] * x + m[o + 6] * y + m[o + 10] * z + m[o + 14], DELTA);
+    }
+}
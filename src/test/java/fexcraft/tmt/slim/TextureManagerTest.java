@@ -0,0 +1,62 @@
+package fexcraft.tmt.slim;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h1>Texture manager tests</h1>
+ * checks the binds counted for the debug screen, a bind is only skipped between beginRender and endRender,
+ *     when the texture is already bound and binding isn't forced.
+ * only the counting is tested, the GL bind is left to bindTextureID.
+ * @author Eternal Blue Flame
+ */
+public class TextureManagerTest {
+
+    @After
+    public void cleanup(){
+        TextureManager.endRender();
+    }
+
+    @Test
+    public void bindsOfTheBoundTextureAreSkipped(){
+        long binds = TextureManager.getBindCount(), skipped = TextureManager.getSkippedBindCount();
+        TextureManager.beginRender();
+        assertTrue(TextureManager.trackBind(5, false));
+        assertFalse(TextureManager.trackBind(5, false));
+        assertFalse(TextureManager.trackBind(5, false));
+        assertTrue(TextureManager.trackBind(6, false));
+        assertTrue(TextureManager.trackBind(5, false));
+        assertEquals(binds + 3, TextureManager.getBindCount());
+        assertEquals(skipped + 2, TextureManager.getSkippedBindCount());
+    }
+
+    @Test
+    public void forcedBindsAreNeverSkipped(){
+        long binds = TextureManager.getBindCount(), skipped = TextureManager.getSkippedBindCount();
+        TextureManager.beginRender();
+        for(int i=0; i<4; i++){
+            assertTrue(TextureManager.trackBind(5, true));
+        }
+        assertEquals(binds + 4, TextureManager.getBindCount());
+        assertEquals(skipped, TextureManager.getSkippedBindCount());
+    }
+
+    @Test
+    public void theBoundTextureIsOnlyTrustedWhileRendering(){
+        long binds = TextureManager.getBindCount(), skipped = TextureManager.getSkippedBindCount();
+        //vanilla could have bound anything before this.
+        assertTrue(TextureManager.trackBind(5, false));
+        assertTrue(TextureManager.trackBind(5, false));
+        //or between the last render and this one.
+        TextureManager.beginRender();
+        assertTrue(TextureManager.trackBind(5, false));
+        TextureManager.endRender();
+        assertTrue(TextureManager.trackBind(5, false));
+        assertEquals(binds + 4, TextureManager.getBindCount());
+        assertEquals(skipped, TextureManager.getSkippedBindCount());
+    }
+}
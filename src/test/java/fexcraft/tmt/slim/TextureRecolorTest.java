@@ -0,0 +1,221 @@
+package fexcraft.tmt.slim;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * <h1>Texture recolor tests</h1>
+ * checks the recolor gives the same pixels as the per pixel loop that used to write the PNG,
+ *     which is copied here as it was, on random skins with more colors than the recolor remembers.
+ * the PNG was lossless, so the ints that loop packed are what the texture ended up with.
+ * @author Eternal Blue Flame
+ */
+public class TextureRecolorTest {
+
+    @Test
+    public void matchesTheOldPerPixelRecolor(){
+        Random rand = new Random(1234);
+        for(int skin=0; skin<200; skin++){
+            int[] palette = new int[2 + rand.nextInt(12)];
+            for(int i=0; i<palette.length; i++){
+                palette[i] = rand.nextInt(0x1000000);
+            }
+            byte[] rgba = randomSkin(rand, 64, 32, palette);
+
+            int skinRules = rand.nextInt(4), playerRules = rand.nextInt(3);
+            int[] skinColorsFrom = skinRules==0 && rand.nextBoolean() ? null : new int[skinRules];
+            int[] skinColorsTo = new int[Math.max(skinRules, playerRules)];
+            for(int i=0; i<skinRules; i++){
+                skinColorsFrom[i] = near(rand, palette[rand.nextInt(palette.length)], 8);
+            }
+            for(int i=0; i<skinColorsTo.length; i++){
+                //some are near other colors in the palette, so rules can chain into each other.
+                skinColorsTo[i] = rand.nextBoolean() ? rand.nextInt(0x1000000) : near(rand, palette[rand.nextInt(palette.length)], 8);
+            }
+            List<Integer> colorsFrom = playerRules==0 && rand.nextBoolean() ? null : new ArrayList<Integer>();
+            for(int i=0; i<playerRules; i++){
+                //the player colors are ARGB, the alpha isn't part of the match.
+                colorsFrom.add(near(rand, palette[rand.nextInt(palette.length)], 8) | (rand.nextInt(256) << 24));
+            }
+
+            int[] expected = oldRecolor(rgba, skinColorsFrom, skinColorsTo, colorsFrom);
+            int[] actual = TextureRecolor.recolor(TextureRecolor.fromRGBA(rgba), skinColorsFrom, skinColorsTo, colorsFrom);
+            assertArrayEquals("skin " + skin, expected, actual);
+        }
+    }
+
+    @Test
+    public void aRuleWithoutATargetColorIsSkipped(){
+        Random rand = new Random(4321);
+        int[] palette = new int[]{0x804020, 0x20A040, 0x3030C0};
+        byte[] rgba = randomSkin(rand, 32, 32, palette);
+        //the old loop threw for the second rule, the same as just the first rule is expected now.
+        int[] expected = oldRecolor(rgba, new int[]{0x804020}, new int[]{0x102030}, null);
+        int[] actual = TextureRecolor.recolor(TextureRecolor.fromRGBA(rgba), new int[]{0x804020, 0x20A040}, new int[]{0x102030}, null);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void noRulesOnlyClearsTransparentPixels(){
+        byte[] rgba = randomSkin(new Random(5678), 16, 16, new int[]{0x123456, 0xABCDEF});
+        int[] pixels = TextureRecolor.fromRGBA(rgba);
+        int[] recolored = TextureRecolor.recolor(pixels.clone(), null, null, null);
+        for(int i=0; i<pixels.length; i++){
+            assertEquals(pixels[i]>>>24==0 ? 0 : pixels[i], recolored[i]);
+        }
+    }
+
+    @Test
+    public void fromRGBAReordersToARGB(){
+        assertArrayEquals(new int[]{0x44112233, 0xFF000000},
+                TextureRecolor.fromRGBA(new byte[]{0x11, 0x22, 0x33, 0x44, 0, 0, 0, (byte) 0xFF}));
+    }
+
+    @Test
+    public void signatureChangesWithEveryInput(){
+        long base = TextureRecolor.signature("tim", "skin.png", new int[]{1, 2}, new int[]{3}, Arrays.asList(4), Arrays.asList(5));
+        assertEquals(base, TextureRecolor.signature("tim", "skin.png", new int[]{1, 2}, new int[]{3}, Arrays.asList(4), Arrays.asList(5)));
+        assertNotEquals(base, TextureRecolor.signature("tim", "skin2.png", new int[]{1, 2}, new int[]{3}, Arrays.asList(4), Arrays.asList(5)));
+        assertNotEquals(base, TextureRecolor.signature("tim", "skin.png", new int[]{2, 1}, new int[]{3}, Arrays.asList(4), Arrays.asList(5)));
+        assertNotEquals(base, TextureRecolor.signature("tim", "skin.png", new int[]{1}, new int[]{2, 3}, Arrays.asList(4), Arrays.asList(5)));
+        assertNotEquals(base, TextureRecolor.signature("tim", "skin.png", new int[]{1, 2}, new int[]{3}, Arrays.asList(4), Arrays.asList(6)));
+        assertNotEquals(base, TextureRecolor.signature("ti", "mskin.png", new int[]{1, 2}, new int[]{3}, Arrays.asList(4), Arrays.asList(5)));
+        //null and empty colors recolor the same, so they are the same recolor.
+        assertEquals(TextureRecolor.signature("tim", "skin.png", null, null, null, null),
+                TextureRecolor.signature("tim", "skin.png", new int[0], new int[0], new ArrayList<Integer>(), Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void diskCacheRoundTripsAndRejectsBadFiles() throws IOException {
+        File folder = Files.createTempDirectory("timrecolor").toFile();
+        File file = new File(folder, "cache/skin.bin");
+        try {
+            assertNull(TextureRecolor.readCache(file));
+            int[] pixels = TextureRecolor.fromRGBA(randomSkin(new Random(8765), 8, 4, new int[]{0x808080}));
+            TextureRecolor.writeCache(file, 8, 4, pixels);
+            int[] read = TextureRecolor.readCache(file);
+            assertEquals(8, read[0]);
+            assertEquals(4, read[1]);
+            assertArrayEquals(pixels, Arrays.copyOfRange(read, 2, read.length));
+            assertEquals(1, file.getParentFile().listFiles().length);
+
+            //a cut off file is ignored rather than read with missing pixels.
+            RandomAccessFile cut = new RandomAccessFile(file, "rw");
+            cut.setLength(cut.length() - 4);
+            cut.close();
+            assertNull(TextureRecolor.readCache(file));
+        } finally {
+            file.delete();
+            file.getParentFile().delete();
+            folder.delete();
+        }
+    }
+
+
+    /**a skin of the palette colors with some noise, so there's colors just in and out of range of the rules, and some transparent pixels.*/
+    private static byte[] randomSkin(Random rand, int width, int height, int[] palette){
+        byte[] rgba = new byte[width * height * 4];
+        int color;
+        for(int i=0; i<width * height; i++){
+            color = near(rand, palette[rand.nextInt(palette.length)], rand.nextInt(4) == 0 ? 24 : 2);
+            rgba[i*4] = (byte) (color >> 16);
+            rgba[i*4+1] = (byte) (color >> 8);
+            rgba[i*4+2] = (byte) color;
+            rgba[i*4+3] = (byte) (rand.nextInt(8) == 0 ? 0 : rand.nextInt(8) == 0 ? rand.nextInt(256) : 255);
+        }
+        return rgba;
+    }
+
+    /**@return the RGB color with each channel moved by up to the spread, kept from 0 to 255.*/
+    private static int near(Random rand, int color, int spread){
+        int r = Math.max(0, Math.min(255, ((color >> 16) & 0xFF) + rand.nextInt(spread * 2 + 1) - spread));
+        int g = Math.max(0, Math.min(255, ((color >> 8) & 0xFF) + rand.nextInt(spread * 2 + 1) - spread));
+        int b = Math.max(0, Math.min(255, (color & 0xFF) + rand.nextInt(spread * 2 + 1) - spread));
+        return (r << 16) | (g << 8) | b;
+    }
+
+
+    /*
+     * the old recolor, the per pixel loop from TextureManager.createAWT, with the helpers it used.
+     * the pixels are in the order they were read from GL, the x and y loops just picked which pixel was set.
+     */
+
+    private static int[] oldRecolor(byte[] buffer, int[] skinColorsFrom, int[] skinColorsTo, List<Integer> colorsFrom){
+        int[] skin = new int[buffer.length / 4];
+        int i,r,g,b,a,ii;
+        int[] col;
+        for(int p=0; p<skin.length; p++){
+            i = p * 4;
+            r = buffer[i] & 0xff;
+            g = buffer[i + 1] & 0xff;
+            b = buffer[i + 2] & 0xff;
+            a = buffer[i + 3] & 0xff;
+            if(a==0){
+                skin[p] = 0x00000000;
+                continue;
+            }
+
+            //recolor from skin
+            if(skinColorsFrom!=null&&skinColorsFrom.length>0){
+                for (ii=0;ii<skinColorsFrom.length;ii++){
+                    col = hexTorgb(skinColorsFrom[ii]);
+                    if(colorInRange(r,g,b,col[2],col[1],col[0])){
+                        col=postProcessColor(skinColorsTo[ii],r,g,b);
+                        r=col[2];
+                        g=col[1];
+                        b=col[0];
+                    }
+                }
+            }
+            //recolor from player settings. ORDER IS IMPORTANT
+            if(colorsFrom!=null && colorsFrom.size()>0) {
+                for (ii=0;ii<colorsFrom.size();ii++){
+                    col = hexTorgba(colorsFrom.get(ii));
+                    if(colorInRange(r,g,b,col[2],col[1],col[0])){
+                        col=postProcessColor(skinColorsTo[ii],r,g,b);
+                        r=col[2];
+                        g=col[1];
+                        b=col[0];
+                    }
+                }
+            }
+
+            skin[p] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+        return skin;
+    }
+
+    private static boolean colorInRange(int r, int g, int b, int oldR, int oldG, int oldB){
+        return oldR-r>-17 && oldR-r <17 &&
+                oldG-g>-17 && oldG-g <17 &&
+                oldB-b>-17 && oldB-b <17;
+    }
+    private static int[] hexTorgba(int hex){
+        return new int[]{hex&0xFF, (hex>>8)&0xFF, (hex>>16)&0xFF, (hex>>24)&0xFF};
+    }
+    private static int[] hexTorgb(int hex){
+        return new int[]{hex&0xFF, (hex>>8)&0xFF, (hex>>16)&0xFF};
+    }
+    private static int[] postProcessColor(int newColor, int r, int g, int b){
+        int[] ret =hexTorgb(newColor);
+
+        ret[0] += ret[0]-b;
+        ret[1] += ret[1]-g;
+        ret[2] += ret[2]-r;
+        return ret;
+    }
+}